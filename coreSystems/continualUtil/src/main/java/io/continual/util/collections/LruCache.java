@@ -15,11 +15,24 @@
  */
 package io.continual.util.collections;
 
-import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * A bounded cache that evicts entries that haven't been used recently.<br>
+ * <br>
+ * Recency is tracked with the "clock" approximation of LRU. Entries sit in a ring, and a hit
+ * just marks its entry as referenced. To make room, a hand sweeps the ring, clearing marks as
+ * it goes, and evicts the first unmarked entry it finds. Hits and evictions are constant time
+ * (evictions amortized), and lookups take no lock, so readers don't contend with each other.
+ * Stores and removals lock the ring.<br>
+ * <br>
+ * The cache is bounded by entry count and, optionally, by total entry weight as measured by a
+ * Weigher (e.g. the approximate size of the value in bytes).
+ */
 public class LruCache <K extends Object, T extends Object>
 {
 	public interface ExpulsionListener<K,T>
@@ -28,15 +41,109 @@ public class LruCache <K extends Object, T extends Object>
 	}
 
 	/**
-	 * Construct an LRU Cache with the given max size. 
+	 * Measures the weight of a cache entry, usually its approximate size in bytes
+	 */
+	public interface Weigher<K,T>
+	{
+		long weigh ( K key, T value );
+	}
+
+	/**
+	 * A snapshot of cache activity counts
+	 */
+	public static class Stats
+	{
+		public long getHitCount () { return fHits; }
+		public long getMissCount () { return fMisses; }
+		public long getEvictionCount () { return fEvictions; }
+
+		/**
+		 * Get the fraction of lookups that were hits
+		 * @return a value from 0 to 1, or 0 if there have been no lookups
+		 */
+		public double getHitRatio ()
+		{
+			final long total = fHits + fMisses;
+			return total == 0 ? 0.0 : ( (double) fHits ) / total;
+		}
+
+		@Override
+		public String toString ()
+		{
+			return "hits: " + fHits + ", misses: " + fMisses + ", evictions: " + fEvictions;
+		}
+
+		private Stats ( long hits, long misses, long evictions )
+		{
+			fHits = hits;
+			fMisses = misses;
+			fEvictions = evictions;
+		}
+
+		private final long fHits;
+		private final long fMisses;
+		private final long fEvictions;
+	}
+
+	/**
+	 * Build a cache
+	 *
+	 * @param <K>
+	 * @param <T>
+	 */
+	public static class Builder<K,T>
+	{
+		/**
+		 * Set the maximum number of entries in the cache. 0 is allowed to mean "don't cache".
+		 * @param maxSize
+		 * @return this builder
+		 */
+		public Builder<K,T> withMaxSize ( long maxSize ) { fMaxSize = maxSize; return this; }
+
+		/**
+		 * Bound the total weight of the entries in the cache
+		 * @param maxWeight the maximum total weight
+		 * @param weigher the weigher for entries
+		 * @return this builder
+		 */
+		public Builder<K,T> withMaxWeight ( long maxWeight, Weigher<K,T> weigher ) { fMaxWeight = maxWeight; fWeigher = weigher; return this; }
+
+		/**
+		 * Build the cache
+		 * @return a cache instance
+		 */
+		public LruCache<K,T> build ()
+		{
+			return new LruCache<K,T> ( this );
+		}
+
+		private long fMaxSize = Long.MAX_VALUE;
+		private long fMaxWeight = Long.MAX_VALUE;
+		private Weigher<K,T> fWeigher = null;
+	}
+
+	/**
+	 * Construct an LRU Cache with the given max size.
 	 * @param maxSize the maximum number of entries in the cache. 0 is allowed to mean "don't cache"
 	 */
 	public LruCache ( long maxSize )
 	{
-		fEntries = new Hashtable<K,Entry> ();
-		fMruList = new LinkedList<K> ();
+		this ( new Builder<K,T> ().withMaxSize ( maxSize ) );
+	}
+
+	protected LruCache ( Builder<K,T> b )
+	{
+		fEntries = new ConcurrentHashMap<K,Entry> ();
+		fHand = null;
+		fWeigher = b.fWeigher;
+		fMaxWeight = Math.max ( 0, b.fMaxWeight );
+		fWeight = 0;
 
-		setMaxSize ( maxSize );
+		fHits = new LongAdder ();
+		fMisses = new LongAdder ();
+		fEvictions = new LongAdder ();
+
+		setMaxSize ( b.fMaxSize );
 	}
 
 	public T get ( K key )
@@ -49,7 +156,7 @@ public class LruCache <K extends Object, T extends Object>
 		return lookup ( key, maxAgeMs );
 	}
 
-	public synchronized T lookup ( K key )
+	public T lookup ( K key )
 	{
 		return lookup ( key, -1 );
 	}
@@ -58,32 +165,35 @@ public class LruCache <K extends Object, T extends Object>
 	 * Lookup the value for a key. If a max age is specified (&lt;-1) and the
 	 * entry exists but is older than the max age, the entry is removed from
 	 * the cache.
-	 * 
+	 *
 	 * @param key a key to search for
 	 * @param maxAgeMs the max age allowed for the value
 	 * @return a value for the given key or null if no value exists within the time range specified
 	 */
-	public synchronized T lookup ( K key, long maxAgeMs )
+	public T lookup ( K key, long maxAgeMs )
 	{
-		T t = null;
-		Entry e = fEntries.get ( key );
-		if ( e != null )
+		final Entry e = fEntries.get ( key );
+		if ( e == null )
+		{
+			fMisses.increment ();
+			return null;
+		}
+
+		if ( maxAgeMs > -1 )
 		{
-			if ( maxAgeMs > -1 )
+			final long now = System.currentTimeMillis ();
+			final long age = now - e.initialInsertMs;
+			if ( age > maxAgeMs )
 			{
-				final long now = System.currentTimeMillis ();
-				final long age = now - e.initialInsertMs;
-				if ( age > maxAgeMs )
-				{
-					remove ( key );
-					return null;
-				}
+				removeEntry ( e );
+				fMisses.increment ();
+				return null;
 			}
-			
-			t = e.value;
-			noteUse ( key );
 		}
-		return t;
+
+		e.referenced = true;
+		fHits.increment ();
+		return e.value;
 	}
 
 	public T put ( K key, T object )
@@ -95,53 +205,101 @@ public class LruCache <K extends Object, T extends Object>
 	{
 		return store ( key, object, null );
 	}
-	
-	public synchronized T store ( K key, T object, ExpulsionListener<K,T> el )
+
+	public T store ( K key, T object, ExpulsionListener<K,T> el )
 	{
-		ensureCapacity ();
-		if ( fEntries.size() < fMaxSize )	// max size can be 0
+		final long weight = fWeigher == null ? 0 : fWeigher.weigh ( key, object );
+
+		final LinkedList<Entry> expelled = new LinkedList<> ();
+		final Entry was;
+		synchronized ( this )
 		{
-			final Entry e = new Entry ();
-			e.value = object;
-			e.expulsion = el;
-			e.initialInsertMs = System.currentTimeMillis ();
-			final Entry was = fEntries.put ( key, e );
-			noteUse ( key );
-			return was == null ? null : was.value;
+			if ( fMaxSize == 0 ) return null;
+
+			final Entry e = new Entry ( key, object, el, weight );
+			if ( weight > fMaxWeight )
+			{
+				// too heavy to fit on its own; it replaces any existing value, then leaves
+				was = fEntries.remove ( key );
+				if ( was != null )
+				{
+					unlink ( was );
+				}
+				fEvictions.increment ();
+				expelled.add ( e );
+			}
+			else
+			{
+				was = fEntries.put ( key, e );
+				if ( was != null )
+				{
+					unlink ( was );
+				}
+
+				// make room before linking the new entry, so the sweep can't pick it
+				evict ( expelled, weight );
+				link ( e );
+			}
 		}
-		return null;
+		notifyExpelled ( expelled );
+		return was == null ? null : was.value;
 	}
 
 	public synchronized T remove ( Object key )
 	{
-		fMruList.remove ( key );
 		final Entry e = fEntries.remove ( key );
-		return e == null ? null : e.value;
+		if ( e == null ) return null;
+
+		unlink ( e );
+		return e.value;
 	}
 
-	public synchronized void drop ( K key )
+	public void drop ( K key )
 	{
 		remove ( key );
 	}
 
-	public synchronized int size ()
+	public int size ()
 	{
 		return fEntries.size ();
 	}
-	
-	public synchronized long maxSize ()
+
+	public long maxSize ()
 	{
 		return fMaxSize;
 	}
 
-	public synchronized void setMaxSize ( long size )
+	public void setMaxSize ( long size )
 	{
-		if ( size < 0 )
+		final LinkedList<Entry> expelled = new LinkedList<> ();
+		synchronized ( this )
 		{
-			size = 0;
+			if ( size < 0 )
+			{
+				size = 0;
+			}
+			fMaxSize = size;
+			evict ( expelled, 0 );
 		}
-		fMaxSize = size;
-		ensureCapacity ();
+		notifyExpelled ( expelled );
+	}
+
+	/**
+	 * Get the total weight of the entries in the cache. This is 0 if the cache has no weigher.
+	 * @return the total weight
+	 */
+	public synchronized long weight ()
+	{
+		return fWeight;
+	}
+
+	/**
+	 * Get the hit, miss, and eviction counts for this cache
+	 * @return a snapshot of the counts
+	 */
+	public Stats getStats ()
+	{
+		return new Stats ( fHits.sum (), fMisses.sum (), fEvictions.sum () );
 	}
 
 	/**
@@ -156,21 +314,20 @@ public class LruCache <K extends Object, T extends Object>
 	 * Clear the cache of all entries, optionally calling the expulsion listeners associated with them.
 	 * @param callExpulsionListeners if true, explusion listeners are notitifed
 	 */
-	public synchronized void clear ( boolean callExpulsionListeners )
+	public void clear ( boolean callExpulsionListeners )
 	{
-		if ( callExpulsionListeners )
+		final LinkedList<Entry> expelled = new LinkedList<> ();
+		synchronized ( this )
 		{
-			for ( K key : fMruList )
+			if ( callExpulsionListeners )
 			{
-				final Entry e = fEntries.get ( key );
-				if ( e != null && e.expulsion != null )
-				{
-					e.expulsion.onExpelled ( key, e.value );
-				}
+				expelled.addAll ( fEntries.values () );
 			}
+			fEntries.clear ();
+			fHand = null;
+			fWeight = 0;
 		}
-		fEntries.clear ();
-		fMruList.clear ();
+		notifyExpelled ( expelled );
 	}
 
 	public boolean isEmpty ()
@@ -183,37 +340,125 @@ public class LruCache <K extends Object, T extends Object>
 		return lookup ( key, -1 ) != null;
 	}
 
-	public synchronized Set<K> keys ()
+	public Set<K> keys ()
 	{
-		return new TreeSet<> ( fMruList );
+		return new TreeSet<> ( fEntries.keySet () );
 	}
-	
-	private long fMaxSize;
-	private final Hashtable<K,Entry> fEntries;
-	private final LinkedList<K> fMruList;	// first item is MRU
 
-	private void noteUse ( K key )
+	private volatile long fMaxSize;
+	private final long fMaxWeight;
+	private final Weigher<K,T> fWeigher;
+	private final ConcurrentHashMap<K,Entry> fEntries;
+
+	// the ring of entries and the total weight are guarded by this cache's monitor
+	private Entry fHand;
+	private long fWeight;
+
+	private final LongAdder fHits;
+	private final LongAdder fMisses;
+	private final LongAdder fEvictions;
+
+	private class Entry
 	{
-		fMruList.remove ( key );	// FIXME: this is likely O(n)
-		fMruList.addFirst ( key );
+		public Entry ( K key, T value, ExpulsionListener<K,T> el, long weight )
+		{
+			this.key = key;
+			this.value = value;
+			this.expulsion = el;
+			this.weight = weight;
+			this.initialInsertMs = System.currentTimeMillis ();
+			this.referenced = false;
+		}
+
+		final K key;
+		final T value;
+		final ExpulsionListener<K,T> expulsion;
+		final long weight;
+		final long initialInsertMs;
+
+		volatile boolean referenced;
+		Entry prev;
+		Entry next;
 	}
 
-	private class Entry
+	// remove an entry found by lookup, unless it was already replaced or removed
+	private synchronized void removeEntry ( Entry e )
+	{
+		if ( fEntries.remove ( e.key, e ) )
+		{
+			unlink ( e );
+		}
+	}
+
+	// new entries go just behind the hand, so they're the last the sweep reaches
+	private void link ( Entry e )
+	{
+		if ( fHand == null )
+		{
+			e.prev = e;
+			e.next = e;
+			fHand = e;
+		}
+		else
+		{
+			e.next = fHand;
+			e.prev = fHand.prev;
+			fHand.prev.next = e;
+			fHand.prev = e;
+		}
+		fWeight += e.weight;
+	}
+
+	private void unlink ( Entry e )
+	{
+		if ( e.next == e )
+		{
+			fHand = null;
+		}
+		else
+		{
+			if ( fHand == e )
+			{
+				fHand = e.next;
+			}
+			e.prev.next = e.next;
+			e.next.prev = e.prev;
+		}
+		e.prev = null;
+		e.next = null;
+		fWeight -= e.weight;
+	}
+
+	// evict until the entries, plus any incoming weight, fit the bounds
+	private void evict ( LinkedList<Entry> expelled, long incomingWeight )
 	{
-		T value;
-		ExpulsionListener<K,T> expulsion;
-		long initialInsertMs;
+		while ( fHand != null && ( fEntries.size () > fMaxSize || fWeight + incomingWeight > fMaxWeight ) )
+		{
+			final Entry e = fHand;
+			if ( e.referenced )
+			{
+				// used since the hand last passed; give it another trip around the ring
+				e.referenced = false;
+				fHand = e.next;
+			}
+			else
+			{
+				fEntries.remove ( e.key, e );
+				unlink ( e );
+				fEvictions.increment ();
+				expelled.add ( e );
+			}
+		}
 	}
 
-	private void ensureCapacity ()
+	// listeners are called outside of the lock
+	private void notifyExpelled ( LinkedList<Entry> expelled )
 	{
-		while ( fEntries.size() >= fMaxSize && fEntries.size() != 0 )
+		for ( Entry e : expelled )
 		{
-			final K key = fMruList.removeLast ();
-			final Entry e = fEntries.remove ( key );
 			if ( e.expulsion != null )
 			{
-				e.expulsion.onExpelled ( key, e.value );
+				e.expulsion.onExpelled ( e.key, e.value );
 			}
 		}
 	}
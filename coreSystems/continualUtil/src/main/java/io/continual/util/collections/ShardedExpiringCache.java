@@ -2,8 +2,8 @@ package io.continual.util.collections;
 
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -13,14 +13,18 @@ import io.continual.util.time.Clock;
 
 /**
  * This cache aims to provide safe concurrent access to cached data while allowing some
- * longer operations to run without blocking the entire cache. Keys are hashed into a shard
- * number and blocking operations for a given key block only the shard.  This cache was built
- * mainly to cache response data in a scenario where the same key is requested repeatedly across
- * multiple calling threads and the response itself can take some time to acquire. The result
- * is a large number of overlapping read-then-write operations for a given key. This cache
- * will route each to the same synchronized shard object to block the operation while the first thread
- * completes the fetch.  Other keys in the same shard are also blocked, so a trade-off is made
- * between memory used and shard count.
+ * longer operations to run without blocking the cache. It was built mainly to cache response
+ * data in a scenario where the same key is requested repeatedly across multiple calling threads
+ * and the response itself can take some time to acquire.<br>
+ * <br>
+ * Reads take no lock. Each key hashes to a shard that holds a concurrent map of entries, and
+ * each entry carries its own expiration time, checked when it's read. Writes and removals lock
+ * only their shard to maintain an insertion-ordered list, so that the oldest entry is evicted
+ * in constant time when the shard is full, and expired entries at the front of the list are
+ * swept as new entries arrive.<br>
+ * <br>
+ * When reading with a fetcher, concurrent misses on the same key share a single call to the
+ * fetcher. Other keys are not blocked while a fetch runs.
  */
 public class ShardedExpiringCache<K,V>
 {
@@ -196,10 +200,18 @@ public class ShardedExpiringCache<K,V>
 	 */
 	public V read ( K key, Validator<V> validator, Fetcher<K,V> fetcher ) throws Fetcher.FetchException
 	{
-		try ( ShardCallWrap lw = new ShardCallWrap ( "for read" ) )
+		final Shard shard = getShard ( key );
+
+		final V cached = shard.read ( key, validator );
+		if ( cached != null )
 		{
-			return getShard ( key ).read ( key, validator, fetcher );
+			fMonitor.onCacheHit ();
+			return cached;
 		}
+		fMonitor.onCacheMiss ();
+
+		if ( fetcher == null ) return null;
+		return fetch ( shard, key, validator, fetcher );
 	}
 
 	/**
@@ -220,10 +232,17 @@ public class ShardedExpiringCache<K,V>
 	 */
 	public void write ( K key, V val, long cacheDurationMs )
 	{
-		try ( ShardCallWrap lw = new ShardCallWrap ( "for write" ) )
+		// we need a key
+		if ( key == null )
 		{
-			getShard ( key ).write ( key, val, cacheDurationMs );
+			log.warn ( "Ignoring null key insert in cache {}.", fName );
+			return;
 		}
+
+		// ignore if duration is zero
+		if ( cacheDurationMs <= 0L ) return;
+
+		getShard ( key ).write ( key, val, cacheDurationMs );
 	}
 
 	/**
@@ -232,10 +251,7 @@ public class ShardedExpiringCache<K,V>
 	 */
 	public void remove ( K key )
 	{
-		try ( ShardCallWrap lw = new ShardCallWrap ( "for object removal" ) )
-		{
-			getShard ( key ).remove ( key );
-		}
+		getShard ( key ).remove ( key );
 	}
 
 	/**
@@ -270,112 +286,183 @@ public class ShardedExpiringCache<K,V>
 	private final int fShardMaxSize;
 	private final ArrayList<Shard> fShards;
 	private final Monitor fMonitor;
+	private final ConcurrentHashMap<K,PendingFetch> fPendingFetches;
 
 	private Shard getShard ( K key )
 	{
-		final int hash = Math.abs ( key.hashCode () );
-		final int index = hash % fShardCount;
+		final int index = ( key.hashCode () & Integer.MAX_VALUE ) % fShardCount;
 		return fShards.get ( index );
 	}
-	
-	private class Shard
+
+	/**
+	 * Fetch a value after a miss. The first thread to miss on a key runs the fetch while any
+	 * others wait for its result.
+	 */
+	private V fetch ( Shard shard, K key, Validator<V> validator, Fetcher<K,V> fetcher ) throws Fetcher.FetchException
 	{
-		public Shard ( int id )
+		final PendingFetch mine = new PendingFetch ();
+		final PendingFetch existing = fPendingFetches.putIfAbsent ( key, mine );
+		if ( existing != null )
 		{
-			fId = id;
-			fItemCache = new HashMap<> ();
-			fItemCleanups = new LinkedList<> ();
+			return existing.await ();
 		}
 
-		public synchronized V read ( K key, Validator<V> validator, Fetcher<K,V> fetcher ) throws Fetcher.FetchException
+		try
 		{
-			cleanupCache ();
-
-			final CacheEntry e = fItemCache.get ( key );
-			if ( e != null )
+			// another thread may have completed a fetch between our miss and our registration
+			V result = shard.read ( key, validator );
+			if ( result == null )
 			{
-				final V val = e.getValue ();
-				if ( val != null && ( validator == null || validator.isValid ( val ) ) )
+				log.debug ( "Cache {} fetching {} from backing store.", fName, key );
+
+				final long startMs = now ();
+				result = fetcher.fetch ( key );
+				final long durationMs = now () - startMs;
+				if ( durationMs > skWarnOnFetchDurationMs )
 				{
-					fMonitor.onCacheHit ();
-					log.info ( "Read/returned {} from cache {}/{}.", key.toString (), fName, fId );
-					return val;
+					log.warn ( "Cache {} fetch for {} took {} ms", fName, key, durationMs );
 				}
-				else
+
+				if ( result != null )
 				{
-					// else: this entry timed out. isn't valid, or was garbage collected
-					log.debug ( "Read {} from cache {}/{}, but {}.", key.toString (), fName, fId,
-						( val == null ? "it was cleaned up" : "it's not valid" ) );
-					fItemCache.remove ( key );
+					write ( key, result );
 				}
 			}
-			log.debug ( "No valid entry for {} in cache {}/{}.", key.toString (), fName, fId );
+			mine.complete ( result, null );
+			return result;
+		}
+		catch ( Fetcher.FetchException | RuntimeException x )
+		{
+			mine.complete ( null, x );
+			throw x;
+		}
+		finally
+		{
+			// the value (if any) is written before the pending fetch is released
+			fPendingFetches.remove ( key, mine );
+		}
+	}
 
-			fMonitor.onCacheMiss ();
+	private class PendingFetch
+	{
+		public void complete ( V value, Exception failure )
+		{
+			fValue = value;
+			fFailure = failure;
+			fDone.countDown ();
+		}
 
-			if ( fetcher != null )
+		public V await () throws Fetcher.FetchException
+		{
+			try
 			{
-				log.info ( "Cache fetching {} from backing store in shard {}/{}", key, fName, fId );
-				final V fetched = fetcher.fetch ( key );
-				if ( fetched != null )
-				{
-					write ( key, fetched );
-					return fetched;
-				}
+				fDone.await ();
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread ().interrupt ();
+				throw new Fetcher.FetchException ( e );
 			}
 
-			return null;
+			if ( fFailure instanceof Fetcher.FetchException )
+			{
+				throw (Fetcher.FetchException) fFailure;
+			}
+			else if ( fFailure != null )
+			{
+				throw new Fetcher.FetchException ( fFailure );
+			}
+			return fValue;
 		}
 
-		public synchronized void write ( K key, V val )
+		private final CountDownLatch fDone = new CountDownLatch ( 1 );
+		private volatile V fValue;
+		private volatile Exception fFailure;
+	}
+
+	private class Shard
+	{
+		public Shard ( int id )
 		{
-			write ( key, val, fDurMs );
+			fId = id;
+			fItemCache = new ConcurrentHashMap<> ();
+			fOldest = null;
+			fNewest = null;
+			fCount = 0;
 		}
 
-		public synchronized void write ( K key, V val, long cacheDurationMs )
+		// no lock is taken unless the entry must be dropped
+		public V read ( K key, Validator<V> validator )
 		{
-			// we need a key
-			if ( key == null )
+			final CacheEntry e = fItemCache.get ( key );
+			if ( e == null ) return null;
+
+			final V val = e.getValue ();
+			if ( val != null && e.getExpiresAtMs () >= now () && ( validator == null || validator.isValid ( val ) ) )
 			{
-				log.warn ( "Ignoring null key insert in cache {}.", fName );
-				return;
+				if ( log.isTraceEnabled () )
+				{
+					log.trace ( "Read/returned {} from cache {}/{}.", key, fName, fId );
+				}
+				return val;
 			}
 
-			// ignore if duration is zero
-			if ( cacheDurationMs <= 0L ) return;
-
-			// trim old entries as needed
-			while ( fShardMaxSize > 0 && size() >= fShardMaxSize )
+			// this entry timed out, isn't valid, or was garbage collected
+			if ( log.isDebugEnabled () )
 			{
-				// remove the oldest item
-				cleanupCacheItem ( fItemCleanups.remove () );
+				log.debug ( "Read {} from cache {}/{}, but it's {}.", key, fName, fId,
+					( val == null ? "been cleaned up" : "expired or not valid" ) );
 			}
+			drop ( e );
+			return null;
+		}
+
+		public synchronized void write ( K key, V val, long cacheDurationMs )
+		{
+			final long now = now ();
+			sweepExpired ( now );
 
 			// wrap the value in our cache entry and insert it
-			final CacheEntry ce = new CacheEntry ( key, val, now() + cacheDurationMs );
-			fItemCache.put ( key, ce );
-			fItemCleanups.add ( ce );
+			final CacheEntry ce = new CacheEntry ( key, val, now + cacheDurationMs );
+			final CacheEntry replaced = fItemCache.put ( key, ce );
+			if ( replaced != null )
+			{
+				unlink ( replaced );
+			}
+			append ( ce );
+
+			// trim old entries as needed
+			while ( fShardMaxSize > 0 && fCount > fShardMaxSize )
+			{
+				evict ( fOldest );
+			}
 
-			log.debug ( "Wrote {} to cache {}.", key.toString (), fName );
+			log.debug ( "Wrote {} to cache {}.", key, fName );
 		}
 
 		public synchronized void remove ( K key )
 		{
-			fItemCache.remove ( key );
+			final CacheEntry e = fItemCache.remove ( key );
+			if ( e != null )
+			{
+				unlink ( e );
+			}
 		}
 
 		public synchronized void empty ()
 		{
 			fItemCache.clear ();
-			fItemCleanups.clear ();
+			fOldest = null;
+			fNewest = null;
+			fCount = 0;
 		}
 
-		public synchronized int size ()
+		public int size ()
 		{
 			return fItemCache.size ();
 		}
 
-		private synchronized void $testGc ( K key )
+		private void $testGc ( K key )
 		{
 			final CacheEntry ce = fItemCache.get ( key );
 			if ( ce != null )
@@ -385,31 +472,81 @@ public class ShardedExpiringCache<K,V>
 		}
 
 		private final int fId;
-		private final HashMap<K, CacheEntry> fItemCache;
-		private final LinkedList<CacheEntry> fItemCleanups;	// time-ordered list of entries created
+		private final ConcurrentHashMap<K, CacheEntry> fItemCache;
+
+		// insertion-ordered list of the entries in the map, guarded by this shard's lock
+		private CacheEntry fOldest;
+		private CacheEntry fNewest;
+		private int fCount;
 
-		private void cleanupCacheItem ( CacheEntry cleanupEntry )
+		// remove the given entry if it's still the current entry for its key
+		private synchronized void drop ( CacheEntry e )
 		{
-			final CacheEntry cacheEntry = fItemCache.get ( cleanupEntry.getKey () );
-			if ( cacheEntry != null && cacheEntry == cleanupEntry )
+			if ( fItemCache.remove ( e.getKey (), e ) )
 			{
-				// the cache entry is still the same entry as the cleanup task entry, so remove from cache
-				fItemCache.remove ( cleanupEntry.getKey() );
-				log.info ( "Removed cache entry for \"{}\" in cache {}.", cleanupEntry.toString (), fName );
+				unlink ( e );
+			}
+		}
+
+		private void evict ( CacheEntry e )
+		{
+			fItemCache.remove ( e.getKey (), e );
+			unlink ( e );
+			log.debug ( "Removed cache entry for \"{}\" in cache {}.", e, fName );
+		}
+
+		// entries are ordered by write time rather than expiration, so this stops at the first live entry
+		private void sweepExpired ( long now )
+		{
+			while ( fOldest != null && fOldest.getExpiresAtMs () < now )
+			{
+				evict ( fOldest );
+			}
+		}
+
+		private void append ( CacheEntry e )
+		{
+			e.fPrev = fNewest;
+			e.fNext = null;
+			if ( fNewest == null )
+			{
+				fOldest = e;
 			}
 			else
 			{
-				log.debug ( "Removed cleanup entry for \"{}\" in cache {}, but no match in item cache.", cleanupEntry.toString (), fName );
+				fNewest.fNext = e;
 			}
+			fNewest = e;
+			e.fLinked = true;
+			fCount++;
 		}
 
-		private void cleanupCache ()
+		private void unlink ( CacheEntry e )
 		{
-			final long now = now ();
-			while ( fItemCleanups.size () > 0 && fItemCleanups.get ( 0 ).getExpiresAtMs() < now )
+			if ( !e.fLinked ) return;
+
+			if ( e.fPrev == null )
+			{
+				fOldest = e.fNext;
+			}
+			else
+			{
+				e.fPrev.fNext = e.fNext;
+			}
+
+			if ( e.fNext == null )
 			{
-				cleanupCacheItem ( fItemCleanups.remove () );
+				fNewest = e.fPrev;
 			}
+			else
+			{
+				e.fNext.fPrev = e.fPrev;
+			}
+
+			e.fPrev = null;
+			e.fNext = null;
+			e.fLinked = false;
+			fCount--;
 		}
 	}
 
@@ -436,6 +573,11 @@ public class ShardedExpiringCache<K,V>
 		private final K fKey;
 		private final SoftReference<V> fVal;
 		private final long fExpiresAtMs;
+
+		// list links, guarded by the owning shard's lock
+		private CacheEntry fPrev;
+		private CacheEntry fNext;
+		private boolean fLinked;
 	}
 
 	private ShardedExpiringCache ( Builder<K,V> b )
@@ -451,32 +593,9 @@ public class ShardedExpiringCache<K,V>
 		}
 
 		fMonitor = b.fMonitor;
+		fPendingFetches = new ConcurrentHashMap<> ();
 	}
 
-	private static class ShardCallWrap implements AutoCloseable
-	{
-		public ShardCallWrap ( String msg )
-		{
-			log.debug ( "locking shard " + msg );
-		}
-
-		@Override
-		public void close ()
-		{
-			final long stopTimeMs = now ();
-			final long durationMs = stopTimeMs - fStartTimeMs;
-			log.debug ( "shard released, {} ms", durationMs );
-
-			// basic awareness of trouble, esp. if a fetch call takes a long time
-			if ( durationMs > skWarnOnLockDurationMs )
-			{
-				log.warn ( "Shard call wrap took {} ms", durationMs );
-			}
-		}
-
-		private final long fStartTimeMs = now ();
-	}
-	
 	static long now ()
 	{
 		return Clock.now ();
@@ -484,15 +603,12 @@ public class ShardedExpiringCache<K,V>
 
 	private static final int kDefaultShardCount = 1024;
 	private static final int kDefaultShardMaxSize = 4 * 1024;
-	private static final long skWarnOnLockDurationMs = 10 * 1000L;
+	private static final long skWarnOnFetchDurationMs = 10 * 1000L;
 
 	private static final Logger log = LoggerFactory.getLogger ( ShardedExpiringCache.class );
 
 	void $testDropWeakRef ( K key )
 	{
-		try ( ShardCallWrap lw = new ShardCallWrap ( "for gc test" ) )
-		{
-			getShard ( key ).$testGc ( key );
-		}
+		getShard ( key ).$testGc ( key );
 	}
 }
@@ -0,0 +1,190 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.util.data.exprEval;
+
+import java.util.ArrayList;
+
+import io.continual.util.collections.LruCache;
+
+/**
+ * A ${} text template parsed once into literal and symbol segments. Evaluation produces the
+ * same result as ExpressionEvaluator.evaluateText on the source string, without rescanning it.
+ * Compiled expressions are immutable and safe to share across threads.
+ */
+public class CompiledExpression
+{
+	/**
+	 * Compile the given template text.
+	 * @param sourceString the template text, which may be null
+	 * @return a compiled expression
+	 */
+	public static CompiledExpression compile ( String sourceString )
+	{
+		return new CompiledExpression ( sourceString );
+	}
+
+	/**
+	 * Get a compiled expression for the given template text from a shared, bounded cache. Use
+	 * this for templates that are evaluated repeatedly, such as those in a processing program.
+	 * When the cache is full, templates that haven't been used recently make room for new ones.
+	 * @param sourceString the template text, which may be null
+	 * @return a compiled expression
+	 */
+	public static CompiledExpression cached ( String sourceString )
+	{
+		if ( sourceString == null ) return compile ( null );
+
+		CompiledExpression result = skCache.get ( sourceString );
+		if ( result == null )
+		{
+			result = compile ( sourceString );
+			skCache.put ( sourceString, result );
+		}
+		return result;
+	}
+
+	/**
+	 * Get the template text this expression was compiled from
+	 * @return the source text, or null
+	 */
+	public String getSource ()
+	{
+		return fSource;
+	}
+
+	/**
+	 * Does this expression have no symbols to evaluate?
+	 * @return true if the expression's value is constant
+	 */
+	public boolean isConstant ()
+	{
+		return fSymbols.length == 0;
+	}
+
+	/**
+	 * Substitute each ${&lt;expr&gt;} with the evaluation of that expression
+	 * @param srcs a set of data sources, evaluated in order
+	 * @return a string, or null if the source text was null
+	 */
+	public String evaluate ( ExprDataSource... srcs )
+	{
+		if ( fSource == null ) return null;
+		if ( fSymbols.length == 0 ) return fLiterals[0];
+
+		// a lone symbol needs no buffer
+		if ( fSymbols.length == 1 && fLiterals[0].length () == 0 && fLiterals[1].length () == 0 )
+		{
+			final Object val = fSymbols[0].evaluate ( srcs );
+			return val == null ? "" : val.toString ();
+		}
+
+		final StringBuilder sb = new StringBuilder ( fSource.length () + 16 * fSymbols.length );
+		for ( int i=0; i<fSymbols.length; i++ )
+		{
+			sb.append ( fLiterals[i] );
+
+			final Object val = fSymbols[i].evaluate ( srcs );
+			if ( val != null ) sb.append ( val.toString () );
+		}
+		sb.append ( fLiterals [ fSymbols.length ] );
+		return sb.toString ();
+	}
+
+	@Override
+	public String toString ()
+	{
+		return fSource;
+	}
+
+	private static class Symbol
+	{
+		public Symbol ( String key, String defval )
+		{
+			fKey = key;
+			fDefVal = defval;
+		}
+
+		public Object evaluate ( ExprDataSource[] srcs )
+		{
+			final Object val = ExpressionEvaluator.evaluateSymbol ( fKey, srcs );
+			return val == null ? fDefVal : val;
+		}
+
+		private final String fKey;
+		private final String fDefVal;
+	}
+
+	private final String fSource;
+	private final String[] fLiterals;	// always one more than the symbol count
+	private final Symbol[] fSymbols;
+
+	private static final int kMaxCached = 4096;
+	private static final LruCache<String,CompiledExpression> skCache = new LruCache<> ( kMaxCached );
+
+	private CompiledExpression ( String sourceString )
+	{
+		fSource = sourceString;
+
+		final ArrayList<String> literals = new ArrayList<> ();
+		final ArrayList<Symbol> symbols = new ArrayList<> ();
+
+		if ( sourceString == null )
+		{
+			literals.add ( "" );
+		}
+		else
+		{
+			final StringBuilder literal = new StringBuilder ();
+			int pos = 0;
+			while ( pos < sourceString.length () )
+			{
+				final int open = sourceString.indexOf ( "${", pos );
+				final int closer = open < 0 ? -1 : sourceString.indexOf ( '}', open );
+				if ( closer < 0 )
+				{
+					// just straight text left (including an unclosed "${")
+					literal.append ( sourceString, pos, sourceString.length () );
+					pos = sourceString.length ();
+				}
+				else
+				{
+					literal.append ( sourceString, pos, open );
+					literals.add ( literal.toString () );
+					literal.setLength ( 0 );
+
+					String key = sourceString.substring ( open+2, closer ).trim ();
+					String defval = null;
+
+					// allow a default value in the key expression via vertical bar separator
+					final int vertBar = key.indexOf ( '|' );
+					if ( vertBar > -1 )
+					{
+						defval = key.substring ( vertBar + 1 ).trim ();
+						key = key.substring ( 0, vertBar ).trim ();
+					}
+					symbols.add ( new Symbol ( key, defval ) );
+
+					pos = closer + 1;
+				}
+			}
+			literals.add ( literal.toString () );
+		}
+
+		fLiterals = literals.toArray ( new String [ literals.size () ] );
+		fSymbols = symbols.toArray ( new Symbol [ symbols.size () ] );
+	}
+}
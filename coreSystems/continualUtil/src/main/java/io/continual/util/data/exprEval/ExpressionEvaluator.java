@@ -124,72 +124,15 @@ public class ExpressionEvaluator
 
 	
 	/**
-	 * substitute any occurrence of ${&lt;expr&gt;} with the evaluation of that expression 
+	 * substitute any occurrence of ${&lt;expr&gt;} with the evaluation of that expression. To evaluate
+	 * the same text repeatedly, see CompiledExpression.
 	 * @param sourceString the original string
 	 * @param srcs a set of data sources, evaluated in order 
 	 * @return a string
 	 */
 	public static String evaluateText ( String sourceString, ExprDataSource... srcs )
 	{
-		if ( sourceString == null ) return null;
-
-		final StringBuffer sb = new StringBuffer ();
-		do
-		{
-			final int open = sourceString.indexOf ( "${" );
-			if ( open < 0 )
-			{
-				// just straight text left
-				sb.append ( sourceString );
-				sourceString = "";
-			}
-			else
-			{
-				// read to "}", use the content as a key into the json
-				final int closer = sourceString.indexOf ( '}', open );
-				if ( closer < 0 )
-				{
-					// not found. just treat it like plain text
-					sb.append ( sourceString );
-					sourceString = "";
-				}
-				else
-				{
-					sb.append ( sourceString.substring ( 0, open ) );
-					String key = sourceString.substring ( open+2, closer ).trim ();
-					String defval = null;
-
-					// allow a default value in the key expression via vertical bar separator
-					final int vertBar = key.indexOf ( '|' );
-					if ( vertBar > -1 )
-					{
-						defval = key.substring ( vertBar + 1 ).trim ();
-						key = key.substring ( 0, vertBar ).trim ();
-					}
-
-					ExprDataSource[] allSrcs = srcs;
-					if ( defval != null )
-					{
-						final String finalDefVal = defval;
-
-						allSrcs = new ExprDataSource [ srcs.length + 1 ];
-						System.arraycopy ( srcs, 0, allSrcs, 0, srcs.length );
-						allSrcs [ srcs.length ] = new ExprDataSource ()
-						{
-							@Override
-							public Object eval ( String label ) { return finalDefVal; }
-						};
-					}
-
-					final Object symval = evaluateSymbol ( key, allSrcs );
-					sb.append ( symval == null ? "" : symval.toString () );
-					sourceString = sourceString.substring ( closer + 1 );
-				}
-			}
-		}
-		while ( sourceString.length () > 0 );
-		
-		return sb.toString ();
+		return CompiledExpression.compile ( sourceString ).evaluate ( srcs );
 	}
 
 	/**
@@ -0,0 +1,136 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.util.data.json;
+
+import java.util.List;
+
+import org.json.JSONObject;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.PathNotFoundException;
+
+import io.continual.util.collections.LruCache;
+
+/**
+ * A JSON path expression compiled once and evaluated directly against org.json trees,
+ * without serializing and reparsing the document. Compiled paths are safe to share
+ * across threads.
+ */
+public class CompiledJsonPath
+{
+	/**
+	 * Compile the given JSON path expression.
+	 * @param jsonPath a JSON path expression
+	 * @return a compiled path
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	public static CompiledJsonPath compile ( String jsonPath )
+	{
+		try
+		{
+			return new CompiledJsonPath ( jsonPath, JsonPath.compile ( jsonPath ) );
+		}
+		catch ( InvalidPathException x )
+		{
+			throw new IllegalArgumentException ( x.getMessage (), x );
+		}
+	}
+
+	/**
+	 * Get a compiled path for the given expression from a shared cache of recently used paths.
+	 * @param jsonPath a JSON path expression
+	 * @return a compiled path
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	public static CompiledJsonPath cached ( String jsonPath )
+	{
+		CompiledJsonPath result = skCache.get ( jsonPath );
+		if ( result == null )
+		{
+			result = compile ( jsonPath );
+			skCache.put ( jsonPath, result );
+		}
+		return result;
+	}
+
+	/**
+	 * Get the expression this path was compiled from
+	 * @return a JSON path expression
+	 */
+	public String getSource ()
+	{
+		return fSource;
+	}
+
+	/**
+	 * Evaluate this path against the given document. Values in the result are as they
+	 * appear in the document (JSONObject, JSONArray, String, Number, Boolean), with JSON
+	 * nulls returned as null. The document is not modified.
+	 * @param root the document
+	 * @return a list of matching values
+	 * @throws PathNotFoundException if a definite path isn't present
+	 */
+	public List<Object> evaluate ( JSONObject root )
+	{
+		return fPath.read ( root, skConfig );
+	}
+
+	/**
+	 * Does this path select anything in the given document?
+	 * @param root the document
+	 * @return true if evaluation produces a non-empty result
+	 */
+	public boolean matches ( JSONObject root )
+	{
+		try
+		{
+			return evaluate ( root ).size () > 0;
+		}
+		catch ( PathNotFoundException x )
+		{
+			return false;
+		}
+	}
+
+	@Override
+	public String toString ()
+	{
+		return fSource;
+	}
+
+	private final String fSource;
+	private final JsonPath fPath;
+
+	private static final int kMaxCached = 4096;
+	private static final LruCache<String,CompiledJsonPath> skCache = new LruCache<> ( kMaxCached );
+
+	private static final Configuration skConfig = Configuration.builder ()
+		.jsonProvider ( new OrgJsonProvider () )
+		.mappingProvider ( new OrgJsonProvider.Mapping () )
+		.options ( Option.ALWAYS_RETURN_LIST )
+		.build ()
+	;
+
+	private CompiledJsonPath ( String source, JsonPath path )
+	{
+		fSource = source;
+		fPath = path;
+	}
+}
@@ -16,6 +16,7 @@
 
 package io.continual.util.data.json;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -23,7 +24,6 @@ import java.util.Set;
 import org.json.JSONObject;
 
 import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.spi.json.JsonProvider;
 import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
@@ -35,12 +35,22 @@ public class JsonPathEval
 	private JsonPathEval() {
 	}
 	
+	/**
+	 * Evaluate a JSON path against the given document. The expression is compiled once and
+	 * cached, and the document is read in place. See CompiledJsonPath.
+	 * @param root the document
+	 * @param jsonPath a JSON path expression
+	 * @return a list of matching values, as strings (objects and arrays in their JSON form)
+	 */
 	public static List<String> evaluateJsonPath ( JSONObject root, String jsonPath )
 	{
-		return JsonPath
-			.parse ( root.toString () )	// not sure if this is necessary
-			.read ( jsonPath )
-		;
+		final List<Object> values = CompiledJsonPath.cached ( jsonPath ).evaluate ( root );
+		final ArrayList<String> result = new ArrayList<> ( values.size () );
+		for ( Object value : values )
+		{
+			result.add ( value == null ? null : value.toString () );
+		}
+		return result;
 	}
 
 	static
@@ -0,0 +1,273 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.util.data.json;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.JsonPathException;
+import com.jayway.jsonpath.TypeRef;
+import com.jayway.jsonpath.spi.json.AbstractJsonProvider;
+import com.jayway.jsonpath.spi.mapper.MappingException;
+import com.jayway.jsonpath.spi.mapper.MappingProvider;
+
+/**
+ * A JsonPath provider that reads org.json trees in place. Arrays created by JsonPath (such as
+ * result lists) are java.util.Lists, so both forms are accepted wherever an array is expected.
+ */
+class OrgJsonProvider extends AbstractJsonProvider
+{
+	@Override
+	public Object parse ( String json ) throws InvalidJsonException
+	{
+		try
+		{
+			return new JSONTokener ( json ).nextValue ();
+		}
+		catch ( JSONException x )
+		{
+			throw new InvalidJsonException ( x );
+		}
+	}
+
+	@Override
+	public Object parse ( InputStream jsonStream, String charset ) throws InvalidJsonException
+	{
+		try
+		{
+			return new JSONTokener ( new InputStreamReader ( jsonStream, charset ) ).nextValue ();
+		}
+		catch ( JSONException | UnsupportedEncodingException x )
+		{
+			throw new InvalidJsonException ( x );
+		}
+	}
+
+	@Override
+	public String toJson ( Object obj )
+	{
+		if ( obj instanceof List )
+		{
+			return new JSONArray ( (List<?>) obj ).toString ();
+		}
+		return JSONObject.valueToString ( obj );
+	}
+
+	@Override
+	public Object createArray ()
+	{
+		return new ArrayList<Object> ();
+	}
+
+	@Override
+	public Object createMap ()
+	{
+		return new JSONObject ();
+	}
+
+	@Override
+	public boolean isArray ( Object obj )
+	{
+		return obj instanceof JSONArray || obj instanceof List;
+	}
+
+	@Override
+	public Object getArrayIndex ( Object obj, int idx )
+	{
+		if ( obj instanceof JSONArray )
+		{
+			return unwrap ( ((JSONArray) obj).opt ( idx ) );
+		}
+		return ((List<?>) obj).get ( idx );
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void setArrayIndex ( Object array, int index, Object newValue )
+	{
+		if ( array instanceof JSONArray )
+		{
+			((JSONArray) array).put ( index, newValue == null ? JSONObject.NULL : newValue );
+			return;
+		}
+
+		final List<Object> list = (List<Object>) array;
+		if ( index == list.size () )
+		{
+			list.add ( newValue );
+		}
+		else
+		{
+			list.set ( index, newValue );
+		}
+	}
+
+	@Override
+	public boolean isMap ( Object obj )
+	{
+		return obj instanceof JSONObject;
+	}
+
+	@Override
+	public Object getMapValue ( Object obj, String key )
+	{
+		final JSONObject o = (JSONObject) obj;
+		final Object val = o.opt ( key );
+		return val == null ? UNDEFINED : unwrap ( val );
+	}
+
+	@Override
+	public void setProperty ( Object obj, Object key, Object value )
+	{
+		if ( obj instanceof JSONObject )
+		{
+			((JSONObject) obj).put ( key.toString (), value == null ? JSONObject.NULL : value );
+		}
+		else if ( isArray ( obj ) )
+		{
+			final int index = key == null ? length ( obj ) : ( key instanceof Integer ? (Integer) key : Integer.parseInt ( key.toString () ) );
+			setArrayIndex ( obj, index, value );
+		}
+		else
+		{
+			throw new JsonPathException ( "setProperty operation cannot be used with " + obj.getClass ().getName () );
+		}
+	}
+
+	@Override
+	public void removeProperty ( Object obj, Object key )
+	{
+		if ( obj instanceof JSONObject )
+		{
+			((JSONObject) obj).remove ( key.toString () );
+		}
+		else if ( obj instanceof JSONArray )
+		{
+			((JSONArray) obj).remove ( key instanceof Integer ? (Integer) key : Integer.parseInt ( key.toString () ) );
+		}
+		else if ( obj instanceof List )
+		{
+			((List<?>) obj).remove ( key instanceof Integer ? (int)(Integer) key : Integer.parseInt ( key.toString () ) );
+		}
+		else
+		{
+			throw new JsonPathException ( "removeProperty operation cannot be used with " + obj.getClass ().getName () );
+		}
+	}
+
+	@Override
+	public Collection<String> getPropertyKeys ( Object obj )
+	{
+		if ( obj instanceof JSONObject )
+		{
+			return ((JSONObject) obj).keySet ();
+		}
+		throw new UnsupportedOperationException ( "getPropertyKeys cannot be used with " + ( obj == null ? "null" : obj.getClass ().getName () ) );
+	}
+
+	@Override
+	public int length ( Object obj )
+	{
+		if ( obj instanceof JSONArray ) return ((JSONArray) obj).length ();
+		if ( obj instanceof List ) return ((List<?>) obj).size ();
+		if ( obj instanceof JSONObject ) return ((JSONObject) obj).length ();
+		if ( obj instanceof String ) return ((String) obj).length ();
+		throw new JsonPathException ( "length operation cannot be applied to " + ( obj == null ? "null" : obj.getClass ().getName () ) );
+	}
+
+	@Override
+	public Iterable<?> toIterable ( Object obj )
+	{
+		if ( obj instanceof JSONArray )
+		{
+			final JSONArray a = (JSONArray) obj;
+			final ArrayList<Object> result = new ArrayList<> ( a.length () );
+			for ( int i=0; i<a.length (); i++ )
+			{
+				result.add ( unwrap ( a.opt ( i ) ) );
+			}
+			return result;
+		}
+		if ( obj instanceof List )
+		{
+			return (List<?>) obj;
+		}
+		if ( obj instanceof JSONObject )
+		{
+			final JSONObject o = (JSONObject) obj;
+			final ArrayList<Object> result = new ArrayList<> ( o.length () );
+			for ( String key : o.keySet () )
+			{
+				result.add ( unwrap ( o.opt ( key ) ) );
+			}
+			return result;
+		}
+		throw new JsonPathException ( "Cannot iterate over " + ( obj == null ? "null" : obj.getClass ().getName () ) );
+	}
+
+	@Override
+	public Object unwrap ( Object obj )
+	{
+		if ( obj == JSONObject.NULL ) return null;
+		return obj;
+	}
+
+	/**
+	 * Maps org.json values for JsonPath filters that compare whole objects or arrays
+	 */
+	static class Mapping implements MappingProvider
+	{
+		@Override
+		public <T> T map ( Object source, Class<T> targetType, Configuration configuration )
+		{
+			if ( source == null || source == JSONObject.NULL ) return null;
+			if ( targetType.isInstance ( source ) ) return targetType.cast ( source );
+
+			if ( source instanceof JSONObject && targetType.isAssignableFrom ( Map.class ) )
+			{
+				return targetType.cast ( ((JSONObject) source).toMap () );
+			}
+			if ( source instanceof JSONArray && targetType.isAssignableFrom ( List.class ) )
+			{
+				return targetType.cast ( ((JSONArray) source).toList () );
+			}
+			if ( targetType == String.class )
+			{
+				return targetType.cast ( configuration.jsonProvider ().toJson ( source ) );
+			}
+			throw new MappingException ( "Can't map " + source.getClass ().getName () + " to " + targetType.getName () );
+		}
+
+		@Override
+		public <T> T map ( Object source, TypeRef<T> targetType, Configuration configuration )
+		{
+			throw new UnsupportedOperationException ( "This mapping provider doesn't support TypeRef." );
+		}
+	}
+}
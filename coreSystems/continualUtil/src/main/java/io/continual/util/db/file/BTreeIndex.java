@@ -0,0 +1,566 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.continual.util.db.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A persistent map from string keys to longs (usually record addresses), stored as a B+tree
+ * in a block file. Each node is one record in the file. Updates rewrite only the nodes on the
+ * path to the changed key, so the cost of a change grows with the log of the index size rather
+ * than the index size. Nodes are read when needed and recently used nodes are kept in memory.<br>
+ * <br>
+ * Leaves are linked in key order, so keys that share a prefix can be listed without reading the
+ * rest of the index.<br>
+ * <br>
+ * The root node stays at the address returned from create(), so an application only has to
+ * record that one address. Splits are written in a single block file batch, so a crash never
+ * leaves a partly split tree. Removing keys doesn't merge nodes; a sparse leaf is simply reused
+ * by later inserts.
+ */
+public class BTreeIndex
+{
+	/**
+	 * The value returned from get() when the key isn't in the index
+	 */
+	public static final long kNotFound = -1L;
+
+	/**
+	 * Create an empty index in the given block file
+	 * @param file a writable block file
+	 * @return the address of the index's root node
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public static long create ( BlockFile file ) throws IOException
+	{
+		return file.create ( encode ( new Node ( true, new String[0], new long[0], kNoNode ) ) );
+	}
+
+	/**
+	 * Create an index in the given block file holding the given entries. The nodes are built
+	 * bottom up and written in one batch, which is much faster than putting each entry.
+	 * @param file a writable block file
+	 * @param entries the initial entries
+	 * @return the address of the index's root node
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public static long create ( BlockFile file, final SortedMap<String,Long> entries ) throws IOException
+	{
+		if ( entries.isEmpty () ) return create ( file );
+
+		final long[] root = new long [ 1 ];
+		file.inBatch ( new BlockFile.BatchWork ()
+		{
+			@Override
+			public void run ( BlockFile.Batch batch ) throws IOException
+			{
+				final String[] keys = entries.keySet ().toArray ( new String [ entries.size () ] );
+				final long[] values = new long [ keys.length ];
+				int v = 0;
+				for ( Long value : entries.values () )
+				{
+					values[v++] = value;
+				}
+
+				// leaves are written last to first so that each one knows the address of the next
+				final int leafCount = ( keys.length + kBulkFill - 1 ) / kBulkFill;
+				long[] addrs = new long [ leafCount ];
+				String[] mins = new String [ leafCount ];
+				long next = kNoNode;
+				for ( int n=leafCount-1; n>=0; n-- )
+				{
+					final int from = n * kBulkFill;
+					final int to = Math.min ( from + kBulkFill, keys.length );
+					next = batch.create ( encode ( new Node ( true, Arrays.copyOfRange ( keys, from, to ), Arrays.copyOfRange ( values, from, to ), next ) ) );
+					addrs[n] = next;
+					mins[n] = keys[from];
+				}
+
+				// then each level of internal nodes over the one below it
+				while ( addrs.length > 1 )
+				{
+					final int fanout = kBulkFill + 1;
+					final int count = ( addrs.length + fanout - 1 ) / fanout;
+					final long[] parentAddrs = new long [ count ];
+					final String[] parentMins = new String [ count ];
+					for ( int n=0; n<count; n++ )
+					{
+						final int from = n * fanout;
+						final int to = Math.min ( from + fanout, addrs.length );
+						parentAddrs[n] = batch.create ( encode ( new Node ( false, Arrays.copyOfRange ( mins, from + 1, to ), Arrays.copyOfRange ( addrs, from, to ), kNoNode ) ) );
+						parentMins[n] = mins[from];
+					}
+					addrs = parentAddrs;
+					mins = parentMins;
+				}
+				root[0] = addrs[0];
+			}
+		} );
+		return root[0];
+	}
+
+	/**
+	 * Open an index with its root node at the given address
+	 * @param file the block file
+	 * @param rootAddress the address returned from create()
+	 */
+	public BTreeIndex ( BlockFile file, long rootAddress )
+	{
+		this ( file, rootAddress, kDefaultMaxKeys, kDefaultCacheSize );
+	}
+
+	BTreeIndex ( BlockFile file, long rootAddress, int maxKeys, int cacheSize )
+	{
+		fFile = file;
+		fRoot = rootAddress;
+		fMaxKeys = Math.max ( 3, maxKeys );
+		fCache = Collections.synchronizedMap ( new LinkedHashMap<Long,Node> ( 16, 0.75f, true )
+		{
+			@Override
+			protected boolean removeEldestEntry ( Map.Entry<Long,Node> eldest )
+			{
+				return size () > cacheSize;
+			}
+
+			private static final long serialVersionUID = 1L;
+		} );
+		fLock = new ReentrantReadWriteLock ();
+	}
+
+	/**
+	 * Get the value for a key
+	 * @param key
+	 * @return the value, or kNotFound
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public long get ( String key ) throws IOException
+	{
+		fLock.readLock ().lock ();
+		try
+		{
+			final Node leaf = findLeaf ( key, null );
+			final int i = Arrays.binarySearch ( leaf.fKeys, key );
+			return i >= 0 ? leaf.fValues[i] : kNotFound;
+		}
+		finally
+		{
+			fLock.readLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Set the value for a key, replacing any existing value
+	 * @param key
+	 * @param value
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public void put ( String key, long value ) throws IOException
+	{
+		fLock.writeLock ().lock ();
+		try
+		{
+			final LinkedList<Step> path = new LinkedList<> ();
+			final Node leaf = findLeaf ( key, path );
+			final long leafAddr = path.removeLast ().fAddress;
+
+			final int i = Arrays.binarySearch ( leaf.fKeys, key );
+			if ( i >= 0 )
+			{
+				if ( leaf.fValues[i] == value ) return;
+
+				final long[] values = leaf.fValues.clone ();
+				values[i] = value;
+				write ( leafAddr, new Node ( true, leaf.fKeys, values, leaf.fNext ) );
+				return;
+			}
+
+			final int at = -i - 1;
+			final Node updated = new Node ( true, insert ( leaf.fKeys, at, key ), insert ( leaf.fValues, at, value ), leaf.fNext );
+			if ( updated.size () <= fMaxKeys )
+			{
+				write ( leafAddr, updated );
+			}
+			else
+			{
+				split ( leafAddr, updated, path );
+			}
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Remove a key from the index
+	 * @param key
+	 * @return true if the key was in the index
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public boolean remove ( String key ) throws IOException
+	{
+		fLock.writeLock ().lock ();
+		try
+		{
+			final LinkedList<Step> path = new LinkedList<> ();
+			final Node leaf = findLeaf ( key, path );
+			final long leafAddr = path.removeLast ().fAddress;
+
+			final int i = Arrays.binarySearch ( leaf.fKeys, key );
+			if ( i < 0 ) return false;
+
+			write ( leafAddr, new Node ( true, remove ( leaf.fKeys, i ), remove ( leaf.fValues, i ), leaf.fNext ) );
+			return true;
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Get the keys that start with the given prefix, in order
+	 * @param prefix
+	 * @return a list of keys
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public List<String> keysWithPrefix ( String prefix ) throws IOException
+	{
+		return new ArrayList<> ( entriesWithPrefix ( prefix ).keySet () );
+	}
+
+	/**
+	 * Get the entries with keys that start with the given prefix
+	 * @param prefix
+	 * @return a sorted map of keys to values
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public TreeMap<String,Long> entriesWithPrefix ( String prefix ) throws IOException
+	{
+		final TreeMap<String,Long> result = new TreeMap<> ();
+
+		fLock.readLock ().lock ();
+		try
+		{
+			Node leaf = findLeaf ( prefix, null );
+			int i = Arrays.binarySearch ( leaf.fKeys, prefix );
+			if ( i < 0 ) i = -i - 1;
+
+			while ( true )
+			{
+				for ( ; i < leaf.fKeys.length; i++ )
+				{
+					if ( !leaf.fKeys[i].startsWith ( prefix ) ) return result;
+					result.put ( leaf.fKeys[i], leaf.fValues[i] );
+				}
+				if ( leaf.fNext == kNoNode ) return result;
+
+				leaf = load ( leaf.fNext );
+				i = 0;
+			}
+		}
+		finally
+		{
+			fLock.readLock ().unlock ();
+		}
+	}
+
+	private final BlockFile fFile;
+	private final long fRoot;
+	private final int fMaxKeys;
+	private final Map<Long,Node> fCache;
+	private final ReentrantReadWriteLock fLock;
+
+	private static final long kNoNode = -1L;
+	private static final int kDefaultMaxKeys = 64;
+	private static final int kDefaultCacheSize = 1024;
+	private static final int kBulkFill = 48;	// leaves room in bulk built nodes for later inserts
+
+	private static final byte kLeaf = 1;
+	private static final byte kInternal = 2;
+
+	/**
+	 * A decoded node. Nodes are never changed once built, so cached nodes can be shared between
+	 * readers. An internal node has one more child than it has keys. Child i holds the keys that
+	 * sort below key i, and at or above key i-1.
+	 */
+	private static class Node
+	{
+		public Node ( boolean leaf, String[] keys, long[] values, long next )
+		{
+			fLeaf = leaf;
+			fKeys = keys;
+			fValues = values;
+			fNext = next;
+		}
+
+		public int size () { return fKeys.length; }
+
+		// the child to follow for a key in an internal node
+		public int childFor ( String key )
+		{
+			final int i = Arrays.binarySearch ( fKeys, key );
+			return i >= 0 ? i + 1 : -i - 1;
+		}
+
+		private final boolean fLeaf;
+		private final String[] fKeys;
+		private final long[] fValues;	// values in a leaf, child addresses in an internal node
+		private final long fNext;		// the next leaf, for leaves
+	}
+
+	// a node visited on the way to a leaf, and the child index taken from it
+	private static class Step
+	{
+		public Step ( long address, Node node, int child )
+		{
+			fAddress = address;
+			fNode = node;
+			fChild = child;
+		}
+
+		private final long fAddress;
+		private final Node fNode;
+		private final int fChild;
+	}
+
+	private Node findLeaf ( String key, LinkedList<Step> path ) throws IOException
+	{
+		long addr = fRoot;
+		Node node = load ( addr );
+		while ( !node.fLeaf )
+		{
+			final int child = node.childFor ( key );
+			if ( path != null ) path.add ( new Step ( addr, node, child ) );
+			addr = node.fValues[child];
+			node = load ( addr );
+		}
+		if ( path != null ) path.add ( new Step ( addr, node, -1 ) );
+		return node;
+	}
+
+	/**
+	 * Split an overfull node and carry the split up the path as far as needed. All of the changed
+	 * nodes are written in one batch.
+	 */
+	private void split ( final long address, final Node overfull, final LinkedList<Step> path ) throws IOException
+	{
+		final HashMap<Long,Node> written = new HashMap<> ();
+		try
+		{
+			fFile.inBatch ( new BlockFile.BatchWork ()
+			{
+				@Override
+				public void run ( BlockFile.Batch batch ) throws IOException
+				{
+					long addr = address;
+					Node node = overfull;
+					while ( node != null && node.size () > fMaxKeys )
+					{
+						final int mid = node.size () / 2;
+
+						final String[] leftKeys;
+						final long[] leftValues;
+						final String[] rightKeys;
+						final long[] rightValues;
+						final String separator;
+						if ( node.fLeaf )
+						{
+							// leaves keep every key; the right leaf's first key is copied up
+							leftKeys = Arrays.copyOfRange ( node.fKeys, 0, mid );
+							leftValues = Arrays.copyOfRange ( node.fValues, 0, mid );
+							rightKeys = Arrays.copyOfRange ( node.fKeys, mid, node.size () );
+							rightValues = Arrays.copyOfRange ( node.fValues, mid, node.size () );
+							separator = rightKeys[0];
+						}
+						else
+						{
+							// the middle key of an internal node moves up
+							leftKeys = Arrays.copyOfRange ( node.fKeys, 0, mid );
+							leftValues = Arrays.copyOfRange ( node.fValues, 0, mid + 1 );
+							rightKeys = Arrays.copyOfRange ( node.fKeys, mid + 1, node.size () );
+							rightValues = Arrays.copyOfRange ( node.fValues, mid + 1, node.size () + 1 );
+							separator = node.fKeys[mid];
+						}
+
+						final Node right = new Node ( node.fLeaf, rightKeys, rightValues, node.fNext );
+						final long rightAddr = batch.create ( encode ( right ) );
+						written.put ( rightAddr, right );
+
+						if ( addr == fRoot )
+						{
+							// the root stays put; both halves move to new nodes below it
+							final Node left = new Node ( node.fLeaf, leftKeys, leftValues, node.fLeaf ? rightAddr : kNoNode );
+							final long leftAddr = batch.create ( encode ( left ) );
+							written.put ( leftAddr, left );
+
+							final Node root = new Node ( false, new String[] { separator }, new long[] { leftAddr, rightAddr }, kNoNode );
+							batch.overwrite ( fRoot, encode ( root ) );
+							written.put ( fRoot, root );
+							node = null;
+						}
+						else
+						{
+							// the left half stays at this address, so the leaf before it still links to it
+							final Node left = new Node ( node.fLeaf, leftKeys, leftValues, node.fLeaf ? rightAddr : kNoNode );
+							batch.overwrite ( addr, encode ( left ) );
+							written.put ( addr, left );
+
+							final Step parent = path.removeLast ();
+							node = new Node ( false,
+								insert ( parent.fNode.fKeys, parent.fChild, separator ),
+								insert ( parent.fNode.fValues, parent.fChild + 1, rightAddr ),
+								kNoNode );
+							addr = parent.fAddress;
+						}
+					}
+
+					if ( node != null )
+					{
+						batch.overwrite ( addr, encode ( node ) );
+						written.put ( addr, node );
+					}
+				}
+			} );
+		}
+		catch ( IOException x )
+		{
+			fCache.clear ();
+			throw x;
+		}
+		fCache.putAll ( written );
+	}
+
+	private Node load ( long address ) throws IOException
+	{
+		Node n = fCache.get ( address );
+		if ( n == null )
+		{
+			n = decode ( fFile.read ( address ) );
+			fCache.put ( address, n );
+		}
+		return n;
+	}
+
+	private void write ( long address, Node n ) throws IOException
+	{
+		try
+		{
+			fFile.overwrite ( address, encode ( n ) );
+		}
+		catch ( IOException x )
+		{
+			fCache.remove ( address );
+			throw x;
+		}
+		fCache.put ( address, n );
+	}
+
+	private static byte[] encode ( Node n ) throws IOException
+	{
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream ();
+		final DataOutputStream dos = new DataOutputStream ( baos );
+		dos.writeByte ( n.fLeaf ? kLeaf : kInternal );
+		dos.writeInt ( n.fKeys.length );
+		for ( String key : n.fKeys )
+		{
+			dos.writeUTF ( key );
+		}
+		for ( long v : n.fValues )
+		{
+			dos.writeLong ( v );
+		}
+		if ( n.fLeaf )
+		{
+			dos.writeLong ( n.fNext );
+		}
+		dos.close ();
+		return baos.toByteArray ();
+	}
+
+	private static Node decode ( byte[] bytes ) throws IOException
+	{
+		final DataInputStream dis = new DataInputStream ( new ByteArrayInputStream ( bytes ) );
+		final byte type = dis.readByte ();
+		if ( type != kLeaf && type != kInternal )
+		{
+			throw new IOException ( "The record isn't an index node." );
+		}
+		final boolean leaf = type == kLeaf;
+
+		final int count = dis.readInt ();
+		final String[] keys = new String [ count ];
+		for ( int i=0; i<count; i++ )
+		{
+			keys[i] = dis.readUTF ();
+		}
+		final long[] values = new long [ leaf ? count : count + 1 ];
+		for ( int i=0; i<values.length; i++ )
+		{
+			values[i] = dis.readLong ();
+		}
+		return new Node ( leaf, keys, values, leaf ? dis.readLong () : kNoNode );
+	}
+
+	private static String[] insert ( String[] a, int at, String s )
+	{
+		final String[] result = new String [ a.length + 1 ];
+		System.arraycopy ( a, 0, result, 0, at );
+		result[at] = s;
+		System.arraycopy ( a, at, result, at + 1, a.length - at );
+		return result;
+	}
+
+	private static long[] insert ( long[] a, int at, long v )
+	{
+		final long[] result = new long [ a.length + 1 ];
+		System.arraycopy ( a, 0, result, 0, at );
+		result[at] = v;
+		System.arraycopy ( a, at, result, at + 1, a.length - at );
+		return result;
+	}
+
+	private static String[] remove ( String[] a, int at )
+	{
+		final String[] result = new String [ a.length - 1 ];
+		System.arraycopy ( a, 0, result, 0, at );
+		System.arraycopy ( a, at + 1, result, at, a.length - at - 1 );
+		return result;
+	}
+
+	private static long[] remove ( long[] a, int at )
+	{
+		final long[] result = new long [ a.length - 1 ];
+		System.arraycopy ( a, 0, result, 0, at );
+		System.arraycopy ( a, at + 1, result, at, a.length - at - 1 );
+		return result;
+	}
+}
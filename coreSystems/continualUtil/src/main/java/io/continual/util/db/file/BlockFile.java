@@ -4,9 +4,9 @@
  *	Licensed under the Apache License, Version 2.0 (the "License");
  *	you may not use this file except in compliance with the License.
  *	You may obtain a copy of the License at
- *	
+ *
  *	http://www.apache.org/licenses/LICENSE-2.0
- *	
+ *
  *	Unless required by applicable law or agreed to in writing, software
  *	distributed under the License is distributed on an "AS IS" BASIS,
  *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -22,12 +22,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
@@ -37,15 +46,28 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.PBEParameterSpec;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * At the logical/interface level, this class reads and writes byte arrays to a
  * file, assigning an address to each array.
  * <p>
  * The implementation allocates fixed-size blocks in a random access file. Byte
- * arrays are written to a chain of blocks. Each block has a block type flag and
- * a 4 byte value that is either the address of the next block in this chain or,
- * for the last block in the chain, the length of the data in the block.
- * 
+ * arrays are written to a chain of blocks. Each block starts with an 8 byte value
+ * that is either the address of the next block in this chain (negated) or, for the
+ * last block in the chain, the length of the data in the block. In format 2.0, the
+ * next 8 bytes of the first block in a chain hold the address of the chain's last
+ * block, so that appends go straight to the end of the chain. (Files with blocks
+ * too small to hold that pointer and some data don't have it.)
+ * <p>
+ * Reads use positional I/O (or an optional memory map of the file), so any number
+ * of threads can read at once. Writes are serialized, and each write's block changes
+ * go through a write-ahead journal first, so that a crash can't leave a record half
+ * overwritten.
+ * <p>
+ * Files in the original 1.0 format can be opened read-only as they are. Opening one
+ * for writing upgrades it to 2.0 in place, keeping the original alongside it.
  */
 public class BlockFile implements Closeable
 {
@@ -54,7 +76,7 @@ public class BlockFile implements Closeable
 	/**
 	 * Initialize a block file with the given block size. If the file exists,
 	 * its contents are destroyed.
-	 * 
+	 *
 	 * @param file the file to initialize
 	 * @param blockSize the block size for the file
 	 * @throws IOException if an operation fails
@@ -66,31 +88,163 @@ public class BlockFile implements Closeable
 		{
 			throw new IllegalArgumentException ( "The block size is too small." );
 		}
-		
-		final RandomAccessFile f = new RandomAccessFile ( file, "rw" );
 
 		// if the file exists, truncate it. This is required because new blocks are
 		// allocated with an index that is the length of the file.
-		f.setLength ( 0 );
+		try ( final FileChannel ch = FileChannel.open ( file.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+		{
+			// write the header, with block size and a random salt
+			BlockFileJournal.writeFully ( ch, makeHeader ( kVersionMajor, blockSize, kBadHandle, SecureRandom.getSeed ( kSaltSize ) ), 0 );
+			ch.force ( true );
+		}
+
+		// a journal left by an earlier file of this name doesn't apply to this one
+		Files.deleteIfExists ( BlockFileJournal.journalFileFor ( file ).toPath () );
+	}
 
-		// write the header, with block size and a random salt
-		f.seek ( 0 );
-		f.write ( "rrbf".getBytes ( Charset.forName ( "UTF-8" ) ));
-		f.writeInt ( 1 );
-		f.writeInt ( 0 );
-		f.writeInt ( blockSize );
-		f.writeLong ( kBadHandle );
+	/**
+	 * Upgrade a block file in the 1.0 format to the current format. Each byte array keeps its
+	 * address. The original file is kept with ".v1" appended to its name.
+	 * @param file the file to upgrade
+	 * @return true if the file was upgraded, false if it was already in the current format
+	 * @throws IOException if a file operation fails
+	 */
+	public static boolean upgrade ( File file ) throws IOException
+	{
+		final Header h = readHeader ( file );
+		if ( h.fMajor == kVersionMajor ) return false;
+		if ( h.fBlockSize < kOffsetToBlockData + 1 )
+		{
+			throw new IOException ( "The block size (" + h.fBlockSize + ") in " + file + " is too small to hold data." );
+		}
 
-		byte[] salt = SecureRandom.getSeed ( kSaltSize );
-		f.write ( salt );
+		final File target = new File ( file.getPath () + ".upgrading" );
+		final File backup = new File ( file.getPath () + ".v1" );
 
-		// done
-		f.close ();
+		try (
+			final BlockFile from = new Builder ().usingFile ( file ).readOnly ().build ();
+			final FileChannel out = FileChannel.open ( target.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING )
+		)
+		{
+			// every block that isn't on the delete list or pointed to by another block starts a chain
+			final int blockCount = (int) ( ( from.fEnd - kHeaderLength ) / h.fBlockSize );
+			final long[] links = new long [ blockCount ];
+			final boolean[] isHead = new boolean [ blockCount ];
+			Arrays.fill ( isHead, true );
+			for ( int i=0; i<blockCount; i++ )
+			{
+				links[i] = from.readLink ( null, from.indexToAddress ( i ) );
+			}
+			for ( int i=0; i<blockCount; i++ )
+			{
+				final int next = from.addressToIndex ( -links[i] );
+				if ( links[i] < 0 && next >= 0 ) isHead[next] = false;
+			}
+			long free = h.fDeleteChain;
+			for ( int guard=0; free != kBadHandle && guard < blockCount; guard++ )
+			{
+				final int index = from.addressToIndex ( free );
+				if ( index < 0 ) break;
+				isHead[index] = false;
+				free = links[index] < 0 ? -links[index] : kBadHandle;
+			}
+
+			// lay out the new file at the same length, with every non-head block on the delete list
+			long firstFree = kBadHandle;
+			long lastFree = kBadHandle;
+			final ByteBuffer empty = ByteBuffer.allocate ( h.fBlockSize );
+			for ( int i=0; i<blockCount; i++ )
+			{
+				empty.clear ();
+				BlockFileJournal.writeFully ( out, empty, from.indexToAddress ( i ) );
+				if ( !isHead[i] )
+				{
+					final long address = from.indexToAddress ( i );
+					if ( lastFree == kBadHandle )
+					{
+						firstFree = address;
+					}
+					else
+					{
+						BlockFileJournal.writeFully ( out, longBytes ( -address ), lastFree );
+					}
+					lastFree = address;
+				}
+			}
+			BlockFileJournal.writeFully ( out, makeHeader ( kVersionMajor, h.fBlockSize, firstFree, h.fSalt ), 0 );
+			out.force ( true );
+			out.close ();
+
+			// copy each byte array as stored (i.e. still encrypted if the file is) to its original address
+			try ( final BlockFile to = new Builder ().usingFile ( target ).forWrites ().syncingWrites ( false ).build () )
+			{
+				for ( int i=0; i<blockCount; i++ )
+				{
+					if ( isHead[i] )
+					{
+						final long address = from.indexToAddress ( i );
+						to.overwrite ( address, from.readRaw ( address ) );
+					}
+				}
+				to.fChannel.force ( true );
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists ( BlockFileJournal.journalFileFor ( target ).toPath () );
+		}
+
+		Files.copy ( file.toPath (), backup.toPath (), StandardCopyOption.REPLACE_EXISTING );
+		Files.move ( target.toPath (), file.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		log.info ( "Upgraded block file {} to format {}.0. The original is in {}.", file, kVersionMajor, backup );
+		return true;
+	}
+
+	/**
+	 * A builder for opening an existing block file
+	 */
+	public static class Builder
+	{
+		public Builder usingFile ( File f ) { file = f; return this; }
+
+		public Builder forWrites () { return withWrite ( true ); }
+		public Builder readOnly () { return withWrite ( false ); }
+		public Builder withWrite ( boolean w ) { withWrite = w; return this; }
+
+		public Builder withPassword ( String pwd ) { passwd = pwd; return this; }
+
+		/**
+		 * Read through a memory map of the file rather than with positional reads
+		 * @param mm
+		 * @return this builder
+		 */
+		public Builder memoryMapped ( boolean mm ) { memoryMapped = mm; return this; }
+		public Builder memoryMapped () { return memoryMapped ( true ); }
+
+		/**
+		 * Force each write to the storage device before returning. This is on by default. With it
+		 * off, the journal still protects against a process crash, but not against power loss.
+		 * @param sync
+		 * @return this builder
+		 */
+		public Builder syncingWrites ( boolean sync ) { syncWrites = sync; return this; }
+
+		public BlockFile build () throws IOException
+		{
+			if ( file == null ) throw new IllegalArgumentException ( "No file provided." );
+			return new BlockFile ( this );
+		}
+
+		private File file = null;
+		private boolean withWrite = true;
+		private String passwd = null;
+		private boolean memoryMapped = false;
+		private boolean syncWrites = true;
 	}
 
 	/**
 	 * Open an existing block file in read-write mode, and without a password.
-	 * 
+	 *
 	 * @param file the underlying file
 	 * @throws IOException if a file operation fails
 	 */
@@ -102,7 +256,7 @@ public class BlockFile implements Closeable
 	/**
 	 * Open an existing block file with the given read-write mode, and without
 	 * a password.
-	 * 
+	 *
 	 * @param file the underlying file
 	 * @param withWrite if true, writes are allowed
 	 * @throws IOException if a file operation fails
@@ -114,7 +268,7 @@ public class BlockFile implements Closeable
 
 	/**
 	 * open an existing block file for read or read/write access
-	 * 
+	 *
 	 * @param file the underlying file
 	 * @param withWrite if true, writes are allowed
 	 * @param passwd a password for the file, which can be null
@@ -122,39 +276,47 @@ public class BlockFile implements Closeable
 	 */
 	public BlockFile ( File file, boolean withWrite, String passwd ) throws IOException
 	{
-		fUnderlyingFile = file;
-		fFile = new RandomAccessFile ( file, ( withWrite ? "rw" : "r" ) );
-		fCanWrite = withWrite;
+		this ( new Builder ().usingFile ( file ).withWrite ( withWrite ).withPassword ( passwd ) );
+	}
 
-		fFile.seek ( 0 );
+	private BlockFile ( Builder b ) throws IOException
+	{
+		fUnderlyingFile = b.file;
+		fCanWrite = b.withWrite;
+		fSync = b.syncWrites;
+		fMemoryMapped = b.memoryMapped;
 
-		byte[] tag = new byte[4];
-		fFile.read ( tag );
-		String tagString = new String ( tag );
-		if ( !tagString.equals ( "rrbf" ) )
-		{
-			throw new IOException ( "unrecognized file format" );
-		}
+		// finish any write that a crash interrupted
+		BlockFileJournal.recover ( fUnderlyingFile );
 
-		fMajor = fFile.readInt ();
-		fMinor = fFile.readInt ();
-		if ( fMajor != 1 || fMinor != 0 )
+		Header h = readHeader ( fUnderlyingFile );
+		if ( h.fMajor != kVersionMajor && fCanWrite )
 		{
-			throw new IOException ( "unrecognized file format" );
+			upgrade ( fUnderlyingFile );
+			h = readHeader ( fUnderlyingFile );
 		}
 
-		fBlockSize = fFile.readInt ();
-		fCurrentBlockData = new byte [ fBlockSize ];
+		fMajor = h.fMajor;
+		fMinor = h.fMinor;
+		fBlockSize = h.fBlockSize;
+		fHasTailPointer = fMajor == kVersionMajor && fBlockSize > kHeadOffsetToBlockData;
+		fHeadOffsetToData = fHasTailPointer ? kHeadOffsetToBlockData : kOffsetToBlockData;
 		fBlockDataSize = fBlockSize - kOffsetToBlockData;
+		fDeleteChain = h.fDeleteChain;
 
-		fDeleteChain = fFile.readLong ();
+		fChannel = fCanWrite ?
+			FileChannel.open ( fUnderlyingFile.toPath (), StandardOpenOption.READ, StandardOpenOption.WRITE ) :
+			FileChannel.open ( fUnderlyingFile.toPath (), StandardOpenOption.READ )
+		;
+		fEnd = fChannel.size ();
+		fJournal = fCanWrite ? new BlockFileJournal ( fUnderlyingFile, fSync ) : null;
+		fLock = new ReentrantReadWriteLock ();
+		fMap = null;
+		fFailure = null;
 
-		if ( passwd != null )
+		if ( b.passwd != null )
 		{
-			// read a salt from the file
-			byte[] saltBytes = new byte [ kSaltSize ];
-			fFile.read ( saltBytes );
-			initKey ( passwd, saltBytes );
+			initKey ( b.passwd, h.fSalt );
 		}
 	}
 
@@ -169,7 +331,17 @@ public class BlockFile implements Closeable
 	 */
 	public void close () throws IOException
 	{
-		fFile.close ();
+		fLock.writeLock ().lock ();
+		try
+		{
+			fMap = null;
+			if ( fJournal != null ) fJournal.close ();
+			fChannel.close ();
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
+		}
 	}
 
 	/**
@@ -193,24 +365,34 @@ public class BlockFile implements Closeable
 	 */
 	public long create ( byte[] bytes ) throws IOException
 	{
-		final ByteArrayInputStream bais = new ByteArrayInputStream ( bytes );
-		return create ( bais );
+		final byte[] stored = encrypt ( bytes );
+
+		fLock.writeLock ().lock ();
+		try
+		{
+			checkWritable ();
+
+			final Txn txn = new Txn ();
+			final long result = createIn ( txn, stored );
+			commit ( txn );
+			return result;
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
+		}
 	}
 
 	/**
-	 * Add a byte array from an input stream and return its address.
+	 * Add a byte array from an input stream and return its address. The stream is read
+	 * completely before anything is written.
 	 * @param is an input stream
 	 * @return the address for the stored byte array
 	 * @throws IOException if the underlying file operation throws it
 	 */
 	public long create ( InputStream is ) throws IOException
 	{
-		long result = allocateBlock ();
-		try ( final OutputStream os = writeStream ( result ) )
-		{
-			copyStream ( is, os );
-		}
-		return result;
+		return create ( readAll ( is ) );
 	}
 
 	/**
@@ -221,30 +403,21 @@ public class BlockFile implements Closeable
 	 */
 	public byte[] read ( long address ) throws IOException
 	{
-		try ( final InputStream in = readToStream ( address ) )
-		{
-			final ByteArrayOutputStream baos = new ByteArrayOutputStream ();
-			copyStream ( in, baos );
-			return baos.toByteArray ();
-		}
+		final byte[] raw = readRaw ( address );
+		return fKey != null ? decrypt ( raw ) : raw;
 	}
 
 	/**
-	 * Read a stream to a byte array in the file given its address.
-	 * <p>
-	 * NOTE: It's critical that no other methods on this object are called until
-	 * you're finished reading the stream.
-	 * <p>
+	 * Read a stream to a byte array in the file given its address. The stream is independent
+	 * of the file, so other calls may be made on the file while it's read.
 	 * @param address a 0-based block index
 	 * @return a stream to read
 	 * @throws IOException if the underlying file operation throws it
 	 */
 	public InputStream readToStream ( long address ) throws IOException
 	{
-		return fKey != null ?
-			new CipherInputStream ( new blockReadStream ( address ), getCipher ( false ) ) :
-			new blockReadStream ( address )
-		;
+		final InputStream raw = new ByteArrayInputStream ( readRaw ( address ) );
+		return fKey != null ? new CipherInputStream ( raw, getCipher ( false ) ) : raw;
 	}
 
 	/**
@@ -254,31 +427,60 @@ public class BlockFile implements Closeable
 	 * because the existing byte array must be read, decrypted, appended, and encrypted
 	 * before being written back to the file.
 	 * <p>
-	 * In clear files, the operation seeks to the end of the existing block
-	 * chain and appends the new data.
-	 * 
+	 * In clear files, the new data goes into the free space of the chain's last block
+	 * and then into new blocks. The existing data isn't read or rewritten.
+	 *
 	 * @param address a 0-based block index
 	 * @param bytes the data to append
 	 * @throws IOException if the underlying file operation throws it
 	 */
 	public void append ( long address, byte[] bytes ) throws IOException
 	{
-		if ( fKey != null )
+		fLock.writeLock ().lock ();
+		try
 		{
-			final byte[] thereNow = read ( address );
-			final OutputStream os = writeStream ( address );
-			os.write ( thereNow );
-			os.write ( bytes );
-			os.close ();
+			checkWritable ();
+			checkAddress ( address );
+
+			final Txn txn = new Txn ();
+			if ( fKey != null )
+			{
+				final ByteArrayOutputStream baos = new ByteArrayOutputStream ();
+				baos.write ( decrypt ( readRaw ( address ) ) );
+				baos.write ( bytes );
+				writeChain ( txn, address, true, encrypt ( baos.toByteArray () ), getContinuation ( txn, address ) );
+			}
+			else
+			{
+				final long tail = getLastBlockInChain ( txn, address );
+				final int offset = offsetToData ( address, tail );
+				final int used = (int) readLink ( txn, tail );
+				final int fill = Math.min ( fBlockSize - offset - used, bytes.length );
+				if ( fill > 0 )
+				{
+					txn.write ( tail + offset + used, Arrays.copyOfRange ( bytes, 0, fill ) );
+				}
+
+				if ( fill == bytes.length )
+				{
+					txn.write ( tail, longBytes ( used + fill ) );
+				}
+				else
+				{
+					final long next = allocateBlock ( txn );
+					final long newTail = writeChain ( txn, next, false, Arrays.copyOfRange ( bytes, fill, bytes.length ), new LinkedList<Long> () );
+					txn.write ( tail, longBytes ( -next ) );
+					if ( fHasTailPointer )
+					{
+						txn.write ( address + kTailPointerOffset, longBytes ( newTail ) );
+					}
+				}
+			}
+			commit ( txn );
 		}
-		else
+		finally
 		{
-			long lastBlock = getLastBlockInChain ( address );
-			final byte[] thereNow = read ( lastBlock );
-			final OutputStream os = writeStream ( lastBlock );
-			os.write ( thereNow );
-			os.write ( bytes );
-			os.close ();
+			fLock.writeLock ().unlock ();
 		}
 	}
 
@@ -290,27 +492,33 @@ public class BlockFile implements Closeable
 	 */
 	public void overwrite ( long address, byte[] bytes ) throws IOException
 	{
-		final ByteArrayInputStream bais = new ByteArrayInputStream ( bytes );
-		overwrite ( address, bais );
+		final byte[] stored = encrypt ( bytes );
+
+		fLock.writeLock ().lock ();
+		try
+		{
+			checkWritable ();
+
+			final Txn txn = new Txn ();
+			overwriteIn ( txn, address, stored );
+			commit ( txn );
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
+		}
 	}
 
 	/**
 	 * Overwrite the existing byte array at 'address' with bytes from the given
-	 * input stream.
+	 * input stream. The stream is read completely before anything is written.
 	 * @param address a 0-based block index
 	 * @param bytes the data to overwrite the block with
 	 * @throws IOException if the underlying file operation throws it
 	 */
 	public void overwrite ( long address, InputStream bytes ) throws IOException
 	{
-		if ( address < kHeaderLength )
-		{
-			throw new IOException ( "Address " + address + " is in the header block. (Did you mean to use indexToAddress?)" );
-		}
-
-		final OutputStream os = writeStream ( address );
-		copyStream ( bytes, os );
-		os.close ();
+		overwrite ( address, readAll ( bytes ) );
 	}
 
 	/**
@@ -320,41 +528,122 @@ public class BlockFile implements Closeable
 	 */
 	public void delete ( long address ) throws IOException
 	{
-		if ( !fCanWrite )
+		fLock.writeLock ().lock ();
+		try
 		{
-			throw new IOException ( "opened read-only" );
+			checkWritable ();
+
+			final Txn txn = new Txn ();
+			deleteIn ( txn, address );
+			commit ( txn );
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
 		}
+	}
 
-		// to delete a chain, we chain the current delete chain on to the back
-		// of this chain we're deleting, then set the front of the deleting
-		// chain in the header
+	/**
+	 * A set of changes to the file that are journaled and applied together, so that either all
+	 * of them or none of them survive a crash. Use a batch only within the work given to
+	 * inBatch.
+	 */
+	public class Batch
+	{
+		/**
+		 * Add a byte array to the file
+		 * @param bytes
+		 * @return the address for the stored byte array
+		 * @throws IOException
+		 */
+		public long create ( byte[] bytes ) throws IOException
+		{
+			return createIn ( fTxn, encrypt ( bytes ) );
+		}
 
-		long current = getLastBlockInChain ( address );
-		storeBlock ( current, fDeleteChain, new byte[0] );
+		/**
+		 * Overwrite the byte array at the given address
+		 * @param address
+		 * @param bytes
+		 * @throws IOException
+		 */
+		public void overwrite ( long address, byte[] bytes ) throws IOException
+		{
+			overwriteIn ( fTxn, address, encrypt ( bytes ) );
+		}
 
-		fDeleteChain = address;
-		writeDeleteChainPointer ();
+		/**
+		 * Delete the byte array at the given address
+		 * @param address
+		 * @throws IOException
+		 */
+		public void delete ( long address ) throws IOException
+		{
+			deleteIn ( fTxn, address );
+		}
+
+		private Batch ( Txn txn ) { fTxn = txn; }
+		private final Txn fTxn;
+	}
+
+	/**
+	 * Work done with a batch
+	 */
+	public interface BatchWork
+	{
+		void run ( Batch batch ) throws IOException;
+	}
+
+	/**
+	 * Make a set of changes that are applied together. Reads of the file from other threads wait
+	 * until the batch is written. If the work throws, nothing in the batch is written.
+	 * @param work
+	 * @throws IOException if the work or the underlying file operation throws it
+	 */
+	public void inBatch ( BatchWork work ) throws IOException
+	{
+		fLock.writeLock ().lock ();
+		try
+		{
+			checkWritable ();
+
+			final Txn txn = new Txn ();
+			work.run ( new Batch ( txn ) );
+			commit ( txn );
+		}
+		finally
+		{
+			fLock.writeLock ().unlock ();
+		}
 	}
 
 	private final File fUnderlyingFile;
-	private RandomAccessFile fFile;
+	private final FileChannel fChannel;
 	private final boolean fCanWrite;
+	private final boolean fSync;
+	private final boolean fMemoryMapped;
+	private final BlockFileJournal fJournal;
+	private final ReentrantReadWriteLock fLock;
 
 	// header
 	private final int fMajor;
 	private final int fMinor;
 	private final int fBlockSize;
-	private final int fBlockDataSize;
+	private final boolean fHasTailPointer;
+	private final int fHeadOffsetToData;
+	private final int fBlockDataSize;	// in blocks after the first in a chain
 
+	// changed only under the write lock
 	private long fDeleteChain;
+	private volatile long fEnd;
+	private IOException fFailure;
 
-	private boolean fCurrentIsLast;
-	private long fCurrentNextOrSize;
-	private byte[] fCurrentBlockData;
+	private volatile MappedByteBuffer fMap;
 
 	private PBEParameterSpec fParamSpec;
 	private SecretKey fKey;
 
+	private static final int kVersionMajor = 2;
 	private static final int kSaltSize = 8;
 	private static final int kHeaderLength =
 		4 +	// "rrbf"
@@ -366,11 +655,9 @@ public class BlockFile implements Closeable
 	;
 	private static final int kDeleteChainPointerLocation = 16;
 	private static final int kOffsetToBlockData = 8; // for size / next block pointer
-
-	void copyStream ( InputStream is, OutputStream os ) throws IOException
-	{
-		copyStream ( is, os, fBlockSize );
-	}
+	private static final int kTailPointerOffset = 8;
+	private static final int kHeadOffsetToBlockData = 16; // for size / next block pointer, then the tail pointer
+	private static final int kReadAheadBlocks = 16;
 
 	static void copyStream ( InputStream is, OutputStream os, int bufferSize ) throws IOException
 	{
@@ -382,148 +669,455 @@ public class BlockFile implements Closeable
 		}
 	}
 
-	private long allocateBlock () throws IOException
+	private static class Header
 	{
-		long result = kBadHandle;
-		if ( fDeleteChain != kBadHandle )
+		private int fMajor;
+		private int fMinor;
+		private int fBlockSize;
+		private long fDeleteChain;
+		private byte[] fSalt;
+	}
+
+	private static Header readHeader ( File file ) throws IOException
+	{
+		final ByteBuffer bb = ByteBuffer.allocate ( kHeaderLength );
+		try ( final FileChannel ch = FileChannel.open ( file.toPath (), StandardOpenOption.READ ) )
 		{
-			result = fDeleteChain;
-			fDeleteChain = getNextBlockFrom ( result );
-			writeDeleteChainPointer ();
+			BlockFileJournal.readFully ( ch, bb, 0 );
 		}
-		else
+		catch ( IOException x )
+		{
+			if ( !file.exists () ) throw x;
+			throw new IOException ( "unrecognized file format" );
+		}
+		bb.flip ();
+
+		final byte[] tag = new byte [ 4 ];
+		bb.get ( tag );
+		if ( !new String ( tag, StandardCharsets.UTF_8 ).equals ( "rrbf" ) )
 		{
-			result = fFile.length ();
+			throw new IOException ( "unrecognized file format" );
+		}
 
-			// an earlier implementation left this out as an optimization.
-			// unfortunately, a long chain will allocate the next block
-			// before storing the current block. without the write here, the
-			// file length never changed, so the same block was reissued over
-			// and over.
-			storeBlock ( result, new byte[0], 0 );
+		final Header h = new Header ();
+		h.fMajor = bb.getInt ();
+		h.fMinor = bb.getInt ();
+		if ( ( h.fMajor != 1 && h.fMajor != kVersionMajor ) || h.fMinor != 0 )
+		{
+			throw new IOException ( "unrecognized file format" );
 		}
+		h.fBlockSize = bb.getInt ();
+		h.fDeleteChain = bb.getLong ();
+		h.fSalt = new byte [ kSaltSize ];
+		bb.get ( h.fSalt );
+		return h;
+	}
+
+	private static ByteBuffer makeHeader ( int major, int blockSize, long deleteChain, byte[] salt )
+	{
+		final ByteBuffer bb = ByteBuffer.allocate ( kHeaderLength );
+		bb.put ( "rrbf".getBytes ( StandardCharsets.UTF_8 ) );
+		bb.putInt ( major );
+		bb.putInt ( 0 );
+		bb.putInt ( blockSize );
+		bb.putLong ( deleteChain );
+		bb.put ( salt );
+		bb.flip ();
+		return bb;
+	}
+
+	private static ByteBuffer longBytes ( long value )
+	{
+		final ByteBuffer bb = ByteBuffer.allocate ( 8 );
+		bb.putLong ( 0, value );
+		return bb;
+	}
+
+	/**
+	 * The block changes that make up one write. Nothing reaches the file until the set is
+	 * journaled, so reads made while building it see the changes made so far through here.
+	 */
+	private class Txn
+	{
+		public Txn ()
+		{
+			fDeleteChain = BlockFile.this.fDeleteChain;
+			fEnd = BlockFile.this.fEnd;
+			fEntries = new LinkedList<> ();
+		}
+
+		public void write ( long address, byte[] bytes )
+		{
+			fEntries.add ( new BlockFileJournal.Entry ( address, bytes ) );
+		}
+
+		public void write ( long address, ByteBuffer bytes )
+		{
+			write ( address, bytes.array () );
+		}
+
+		private long fDeleteChain;
+		private long fEnd;
+		private final LinkedList<BlockFileJournal.Entry> fEntries;
+	}
+
+	private void commit ( Txn txn ) throws IOException
+	{
+		if ( txn.fDeleteChain != fDeleteChain )
+		{
+			txn.write ( kDeleteChainPointerLocation, longBytes ( txn.fDeleteChain ) );
+		}
+
+		fJournal.write ( txn.fEntries );
+		try
+		{
+			BlockFileJournal.apply ( fChannel, txn.fEntries );
+			if ( fSync ) fChannel.force ( true );
+		}
+		catch ( IOException x )
+		{
+			// the journal still has this change; it's applied when the file is next opened
+			fFailure = x;
+			throw x;
+		}
+		fJournal.clear ();
+
+		fDeleteChain = txn.fDeleteChain;
+		fEnd = Math.max ( fEnd, txn.fEnd );
+	}
+
+	private void checkWritable () throws IOException
+	{
+		if ( !fCanWrite )
+		{
+			throw new IOException ( "opened read-only" );
+		}
+		if ( fFailure != null )
+		{
+			throw new IOException ( "An earlier write failed. Reopen the file to recover it.", fFailure );
+		}
+	}
+
+	private int addressToIndex ( long address )
+	{
+		return addressToIndex ( null, address );
+	}
+
+	// the block index for an address in the file, as extended so far by the given transaction (which may be null)
+	private int addressToIndex ( Txn txn, long address )
+	{
+		final long end = txn == null ? fEnd : txn.fEnd;
+		if ( address < kHeaderLength || address + fBlockSize > end || ( address - kHeaderLength ) % fBlockSize != 0 )
+		{
+			return -1;
+		}
+		return (int) ( ( address - kHeaderLength ) / fBlockSize );
+	}
+
+	private void checkAddress ( long address ) throws IOException
+	{
+		checkAddress ( null, address );
+	}
+
+	private void checkAddress ( Txn txn, long address ) throws IOException
+	{
+		if ( addressToIndex ( txn, address ) < 0 )
+		{
+			throw new IOException ( "There's no block at address " + address + "." );
+		}
+	}
+
+	private long createIn ( Txn txn, byte[] stored ) throws IOException
+	{
+		final long result = allocateBlock ( txn );
+		writeChain ( txn, result, true, stored, new LinkedList<Long> () );
 		return result;
 	}
 
-	private void writeDeleteChainPointer () throws IOException
+	private void overwriteIn ( Txn txn, long address, byte[] stored ) throws IOException
 	{
-		fFile.seek ( kDeleteChainPointerLocation );
-		fFile.writeLong ( fDeleteChain );
+		if ( address < kHeaderLength )
+		{
+			throw new IOException ( "Address " + address + " is in the header block. (Did you mean to use indexToAddress?)" );
+		}
+		checkAddress ( txn, address );
+
+		// the new data reuses the existing chain's blocks before allocating any
+		writeChain ( txn, address, true, stored, getContinuation ( txn, address ) );
 	}
 
-	private void loadBlock ( long address ) throws IOException
+	private void deleteIn ( Txn txn, long address ) throws IOException
 	{
-		long maxAddress = fFile.length ();
-		if ( address == maxAddress )
+		checkAddress ( txn, address );
+
+		// to delete a chain, we chain the current delete chain on to the back
+		// of this chain we're deleting, then set the front of the deleting
+		// chain in the header
+
+		final long current = getLastBlockInChain ( txn, address );
+		txn.write ( current, longBytes ( txn.fDeleteChain == kBadHandle ? 0 : -txn.fDeleteChain ) );
+		txn.fDeleteChain = address;
+	}
+
+	private long allocateBlock ( Txn txn ) throws IOException
+	{
+		long result = kBadHandle;
+		if ( txn.fDeleteChain != kBadHandle )
 		{
-			fCurrentIsLast = true;
-			fCurrentNextOrSize = 0;
-			fCurrentBlockData = new byte [ 0 ];
+			result = txn.fDeleteChain;
+			final long link = readLink ( txn, result );
+			txn.fDeleteChain = link < 0 ? -link : kBadHandle;
 		}
 		else
 		{
-			fFile.seek ( address );
+			result = txn.fEnd;
+			txn.fEnd += fBlockSize;
+		}
+		return result;
+	}
+
+	/**
+	 * Write data into a chain of blocks starting at the given block, taking further blocks from the
+	 * reuse list before allocating, and putting any reuse blocks left over on the delete chain. If
+	 * the first block isn't a chain's head, it's written as a continuation of an existing chain.
+	 * @return the address of the chain's last block
+	 */
+	private long writeChain ( Txn txn, long first, boolean isHead, byte[] bytes, LinkedList<Long> reusable ) throws IOException
+	{
+		final int firstOffset = isHead ? fHeadOffsetToData : kOffsetToBlockData;
+		final int firstSize = fBlockSize - firstOffset;
+		final int rest = Math.max ( 0, bytes.length - firstSize );
+		final int count = 1 + ( rest + fBlockDataSize - 1 ) / fBlockDataSize;
+		final long[] addrs = new long [ count ];
+		addrs[0] = first;
+		for ( int i=1; i<count; i++ )
+		{
+			addrs[i] = reusable.isEmpty () ? allocateBlock ( txn ) : reusable.removeFirst ();
+		}
+
+		int from = 0;
+		for ( int i=0; i<count; i++ )
+		{
+			final int offset = i == 0 ? firstOffset : kOffsetToBlockData;
+			final int len = Math.min ( fBlockSize - offset, bytes.length - from );
+			final boolean last = ( i == count - 1 );
 
-			int expect = fBlockDataSize;
-			final long sizeData = fFile.readLong ();
-			if ( sizeData >= 0 )
+			final ByteBuffer block = ByteBuffer.allocate ( fBlockSize );
+			block.putLong ( 0, last ? len : -addrs[i+1] );
+			if ( i == 0 && isHead && fHasTailPointer )
 			{
-				fCurrentIsLast = true;
-				fCurrentNextOrSize = sizeData;
-				expect = (int) ( fCurrentNextOrSize & 0x0000ffff );
+				block.putLong ( kTailPointerOffset, addrs[count-1] );
 			}
-			else
+			System.arraycopy ( bytes, from, block.array (), offset, len );
+			txn.write ( addrs[i], block );
+			from += len;
+		}
+
+		if ( !reusable.isEmpty () )
+		{
+			final Long[] free = reusable.toArray ( new Long [ reusable.size () ] );
+			for ( int i=0; i<free.length; i++ )
 			{
-				fCurrentIsLast = false;
-				fCurrentNextOrSize = -1 * sizeData;
+				final long next = ( i < free.length - 1 ) ? free[i+1] : txn.fDeleteChain;
+				txn.write ( free[i], longBytes ( next == kBadHandle ? 0 : -next ) );
 			}
+			txn.fDeleteChain = free[0];
+		}
+
+		return addrs[count-1];
+	}
 
-			fCurrentBlockData = new byte [ expect ];
-			if ( expect > fFile.read ( fCurrentBlockData ) )
+	// the blocks after the first in a chain
+	private LinkedList<Long> getContinuation ( Txn txn, long head ) throws IOException
+	{
+		final LinkedList<Long> result = new LinkedList<> ();
+		long link = readLink ( txn, head );
+		while ( link < 0 )
+		{
+			final long next = -link;
+			checkAddress ( txn, next );
+			if ( result.size () > fEnd / fBlockSize )
 			{
-				throw new IOException ( "block size too small" );
+				throw new IOException ( "The block chain at " + head + " loops." );
 			}
+			result.add ( next );
+			link = readLink ( txn, next );
 		}
+		return result;
 	}
 
-	private OutputStream writeStream ( long address ) throws IOException
+	private long getLastBlockInChain ( Txn txn, long head ) throws IOException
 	{
-		return ( fKey != null ) ?
-			new CipherOutputStream ( new BlockOutputStream ( address ), getCipher ( true ) ) :
-			new BlockOutputStream ( address )
-		;
+		if ( fHasTailPointer )
+		{
+			final long tail = readLong ( txn, head + kTailPointerOffset );
+			if ( addressToIndex ( txn, tail ) >= 0 && readLink ( txn, tail ) >= 0 )
+			{
+				return tail;
+			}
+		}
+
+		final LinkedList<Long> rest = getContinuation ( txn, head );
+		return rest.isEmpty () ? head : rest.getLast ();
 	}
 
-	private void storeBlock ( long thisBlock, long nextBlock, byte[] bytes ) throws IOException
+	// where the data starts in the given block of the chain at head
+	private int offsetToData ( long head, long block )
 	{
-		fFile.seek ( thisBlock );
+		return block == head ? fHeadOffsetToData : kOffsetToBlockData;
+	}
 
-		if ( nextBlock == kBadHandle )
-		{
-			fFile.writeLong ( bytes.length );
-		}
-		else
+	private long readLink ( Txn txn, long address ) throws IOException
+	{
+		return readLong ( txn, address );
+	}
+
+	// read a long from the file, as changed so far by the given transaction (which may be null)
+	private long readLong ( Txn txn, long address ) throws IOException
+	{
+		if ( txn != null )
 		{
-			fFile.writeLong ( -1 * nextBlock );
+			final Iterator<BlockFileJournal.Entry> it = txn.fEntries.descendingIterator ();
+			while ( it.hasNext () )
+			{
+				final BlockFileJournal.Entry e = it.next ();
+				if ( e.getAddress () <= address && address + 8 <= e.getAddress () + e.getBytes ().length )
+				{
+					return ByteBuffer.wrap ( e.getBytes () ).getLong ( (int) ( address - e.getAddress () ) );
+				}
+			}
+			if ( address >= fEnd ) return 0L;	// allocated in this transaction but not written yet
 		}
 
-		final byte[] block = new byte [ fBlockDataSize ];
-		System.arraycopy ( bytes, 0, block, 0, bytes.length );
-		fFile.write ( block );
+		final ByteBuffer bb = ByteBuffer.allocate ( 8 );
+		BlockFileJournal.readFully ( fChannel, bb, address );
+		return bb.getLong ( 0 );
 	}
 
-	private void storeBlock ( long thisBlock, byte[] bytes, int size ) throws IOException
+	/**
+	 * Read the stored bytes of a chain. Blocks written together are usually adjacent, so this
+	 * reads several blocks at a time and follows the chain within them.
+	 */
+	private byte[] readRaw ( long address ) throws IOException
 	{
-		// storing the last block in a chain...
-		
-		if ( size < 0 )
+		fLock.readLock ().lock ();
+		try
 		{
-			throw new IllegalArgumentException ( "Data size in last block may not be less than 0." );
-		}
+			checkAddress ( address );
+
+			final ByteArrayOutputStream result = new ByteArrayOutputStream ();
+			final byte[] data = new byte [ fBlockSize ];
+
+			ByteBuffer buf = null;
+			long bufStart = 0;
+			long current = address;
+			long remaining = fEnd / fBlockSize;
+			while ( true )
+			{
+				if ( remaining-- < 0 )
+				{
+					throw new IOException ( "The block chain at " + address + " loops." );
+				}
+				if ( buf == null || current < bufStart || current + fBlockSize > bufStart + buf.limit () )
+				{
+					buf = readBlocks ( current );
+					bufStart = current;
+				}
 
-		long nextBlockWas = getNextBlockFrom ( thisBlock );
+				final int offset = (int) ( current - bufStart );
+				final int dataOffset = offsetToData ( address, current );
+				final long link = buf.getLong ( offset );
+				final int size = link >= 0 ? (int) link : fBlockSize - dataOffset;
+				if ( size > fBlockSize - dataOffset )
+				{
+					throw new IOException ( "The block at " + current + " is damaged." );
+				}
 
-		fFile.seek ( thisBlock );
-		fFile.writeLong ( size );
+				final ByteBuffer dup = buf.duplicate ();
+				dup.position ( offset + dataOffset );
+				dup.get ( data, 0, size );
+				result.write ( data, 0, size );
 
-		final byte[] block = new byte [ fBlockDataSize ];
-		System.arraycopy ( bytes, 0, block, 0, size );
-		fFile.write ( block );
+				if ( link >= 0 ) break;
 
-		if ( nextBlockWas != kBadHandle )
+				current = -link;
+				checkAddress ( current );
+			}
+			return result.toByteArray ();
+		}
+		finally
 		{
-			// the prior byte array continued into another block. that block
-			// is no longer needed, so delete it. (this is important in an
-			// overwrite case)
-			delete ( nextBlockWas );
+			fLock.readLock ().unlock ();
 		}
 	}
 
-	private long getLastBlockInChain ( long handle ) throws IOException
+	// get a buffer that starts at the given block and holds at least that block
+	private ByteBuffer readBlocks ( long address ) throws IOException
 	{
-		long current = handle;
-		long next = getNextBlockFrom ( current );
-		while ( next != kBadHandle )
+		if ( fMemoryMapped )
 		{
-			current = next;
-			next = getNextBlockFrom ( current );
+			final MappedByteBuffer map = getMap ( address + fBlockSize );
+			if ( map != null )
+			{
+				final ByteBuffer dup = map.duplicate ();
+				dup.position ( (int) address );
+				return dup.slice ();
+			}
 		}
-		return current;
+
+		final int len = (int) Math.min ( fEnd - address, (long) fBlockSize * kReadAheadBlocks );
+		final ByteBuffer bb = ByteBuffer.allocate ( len );
+		BlockFileJournal.readFully ( fChannel, bb, address );
+		bb.flip ();
+		return bb;
 	}
 
-	private long getNextBlockFrom ( long handle ) throws IOException
+	// get a memory map that covers at least the given length, or null if the file is too large to map
+	private MappedByteBuffer getMap ( long needed ) throws IOException
 	{
-		long result = kBadHandle;
-		if ( handle != fFile.length () )
+		MappedByteBuffer map = fMap;
+		if ( map == null || map.capacity () < needed )
 		{
-			fFile.seek ( handle );
-			long nextOrSize = fFile.readLong ();
-			if ( nextOrSize < kBadHandle )
+			synchronized ( this )
 			{
-				result = nextOrSize * -1;
+				map = fMap;
+				if ( map == null || map.capacity () < needed )
+				{
+					final long size = fChannel.size ();
+					if ( size > Integer.MAX_VALUE || size < needed ) return null;
+					map = fChannel.map ( FileChannel.MapMode.READ_ONLY, 0, size );
+					fMap = map;
+				}
 			}
 		}
-		return result;
+		return map;
+	}
+
+	private static byte[] readAll ( InputStream is ) throws IOException
+	{
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream ();
+		copyStream ( is, baos, 4096 );
+		return baos.toByteArray ();
+	}
+
+	private byte[] encrypt ( byte[] bytes ) throws IOException
+	{
+		if ( fKey == null ) return bytes;
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream ();
+		try ( final OutputStream os = new CipherOutputStream ( baos, getCipher ( true ) ) )
+		{
+			os.write ( bytes );
+		}
+		return baos.toByteArray ();
+	}
+
+	private byte[] decrypt ( byte[] bytes ) throws IOException
+	{
+		try ( final InputStream is = new CipherInputStream ( new ByteArrayInputStream ( bytes ), getCipher ( false ) ) )
+		{
+			return readAll ( is );
+		}
 	}
 
 	// RFC 2898 recommends at least 1000 iterations...
@@ -568,99 +1162,5 @@ public class BlockFile implements Closeable
 		}
 	}
 
-	// NOTE: if the currently loaded block changes between calls to read(),
-	// this class will return unpredictable results.
-	private class blockReadStream extends InputStream
-	{
-		public blockReadStream ( long addr ) throws IOException
-		{
-			fCurrReadBlock = addr;
-			loadBlock ( fCurrReadBlock );
-			fOffset = 0;
-		}
-	
-		@Override
-		public int read () throws IOException
-		{
-			if ( fCurrReadBlock == -1 )
-			{
-				return -1;
-			}
-	
-			// make sure there's data available
-			final int dataInBlock = fCurrentBlockData.length;
-			if ( fOffset >= dataInBlock )
-			{
-				// load next...
-				if ( !fCurrentIsLast )
-				{
-					fCurrReadBlock = fCurrentNextOrSize;
-					loadBlock ( fCurrReadBlock );
-					fOffset = 0;
-				}
-				else	// last block
-				{
-					fCurrReadBlock = kBadHandle;
-				}
-			}
-	
-			int result = -1;
-			if ( fCurrReadBlock != kBadHandle )
-			{
-				result = ( 0xff & fCurrentBlockData [ fOffset++ ] );
-			}
-			return result;
-		}
-	
-		private long fCurrReadBlock;
-		private int fOffset;
-	}
-
-	private class BlockOutputStream extends OutputStream
-	{
-		public BlockOutputStream ( long address ) throws IOException
-		{
-			if ( !fCanWrite )
-			{
-				throw new IOException ( "opened read-only" );
-			}
-			fCurrentBlock = address;
-			fBuffer = new byte [ fBlockDataSize ];
-			fSize = 0;
-		}
-	
-		@Override
-		public void write ( int b ) throws IOException
-		{
-			if ( b > 127 || b < -128)
-			{
-				throw new IOException ( "byte value out of range" );
-			}
-
-			byte bb = (byte)( b & 0xff );
-			if ( fSize < fBlockDataSize )
-			{
-				fBuffer [ fSize++ ] = bb;
-			}
-			else
-			{
-				// buffer full, this byte goes in next block
-				long nextBlock = allocateBlock ();
-				storeBlock ( fCurrentBlock, nextBlock, fBuffer );
-				fCurrentBlock = nextBlock;
-				fSize = 1;
-				fBuffer[0] = bb;
-			}
-		}
-	
-		@Override
-		public void close () throws IOException
-		{
-			storeBlock ( fCurrentBlock, fBuffer, fSize );
-		}
-	
-		private long fCurrentBlock;
-		private byte[] fBuffer;
-		private int fSize;
-	}
+	private static final Logger log = LoggerFactory.getLogger ( BlockFile.class );
 }
@@ -0,0 +1,222 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package io.continual.util.db.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal for a block file. Before a block file changes any bytes in place, it
+ * writes the complete set of changes here. If the process dies part way through applying them,
+ * the next open replays the journal. A journal that was itself only partly written fails its
+ * checksum and is discarded, which is safe because the block file wasn't touched yet.<br>
+ * <br>
+ * The journal holds at most one change set. It lives next to the block file, with ".journal"
+ * appended to the block file's name.
+ */
+class BlockFileJournal implements Closeable
+{
+	/**
+	 * A run of bytes to write at an address in the block file
+	 */
+	static class Entry
+	{
+		public Entry ( long address, byte[] bytes )
+		{
+			fAddress = address;
+			fBytes = bytes;
+		}
+
+		public long getAddress () { return fAddress; }
+		public byte[] getBytes () { return fBytes; }
+
+		private final long fAddress;
+		private final byte[] fBytes;
+	}
+
+	/**
+	 * Get the journal file for a block file
+	 * @param blockFile
+	 * @return the journal file
+	 */
+	static File journalFileFor ( File blockFile )
+	{
+		return new File ( blockFile.getPath () + ".journal" );
+	}
+
+	/**
+	 * If the block file has a complete journal entry, apply it. In any case, leave the journal empty.
+	 * @param blockFile
+	 * @return true if changes were replayed
+	 * @throws IOException
+	 */
+	static boolean recover ( File blockFile ) throws IOException
+	{
+		final File journalFile = journalFileFor ( blockFile );
+		if ( !journalFile.exists () || journalFile.length () == 0 ) return false;
+
+		try (
+			final FileChannel journal = FileChannel.open ( journalFile.toPath (), StandardOpenOption.READ, StandardOpenOption.WRITE );
+			final FileChannel target = FileChannel.open ( blockFile.toPath (), StandardOpenOption.READ, StandardOpenOption.WRITE )
+		)
+		{
+			final ByteBuffer bb = ByteBuffer.allocate ( (int) journal.size () );
+			readFully ( journal, bb, 0 );
+			bb.flip ();
+
+			final List<Entry> entries = decode ( bb );
+			if ( entries != null )
+			{
+				apply ( target, entries );
+				target.force ( true );
+			}
+			journal.truncate ( 0 );
+			journal.force ( true );
+			return entries != null;
+		}
+	}
+
+	public BlockFileJournal ( File blockFile, boolean sync ) throws IOException
+	{
+		fChannel = FileChannel.open ( journalFileFor ( blockFile ).toPath (), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+		fSync = sync;
+	}
+
+	@Override
+	public void close () throws IOException
+	{
+		fChannel.close ();
+	}
+
+	/**
+	 * Record a change set. When this returns, the changes survive a crash.
+	 * @param entries
+	 * @throws IOException
+	 */
+	public void write ( List<Entry> entries ) throws IOException
+	{
+		final ByteBuffer bb = ByteBuffer.wrap ( encode ( entries ) );
+		fChannel.truncate ( 0 );
+		writeFully ( fChannel, bb, 0 );
+		if ( fSync ) fChannel.force ( true );
+	}
+
+	/**
+	 * Empty the journal after its changes are safely in the block file
+	 * @throws IOException
+	 */
+	public void clear () throws IOException
+	{
+		fChannel.truncate ( 0 );
+	}
+
+	static byte[] encode ( List<Entry> entries )
+	{
+		int size = 4 + 4 + 8;
+		for ( Entry e : entries )
+		{
+			size += 8 + 4 + e.fBytes.length;
+		}
+
+		final ByteBuffer bb = ByteBuffer.allocate ( size );
+		bb.putInt ( kMagic );
+		bb.putInt ( entries.size () );
+		for ( Entry e : entries )
+		{
+			bb.putLong ( e.fAddress );
+			bb.putInt ( e.fBytes.length );
+			bb.put ( e.fBytes );
+		}
+
+		final CRC32 crc = new CRC32 ();
+		crc.update ( bb.array (), 0, bb.position () );
+		bb.putLong ( crc.getValue () );
+		return bb.array ();
+	}
+
+	// returns null if the journal is incomplete or damaged
+	static List<Entry> decode ( ByteBuffer bb )
+	{
+		final int length = bb.remaining ();
+		if ( length < 16 ) return null;
+
+		final CRC32 crc = new CRC32 ();
+		final ByteBuffer body = bb.duplicate ();
+		body.limit ( body.position () + length - 8 );
+		crc.update ( body );
+		if ( crc.getValue () != bb.getLong ( bb.position () + length - 8 ) ) return null;
+
+		try
+		{
+			if ( bb.getInt () != kMagic ) return null;
+			final int count = bb.getInt ();
+			final LinkedList<Entry> result = new LinkedList<> ();
+			for ( int i=0; i<count; i++ )
+			{
+				final long address = bb.getLong ();
+				final byte[] bytes = new byte [ bb.getInt () ];
+				bb.get ( bytes );
+				result.add ( new Entry ( address, bytes ) );
+			}
+			return result;
+		}
+		catch ( BufferUnderflowException | NegativeArraySizeException x )
+		{
+			return null;
+		}
+	}
+
+	static void apply ( FileChannel target, List<Entry> entries ) throws IOException
+	{
+		for ( Entry e : entries )
+		{
+			writeFully ( target, ByteBuffer.wrap ( e.fBytes ), e.fAddress );
+		}
+	}
+
+	static void readFully ( FileChannel ch, ByteBuffer bb, long position ) throws IOException
+	{
+		long at = position;
+		while ( bb.hasRemaining () )
+		{
+			final int read = ch.read ( bb, at );
+			if ( read < 0 ) throw new IOException ( "Unexpected end of file at " + at );
+			at += read;
+		}
+	}
+
+	static void writeFully ( FileChannel ch, ByteBuffer bb, long position ) throws IOException
+	{
+		long at = position;
+		while ( bb.hasRemaining () )
+		{
+			at += ch.write ( bb, at );
+		}
+	}
+
+	private final FileChannel fChannel;
+	private final boolean fSync;
+
+	private static final int kMagic = 0x72726a31;	// "rrj1"
+}
@@ -76,6 +76,17 @@ public class JsonObjectFile implements Closeable
 		fFile = new BlockFile ( f, withWrite, passwd );
 	}
 
+	/**
+	 * Open a JSON object file with the block file options in the given builder, e.g. to read
+	 * through a memory map.
+	 * @param bfb a block file builder
+	 * @throws IOException if the underlying file operation throws it
+	 */
+	public JsonObjectFile ( BlockFile.Builder bfb ) throws IOException
+	{
+		fFile = bfb.build ();
+	}
+
 	/**
 	 * Get the absolute path of the underlying file.
 	 * @return the file's absolute path
@@ -85,6 +96,15 @@ public class JsonObjectFile implements Closeable
 		return fFile.getFilePath ();
 	}
 	
+	/**
+	 * Get the underlying block file, e.g. to keep an index in the same file as the objects.
+	 * @return the block file
+	 */
+	public BlockFile getBlockFile ()
+	{
+		return fFile;
+	}
+
 	/**
 	 * Close this file
 	 * @throws IOException if the underlying file operation throws it
@@ -15,6 +15,10 @@
  */
 package io.continual.util.collections;
 
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -118,6 +122,159 @@ public class LruCacheTest extends TestCase
 		assertNull( cache.get( "k0" , 0 ) );		// age > maxAgeMs
 	}
 
+	@Test
+	public void testRecentlyUsedSurvives ()
+	{
+		final LruCache<String,String> cache = new LruCache<String,String> ( 3 );
+		cache.store ( "k0", "0" );
+		cache.store ( "k1", "1" );
+		cache.store ( "k2", "2" );
+
+		// k0 is the oldest but was just used, so k1 goes instead
+		assertEquals ( "0", cache.get ( "k0" ) );
+		cache.store ( "k3", "3" );
+		assertEquals ( 3, cache.size () );
+		assertEquals ( "0", cache.get ( "k0" ) );
+		assertNull ( cache.get ( "k1" ) );
+
+		// replacing a value doesn't grow the cache
+		assertEquals ( "2", cache.store ( "k2", "two" ) );
+		assertEquals ( 3, cache.size () );
+		assertEquals ( "two", cache.get ( "k2" ) );
+	}
+
+	@Test
+	public void testNewEntrySurvivesSweep ()
+	{
+		// every older entry was used since the last sweep, so the hand clears them all before
+		// it finds a victim; that victim must not be the entry being stored
+		final LruCache<String,String> one = new LruCache<String,String> ( 1 );
+		one.put ( "x", "1" );
+		assertEquals ( "1", one.get ( "x" ) );
+		one.put ( "y", "2" );
+		assertEquals ( "2", one.get ( "y" ) );
+		assertNull ( one.get ( "x" ) );
+
+		final LruCache<String,String> cache = new LruCache<String,String> ( 3 );
+		for ( int i=0; i<100; i++ )
+		{
+			for ( String key : cache.keys () )
+			{
+				cache.get ( key );
+			}
+			cache.put ( "k" + i, "" + i );
+			assertEquals ( "" + i, cache.get ( "k" + i ) );
+			assertEquals ( Math.min ( i + 1, 3 ), cache.size () );
+		}
+	}
+
+	@Test
+	public void testWeightBound ()
+	{
+		final LinkedList<String> expelled = new LinkedList<> ();
+		final LruCache<String,String> cache = new LruCache.Builder<String,String> ()
+			.withMaxWeight ( 10, new LruCache.Weigher<String,String> ()
+			{
+				@Override
+				public long weigh ( String key, String value ) { return value.length (); }
+			} )
+			.build ()
+		;
+		final ExpulsionListener<String,String> el = new ExpulsionListener<String,String> ()
+		{
+			@Override
+			public void onExpelled ( String key, String value ) { expelled.add ( key ); }
+		};
+
+		cache.store ( "a", "1234", el );
+		cache.store ( "b", "1234", el );
+		assertEquals ( 8, cache.weight () );
+
+		cache.store ( "c", "12345", el );
+		assertEquals ( 9, cache.weight () );
+		assertEquals ( 1, expelled.size () );
+		assertEquals ( "a", expelled.getFirst () );
+
+		// an entry heavier than the bound isn't kept, and doesn't push others out
+		cache.store ( "d", "12345678901", el );
+		assertNull ( cache.get ( "d" ) );
+		assertEquals ( 9, cache.weight () );
+		assertEquals ( "d", expelled.getLast () );
+
+		cache.remove ( "c" );
+		cache.remove ( "b" );
+		assertEquals ( 0, cache.weight () );
+	}
+
+	@Test
+	public void testStats ()
+	{
+		final LruCache<String,String> cache = new LruCache<String,String> ( 2 );
+		cache.store ( "k0", "0" );
+		cache.get ( "k0" );
+		cache.get ( "k0" );
+		cache.get ( "k1" );
+		cache.store ( "k1", "1" );
+		cache.store ( "k2", "2" );
+
+		final LruCache.Stats stats = cache.getStats ();
+		assertEquals ( 2, stats.getHitCount () );
+		assertEquals ( 1, stats.getMissCount () );
+		assertEquals ( 1, stats.getEvictionCount () );
+	}
+
+	@Test
+	public void testConcurrentUse () throws InterruptedException
+	{
+		final int maxSize = 100;
+		final LruCache<Integer,Integer> cache = new LruCache<Integer,Integer> ( maxSize );
+		final AtomicReference<Throwable> failure = new AtomicReference<> ();
+
+		final Thread[] threads = new Thread [ 8 ];
+		for ( int t=0; t<threads.length; t++ )
+		{
+			final int seed = t;
+			threads[t] = new Thread ( new Runnable ()
+			{
+				@Override
+				public void run ()
+				{
+					try
+					{
+						final Random r = new Random ( seed );
+						for ( int i=0; i<50000; i++ )
+						{
+							final int key = r.nextInt ( 300 );
+							final Integer val = cache.get ( key );
+							if ( val == null )
+							{
+								cache.put ( key, key * 2 );
+							}
+							else if ( val != key * 2 )
+							{
+								throw new IllegalStateException ( "wrong value for " + key );
+							}
+							if ( i % 100 == 0 ) cache.drop ( r.nextInt ( 300 ) );
+						}
+					}
+					catch ( Throwable x )
+					{
+						failure.set ( x );
+					}
+				}
+			} );
+			threads[t].start ();
+		}
+		for ( Thread t : threads )
+		{
+			t.join ();
+		}
+
+		assertNull ( failure.get () );
+		assertTrue ( cache.size () <= maxSize );
+		assertEquals ( cache.size (), cache.keys ().size () );
+	}
+
 	private class TestExpulsionListener implements ExpulsionListener<String, String>
 	{
 		public void onExpelled( String key , String value )
@@ -15,10 +15,12 @@
  */
 package io.continual.util.collections;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -160,6 +162,133 @@ public class ShardedExpiringCacheTest extends TestCase
 		assertNull ( postGc );
 	}
 
+	@Test
+	public void testSingleFlightFetch () throws InterruptedException, FetchException
+	{
+		final ShardedExpiringCache<String,String> c = new ShardedExpiringCache.Builder<String,String> ()
+			.withShardCount ( 1 )
+			.build ()
+		;
+
+		final AtomicInteger fetchCount = new AtomicInteger ( 0 );
+		final CountDownLatch release = new CountDownLatch ( 1 );
+		final Fetcher<String,String> slowFetch = new Fetcher<String,String> ()
+		{
+			@Override
+			public String fetch ( String key ) throws FetchException
+			{
+				fetchCount.incrementAndGet ();
+				try
+				{
+					release.await ();
+				}
+				catch ( InterruptedException e )
+				{
+					throw new FetchException ( e );
+				}
+				return key.toUpperCase ();
+			}
+		};
+
+		final int n = 32;
+		final ExecutorService execs = Executors.newFixedThreadPool ( n );
+		final AtomicInteger correct = new AtomicInteger ( 0 );
+		for ( int i=0; i<n; i++ )
+		{
+			execs.submit ( new Runnable ()
+			{
+				@Override
+				public void run ()
+				{
+					try
+					{
+						if ( "KEY".equals ( c.read ( "key", null, slowFetch ) ) )
+						{
+							correct.incrementAndGet ();
+						}
+					}
+					catch ( FetchException e )
+					{
+						// counted as incorrect
+					}
+				}
+			} );
+		}
+
+		// a fetch on another key in the same shard isn't blocked by the pending fetch
+		assertEquals ( "OTHER", c.read ( "other", null, new Fetcher<String,String> ()
+		{
+			@Override
+			public String fetch ( String key ) { return key.toUpperCase (); }
+		} ) );
+
+		Thread.sleep ( 100 );
+		release.countDown ();
+
+		execs.shutdown ();
+		assertTrue ( execs.awaitTermination ( 30, TimeUnit.SECONDS ) );
+		assertEquals ( 1, fetchCount.get () );
+		assertEquals ( n, correct.get () );
+	}
+
+	@Test
+	public void testSizeBound ()
+	{
+		final ShardedExpiringCache<String,String> c = new ShardedExpiringCache.Builder<String,String> ()
+			.withShardCount ( 1 )
+			.withShardMaxSize ( 3 )
+			.build ()
+		;
+
+		c.write ( "a", "1" );
+		c.write ( "b", "2" );
+		c.write ( "c", "3" );
+		c.write ( "a", "4" );	// rewriting moves "a" to the back
+		c.write ( "d", "5" );
+
+		assertEquals ( 3, c.size () );
+		assertNull ( c.read ( "b" ) );
+		assertEquals ( "4", c.read ( "a" ) );
+		assertEquals ( "3", c.read ( "c" ) );
+		assertEquals ( "5", c.read ( "d" ) );
+
+		c.remove ( "c" );
+		c.write ( "e", "6" );
+		assertEquals ( 3, c.size () );
+		assertEquals ( "4", c.read ( "a" ) );
+	}
+
+	@Test
+	public void testMonitor () throws FetchException
+	{
+		final AtomicInteger hits = new AtomicInteger ( 0 );
+		final AtomicInteger misses = new AtomicInteger ( 0 );
+		final ShardedExpiringCache<String,String> c = new ShardedExpiringCache.Builder<String,String> ()
+			.notificationsTo ( new Monitor ()
+			{
+				@Override
+				public void onCacheHit () { hits.incrementAndGet (); }
+
+				@Override
+				public void onCacheMiss () { misses.incrementAndGet (); }
+			} )
+			.build ()
+		;
+
+		assertNull ( c.read ( "foo" ) );
+		c.write ( "foo", "bar" );
+		assertEquals ( "bar", c.read ( "foo" ) );
+		assertEquals ( "bar", c.read ( "foo" ) );
+		assertNull ( c.read ( "foo", new TestValidator ()
+		{
+			@Override
+			public boolean isValid ( String value ) { return false; }
+		} ) );
+
+		assertEquals ( 2, hits.get () );
+		assertEquals ( 2, misses.get () );
+	}
+
 	//@Test
 	public void _testLongRunPerf ()
 	{
@@ -0,0 +1,119 @@
+package io.continual.util.data.exprEval;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class CompiledExpressionTest extends TestCase
+{
+	@Test
+	public void testMatchesEvaluateText ()
+	{
+		final JsonDataSource src = new JsonDataSource ( new JSONObject ()
+			.put ( "a", 1 )
+			.put ( "b", "two" )
+			.put ( "c", new JSONObject ().put ( "d", 4 ) )
+		);
+
+		final String[] templates = new String[]
+		{
+			"",
+			"plain text",
+			"${a}",
+			" ${a} ",
+			"${a}${b}",
+			"x${ a }y${b}z${c.d}",
+			"${missing}",
+			"${missing|dflt}",
+			"${ missing | dflt }${a|dflt}",
+			"unclosed ${a",
+			"${a}} extra brace",
+			"${}",
+		};
+
+		for ( String template : templates )
+		{
+			final String compiled = CompiledExpression.compile ( template ).evaluate ( src );
+			assertEquals ( template, legacyEvaluateText ( template, src ), compiled );
+		}
+		assertNull ( CompiledExpression.compile ( null ).evaluate ( src ) );
+	}
+
+	@Test
+	public void testConstant ()
+	{
+		assertTrue ( CompiledExpression.compile ( "no symbols" ).isConstant () );
+		assertFalse ( CompiledExpression.compile ( "${sym}" ).isConstant () );
+	}
+
+	@Test
+	public void testCache ()
+	{
+		final CompiledExpression ce = CompiledExpression.cached ( "cached ${expr}" );
+		assertSame ( ce, CompiledExpression.cached ( "cached ${expr}" ) );
+		assertEquals ( "cached ${expr}", ce.getSource () );
+	}
+
+	@Test
+	public void testCacheKeepsAcceptingWhenFull ()
+	{
+		// push well past the cache's capacity with one-off templates
+		for ( int i=0; i<10000; i++ )
+		{
+			CompiledExpression.cached ( "one-off ${expr" + i + "}" );
+		}
+
+		// a template that's new to a full cache is still cached
+		final CompiledExpression ce = CompiledExpression.cached ( "late ${expr}" );
+		assertSame ( ce, CompiledExpression.cached ( "late ${expr}" ) );
+	}
+
+	@Test
+	public void testSourceOrder ()
+	{
+		final CompiledExpression ce = CompiledExpression.compile ( "${foo}" );
+		assertEquals ( "first", ce.evaluate (
+			new JsonDataSource ( new JSONObject ().put ( "foo", "first" ) ),
+			new JsonDataSource ( new JSONObject ().put ( "foo", "second" ) )
+		) );
+		assertEquals ( "second", ce.evaluate (
+			new JsonDataSource ( new JSONObject () ),
+			new JsonDataSource ( new JSONObject ().put ( "foo", "second" ) )
+		) );
+	}
+
+	// the scanning implementation that CompiledExpression replaced, for comparison
+	private static String legacyEvaluateText ( String sourceString, ExprDataSource... srcs )
+	{
+		final StringBuffer sb = new StringBuffer ();
+		do
+		{
+			final int open = sourceString.indexOf ( "${" );
+			final int closer = open < 0 ? -1 : sourceString.indexOf ( '}', open );
+			if ( closer < 0 )
+			{
+				sb.append ( sourceString );
+				sourceString = "";
+			}
+			else
+			{
+				sb.append ( sourceString.substring ( 0, open ) );
+				String key = sourceString.substring ( open+2, closer ).trim ();
+				String defval = null;
+				final int vertBar = key.indexOf ( '|' );
+				if ( vertBar > -1 )
+				{
+					defval = key.substring ( vertBar + 1 ).trim ();
+					key = key.substring ( 0, vertBar ).trim ();
+				}
+				Object symval = ExpressionEvaluator.evaluateSymbol ( key, srcs );
+				if ( symval == null ) symval = defval;
+				sb.append ( symval == null ? "" : symval.toString () );
+				sourceString = sourceString.substring ( closer + 1 );
+			}
+		}
+		while ( sourceString.length () > 0 );
+		return sb.toString ();
+	}
+}
@@ -56,5 +56,57 @@ public class JsonPathEvalTest extends TestCase
 
 		final List<String> result = JsonPathEval.evaluateJsonPath ( root, jp );
 		assertEquals ( 3, result.size () );
+		assertEquals ( "0-000-00000-1", new JSONObject ( result.get ( 0 ) ).getString ( "isbn" ) );
+
+		final List<String> isbns = JsonPathEval.evaluateJsonPath ( root, "$.store.book[*].isbn" );
+		assertEquals ( 4, isbns.size () );
+		assertEquals ( "0-000-00000-3", isbns.get ( 3 ) );
+	}
+
+	@Test
+	public void testCompiledPathReadsOrgJsonInPlace ()
+	{
+		final JSONObject root = new JSONObject ()
+			.put ( "name", "widget" )
+			.put ( "owner", JSONObject.NULL )
+			.put ( "parts", new JSONArray ()
+				.put ( new JSONObject ().put ( "id", 1 ).put ( "qty", 4 ) )
+				.put ( new JSONObject ().put ( "id", 2 ).put ( "qty", 0 ) )
+			)
+		;
+		final String before = root.toString ();
+
+		final CompiledJsonPath parts = CompiledJsonPath.cached ( "$.parts[?(@.qty > 0)]" );
+		assertSame ( parts, CompiledJsonPath.cached ( "$.parts[?(@.qty > 0)]" ) );
+
+		final List<Object> found = parts.evaluate ( root );
+		assertEquals ( 1, found.size () );
+		assertTrue ( found.get ( 0 ) instanceof JSONObject );
+		assertEquals ( 1, ((JSONObject) found.get ( 0 )).getInt ( "id" ) );
+
+		assertEquals ( 2, CompiledJsonPath.compile ( "$.parts[*].id" ).evaluate ( root ).size () );
+		assertEquals ( "widget", CompiledJsonPath.compile ( "$.name" ).evaluate ( root ).get ( 0 ) );
+		assertNull ( CompiledJsonPath.compile ( "$.owner" ).evaluate ( root ).get ( 0 ) );
+
+		assertTrue ( CompiledJsonPath.compile ( "$.name" ).matches ( root ) );
+		assertFalse ( CompiledJsonPath.compile ( "$.color" ).matches ( root ) );
+		assertFalse ( CompiledJsonPath.compile ( "$.parts[?(@.qty > 10)]" ).matches ( root ) );
+
+		// evaluation doesn't change the document
+		assertEquals ( before, root.toString () );
+	}
+
+	@Test
+	public void testInvalidPath ()
+	{
+		try
+		{
+			CompiledJsonPath.compile ( "$.parts[?(@.qty > 0" );
+			fail ( "expected an invalid path" );
+		}
+		catch ( IllegalArgumentException x )
+		{
+			// expected
+		}
 	}
 }
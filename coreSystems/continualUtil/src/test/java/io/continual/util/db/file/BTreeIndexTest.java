@@ -0,0 +1,136 @@
+package io.continual.util.db.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class BTreeIndexTest extends TestCase
+{
+	private static File getTestFile () throws IOException
+	{
+		final File tmp = File.createTempFile ( "btreeTest.", ".rrbf" );
+		tmp.deleteOnExit ();
+		BlockFileJournal.journalFileFor ( tmp ).deleteOnExit ();
+		BlockFile.initialize ( tmp, 256 );
+		return tmp;
+	}
+
+	private static void assertSame ( TreeMap<String,Long> expect, BTreeIndex index ) throws IOException
+	{
+		assertEquals ( expect, index.entriesWithPrefix ( "" ) );
+		for ( Map.Entry<String,Long> e : expect.entrySet () )
+		{
+			assertEquals ( e.getValue ().longValue (), index.get ( e.getKey () ) );
+		}
+	}
+
+	@Test
+	public void testEmpty () throws IOException
+	{
+		try ( BlockFile bf = new BlockFile ( getTestFile () ) )
+		{
+			final BTreeIndex index = new BTreeIndex ( bf, BTreeIndex.create ( bf ) );
+			assertEquals ( BTreeIndex.kNotFound, index.get ( "foo" ) );
+			assertFalse ( index.remove ( "foo" ) );
+			assertTrue ( index.keysWithPrefix ( "" ).isEmpty () );
+		}
+	}
+
+	@Test
+	public void testManyKeys () throws IOException
+	{
+		final File tmp = getTestFile ();
+		final TreeMap<String,Long> expect = new TreeMap<> ();
+		final Random r = new Random ( 1234 );
+
+		final long root;
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			root = BTreeIndex.create ( bf );
+
+			// a small fanout makes for a deep tree
+			final BTreeIndex index = new BTreeIndex ( bf, root, 4, 8 );
+			for ( int i=0; i<2000; i++ )
+			{
+				final String key = "k" + r.nextInt ( 1500 );
+				if ( r.nextInt ( 4 ) == 0 )
+				{
+					assertEquals ( expect.remove ( key ) != null, index.remove ( key ) );
+				}
+				else
+				{
+					expect.put ( key, (long) i );
+					index.put ( key, i );
+				}
+			}
+			assertSame ( expect, index );
+		}
+
+		// nodes are read from the file on reopen
+		try ( BlockFile bf = new BlockFile ( tmp, false ) )
+		{
+			assertSame ( expect, new BTreeIndex ( bf, root ) );
+		}
+	}
+
+	@Test
+	public void testBulkCreate () throws IOException
+	{
+		try ( BlockFile bf = new BlockFile ( getTestFile () ) )
+		{
+			final TreeMap<String,Long> expect = new TreeMap<> ();
+			for ( int i=0; i<5000; i++ )
+			{
+				expect.put ( "key" + i, (long) i );
+			}
+
+			final BTreeIndex index = new BTreeIndex ( bf, BTreeIndex.create ( bf, expect ) );
+			assertSame ( expect, index );
+
+			// and it takes changes like any other index
+			for ( int i=5000; i<5500; i++ )
+			{
+				expect.put ( "key" + i, (long) i );
+				index.put ( "key" + i, i );
+			}
+			expect.remove ( "key42" );
+			index.remove ( "key42" );
+			assertSame ( expect, index );
+		}
+	}
+
+	@Test
+	public void testPrefix () throws IOException
+	{
+		try ( BlockFile bf = new BlockFile ( getTestFile () ) )
+		{
+			final BTreeIndex index = new BTreeIndex ( bf, BTreeIndex.create ( bf ), 4, 8 );
+			final String[] sections = { "groups", "users", "usersByName" };
+			for ( String section : sections )
+			{
+				for ( int i=0; i<50; i++ )
+				{
+					index.put ( section + "\u0000" + i, i );
+				}
+			}
+
+			final ArrayList<String> expect = new ArrayList<> ();
+			expect.add ( "users\u00001" );
+			for ( int i=10; i<20; i++ )
+			{
+				expect.add ( "users\u0000" + i );
+			}
+			assertEquals ( expect, index.keysWithPrefix ( "users\u00001" ) );
+			assertEquals ( 50, index.keysWithPrefix ( "users\u0000" ).size () );
+			assertEquals ( 100, index.keysWithPrefix ( "users" ).size () );
+			assertTrue ( index.keysWithPrefix ( "x" ).isEmpty () );
+		}
+	}
+}
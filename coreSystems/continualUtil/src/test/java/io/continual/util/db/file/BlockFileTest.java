@@ -4,7 +4,11 @@ package io.continual.util.db.file;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
@@ -16,6 +20,7 @@ public class BlockFileTest extends TestCase
 	{
 		final File tmp = File.createTempFile ( "rrbfTest.", ".rrbf" );
 		tmp.deleteOnExit ();
+		BlockFileJournal.journalFileFor ( tmp ).deleteOnExit ();
 		return tmp;
 	}
 
@@ -80,7 +85,7 @@ public class BlockFileTest extends TestCase
 		BlockFile.initialize ( tmp, 32 );
 
 		BlockFile bf = new BlockFile ( tmp );
-		final byte[] in = getBytes ( 48 );	// given 8 byte overhead, that's 2 blocks exactly
+		final byte[] in = getBytes ( 48 );	// given 8 byte overhead, and the tail pointer in the first block, that's 3 blocks
 		final long address = bf.create ( in );
 		bf.close ();
 
@@ -98,7 +103,7 @@ public class BlockFileTest extends TestCase
 		BlockFile.initialize ( tmp, 32 );
 
 		BlockFile bf = new BlockFile ( tmp );
-		final byte[] in = getBytes ( 48 );	// given 8 byte overhead, that's 2 blocks exactly
+		final byte[] in = getBytes ( 48 );	// given 8 byte overhead, and the tail pointer in the first block, that's 3 blocks
 		final long address = bf.create ( in );
 		bf.close ();
 
@@ -134,4 +139,294 @@ public class BlockFileTest extends TestCase
 		assertArrayEq ( in, bb, 24, 24 );
 		bf.close ();
 	}
+
+	@Test
+	public void testAppendAcrossBlocks () throws IOException
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 32 );
+
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			final byte[] in = getBytes ( 10 );
+			final long address = bf.create ( in );
+			final long other = bf.create ( in );
+
+			final ByteArrayOutputStream expect = new ByteArrayOutputStream ();
+			expect.write ( in );
+			for ( int i=0; i<10; i++ )
+			{
+				final byte[] more = getBytes ( 7 * i + 1 );
+				bf.append ( address, more );
+				expect.write ( more );
+			}
+			assertTrue ( Arrays.equals ( expect.toByteArray (), bf.read ( address ) ) );
+			assertTrue ( Arrays.equals ( in, bf.read ( other ) ) );
+		}
+	}
+
+	@Test
+	public void testBlocksTooSmallForTailPointer () throws IOException
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 15 );
+
+		// each block holds 7 bytes, and appends walk the chain
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			final long address = bf.create ( getBytes ( 10 ) );
+			bf.append ( address, getBytes ( 12 ) );
+			assertEquals ( 4 * 15 + 32, tmp.length () );
+		}
+		try ( BlockFile bf = new BlockFile ( tmp, false ) )
+		{
+			final byte[] bb = bf.read ( 32 );
+			assertEquals ( 22, bb.length );
+			assertArrayEq ( getBytes ( 10 ), bb, 0, 10 );
+			assertArrayEq ( getBytes ( 12 ), bb, 10, 12 );
+		}
+	}
+
+	@Test
+	public void testDeleteAndReuse () throws IOException
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 32 );
+
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			final long a = bf.create ( getBytes ( 100 ) );
+			final long b = bf.create ( getBytes ( 5 ) );
+			final long lengthBefore = tmp.length ();
+
+			bf.delete ( a );
+			final long c = bf.create ( getBytes ( 90 ) );
+			assertEquals ( a, c );
+			assertEquals ( lengthBefore, tmp.length () );
+
+			// shrinking a record frees blocks that the next record picks up
+			bf.overwrite ( c, getBytes ( 3 ) );
+			bf.create ( getBytes ( 40 ) );
+			assertEquals ( lengthBefore, tmp.length () );
+
+			assertTrue ( Arrays.equals ( getBytes ( 3 ), bf.read ( c ) ) );
+			assertTrue ( Arrays.equals ( getBytes ( 5 ), bf.read ( b ) ) );
+		}
+	}
+
+	@Test
+	public void testBatch () throws IOException
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 32 );
+
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			final long a = bf.create ( getBytes ( 10 ) );
+			final long[] created = new long [ 2 ];
+			bf.inBatch ( new BlockFile.BatchWork ()
+			{
+				@Override
+				public void run ( BlockFile.Batch batch ) throws IOException
+				{
+					created[0] = batch.create ( getBytes ( 50 ) );
+					created[1] = batch.create ( getBytes ( 5 ) );
+					batch.overwrite ( created[0], getBytes ( 70 ) );
+					batch.delete ( a );
+				}
+			} );
+			assertTrue ( Arrays.equals ( getBytes ( 70 ), bf.read ( created[0] ) ) );
+			assertTrue ( Arrays.equals ( getBytes ( 5 ), bf.read ( created[1] ) ) );
+
+			// a batch that fails leaves the file as it was
+			final long lengthBefore = tmp.length ();
+			try
+			{
+				bf.inBatch ( new BlockFile.BatchWork ()
+				{
+					@Override
+					public void run ( BlockFile.Batch batch ) throws IOException
+					{
+						batch.create ( getBytes ( 200 ) );
+						batch.overwrite ( created[1], getBytes ( 1 ) );
+						throw new IOException ( "stop" );
+					}
+				} );
+				fail ( "expected an exception" );
+			}
+			catch ( IOException x )
+			{
+				assertEquals ( "stop", x.getMessage () );
+			}
+			assertEquals ( lengthBefore, tmp.length () );
+			assertTrue ( Arrays.equals ( getBytes ( 5 ), bf.read ( created[1] ) ) );
+		}
+	}
+
+	@Test
+	public void testPasswordAppend () throws IOException
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 64 );
+
+		try ( BlockFile bf = new BlockFile ( tmp, true, "secret" ) )
+		{
+			final long address = bf.create ( getBytes ( 30 ) );
+			bf.append ( address, getBytes ( 80 ) );
+
+			final byte[] result = bf.read ( address );
+			assertEquals ( 110, result.length );
+			assertArrayEq ( getBytes ( 80 ), result, 30, 80 );
+		}
+	}
+
+	@Test
+	public void testJournalReplay () throws IOException
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 64 );
+
+		final long address;
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			address = bf.create ( "before".getBytes ( Charset.forName ( "UTF-8" ) ) );
+		}
+
+		// a journaled change that never reached the file, as if the process died applying it
+		final LinkedList<BlockFileJournal.Entry> entries = new LinkedList<> ();
+		entries.add ( new BlockFileJournal.Entry ( address, new byte[] { 0, 0, 0, 0, 0, 0, 0, 5 } ) );
+		entries.add ( new BlockFileJournal.Entry ( address + 16, "after".getBytes ( Charset.forName ( "UTF-8" ) ) ) );
+		try ( BlockFileJournal j = new BlockFileJournal ( tmp, true ) )
+		{
+			j.write ( entries );
+		}
+		try ( BlockFile bf = new BlockFile ( tmp, false ) )
+		{
+			assertEquals ( "after", new String ( bf.read ( address ), Charset.forName ( "UTF-8" ) ) );
+		}
+		assertEquals ( 0, BlockFileJournal.journalFileFor ( tmp ).length () );
+
+		// a journal that was cut off is ignored
+		final byte[] encoded = BlockFileJournal.encode ( entries );
+		try ( RandomAccessFile raf = new RandomAccessFile ( BlockFileJournal.journalFileFor ( tmp ), "rw" ) )
+		{
+			raf.write ( Arrays.copyOf ( encoded, encoded.length - 3 ) );
+		}
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			bf.overwrite ( address, "again".getBytes ( Charset.forName ( "UTF-8" ) ) );
+		}
+		try ( BlockFile bf = new BlockFile ( tmp, false ) )
+		{
+			assertEquals ( "again", new String ( bf.read ( address ), Charset.forName ( "UTF-8" ) ) );
+		}
+	}
+
+	@Test
+	public void testConcurrentMappedReads () throws Exception
+	{
+		final File tmp = getTestFile ();
+		BlockFile.initialize ( tmp, 128 );
+
+		try ( BlockFile bf = new BlockFile.Builder ().usingFile ( tmp ).forWrites ().memoryMapped ().syncingWrites ( false ).build () )
+		{
+			final long[] addrs = new long [ 200 ];
+			for ( int i=0; i<addrs.length; i++ )
+			{
+				addrs[i] = bf.create ( getBytes ( i * 3 ) );
+			}
+
+			final AtomicReference<Throwable> failure = new AtomicReference<> ();
+			final Thread[] readers = new Thread [ 4 ];
+			for ( int t=0; t<readers.length; t++ )
+			{
+				readers[t] = new Thread ( () ->
+				{
+					try
+					{
+						for ( int round=0; round<20; round++ )
+						{
+							for ( int i=0; i<addrs.length; i++ )
+							{
+								if ( !Arrays.equals ( getBytes ( i * 3 ), bf.read ( addrs[i] ) ) )
+								{
+									throw new IllegalStateException ( "bad read at " + i );
+								}
+							}
+						}
+					}
+					catch ( Throwable x )
+					{
+						failure.set ( x );
+					}
+				} );
+				readers[t].start ();
+			}
+
+			// grow the file while they read
+			for ( int i=0; i<200; i++ )
+			{
+				bf.create ( getBytes ( 300 ) );
+			}
+			for ( Thread t : readers )
+			{
+				t.join ();
+			}
+			assertNull ( failure.get () );
+		}
+	}
+
+	@Test
+	public void testUpgradeFromV1 () throws IOException
+	{
+		final File tmp = getTestFile ();
+		final int blockSize = 32;
+		final long header = 32;
+
+		// a 1.0 file: a 40 byte record in blocks 0 and 1, a 10 byte record in block 2, and block 3 deleted
+		try ( RandomAccessFile raf = new RandomAccessFile ( tmp, "rw" ) )
+		{
+			raf.write ( "rrbf".getBytes ( Charset.forName ( "UTF-8" ) ) );
+			raf.writeInt ( 1 );
+			raf.writeInt ( 0 );
+			raf.writeInt ( blockSize );
+			raf.writeLong ( header + 3 * blockSize );
+			raf.write ( new byte [ 8 ] );
+
+			final byte[] a = getBytes ( 40 );
+			raf.writeLong ( -1 * ( header + blockSize ) );
+			raf.write ( a, 0, 24 );
+			raf.writeLong ( 16 );
+			raf.write ( Arrays.copyOfRange ( a, 24, 48 ) );
+
+			raf.writeLong ( 10 );
+			raf.write ( Arrays.copyOf ( getBytes ( 10 ), 24 ) );
+
+			raf.writeLong ( 0 );
+			raf.write ( new byte [ 24 ] );
+		}
+
+		// read-only access works on the old format
+		try ( BlockFile bf = new BlockFile ( tmp, false ) )
+		{
+			assertArrayEq ( getBytes ( 40 ), bf.read ( header ) );
+		}
+
+		// writing upgrades it
+		try ( BlockFile bf = new BlockFile ( tmp ) )
+		{
+			assertArrayEq ( getBytes ( 40 ), bf.read ( header ) );
+			assertArrayEq ( getBytes ( 10 ), bf.read ( header + 2 * blockSize ) );
+
+			bf.append ( header + 2 * blockSize, getBytes ( 20 ) );
+			bf.create ( getBytes ( 5 ) );
+		}
+		assertTrue ( new File ( tmp.getPath () + ".v1" ).delete () );
+
+		try ( BlockFile bf = new BlockFile ( tmp, false ) )
+		{
+			assertArrayEq ( getBytes ( 40 ), bf.read ( header ) );
+			assertEquals ( 30, bf.read ( header + 2 * blockSize ).length );
+		}
+	}
 }
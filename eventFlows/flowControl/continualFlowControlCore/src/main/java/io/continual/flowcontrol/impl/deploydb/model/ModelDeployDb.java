@@ -3,6 +3,7 @@ package io.continual.flowcontrol.impl.deploydb.model;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -124,6 +125,20 @@ public class ModelDeployDb extends SimpleService implements FlowControlDeploymen
 			final ModelPathListPage pathList = fModel.listChildrenOfPath ( mrc, path );	// FIXME: does this check READ rights already?
 
 			final LinkedList<FlowControlDeploymentRecord> result = new LinkedList<> ();
+
+			// read the user's groups once for the whole list
+			final Identity user = fccc.getUser ();
+			final String userId = user == null ? null : user.getId ();
+			final Set<String> groups;
+			try
+			{
+				groups = user == null ? null : user.getGroupIds ();
+			}
+			catch ( IamSvcException e )
+			{
+				throw new DeployDbException ( e );
+			}
+
 			if ( pathList != null )
 			{
 				for ( Path p : pathList )
@@ -131,7 +146,7 @@ public class ModelDeployDb extends SimpleService implements FlowControlDeploymen
 					try
 					{
 						final FlowControlDeploymentRecord deployment = internalLoadDeployment ( mrc, p.getItemName ().toString () );
-						if ( deployment != null && deployment.getAccessControlList ().canUser ( fccc.getUser (), AccessControlList.READ ) )
+						if ( deployment != null && deployment.getAccessControlList ().canUser ( userId, groups, AccessControlList.READ ) )
 						{
 							result.add ( deployment );
 						}
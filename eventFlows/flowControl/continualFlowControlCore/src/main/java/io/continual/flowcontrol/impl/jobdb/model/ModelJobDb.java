@@ -2,6 +2,7 @@ package io.continual.flowcontrol.impl.jobdb.model;
 
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.Set;
 
 import org.json.JSONObject;
 
@@ -56,6 +57,20 @@ public class ModelJobDb extends SimpleService implements FlowControlJobDb
 			final ModelPathListPage pathList = fModel.listChildrenOfPath ( mrc, path );	// FIXME: does this check READ rights already?
 
 			final LinkedList<FlowControlJob> result = new LinkedList<> ();
+
+			// read the user's groups once for the whole list
+			final Identity user = fccc.getUser ();
+			final String userId = user == null ? null : user.getId ();
+			final Set<String> groups;
+			try
+			{
+				groups = user == null ? null : user.getGroupIds ();
+			}
+			catch ( IamSvcException e )
+			{
+				throw new ServiceException ( e );
+			}
+
 			if ( pathList != null )
 			{
 				for ( Path p : pathList )
@@ -63,7 +78,7 @@ public class ModelJobDb extends SimpleService implements FlowControlJobDb
 					try
 					{
 						final ModelJob job = internalLoadJob ( mrc, p.getItemName ().toString () );
-						if ( job != null && job.getAccessControlList ().canUser ( fccc.getUser (), AccessControlList.READ ) )
+						if ( job != null && job.getAccessControlList ().canUser ( userId, groups, AccessControlList.READ ) )
 						{
 							result.add ( job );
 						}
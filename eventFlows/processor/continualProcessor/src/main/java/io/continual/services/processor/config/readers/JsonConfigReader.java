@@ -42,6 +42,7 @@ import io.continual.services.processor.engine.model.Program;
 import io.continual.services.processor.engine.model.Rule;
 import io.continual.services.processor.engine.model.Sink;
 import io.continual.services.processor.engine.model.Source;
+import io.continual.services.processor.engine.model.SourceParallelism;
 import io.continual.services.processor.service.ProcessingService;
 import io.continual.util.data.json.JsonUtil;
 import io.continual.util.data.json.JsonVisitor;
@@ -51,6 +52,7 @@ import io.continual.util.data.json.JsonVisitor.ObjectVisitor;
 public class JsonConfigReader implements ConfigReader
 {
 	public static final String kEvalOnLoad = "evalOnLoad";
+	public static final String kTimingSampleEvery = "timingSampleEvery";
 	
 	/**
 	 * Read a program from a set of named resources containing JSON configurations
@@ -147,6 +149,7 @@ public class JsonConfigReader implements ConfigReader
 		pkgs.addAll ( getStandardPackages() );
 
 		final boolean defEvalBlocksOnLoad = programJson.optBoolean ( kEvalOnLoad, true ); 
+		final int timingSampleEvery = programJson.optInt ( kTimingSampleEvery, 1 );
 
 		// read program packages
 		JsonVisitor.forEachElement ( programJson.optJSONArray ( "packages" ), new ArrayVisitor<String,ConfigReadException> ()
@@ -220,7 +223,9 @@ public class JsonConfigReader implements ConfigReader
 			@Override
 			public boolean visit ( String pipelineName, JSONArray rules ) throws ConfigReadException
 			{
-				final Pipeline pl = readPipeline ( rules, pkgs, clc, defEvalBlocksOnLoad );
+				final Pipeline pl = readPipeline ( rules, pkgs, clc, defEvalBlocksOnLoad )
+					.sampleTimingEvery ( timingSampleEvery )
+				;
 				p.addPipeline ( pipelineName, pl );
 				log.info ( "\twith pipeline {}...", pipelineName );
 
@@ -353,6 +358,17 @@ public class JsonConfigReader implements ConfigReader
 		p.addSource ( srcName, src );
 		log.info ( "\twith source {}...", srcName );
 
+		final JSONObject parallelBlock = source.optJSONObject ( "parallel" );
+		if ( parallelBlock != null )
+		{
+			final SourceParallelism sp = SourceParallelism.builder ()
+				.readingFrom ( parallelBlock )
+				.build ()
+			;
+			p.setParallelismFor ( srcName, sp );
+			log.info ( "\t\twith {} workers...", sp.getWorkers () );
+		}
+
 		JsonVisitor.forEachElement ( source.optJSONObject ( "services" ), new ObjectVisitor<JSONObject,BuildFailure> ()
 		{
 			@Override
@@ -21,6 +21,7 @@ import org.json.JSONObject;
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
 import io.continual.services.processor.engine.model.Filter;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 
 public class RangeLimit implements Filter
@@ -28,6 +29,7 @@ public class RangeLimit implements Filter
 	public RangeLimit ( String key, double min, double max )
 	{
 		fKey = key;
+		fKeySpec = FieldSpec.fromString ( fKey );
 		fMin = min;
 		fMax = max;
 	}
@@ -35,6 +37,7 @@ public class RangeLimit implements Filter
 	public RangeLimit ( ConfigLoadContext sc, JSONObject config ) throws BuildFailure
 	{
 		fKey = config.getString ( "key" );
+		fKeySpec = FieldSpec.fromString ( fKey );
 		fMin = config.optDouble ( "min" );
 		fMax = config.optDouble ( "max" );
 	}
@@ -54,7 +57,7 @@ public class RangeLimit implements Filter
 	@Override
 	public boolean passes ( MessageProcessingContext ctx )
 	{
-		final double val = ctx.getMessage ().getDouble ( fKey, Double.NaN );
+		final double val = ctx.getMessage ().getDouble ( fKeySpec, Double.NaN );
 
 		if ( Double.isNaN ( val ) ) return false;
 		if ( !Double.isNaN ( fMin ) && val < fMin ) return false;
@@ -64,6 +67,7 @@ public class RangeLimit implements Filter
 	}
 
 	private final String fKey;
+	private final FieldSpec fKeySpec;
 	private final double fMin;
 	private final double fMax;
 }
@@ -1,15 +1,16 @@
 package io.continual.services.processor.engine.library.processors;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedList;
 
 import org.json.JSONObject;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
+import io.continual.util.collections.LruCache;
 import io.continual.util.data.json.JsonVisitor;
 
 public class CollapseRecords implements Processor
@@ -17,19 +18,41 @@ public class CollapseRecords implements Processor
 	public CollapseRecords ()
 	{
 		fKeys = new LinkedList<> ();
-		fLastRecord = 0;
+
+		// the last record is tracked per partition key so that a source processed by partitioned
+		// workers sees each key's (in-order) sequence of records. Keys that go quiet are dropped
+		// once there are too many to track.
+		fLastRecord = new LruCache<> ( kDefaultMaxKeys );
 	}
 
 	public CollapseRecords ( ConfigLoadContext sc, JSONObject config ) throws BuildFailure
 	{
 		this ();
 
-		fKeys.addAll ( JsonVisitor.arrayToList ( config.optJSONArray ( "keys" ) ) );
+		fLastRecord.setMaxSize ( config.optLong ( "maxKeys", kDefaultMaxKeys ) );
+		for ( String key : JsonVisitor.arrayToList ( config.optJSONArray ( "keys" ) ) )
+		{
+			fKeys.add ( FieldSpec.fromString ( key ) );
+		}
 	}
 
 	public CollapseRecords onKey ( String... keyFields )
 	{
-		Collections.addAll ( fKeys, keyFields );
+		for ( String key : keyFields )
+		{
+			fKeys.add ( FieldSpec.fromString ( key ) );
+		}
+		return this;
+	}
+
+	/**
+	 * Limit the number of partition keys tracked. When a key is dropped, its next record isn't collapsed.
+	 * @param maxKeys
+	 * @return this processor
+	 */
+	public CollapseRecords trackingAtMost ( long maxKeys )
+	{
+		fLastRecord.setMaxSize ( maxKeys );
 		return this;
 	}
 
@@ -39,20 +62,22 @@ public class CollapseRecords implements Processor
 		if ( fKeys == null ) return;
 
 		final ArrayList<String> vals = new ArrayList<> ();
-		for ( String key : fKeys )
+		for ( FieldSpec key : fKeys )
 		{
-			vals.add ( context.getMessage ().getString ( key ) );
+			vals.add ( context.getMessage ().getString ( key, "" ) );
 		}
 
-		int valHash = vals.hashCode ();
-		if ( valHash == fLastRecord )
+		final int valHash = vals.hashCode ();
+		final String partitionKey = context.getPartitionKey ();
+		final Integer lastHash = fLastRecord.put ( partitionKey == null ? "" : partitionKey, valHash );
+		if ( valHash == ( lastHash == null ? 0 : lastHash ) )
 		{
 			context.stopProcessing ();
 		}
-
-		fLastRecord = valHash;
 	}
 
-	private final LinkedList<String> fKeys;
-	private int fLastRecord;
+	private final LinkedList<FieldSpec> fKeys;
+	private final LruCache<String,Integer> fLastRecord;
+
+	private static final long kDefaultMaxKeys = 100000;
 }
@@ -26,6 +26,7 @@ import org.json.JSONObject;
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
 import io.continual.services.processor.engine.model.Message;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
 
@@ -66,6 +67,8 @@ public class DateFormat implements Processor
 			}
 
 			fToField = config.optString ( "to", null );
+			fFromSpec = FieldSpec.fromString ( fFromField );
+			fToSpec = fToField == null ? fFromSpec : FieldSpec.fromString ( fToField );
 			fTargetFormat = config.getString ( "toFormat" );
 			if ( fTargetFormat.startsWith ( "#sec" ) )
 			{
@@ -95,7 +98,7 @@ public class DateFormat implements Processor
 		try
 		{
 			final Message msg = context.getMessage ();
-			final String fromVal = msg.getString ( fFromField );
+			final String fromVal = msg.getString ( fFromSpec, "" );
 	
 			long epochMs = 0L;
 			switch ( fFromType )
@@ -139,8 +142,7 @@ public class DateFormat implements Processor
 					break;
 			}
 	
-			final String to = fToField == null ? fFromField : fToField;
-			msg.putValue ( to, result );
+			msg.putValue ( fToSpec, result );
 		}
 		catch ( NumberFormatException x )
 		{
@@ -157,4 +159,7 @@ public class DateFormat implements Processor
 	private final DateFormatType fToType;
 	private final String fTargetFormat;
 	private final SimpleDateFormat fToFormatter;
+
+	private final FieldSpec fFromSpec;
+	private final FieldSpec fToSpec;
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
 
@@ -19,13 +20,17 @@ public class MapFields implements Processor
 	
 	public MapFields onKey ( String... keyFields )
 	{
-		fKeys = keyFields;
+		fKeys = new FieldSpec [ keyFields.length ];
+		for ( int i=0; i<keyFields.length; i++ )
+		{
+			fKeys[i] = FieldSpec.fromString ( keyFields[i] );
+		}
 		return this;
 	}
 
 	public MapFields toField ( String field )
 	{
-		fToField = field;
+		fToField = FieldSpec.fromString ( field );
 		return this;
 	}
 
@@ -46,9 +51,9 @@ public class MapFields implements Processor
 		if ( fKeys == null || fToField == null || fLookup == null ) return;
 
 		final ArrayList<String> vals = new ArrayList<> ();
-		for ( String key : fKeys )
+		for ( FieldSpec key : fKeys )
 		{
-			vals.add ( context.getMessage ().getString ( key ) );
+			vals.add ( context.getMessage ().getString ( key, "" ) );
 		}
 
 		int valHash = vals.hashCode ();
@@ -62,8 +67,8 @@ public class MapFields implements Processor
 		context.getMessage ().putValue ( fToField, result );
 	}
 
-	private String[] fKeys;
-	private String fToField;
+	private FieldSpec[] fKeys;
+	private FieldSpec fToField;
 	private ValueLookup fLookup;
 	private final HashMap<Integer,String> fMap;
 }
@@ -20,6 +20,7 @@ import org.json.JSONObject;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
 
@@ -27,16 +28,16 @@ public class Trim implements Processor
 {
 	public Trim ( ConfigLoadContext sc, JSONObject config ) throws BuildFailure
 	{
-		fFrom = config.getString ( "from" );
-		fTo = config.optString ( "to", fFrom );
+		fFrom = FieldSpec.fromString ( config.getString ( "from" ) );
+		fTo = FieldSpec.fromString ( config.optString ( "to", fFrom.toString () ) );
 	}
 
 	@Override
 	public void process ( MessageProcessingContext context )
 	{
-		context.getMessage ().putValue ( fTo, context.getMessage().getString ( fFrom ).trim () );
+		context.getMessage ().putValue ( fTo, context.getMessage().getString ( fFrom, "" ).trim () );
 	}
 
-	private final String fFrom;
-	private final String fTo;
+	private final FieldSpec fFrom;
+	private final FieldSpec fTo;
 }
@@ -22,6 +22,7 @@ import org.json.JSONObject;
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
 import io.continual.services.processor.engine.model.Message;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
 import io.continual.util.data.TypeConvertor;
@@ -48,6 +49,9 @@ public class TypeChange implements Processor
 			fTargetType = Type.valueOf ( config.getString ( "toType" ).toUpperCase () );
 
 			fToField = config.optString ( "to", null );
+
+			fFromSpec = FieldSpec.fromString ( fFromField );
+			fToSpec = fToField == null ? fFromSpec : FieldSpec.fromString ( fToField );
 		}
 		catch ( IllegalArgumentException | JSONException e )
 		{
@@ -59,8 +63,8 @@ public class TypeChange implements Processor
 	public void process ( MessageProcessingContext context )
 	{
 		final Message msg = context.getMessage ();
-		final String fromVal = msg.getString ( fFromField );
-		final String to = fToField == null ? fFromField : fToField;
+		final String fromVal = msg.getString ( fFromSpec, "" );
+		final FieldSpec to = fToSpec;
 		switch ( fTargetType )
 		{
 			case BOOLEAN:
@@ -81,4 +85,6 @@ public class TypeChange implements Processor
 	private final String fFromField;
 	private final String fToField;
 	private final Type fTargetType;
+	private final FieldSpec fFromSpec;
+	private final FieldSpec fToSpec;
 }
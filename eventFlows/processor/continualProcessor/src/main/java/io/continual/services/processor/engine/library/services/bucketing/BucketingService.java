@@ -270,6 +270,7 @@ public class BucketingService extends SimpleProcessingService
 	{
 		if ( fRptTo == null ) return;
 
+		final ArrayList<JSONObject> out = new ArrayList<> ();
 		final LinkedList<Long> timestamps = new LinkedList<> ( fSet.keySet () );
 		Collections.sort ( timestamps );
 
@@ -284,7 +285,7 @@ public class BucketingService extends SimpleProcessingService
 				for ( long tsExpected : Period.getTimestampsBetween ( fSize, fLastTs, ts ) )
 				{
 					final Message msg = Message.adoptJsonAsMessage ( new JSONObject().put ( "timestamp", tsExpected ).put ( "value", 0 ) );
-					fRptTo.submit ( msg.toJson () );
+					out.add ( msg.toJson () );
 				}
 			}
 
@@ -297,10 +298,13 @@ public class BucketingService extends SimpleProcessingService
 			for ( String key : keys )
 			{
 				final Message msg = entriesAtTime.get ( key );
-				fRptTo.submit ( msg.toJson () );
+				out.add ( msg.toJson () );
 			}
 		}
 
+		// submit the flushed buckets as one batch
+		fRptTo.submitAll ( out );
+
 		fSet.clear ();
 	}
 
@@ -48,7 +48,7 @@ public class JsonObjectStreamSink implements Sink
 	}
 
 	@Override
-	public void process ( MessageProcessingContext mc )
+	public synchronized void process ( MessageProcessingContext mc )
 	{
 		fPending.add ( mc.getMessage ().toJson () );
 	}
@@ -58,7 +58,7 @@ public class JsonObjectStreamSink implements Sink
 	{
 	}
 
-	public List<JSONObject> getList ()
+	public synchronized List<JSONObject> getList ()
 	{
 		return fPending;
 	}
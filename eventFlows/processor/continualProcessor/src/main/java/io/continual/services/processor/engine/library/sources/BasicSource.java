@@ -45,11 +45,17 @@ public abstract class BasicSource implements Source
 	public synchronized void requeue ( MessageAndRouting msgAndRoute )
 	{
 		fRequeued.add ( msgAndRoute );
+		notifyAll ();
 	}
 
 	/**
-	 * This basic implementation polls the internalGetNextMessage call periodically until it returns a message, or 
-	 * the operation time limit is reached. It also pulls from the requeue list with priority.
+	 * This basic implementation calls internalGetNextMessage until it returns a message, or 
+	 * the operation time limit is reached. It also pulls from the requeue list with priority.<br>
+	 * <br>
+	 * Between calls, the thread waits on this source's monitor. A source that signals arrivals
+	 * (see signalsArrivals()) is waited on until it signals or the time limit is reached. Other
+	 * sources are polled through the backoff times from getBackoffTimes(). In either case, a
+	 * requeue or the end of the stream wakes the thread immediately.
 	 */
 	@Override
 	public final MessageAndRouting getNextMessage ( StreamProcessingContext spc, long timeUnit, TimeUnit units ) throws IOException, InterruptedException
@@ -71,16 +77,26 @@ public abstract class BasicSource implements Source
 				// go to the stream
 				final MessageAndRouting mr = internalGetNextMessage ( spc );
 				if ( mr != null ) return mr;
-			}
-
-			final long remainingMs = Math.max ( 0, endByMs - Clock.now () );
-			if ( remainingMs > 0 )
-			{
-				final long backoffTimeMs = Math.min ( remainingMs, backoff [ backoffIndex++ ] );
-				if ( backoffIndex == backoff.length ) backoffIndex = 0;	// wrap
 
-				log.debug ( "... backing off {} ms", backoffTimeMs );
-				Thread.sleep ( backoffTimeMs );
+				// wait for a signal or the next poll; waiting releases the monitor, so
+				// producers can submit in the meantime
+				final long remainingMs = endByMs - Clock.now ();
+				if ( remainingMs > 0 )
+				{
+					long waitMs = remainingMs;
+					if ( !signalsArrivals () )
+					{
+						waitMs = Math.min ( remainingMs, backoff [ backoffIndex++ ] );
+						if ( backoffIndex == backoff.length ) backoffIndex = 0;	// wrap
+					}
+
+					// a zero backoff is for sources that wait inside internalGetNextMessage
+					if ( waitMs > 0 )
+					{
+						log.debug ( "... waiting up to {} ms", waitMs );
+						wait ( waitMs );
+					}
+				}
 			}
 		}
 		while ( Clock.now () < endByMs );
@@ -105,7 +121,36 @@ public abstract class BasicSource implements Source
 	 */
 	protected abstract MessageAndRouting internalGetNextMessage ( StreamProcessingContext spc ) throws IOException, InterruptedException;
 
+	/**
+	 * Does this source call onMessagesAvailable() whenever internalGetNextMessage would have a new
+	 * message to return? If so, getNextMessage waits for that signal rather than polling. Sources
+	 * that receive messages from other threads (e.g. via a submit call) should signal. Sources
+	 * that have to go and look for messages should not.
+	 * @return true if this source signals arrivals
+	 */
+	protected boolean signalsArrivals ()
+	{
+		return false;
+	}
+
+	/**
+	 * Wake any thread waiting in getNextMessage. Call this after making a message available.
+	 */
+	protected synchronized void onMessagesAvailable ()
+	{
+		notifyAll ();
+	}
+
 	private static final long[] skStdBackoffTimes = new long[] { 1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 233, 377, 610, 987 };
+	protected static final long[] skNoBackoff = new long[] { 0 };
+
+	/**
+	 * Get the times to wait between calls to internalGetNextMessage when it has no message, for
+	 * a source that doesn't signal arrivals. The times repeat after the last one. A source that
+	 * waits for messages itself inside internalGetNextMessage (e.g. in a blocking poll) can
+	 * return skNoBackoff.
+	 * @return an array of wait times in milliseconds
+	 */
 	protected long[] getBackoffTimes ()
 	{
 		return skStdBackoffTimes;
@@ -135,6 +180,7 @@ public abstract class BasicSource implements Source
 	protected synchronized void noteEndOfStream ()
 	{
 		fEof = true;
+		notifyAll ();
 	}
 
 	protected String getDefaultPipelineName ()
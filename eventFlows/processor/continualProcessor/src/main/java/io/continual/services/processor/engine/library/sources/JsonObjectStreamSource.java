@@ -17,57 +17,122 @@
 package io.continual.services.processor.engine.library.sources;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collection;
 
 import org.json.JSONObject;
 
 import io.continual.builder.Builder.BuildFailure;
+import io.continual.metrics.MetricsCatalog;
+import io.continual.metrics.metricTypes.Gauge;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
 import io.continual.services.processor.engine.model.Message;
 import io.continual.services.processor.engine.model.MessageAndRouting;
 import io.continual.services.processor.engine.model.StreamProcessingContext;
+import io.continual.util.time.Clock;
 
 /**
- * A JSON object stream source.
+ * A JSON object stream source. Submitted objects wait in a ring buffer until the stream reads
+ * them.<br>
+ * <br>
+ * By default the buffer grows as needed. With "capacity" set, the buffer is bounded, and
+ * "whenFull" picks what a submit does when it's full: "block" (the default) waits for the
+ * stream to take a message, "dropOldest" discards the oldest waiting message, and "reject"
+ * refuses the new message. Don't use "block" when the stream's own pipeline submits to this
+ * source, because the pipeline would wait on itself.<br>
+ * <br>
+ * The source publishes its queue depth, the age of its oldest waiting message, and counts of
+ * dropped and rejected messages as gauges in the stream's metrics catalog, under the source's
+ * configured "name" (or "jsonObjectStream" when it has none).
  */
 public class JsonObjectStreamSource extends BasicSource
 {
+	/**
+	 * What to do with a submit when a bounded buffer is full
+	 */
+	public enum FullPolicy
+	{
+		BLOCK,
+		DROP_OLDEST,
+		REJECT
+	}
+
 	public JsonObjectStreamSource ( final ConfigLoadContext sc, JSONObject config ) throws BuildFailure
 	{
 		super ( config );
 
-		fPending = new ArrayList<JSONObject> ();
+		fCapacity = Math.max ( 0, config.optInt ( "capacity", 0 ) );
+		fPolicy = readPolicy ( config.optString ( "whenFull", FullPolicy.BLOCK.name () ) );
+
+		final int initialSize = fCapacity > 0 ? fCapacity : kInitialUnboundedSize;
+		fRing = new JSONObject [ initialSize ];
+		fEnqueuedAtMs = new long [ initialSize ];
+		fHead = 0;
+		fCount = 0;
 		fSkip = config.optInt ( "skip", 0 );
+
+		fWaitingProducers = 0;
+		fDropped = 0;
+		fRejected = 0;
+		fMetricsName = config.optString ( "name", kDefaultMetricsName );
+		fMetricsPublished = false;
 	}
 
 	/**
 	 * Submit a JSON object for processing through this source.
 	 * @param msg
+	 * @return true if the message was accepted, false if the buffer is full and the policy
+	 * is to reject, or the thread was interrupted while waiting for room
+	 */
+	public synchronized boolean submit ( JSONObject msg )
+	{
+		final boolean accepted = enqueue ( msg );
+		onMessagesAvailable ();
+		return accepted;
+	}
+
+	/**
+	 * Submit a set of JSON objects for processing through this source, in order. This takes
+	 * the source's lock once for the set rather than once per message.
+	 * @param msgs
+	 * @return the number of messages accepted
 	 */
-	public synchronized void submit ( JSONObject msg )
+	public synchronized int submitAll ( Collection<JSONObject> msgs )
 	{
-		if ( !isEof () )
+		int accepted = 0;
+		try
 		{
-			// skip records on the add (to keep EOF checks simple)
-			if ( fSkip > 0 )
+			for ( JSONObject msg : msgs )
 			{
-				fSkip--;
-				return;
+				if ( enqueue ( msg ) ) accepted++;
+				if ( Thread.currentThread ().isInterrupted () ) break;
 			}
-
-			fPending.add ( msg );
-			notify ();
 		}
-		else
+		finally
 		{
-			throw new IllegalStateException ( "Added JSON msg after close." );
+			onMessagesAvailable ();
 		}
+		return accepted;
 	}
-	
+
+	/**
+	 * Get the number of messages waiting in this source
+	 * @return the number of waiting messages
+	 */
+	public synchronized int getQueueDepth ()
+	{
+		return fCount;
+	}
+
+	@Override
+	protected boolean signalsArrivals ()
+	{
+		return true;
+	}
+
 	@Override
 	public synchronized boolean isEof ()
 	{
-		return fPending.size () == 0 && super.isEof ();
+		return fCount == 0 && super.isEof ();
 	}
 
 	@Override
@@ -79,13 +144,190 @@ public class JsonObjectStreamSource extends BasicSource
 	@Override
 	protected synchronized MessageAndRouting internalGetNextMessage ( StreamProcessingContext spc ) throws IOException, InterruptedException
 	{
-		if ( fPending.size () > 0 )
+		publishMetrics ( spc );
+
+		if ( fCount > 0 )
 		{
-			return makeDefRoutingMessage ( Message.adoptJsonAsMessage ( fPending.remove ( 0 ) ) );
+			final JSONObject msg = dequeue ();
+			if ( fWaitingProducers > 0 )
+			{
+				// wake producers waiting for room
+				notifyAll ();
+			}
+			return makeDefRoutingMessage ( Message.adoptJsonAsMessage ( msg ) );
 		}
 		return null;
 	}
 
-	private final ArrayList<JSONObject> fPending;
+	private final int fCapacity;
+	private final FullPolicy fPolicy;
+
+	private JSONObject[] fRing;
+	private long[] fEnqueuedAtMs;
+	private int fHead;
+	private int fCount;
 	private int fSkip;
+
+	private int fWaitingProducers;
+	private long fDropped;
+	private long fRejected;
+	private final String fMetricsName;
+	private boolean fMetricsPublished;
+
+	private static final int kInitialUnboundedSize = 64;
+	private static final String kDefaultMetricsName = "jsonObjectStream";
+
+	private static FullPolicy readPolicy ( String policy ) throws BuildFailure
+	{
+		final String normalized = policy.replace ( "_", "" );
+		for ( FullPolicy fp : FullPolicy.values () )
+		{
+			if ( fp.name ().replace ( "_", "" ).equalsIgnoreCase ( normalized ) )
+			{
+				return fp;
+			}
+		}
+		throw new BuildFailure ( "Unknown whenFull policy: " + policy );
+	}
+
+	// called with the lock held; returns true if the message is in the buffer (or skipped)
+	private boolean enqueue ( JSONObject msg )
+	{
+		if ( isEof () )
+		{
+			throw new IllegalStateException ( "Added JSON msg after close." );
+		}
+
+		// skip records on the add (to keep EOF checks simple)
+		if ( fSkip > 0 )
+		{
+			fSkip--;
+			return true;
+		}
+
+		if ( fCount == fRing.length )
+		{
+			if ( fCapacity == 0 )
+			{
+				grow ();
+			}
+			else if ( fPolicy == FullPolicy.DROP_OLDEST )
+			{
+				dequeue ();
+				fDropped++;
+			}
+			else if ( fPolicy == FullPolicy.REJECT )
+			{
+				fRejected++;
+				return false;
+			}
+			else if ( !awaitRoom () )
+			{
+				return false;
+			}
+		}
+
+		final int tail = ( fHead + fCount ) % fRing.length;
+		fRing[tail] = msg;
+		fEnqueuedAtMs[tail] = Clock.now ();
+		fCount++;
+		return true;
+	}
+
+	// called with the lock held; the caller makes sure there's a message
+	private JSONObject dequeue ()
+	{
+		final JSONObject msg = fRing[fHead];
+		fRing[fHead] = null;
+		fHead = ( fHead + 1 ) % fRing.length;
+		fCount--;
+		return msg;
+	}
+
+	// wait for the stream to take a message; returns false if interrupted
+	private boolean awaitRoom ()
+	{
+		fWaitingProducers++;
+		try
+		{
+			// let readers at what's already here before waiting
+			onMessagesAvailable ();
+			while ( fCount == fRing.length )
+			{
+				if ( super.isEof () )
+				{
+					throw new IllegalStateException ( "Source closed while waiting to add a JSON msg." );
+				}
+				wait ();
+			}
+			return true;
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread ().interrupt ();
+			return false;
+		}
+		finally
+		{
+			fWaitingProducers--;
+		}
+	}
+
+	private void grow ()
+	{
+		final JSONObject[] ring = new JSONObject [ fRing.length * 2 ];
+		final long[] enqueuedAtMs = new long [ ring.length ];
+		for ( int i=0; i<fCount; i++ )
+		{
+			final int from = ( fHead + i ) % fRing.length;
+			ring[i] = fRing[from];
+			enqueuedAtMs[i] = fEnqueuedAtMs[from];
+		}
+		fRing = ring;
+		fEnqueuedAtMs = enqueuedAtMs;
+		fHead = 0;
+	}
+
+	private void publishMetrics ( StreamProcessingContext spc )
+	{
+		if ( fMetricsPublished || spc == null ) return;
+		fMetricsPublished = true;
+
+		final MetricsCatalog metrics = spc.getMetrics ().getSubCatalog ( fMetricsName );
+		metrics.gauge ( "queueDepth", () -> new Gauge<Integer> ()
+		{
+			@Override
+			public Integer getValue () { return getQueueDepth (); }
+		} );
+		metrics.gauge ( "queueWaitMs", () -> new Gauge<Long> ()
+		{
+			@Override
+			public Long getValue () { return getOldestWaitMs (); }
+		} );
+		metrics.gauge ( "queueDropped", () -> new Gauge<Long> ()
+		{
+			@Override
+			public Long getValue () { return getDroppedCount (); }
+		} );
+		metrics.gauge ( "queueRejected", () -> new Gauge<Long> ()
+		{
+			@Override
+			public Long getValue () { return getRejectedCount (); }
+		} );
+	}
+
+	private synchronized long getOldestWaitMs ()
+	{
+		return fCount == 0 ? 0L : Clock.now () - fEnqueuedAtMs[fHead];
+	}
+
+	private synchronized long getDroppedCount ()
+	{
+		return fDropped;
+	}
+
+	private synchronized long getRejectedCount ()
+	{
+		return fRejected;
+	}
 }
@@ -12,9 +12,9 @@ import io.continual.services.processor.engine.model.Sink;
 import io.continual.services.processor.engine.model.Source;
 import io.continual.services.processor.engine.model.StreamProcessingContext;
 import io.continual.services.processor.engine.runtime.SerialNumberGenerator;
+import io.continual.util.data.exprEval.CompiledExpression;
 import io.continual.util.data.exprEval.ExprDataSource;
 import io.continual.util.data.exprEval.ExprDataSourceStack;
-import io.continual.util.data.exprEval.ExpressionEvaluator;
 import io.continual.util.data.json.JsonEval;
 
 public class SimpleMessageProcessingContext implements MessageProcessingContext 
@@ -76,6 +76,22 @@ public class SimpleMessageProcessingContext implements MessageProcessingContext
 		return getStreamProcessingContext().getProgram().getSinks ().get ( sinkName );
 	}
 
+	@Override
+	public String getPartitionKey ()
+	{
+		return fPartitionKey;
+	}
+
+	/**
+	 * Set the partition key for this message. The engine calls this before handing the message
+	 * to a worker.
+	 * @param key
+	 */
+	public void setPartitionKey ( String key )
+	{
+		fPartitionKey = key;
+	}
+
 	public boolean shouldContinue ()
 	{
 		return !fHaltRequested && !fSpc.failed ();
@@ -104,18 +120,12 @@ public class SimpleMessageProcessingContext implements MessageProcessingContext
 	@Override
 	public <T> T evalExpression ( String expression, Class<T> targetClass, ExprDataSource... addl )
 	{
-		final ExprDataSource eds = new ExprDataSource ()
-		{
-			@Override
-			public Object eval ( String label )
-			{
-				return JsonEval.eval ( fMsg.accessRawJson (), label );
-			}
-		};
-
-		final ExprDataSourceStack addlStack = new ExprDataSourceStack ( addl ); 
-
-		final String asString = ExpressionEvaluator.evaluateText ( expression, addlStack, eds, fEvalStack );
+		// programs evaluate the same expressions for each message, so use the shared compiled form
+		final CompiledExpression ce = CompiledExpression.cached ( expression );
+		final String asString = addl == null || addl.length == 0 ?
+			ce.evaluate ( fBaseSources ) :
+			ce.evaluate ( new ExprDataSourceStack ( addl ), fBaseSources[0], fBaseSources[1] )
+		;
 		if ( targetClass.equals ( String.class ) )
 		{
 			return (T) asString;
@@ -157,6 +167,19 @@ public class SimpleMessageProcessingContext implements MessageProcessingContext
 		fId = b.fSng.getNext ();
 		fEvalStack = b.fEvalStack;
 
+		fBaseSources = new ExprDataSource[]
+		{
+			new ExprDataSource ()
+			{
+				@Override
+				public Object eval ( String label )
+				{
+					return JsonEval.eval ( fMsg.accessRawJson (), label );
+				}
+			},
+			fEvalStack
+		};
+
 		if ( fSpc == null ) throw new BuildFailure ( "No stream processing context in message processing context." );
 	}
 
@@ -164,5 +187,7 @@ public class SimpleMessageProcessingContext implements MessageProcessingContext
 	private final String fId;
 	private final Message fMsg;
 	private final ExprDataSource fEvalStack;
+	private final ExprDataSource[] fBaseSources;	// the message, then the stream's stack
+	private String fPartitionKey = null;
 	private boolean fHaltRequested = false;
 }
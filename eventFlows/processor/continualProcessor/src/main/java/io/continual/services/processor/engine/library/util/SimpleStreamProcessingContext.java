@@ -2,6 +2,7 @@ package io.continual.services.processor.engine.library.util;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,9 +14,9 @@ import io.continual.services.processor.engine.model.MessageAndRouting;
 import io.continual.services.processor.engine.model.Program;
 import io.continual.services.processor.engine.model.Source;
 import io.continual.services.processor.engine.model.StreamProcessingContext;
+import io.continual.util.data.exprEval.CompiledExpression;
 import io.continual.util.data.exprEval.ExprDataSource;
 import io.continual.util.data.exprEval.ExprDataSourceStack;
-import io.continual.util.data.exprEval.ExpressionEvaluator;
 
 public class SimpleStreamProcessingContext implements StreamProcessingContext 
 {
@@ -84,7 +85,14 @@ public class SimpleStreamProcessingContext implements StreamProcessingContext
 	@Override
 	public StreamProcessingContext addNamedObject ( String name, Object o )
 	{
-		fObjects.put ( name, o );
+		if ( o == null )
+		{
+			fObjects.remove ( name );
+		}
+		else
+		{
+			fObjects.put ( name, o );
+		}
 		return this;
 	}
 
@@ -174,7 +182,7 @@ public class SimpleStreamProcessingContext implements StreamProcessingContext
 	@Override
 	public String evalExpression ( String expression )
 	{
-		return ExpressionEvaluator.evaluateText ( expression, fExprEvalStack );
+		return CompiledExpression.cached ( expression ).evaluate ( fExprEvalStack );
 	}
 
 	@Override
@@ -190,8 +198,8 @@ public class SimpleStreamProcessingContext implements StreamProcessingContext
 	}
 
 	private final Source fSource;
-	private final HashMap<String,Object> fObjects;
-	private boolean fFailed;
+	private final ConcurrentHashMap<String,Object> fObjects;
+	private volatile boolean fFailed;
 	private final ExprDataSource fExprEvalStack;
 	private final MetricsCatalog fMetrics;
 	private final Identity fOperator;
@@ -204,7 +212,7 @@ public class SimpleStreamProcessingContext implements StreamProcessingContext
 	{
 		fSource = b.fSource;
 		fFailed = false;
-		fObjects = new HashMap<> ();
+		fObjects = new ConcurrentHashMap<> ();
 		fExprEvalStack = b.fEvalStack;
 		fLog = b.fLog;
 		fOperator = b.fOper;
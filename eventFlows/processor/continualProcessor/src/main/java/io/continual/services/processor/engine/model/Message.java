@@ -16,12 +16,13 @@
 
 package io.continual.services.processor.engine.model;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import io.continual.util.collections.LruCache;
 import io.continual.util.data.StringUtils;
 import io.continual.util.data.json.JsonEval;
 import io.continual.util.data.json.JsonSerialized;
@@ -103,6 +104,12 @@ public class Message implements JsonSerialized
 		return fData;
 	}
 
+	/**
+	 * A field spec is a compiled field reference. Specs are immutable and can be created once
+	 * (for example, in a processor's constructor) and used for every message. Dotted specs
+	 * built from strings are interned in a bounded cache, so repeated lookups by the same string
+	 * don't re-parse it.
+	 */
 	public static class FieldSpec
 	{
 		/**
@@ -112,7 +119,14 @@ public class Message implements JsonSerialized
 		 */
 		public static FieldSpec fromString ( String key )
 		{
-			return new FieldSpec ( key, true );
+			FieldSpec result = skInterned.get ( key );
+			if ( result == null )
+			{
+				// when the cache is full, specs that haven't been used recently make room
+				result = new FieldSpec ( key, true );
+				skInterned.put ( key, result );
+			}
+			return result;
 		};
 
 		/**
@@ -126,32 +140,73 @@ public class Message implements JsonSerialized
 			return new FieldSpec ( key, false );
 		};
 
+		@Override
+		public String toString ()
+		{
+			return fKey;
+		}
+
 		private FieldSpec ( String key, boolean useDotSeps )
 		{
-			fContainers = new LinkedList<> ();
+			fKey = key;
 			if ( useDotSeps )
 			{
 				final String[] parts = key.split ( "\\." );
-				for ( int i = 0; i < parts.length - 1; i++ )
-				{
-					fContainers.add ( parts[i] );
-				}
+				fContainers = Arrays.copyOf ( parts, parts.length - 1 );
 				fField = parts [ parts.length - 1 ];
 			}
 			else
 			{
+				fContainers = new String[0];
 				fField = key;
-			}			
+			}
+			fContainerList = Arrays.asList ( fContainers );
 		}
 
 		private JSONObject getContainer ( JSONObject topLevel, boolean createIntermediates )
 		{
 			if ( topLevel == null ) return null;
-			return JsonEval.getContainer ( topLevel, fContainers, createIntermediates );
+
+			JSONObject current = topLevel;
+			for ( String part : fContainers )
+			{
+				final Object next = current.opt ( part );
+				if ( next instanceof JSONObject )
+				{
+					current = (JSONObject) next;
+				}
+				else if ( next == null )
+				{
+					if ( !createIntermediates ) return null;
+
+					final JSONObject created = new JSONObject ();
+					current.put ( part, created );
+					current = created;
+				}
+				else if ( next instanceof JSONArray )
+				{
+					// arrays have special container handling; nothing's been created yet, so start over there
+					return JsonEval.getContainer ( topLevel, fContainerList, createIntermediates );
+				}
+				else
+				{
+					if ( createIntermediates )
+					{
+						throw new IllegalArgumentException ( "Intermediate part " + part + " is not an object." );
+					}
+					return null;
+				}
+			}
+			return current;
 		}
 
-		private final LinkedList<String> fContainers;
+		private final String fKey;
+		private final String[] fContainers;
+		private final List<String> fContainerList;
 		private final String fField;
+
+		private static final int kMaxInterned = 4096;
+		private static final LruCache<String,FieldSpec> skInterned = new LruCache<> ( kMaxInterned );
 	}
 
 	/**
@@ -43,6 +43,17 @@ public interface MessageProcessingContext
 	 */
 	Message getMessage ();
 
+	/**
+	 * Get the partition key the engine assigned this message to. When a source is processed by
+	 * partitioned workers, messages with the same key are handled in order by one worker, so
+	 * processors that carry state from one message to the next should keep that state by key.
+	 * @return a partition key, or null if the message wasn't partitioned
+	 */
+	default String getPartitionKey ()
+	{
+		return null;
+	}
+
 	/**
 	 * Should the engine continue to process this message?
 	 * @return normally true, false if stopProcessing or stream context's fail has been called
@@ -18,10 +18,14 @@ package io.continual.services.processor.engine.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import io.continual.metrics.MetricsCatalog;
-import io.continual.metrics.MetricsCatalog.PathPopper;
 import io.continual.metrics.metricTypes.Timer;
+import io.continual.util.naming.Name;
+import io.continual.util.naming.Path;
 
 /**
  * A pipeline of rules.
@@ -37,11 +41,31 @@ public class Pipeline
 	{
 		fRules = new ArrayList<> ();
 		fRules.addAll ( rules );
+		fTimers = new WeakHashMap<> ();
+		fLastTimers = null;
+		fTimingSampleEvery = 1;
 	}
 
 	public Pipeline addRule ( Rule r )
 	{
 		fRules.add ( r );
+		synchronized ( fTimers )
+		{
+			fTimers.clear ();
+			fLastTimers = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Time rule and processor execution for 1 in every n messages. Use 1 to time every message
+	 * and 0 to disable timing.
+	 * @param n
+	 * @return this pipeline
+	 */
+	public Pipeline sampleTimingEvery ( int n )
+	{
+		fTimingSampleEvery = Math.max ( 0, n );
 		return this;
 	}
 
@@ -52,66 +76,172 @@ public class Pipeline
 
 	public void process ( MessageProcessingContext context )
 	{
-		final MetricsCatalog mc = context.getMetrics ();
+		final PipelineTimers timers = getTimersFor ( context );
 
 		int ruleIndex = 0;
 		for ( Rule r : fRules )
 		{
-			try ( PathPopper pp = mc.push ( "rule-" + ruleIndex++ ) )
+			final RuleTimers rt = timers == null ? null : timers.fRules [ ruleIndex ];
+			ruleIndex++;
+
+			// note that try-with-resources skips null resources, so these are no-ops without timers
+			try ( Timer.Context ruleDurCtx = rt == null ? null : rt.fTotal.time () )
 			{
-				try ( Timer.Context ruleDurCtx = mc.timer ( "total" ).time () )
+				final List<Processor> procs;
+				final Timer[] procTimers;
+	
+				final Filter f = r.getFilter ();
+				if ( f == null || f.passes ( context ) )
 				{
-					final List<Processor> procs;
-					final String procChainLabel;
-		
-					final Filter f = r.getFilter ();
-					if ( f == null || f.passes ( context ) )
-					{
-						procs = r.getThenProcs ();
-						procChainLabel = "filterPass";
-					}
-					else
-					{
-						procs = r.getElseProcs ();
-						procChainLabel = "filterFail";
-					}
+					procs = r.getThenProcs ();
+					procTimers = rt == null ? null : rt.fThens;
+				}
+				else
+				{
+					procs = r.getElseProcs ();
+					procTimers = rt == null ? null : rt.fElses;
+				}
+
+				int procIndex = 0;
+				for ( Processor p : procs )
+				{
+					final Timer procTimer = procTimers == null ? null : procTimers [ procIndex ];
+					procIndex++;
 
-					try ( PathPopper pp2 = mc.push ( procChainLabel ) )
+					try ( Timer.Context procDurCtx = procTimer == null ? null : procTimer.time () )
 					{
-						int procIndex = 0;
-						for ( Processor p : procs )
+						p.process ( context );
+						if ( !context.shouldContinue () )
 						{
-							final String procName = makeMetricsName ( p, procIndex++ );
-							try ( PathPopper pp3 = mc.push ( procName ) )
-							{
-								try ( Timer.Context procDurCtx = mc.timer ( "totalTime" ).time () )
-								{
-									p.process ( context );
-									if ( !context.shouldContinue () )
-									{
-										// break from the processor loop
-										break;
-									}
-								}
-							}
+							// break from the processor loop
+							break;
 						}
 					}
-		
-					// break from the rule loop
-					if ( !context.shouldContinue () )
-					{
-						break;
-					}
 				}
+	
+				// break from the rule loop
+				if ( !context.shouldContinue () )
+				{
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Timers for each rule and processor, resolved once per stream rather than per message. The
+	 * metric names match those produced by pushing rule and processor names onto the catalog.
+	 */
+	private static class PipelineTimers
+	{
+		public PipelineTimers ( MetricsCatalog mc, List<Rule> rules )
+		{
+			fRules = new RuleTimers [ rules.size () ];
+
+			int ruleIndex = 0;
+			for ( Rule r : rules )
+			{
+				final Path rulePath = Path.getRootPath ().makeChildItem ( Name.fromString ( "rule-" + ruleIndex ) );
+				fRules [ ruleIndex++ ] = new RuleTimers (
+					mc.timer ( rulePath.makeChildItem ( Name.fromString ( "total" ) ) ),
+					makeProcTimers ( mc, rulePath.makeChildItem ( Name.fromString ( "filterPass" ) ), r.getThenProcs () ),
+					makeProcTimers ( mc, rulePath.makeChildItem ( Name.fromString ( "filterFail" ) ), r.getElseProcs () )
+				);
 			}
 		}
+
+		private final RuleTimers[] fRules;
+
+		private static Timer[] makeProcTimers ( MetricsCatalog mc, Path chainPath, List<Processor> procs )
+		{
+			final Timer[] result = new Timer [ procs.size () ];
+			int procIndex = 0;
+			for ( Processor p : procs )
+			{
+				final Path procPath = chainPath.makeChildItem ( Name.fromString ( makeMetricsName ( p, procIndex ) ) );
+				result [ procIndex++ ] = mc.timer ( procPath.makeChildItem ( Name.fromString ( "totalTime" ) ) );
+			}
+			return result;
+		}
+	}
+
+	private static class RuleTimers
+	{
+		public RuleTimers ( Timer total, Timer[] thens, Timer[] elses )
+		{
+			fTotal = total;
+			fThens = thens;
+			fElses = elses;
+		}
+
+		private final Timer fTotal;
+		private final Timer[] fThens;
+		private final Timer[] fElses;
+	}
+
+	// the timers most recently used, so that a single stream's messages skip the map
+	private static class StreamTimers
+	{
+		public StreamTimers ( StreamProcessingContext spc, PipelineTimers timers )
+		{
+			fSpc = spc;
+			fTimers = timers;
+		}
+
+		private final StreamProcessingContext fSpc;
+		private final PipelineTimers fTimers;
+	}
+
+	private PipelineTimers getTimersFor ( MessageProcessingContext context )
+	{
+		final int sampleEvery = fTimingSampleEvery;
+		if ( sampleEvery == 0 ) return null;
+		if ( sampleEvery > 1 && ThreadLocalRandom.current ().nextInt ( sampleEvery ) != 0 ) return null;
+
+		// the metrics catalog is scoped to the stream, so timers are resolved once per stream
+		final StreamProcessingContext spc = context.getStreamProcessingContext ();
+		if ( spc == null )
+		{
+			return new PipelineTimers ( context.getMetrics (), fRules );
+		}
+
+		final StreamTimers last = fLastTimers;
+		if ( last != null && last.fSpc == spc )
+		{
+			return last.fTimers;
+		}
+
+		// streams are keyed weakly, so a finished stream's timers go when its context does
+		synchronized ( fTimers )
+		{
+			PipelineTimers timers = fTimers.get ( spc );
+			if ( timers == null )
+			{
+				timers = new PipelineTimers ( context.getMetrics (), fRules );
+				fTimers.put ( spc, timers );
+			}
+			fLastTimers = new StreamTimers ( spc, timers );
+			return timers;
+		}
+	}
+
+	// the number of streams with resolved timers
+	int getTimedStreamCount ()
+	{
+		synchronized ( fTimers )
+		{
+			return fTimers.size ();
+		}
 	}
 
 	private static String makeMetricsName ( Processor p, int i )
 	{
-		final String clazz = p.getClass ().getSimpleName ().replaceAll ( "/", "-" );
+		final String clazz = p.getClass ().getSimpleName ().replace ( '/', '-' );
 		return "proc-" + i + " (" + clazz + ")";
 	}
 
 	private final ArrayList<Rule> fRules;
+	private final Map<StreamProcessingContext,PipelineTimers> fTimers;
+	private volatile StreamTimers fLastTimers;
+	private volatile int fTimingSampleEvery;
 }
@@ -87,6 +87,40 @@ public class Program
 		return map;
 	}
 
+	/**
+	 * Set parallel execution settings for a given source.
+	 * @param srcName
+	 * @param parallelism
+	 * @return this program
+	 */
+	public Program setParallelismFor ( String srcName, SourceParallelism parallelism )
+	{
+		final SourceInfo si = fSources.get ( srcName );
+		if ( si == null )
+		{
+			throw new IllegalStateException ( "There's no source named " + srcName + " in this program." );
+		}
+
+		si.setParallelism ( parallelism );
+
+		return this;
+	}
+
+	/**
+	 * Get the parallel execution settings for a given source
+	 * @param srcName
+	 * @return parallelism settings, which are serial unless set otherwise
+	 */
+	public SourceParallelism getParallelismFor ( String srcName )
+	{
+		final SourceInfo si = fSources.get ( srcName );
+		if ( si == null )
+		{
+			return SourceParallelism.kSerial;
+		}
+		return si.getParallelism ();
+	}
+
 	/**
 	 * Get the services for a given source
 	 * @param srcName
@@ -153,6 +187,12 @@ public class Program
 		{
 			fSrc = src;
 			fServices = new HashMap<> ();
+			fParallelism = SourceParallelism.kSerial;
+		}
+
+		public void setParallelism ( SourceParallelism p )
+		{
+			fParallelism = p == null ? SourceParallelism.kSerial : p;
 		}
 
 		public void addService ( String svcName, ProcessingService service )
@@ -162,9 +202,11 @@ public class Program
 
 		public Source getSource ( ) { return fSrc; }
 		public Map<String,ProcessingService> getServices () { return fServices; }
+		public SourceParallelism getParallelism () { return fParallelism; }
 
 		private final Source fSrc;
 		private final HashMap<String,ProcessingService> fServices;
+		private SourceParallelism fParallelism;
 	}
 
 	private final HashMap<String,SourceInfo> fSources;
@@ -0,0 +1,153 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.processor.engine.model;
+
+import org.json.JSONObject;
+
+/**
+ * Parallel execution settings for a source. By default, a source is serviced by a single
+ * thread that runs each message through its pipeline before reading the next. With more
+ * than one worker, messages are partitioned by a key expression so that messages with the
+ * same key are processed in order by the same worker, and the source is told about completed
+ * messages in the order it delivered them.
+ */
+public class SourceParallelism
+{
+	public static final int kDefault_MaxInFlight = 1024;
+
+	/**
+	 * The default, single-threaded setting.
+	 */
+	public static final SourceParallelism kSerial = new Builder ().build ();
+
+	public static Builder builder ()
+	{
+		return new Builder ();
+	}
+
+	public static class Builder
+	{
+		/**
+		 * Set the number of workers processing messages from the source
+		 * @param workers
+		 * @return this builder
+		 */
+		public Builder withWorkers ( int workers )
+		{
+			fWorkers = Math.max ( 1, workers );
+			return this;
+		}
+
+		/**
+		 * Set the ${} expression used to assign a message to a worker. Messages that produce
+		 * the same key are processed in their arrival order, and processors that carry state from
+		 * one message to the next keep that state by key. Without a partition key, messages are
+		 * spread across workers with no ordering guarantee.
+		 * @param keyExpr
+		 * @return this builder
+		 */
+		public Builder partitionedBy ( String keyExpr )
+		{
+			fPartitionKey = keyExpr;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of messages read from the source but not yet marked complete.
+		 * @param maxInFlight
+		 * @return this builder
+		 */
+		public Builder withMaxInFlight ( int maxInFlight )
+		{
+			fMaxInFlight = Math.max ( 1, maxInFlight );
+			return this;
+		}
+
+		/**
+		 * Read settings from a JSON configuration block with optional "workers",
+		 * "partitionKey", and "maxInFlight" values.
+		 * @param config
+		 * @return this builder
+		 */
+		public Builder readingFrom ( JSONObject config )
+		{
+			if ( config != null )
+			{
+				withWorkers ( config.optInt ( "workers", fWorkers ) );
+				partitionedBy ( config.optString ( "partitionKey", fPartitionKey ) );
+				withMaxInFlight ( config.optInt ( "maxInFlight", fMaxInFlight ) );
+			}
+			return this;
+		}
+
+		public SourceParallelism build ()
+		{
+			return new SourceParallelism ( this );
+		}
+
+		private int fWorkers = 1;
+		private String fPartitionKey = null;
+		private int fMaxInFlight = kDefault_MaxInFlight;
+	}
+
+	/**
+	 * Get the number of workers for the source
+	 * @return 1 or more
+	 */
+	public int getWorkers ()
+	{
+		return fWorkers;
+	}
+
+	/**
+	 * Is this setting for more than one worker?
+	 * @return true if messages are processed in parallel
+	 */
+	public boolean isParallel ()
+	{
+		return fWorkers > 1;
+	}
+
+	/**
+	 * Get the partition key expression
+	 * @return a ${} expression, or null
+	 */
+	public String getPartitionKey ()
+	{
+		return fPartitionKey;
+	}
+
+	/**
+	 * Get the maximum number of messages pending completion
+	 * @return 1 or more
+	 */
+	public int getMaxInFlight ()
+	{
+		return fMaxInFlight;
+	}
+
+	private final int fWorkers;
+	private final String fPartitionKey;
+	private final int fMaxInFlight;
+
+	private SourceParallelism ( Builder b )
+	{
+		fWorkers = b.fWorkers;
+		fPartitionKey = b.fPartitionKey == null || b.fPartitionKey.length () == 0 ? null : b.fPartitionKey;
+		fMaxInFlight = b.fMaxInFlight;
+	}
+}
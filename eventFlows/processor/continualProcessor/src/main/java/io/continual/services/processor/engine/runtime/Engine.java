@@ -37,10 +37,12 @@ import io.continual.services.SimpleService;
 import io.continual.services.processor.engine.library.util.SimpleMessageProcessingContext;
 import io.continual.services.processor.engine.library.util.SimpleStreamProcessingContext;
 import io.continual.services.processor.engine.model.MessageAndRouting;
+import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Pipeline;
 import io.continual.services.processor.engine.model.Program;
 import io.continual.services.processor.engine.model.Sink;
 import io.continual.services.processor.engine.model.Source;
+import io.continual.services.processor.engine.model.SourceParallelism;
 import io.continual.services.processor.engine.model.StreamProcessingContext;
 import io.continual.services.processor.service.ProcessingService;
 import io.continual.util.data.exprEval.ExprDataSource;
@@ -361,14 +363,35 @@ public class Engine extends SimpleService
 				final Timer msgLoadTime = engineMetrics.timer ( "msgLoad" );
 				final Timer procTime = engineMetrics.timer ( "procTime" );
 
+				// optionally process messages on a pool of workers
+				final SourceParallelism parallelism = fProgram.getParallelismFor ( fSrcName );
+				final String partitionKey = parallelism.getPartitionKey ();
+				final PartitionedWorkerPool pool = !parallelism.isParallel () ? null : new PartitionedWorkerPool (
+					getName (), fSource, fStreamContext, parallelism.getWorkers (), parallelism.getMaxInFlight (),
+					new PartitionedWorkerPool.MessageHandler ()
+					{
+						@Override
+						public void handle ( MessageAndRouting mr, MessageProcessingContext mpc )
+						{
+							process ( mr, mpc, procTime );
+						}
+					}
+				);
+
 				// while we have messages, push them through the pipeline...
 				log.info ( "Source " + fSrcName + ": START" );
 
 				// open the source
 				fSource.open ();
+				if ( pool != null )
+				{
+					log.info ( "Source {}: processing on {} workers", fSrcName, parallelism.getWorkers () );
+					pool.start ();
+				}
 				try
 				{
-					while ( !fSource.isEof () && !fStreamContext.failed () )
+					// with a worker pool, keep going at EOF until in-flight work completes, since processing may requeue
+					while ( ( !fSource.isEof () || ( pool != null && pool.completeReady () > 0 ) ) && !fStreamContext.failed () )
 					{
 						cycles.mark ();
 	
@@ -384,20 +407,26 @@ public class Engine extends SimpleService
 						if ( msgAndRoute != null )
 						{
 							msgsIn.mark ();
-	
-							final Pipeline pl = fProgram.getPipeline ( msgAndRoute.getPipelineName () );
-							if ( pl == null )
+
+							// contexts are built on this thread so that serial numbers follow source order
+							final SimpleMessageProcessingContext mpc = mpcBuilder.build ( msgAndRoute.getMessage () );
+							if ( pool == null )
 							{
-								log.info ( "No pipeline {} for source \"{}\", ignored.", msgAndRoute.getPipelineName (), fSrcName );
+								process ( msgAndRoute, mpc, procTime );
+								fSource.markComplete ( fStreamContext, msgAndRoute );
 							}
 							else
 							{
-								try ( Timer.Context ctx = procTime.time () )
+								if ( partitionKey != null )
 								{
-									pl.process ( mpcBuilder.build ( msgAndRoute.getMessage () ) );
+									mpc.setPartitionKey ( mpc.evalExpression ( partitionKey ) );
 								}
+								pool.submit ( mpc.getPartitionKey (), msgAndRoute, mpc );
 							}
-							fSource.markComplete ( fStreamContext, msgAndRoute );
+						}
+						else if ( pool != null && pool.completeReady () > 0 && fSource.isEof () )
+						{
+							pool.awaitProgress ();
 						}
 					}
 					if ( fSource.isEof () )
@@ -416,6 +445,10 @@ public class Engine extends SimpleService
 				}
 				finally
 				{
+					if ( pool != null )
+					{
+						pool.shutdown ();
+					}
 					fSource.close ();
 				}
 			}
@@ -423,6 +456,10 @@ public class Engine extends SimpleService
 			{
 				log.warn ( "Error on source {}: {}", fSrcName, e.getMessage () );
 			}
+			catch ( PartitionedWorkerPool.WorkerFailure e )
+			{
+				log.warn ( "Processing stopped on source {}: {}", fSrcName, e.getMessage () );
+			}
 			catch ( InterruptedException e )
 			{
 				log.info ( "Source {} interrupted.", fSrcName );
@@ -441,6 +478,22 @@ public class Engine extends SimpleService
 			}
 		}
 
+		private void process ( MessageAndRouting msgAndRoute, MessageProcessingContext mpc, Timer procTime )
+		{
+			final Pipeline pl = fProgram.getPipeline ( msgAndRoute.getPipelineName () );
+			if ( pl == null )
+			{
+				log.info ( "No pipeline {} for source \"{}\", ignored.", msgAndRoute.getPipelineName (), fSrcName );
+			}
+			else
+			{
+				try ( Timer.Context ctx = procTime.time () )
+				{
+					pl.process ( mpc );
+				}
+			}
+		}
+
 		private final String fSrcName;
 		private final Source fSource;
 		private final MetricsCatalog fThreadMetrics;
@@ -0,0 +1,287 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.processor.engine.runtime;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.continual.services.processor.engine.model.MessageAndRouting;
+import io.continual.services.processor.engine.model.MessageProcessingContext;
+import io.continual.services.processor.engine.model.Source;
+import io.continual.services.processor.engine.model.StreamProcessingContext;
+
+/**
+ * A pool of worker threads that process messages from a single source. Messages are assigned
+ * to workers by partition key so that messages sharing a key are processed in arrival order.
+ * Completion is reported to the source in arrival order, from the thread that calls into this
+ * pool (normally the thread reading the source), and the number of messages awaiting completion
+ * is bounded.
+ */
+class PartitionedWorkerPool
+{
+	/**
+	 * Message processing, run on a worker thread
+	 */
+	interface MessageHandler
+	{
+		void handle ( MessageAndRouting mr, MessageProcessingContext mpc );
+	}
+
+	/**
+	 * Thrown from submit() once processing has failed, so the caller stops reading the source
+	 */
+	public static class WorkerFailure extends Exception
+	{
+		public WorkerFailure ( String msg ) { super ( msg ); }
+		private static final long serialVersionUID = 1L;
+	}
+
+	public PartitionedWorkerPool ( String name, Source src, StreamProcessingContext spc, int workerCount, int maxInFlight, MessageHandler handler )
+	{
+		fSource = src;
+		fSpc = spc;
+		fMaxInFlight = Math.max ( 1, maxInFlight );
+		fHandler = handler;
+
+		fInFlight = new ArrayDeque<> ();
+		fProgressLock = new ReentrantLock ();
+		fProgress = fProgressLock.newCondition ();
+
+		fWorkers = new ArrayList<> ();
+		for ( int i=0; i<Math.max ( 1, workerCount ); i++ )
+		{
+			fWorkers.add ( new Worker ( name + " worker " + i ) );
+		}
+		fNextWorker = 0;
+		fFailure = null;
+	}
+
+	/**
+	 * Start the worker threads
+	 */
+	public void start ()
+	{
+		for ( Worker w : fWorkers )
+		{
+			w.start ();
+		}
+	}
+
+	/**
+	 * Submit a message for processing. If the in-flight window is full, this call blocks
+	 * until the oldest pending message completes. Once a worker has failed (or the stream
+	 * context has failed), no more messages are accepted.
+	 * @param partitionKey the partition key, or null to assign workers round-robin
+	 * @param mr the message and routing from the source
+	 * @param mpc the message processing context
+	 * @throws InterruptedException
+	 * @throws WorkerFailure if processing has failed
+	 */
+	public void submit ( String partitionKey, MessageAndRouting mr, MessageProcessingContext mpc ) throws InterruptedException, WorkerFailure
+	{
+		checkFailure ();
+		while ( completeReady () >= fMaxInFlight )
+		{
+			awaitProgress ();
+			checkFailure ();
+		}
+
+		final Ticket t = new Ticket ( mr, mpc );
+		fInFlight.add ( t );
+		fWorkers.get ( selectWorker ( partitionKey ) ).fQueue.add ( t );
+	}
+
+	/**
+	 * Report completed messages to the source, in the order they were submitted. Processing
+	 * stops at the first message that hasn't completed.
+	 * @return the number of messages still in flight
+	 */
+	public int completeReady ()
+	{
+		Ticket t = fInFlight.peek ();
+		while ( t != null && t.fDone )
+		{
+			fInFlight.remove ();
+			fSource.markComplete ( fSpc, t.fMr );
+			t = fInFlight.peek ();
+		}
+		return fInFlight.size ();
+	}
+
+	/**
+	 * Wait briefly for the oldest in-flight message to complete.
+	 * @throws InterruptedException
+	 */
+	public void awaitProgress () throws InterruptedException
+	{
+		fProgressLock.lock ();
+		try
+		{
+			final Ticket head = fInFlight.peek ();
+			if ( head != null && !head.fDone )
+			{
+				// the timeout guards against a missed signal; the caller re-checks state
+				fProgress.await ( kMaxProgressWaitMs, TimeUnit.MILLISECONDS );
+			}
+		}
+		finally
+		{
+			fProgressLock.unlock ();
+		}
+	}
+
+	/**
+	 * Stop the worker threads after they finish the messages already assigned to them.
+	 * @throws InterruptedException
+	 */
+	public void shutdown () throws InterruptedException
+	{
+		for ( Worker w : fWorkers )
+		{
+			w.fQueue.add ( kStopTicket );
+		}
+		for ( Worker w : fWorkers )
+		{
+			w.join ();
+		}
+	}
+
+	private void checkFailure () throws WorkerFailure
+	{
+		final String failure = fFailure;
+		if ( failure != null )
+		{
+			throw new WorkerFailure ( failure );
+		}
+		if ( fSpc.failed () )
+		{
+			throw new WorkerFailure ( "The stream processing context has failed." );
+		}
+	}
+
+	private final Source fSource;
+	private final StreamProcessingContext fSpc;
+	private final int fMaxInFlight;
+	private final MessageHandler fHandler;
+	private final ArrayList<Worker> fWorkers;
+	private int fNextWorker;
+
+	// only used by the submitting thread
+	private final ArrayDeque<Ticket> fInFlight;
+
+	private volatile String fFailure;
+
+	private final ReentrantLock fProgressLock;
+	private final Condition fProgress;
+
+	private static class Ticket
+	{
+		public Ticket ( MessageAndRouting mr, MessageProcessingContext mpc )
+		{
+			fMr = mr;
+			fMpc = mpc;
+			fDone = false;
+		}
+
+		private final MessageAndRouting fMr;
+		private final MessageProcessingContext fMpc;
+		private volatile boolean fDone;
+	}
+
+	private static final Ticket kStopTicket = new Ticket ( null, null );
+
+	private class Worker extends Thread
+	{
+		public Worker ( String name )
+		{
+			super ( name );
+			setDaemon ( true );
+			fQueue = new LinkedBlockingQueue<> ();
+		}
+
+		@Override
+		public void run ()
+		{
+			try
+			{
+				while ( true )
+				{
+					final Ticket t = fQueue.take ();
+					if ( t == kStopTicket ) break;
+
+					// after a failure, leave remaining messages incomplete so the source doesn't see them as handled
+					if ( fSpc.failed () ) continue;
+
+					try
+					{
+						fHandler.handle ( t.fMr, t.fMpc );
+						t.fDone = true;
+					}
+					catch ( Throwable x )
+					{
+						log.warn ( "Unexpected error in {}: {}", getName (), x.getMessage (), x );
+						final String msg = "Processing failed on " + getName () + ": " + x.getMessage ();
+						fFailure = msg;
+						fSpc.fail ( msg );
+					}
+					signalProgress ();
+				}
+			}
+			catch ( InterruptedException e )
+			{
+				log.info ( "{} interrupted.", getName () );
+			}
+		}
+
+		private final LinkedBlockingQueue<Ticket> fQueue;
+	}
+
+	private int selectWorker ( String partitionKey )
+	{
+		if ( partitionKey == null )
+		{
+			final int result = fNextWorker;
+			fNextWorker = ( fNextWorker + 1 ) % fWorkers.size ();
+			return result;
+		}
+		return ( partitionKey.hashCode () & 0x7fffffff ) % fWorkers.size ();
+	}
+
+	private void signalProgress ()
+	{
+		fProgressLock.lock ();
+		try
+		{
+			fProgress.signalAll ();
+		}
+		finally
+		{
+			fProgressLock.unlock ();
+		}
+	}
+
+	private static final long kMaxProgressWaitMs = 250L;
+
+	private static final Logger log = LoggerFactory.getLogger ( PartitionedWorkerPool.class );
+}
@@ -0,0 +1,239 @@
+package io.continual.services.processor.engine.library.sources;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.metrics.impl.StdMetricsCatalog;
+import io.continual.services.processor.engine.library.util.SimpleStreamProcessingContext;
+import io.continual.services.processor.engine.model.MessageAndRouting;
+import io.continual.services.processor.engine.model.StreamProcessingContext;
+import junit.framework.TestCase;
+
+public class JsonObjectStreamSourceTest extends TestCase
+{
+	@Test
+	public void testSubmitWakesReader () throws BuildFailure, IOException, InterruptedException
+	{
+		try ( final WatchedSource src = new WatchedSource () )
+		{
+			final Reader reader = new Reader ( src );
+			reader.start ();
+
+			// the reader found nothing and holds the monitor until it waits, so this submit
+			// happens while it's waiting
+			assertTrue ( src.fFoundNothing.await ( 30, TimeUnit.SECONDS ) );
+			src.submit ( new JSONObject ().put ( "n", 1 ) );
+
+			// a polling reader would sleep through its long backoff step instead
+			assertTrue ( reader.fDone.await ( 30, TimeUnit.SECONDS ) );
+			assertNull ( reader.fFailure );
+			assertNotNull ( reader.fResult );
+			assertEquals ( 1, reader.fResult.getMessage ().getInt ( "n", -1 ) );
+		}
+	}
+
+	@Test
+	public void testCloseWakesReader () throws BuildFailure, IOException, InterruptedException
+	{
+		final WatchedSource src = new WatchedSource ();
+		final Reader reader = new Reader ( src );
+		reader.start ();
+
+		assertTrue ( src.fFoundNothing.await ( 30, TimeUnit.SECONDS ) );
+		src.close ();
+
+		assertTrue ( reader.fDone.await ( 30, TimeUnit.SECONDS ) );
+		assertNull ( reader.fFailure );
+		assertNull ( reader.fResult );
+		assertTrue ( src.isEof () );
+	}
+
+	@Test
+	public void testOrderAcrossGrowth () throws BuildFailure, IOException, InterruptedException
+	{
+		final JsonObjectStreamSource src = new JsonObjectStreamSource ( null, new JSONObject ().put ( "pipeline", "default" ) );
+		final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+
+		// interleave reads and writes so the ring wraps before it grows
+		int next = 0;
+		int expect = 0;
+		for ( int round=0; round<10; round++ )
+		{
+			final ArrayList<JSONObject> batch = new ArrayList<> ();
+			for ( int i=0; i<50; i++ )
+			{
+				batch.add ( new JSONObject ().put ( "n", next++ ) );
+			}
+			assertEquals ( 50, src.submitAll ( batch ) );
+
+			for ( int i=0; i<30; i++ )
+			{
+				assertEquals ( expect++, src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ).getMessage ().getInt ( "n", -1 ) );
+			}
+		}
+		assertEquals ( next - expect, src.getQueueDepth () );
+		while ( expect < next )
+		{
+			assertEquals ( expect++, src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ).getMessage ().getInt ( "n", -1 ) );
+		}
+	}
+
+	@Test
+	public void testDropOldest () throws BuildFailure, IOException, InterruptedException
+	{
+		final JsonObjectStreamSource src = new JsonObjectStreamSource ( null, new JSONObject ()
+			.put ( "pipeline", "default" )
+			.put ( "capacity", 3 )
+			.put ( "whenFull", "dropOldest" )
+		);
+		final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+
+		for ( int i=0; i<5; i++ )
+		{
+			assertTrue ( src.submit ( new JSONObject ().put ( "n", i ) ) );
+		}
+		assertEquals ( 3, src.getQueueDepth () );
+		assertEquals ( 2, src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ).getMessage ().getInt ( "n", -1 ) );
+	}
+
+	@Test
+	public void testReject () throws BuildFailure, IOException, InterruptedException
+	{
+		final JsonObjectStreamSource src = new JsonObjectStreamSource ( null, new JSONObject ()
+			.put ( "pipeline", "default" )
+			.put ( "capacity", 2 )
+			.put ( "whenFull", "reject" )
+		);
+		final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+
+		final ArrayList<JSONObject> batch = new ArrayList<> ();
+		for ( int i=0; i<4; i++ )
+		{
+			batch.add ( new JSONObject ().put ( "n", i ) );
+		}
+		assertEquals ( 2, src.submitAll ( batch ) );
+		assertEquals ( 0, src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ).getMessage ().getInt ( "n", -1 ) );
+		assertTrue ( src.submit ( new JSONObject ().put ( "n", 9 ) ) );
+		assertFalse ( src.submit ( new JSONObject ().put ( "n", 10 ) ) );
+	}
+
+	@Test
+	public void testBlockUntilRead () throws BuildFailure, IOException, InterruptedException
+	{
+		final JsonObjectStreamSource src = new JsonObjectStreamSource ( null, new JSONObject ()
+			.put ( "pipeline", "default" )
+			.put ( "capacity", 2 )
+		);
+		final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+
+		final AtomicInteger accepted = new AtomicInteger ( 0 );
+		final Thread producer = new Thread ( () -> {
+			for ( int i=0; i<10; i++ )
+			{
+				if ( src.submit ( new JSONObject ().put ( "n", i ) ) ) accepted.incrementAndGet ();
+			}
+		} );
+		producer.start ();
+
+		// the producer can't get ahead of the reader by more than the capacity
+		for ( int i=0; i<10; i++ )
+		{
+			assertTrue ( src.getQueueDepth () <= 2 );
+			final MessageAndRouting mr = src.getNextMessage ( spc, 5, TimeUnit.SECONDS );
+			assertNotNull ( mr );
+			assertEquals ( i, mr.getMessage ().getInt ( "n", -1 ) );
+		}
+		producer.join ( 5000 );
+		assertEquals ( 10, accepted.get () );
+	}
+
+	@Test
+	public void testMetricsUseConfiguredName () throws BuildFailure, IOException, InterruptedException
+	{
+		final MetricRegistry reg = new MetricRegistry ();
+		final JsonObjectStreamSource src = new JsonObjectStreamSource ( null, new JSONObject ()
+			.put ( "pipeline", "default" )
+			.put ( "name", "feed" )
+		);
+		final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ()
+			.withSource ( src )
+			.reportMetricsTo ( new StdMetricsCatalog ( reg ) )
+			.build ()
+		;
+
+		// the gauges are named for the source, not for whichever thread reads first
+		src.submit ( new JSONObject ().put ( "n", 1 ) );
+		src.submit ( new JSONObject ().put ( "n", 2 ) );
+		assertNotNull ( src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ) );
+
+		assertEquals ( 1, reg.getGauges ().get ( "feed.queueDepth" ).getValue () );
+		for ( String name : reg.getGauges ().keySet () )
+		{
+			assertFalse ( name.contains ( Thread.currentThread ().getName () ) );
+		}
+	}
+
+	// a source that reports when a read finds nothing, and that would poll very slowly if it
+	// didn't signal arrivals
+	private static class WatchedSource extends JsonObjectStreamSource
+	{
+		public WatchedSource () throws BuildFailure
+		{
+			super ( null, new JSONObject ().put ( "pipeline", "default" ) );
+		}
+
+		@Override
+		protected synchronized MessageAndRouting internalGetNextMessage ( StreamProcessingContext spc ) throws IOException, InterruptedException
+		{
+			final MessageAndRouting mr = super.internalGetNextMessage ( spc );
+			if ( mr == null ) fFoundNothing.countDown ();
+			return mr;
+		}
+
+		@Override
+		protected long[] getBackoffTimes ()
+		{
+			return new long[] { TimeUnit.MINUTES.toMillis ( 10 ) };
+		}
+
+		private final CountDownLatch fFoundNothing = new CountDownLatch ( 1 );
+	}
+
+	private static class Reader extends Thread
+	{
+		public Reader ( JsonObjectStreamSource src )
+		{
+			fSrc = src;
+			fSpc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+		}
+
+		@Override
+		public void run ()
+		{
+			try
+			{
+				fResult = fSrc.getNextMessage ( fSpc, 10, TimeUnit.MINUTES );
+			}
+			catch ( IOException | InterruptedException e )
+			{
+				fFailure = e;
+			}
+			fDone.countDown ();
+		}
+
+		private final JsonObjectStreamSource fSrc;
+		private final StreamProcessingContext fSpc;
+		private final CountDownLatch fDone = new CountDownLatch ( 1 );
+		private volatile MessageAndRouting fResult;
+		private volatile Exception fFailure;
+	}
+}
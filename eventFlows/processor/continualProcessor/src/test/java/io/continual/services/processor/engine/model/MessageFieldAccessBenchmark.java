@@ -0,0 +1,101 @@
+package io.continual.services.processor.engine.model;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.continual.services.processor.engine.model.Message.FieldSpec;
+import io.continual.util.data.json.JsonEval;
+
+/**
+ * Compares message field access by string key against precompiled field specs. The "legacy"
+ * benchmarks reproduce the per-call split-and-walk that string keys used to cost.
+ * 
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.continual.services.processor.engine.model.MessageFieldAccessBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFieldAccessBenchmark
+{
+	private static final String kNestedKey = "device.location.site";
+	private static final String kTopKey = "value";
+
+	private Message fMsg;
+	private FieldSpec fNestedSpec;
+	private FieldSpec fTopSpec;
+
+	@Setup
+	public void setup ()
+	{
+		fMsg = Message.adoptJsonAsMessage ( new JSONObject ()
+			.put ( "value", 123 )
+			.put ( "device", new JSONObject ()
+				.put ( "location", new JSONObject ()
+					.put ( "site", "nyc-1" )
+				)
+			)
+		);
+		fNestedSpec = FieldSpec.fromString ( kNestedKey );
+		fTopSpec = FieldSpec.fromString ( kTopKey );
+	}
+
+	@Benchmark
+	public String legacyNestedGet ()
+	{
+		final String[] parts = kNestedKey.split ( "\\." );
+		final LinkedList<String> containers = new LinkedList<> ( Arrays.asList ( parts ).subList ( 0, parts.length - 1 ) );
+		final JSONObject container = JsonEval.getContainer ( fMsg.accessRawJson (), containers, false );
+		return container == null ? "" : container.optString ( parts [ parts.length - 1 ], "" );
+	}
+
+	@Benchmark
+	public String stringKeyedNestedGet ()
+	{
+		return fMsg.getString ( kNestedKey );
+	}
+
+	@Benchmark
+	public String compiledNestedGet ()
+	{
+		return fMsg.getString ( fNestedSpec, "" );
+	}
+
+	@Benchmark
+	public Message stringKeyedTopPut ()
+	{
+		return fMsg.putValue ( kTopKey, 456L );
+	}
+
+	@Benchmark
+	public Message compiledTopPut ()
+	{
+		return fMsg.putValue ( fTopSpec, 456L );
+	}
+
+	public static void main ( String[] args ) throws RunnerException
+	{
+		new Runner ( new OptionsBuilder ()
+			.include ( MessageFieldAccessBenchmark.class.getSimpleName () )
+			.build ()
+		).run ();
+	}
+}
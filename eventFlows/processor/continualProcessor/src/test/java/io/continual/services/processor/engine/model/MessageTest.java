@@ -0,0 +1,82 @@
+package io.continual.services.processor.engine.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.continual.services.processor.engine.model.Message.FieldSpec;
+import junit.framework.TestCase;
+
+public class MessageTest extends TestCase
+{
+	@Test
+	public void testCompiledFieldAccess ()
+	{
+		final Message msg = Message.adoptJsonAsMessage ( new JSONObject ()
+			.put ( "a", new JSONObject ().put ( "b", new JSONObject ().put ( "c", "deep" ) ) )
+			.put ( "top", 12 )
+		);
+
+		final FieldSpec deep = FieldSpec.fromString ( "a.b.c" );
+		assertEquals ( "deep", msg.getString ( deep, "" ) );
+		assertEquals ( 12, msg.getInt ( FieldSpec.fromString ( "top" ), -1 ) );
+		assertEquals ( "def", msg.getString ( FieldSpec.fromString ( "a.x.c" ), "def" ) );
+		assertFalse ( msg.hasValue ( FieldSpec.fromString ( "top.x" ) ) );
+
+		// interned
+		assertSame ( deep, FieldSpec.fromString ( "a.b.c" ) );
+
+		// intermediate containers are created on put
+		msg.putValue ( FieldSpec.fromString ( "x.y.z" ), 5L );
+		assertEquals ( 5L, msg.accessRawJson ().getJSONObject ( "x" ).getJSONObject ( "y" ).getLong ( "z" ) );
+
+		// but not through a non-object
+		try
+		{
+			msg.putValue ( "top.z", 1L );
+			fail ( "expected an exception" );
+		}
+		catch ( IllegalArgumentException x )
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testArrayContainers ()
+	{
+		final Message msg = Message.adoptJsonAsMessage ( new JSONObject ()
+			.put ( "list", new JSONArray ()
+				.put ( new JSONObject ().put ( "inner", new JSONObject ().put ( "v", 1 ) ) )
+				.put ( new JSONObject ().put ( "inner", new JSONObject ().put ( "v", 2 ) ) )
+			)
+		);
+
+		// an array along the path refers to its last object element
+		assertEquals ( 2, msg.getInt ( "list.inner.v", -1 ) );
+		msg.putValue ( "list.inner.w", 3L );
+		assertEquals ( 3L, msg.accessRawJson ().getJSONArray ( "list" ).getJSONObject ( 1 ).getJSONObject ( "inner" ).getLong ( "w" ) );
+	}
+
+	@Test
+	public void testInternedWhenFull ()
+	{
+		// push well past the intern cache's capacity with one-off specs
+		for ( int i=0; i<10000; i++ )
+		{
+			FieldSpec.fromString ( "oneOff" + i + ".field" );
+		}
+
+		// a spec that's new to a full cache is still interned
+		assertSame ( FieldSpec.fromString ( "late.field" ), FieldSpec.fromString ( "late.field" ) );
+	}
+
+	@Test
+	public void testSimpleStringSpec ()
+	{
+		final Message msg = new Message ();
+		msg.putValue ( FieldSpec.fromSimpleString ( "a.b" ), "dotted" );
+		assertEquals ( "dotted", msg.accessRawJson ().getString ( "a.b" ) );
+		assertEquals ( "dotted", msg.getString ( FieldSpec.fromSimpleString ( "a.b" ), "" ) );
+	}
+}
@@ -0,0 +1,90 @@
+package io.continual.services.processor.engine.model;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.metrics.impl.StdMetricsCatalog;
+import io.continual.services.processor.engine.library.processors.Set;
+import io.continual.services.processor.engine.library.util.SimpleMessageProcessingContext;
+import io.continual.services.processor.engine.library.util.SimpleStreamProcessingContext;
+import junit.framework.TestCase;
+
+public class PipelineTest extends TestCase
+{
+	@Test
+	public void testTimerNames () throws BuildFailure
+	{
+		final MetricRegistry reg = new MetricRegistry ();
+		final Pipeline pl = makePipeline ();
+
+		final StreamProcessingContext spc = makeStreamContext ( reg );
+		final MessageProcessingContext mpc = makeContext ( spc );
+		pl.process ( mpc );
+		pl.process ( makeContext ( spc ) );
+
+		assertEquals ( "bar", mpc.getMessage ().getString ( "foo" ) );
+		assertEquals ( 2L, reg.timer ( "messageProcessing.rule-0.total" ).getCount () );
+		assertEquals ( 2L, reg.timer ( "messageProcessing.rule-0.filterPass.proc-0 (Set).totalTime" ).getCount () );
+	}
+
+	@Test
+	public void testTimingDisabled () throws BuildFailure
+	{
+		final MetricRegistry reg = new MetricRegistry ();
+		final Pipeline pl = makePipeline ().sampleTimingEvery ( 0 );
+
+		final MessageProcessingContext mpc = makeContext ( makeStreamContext ( reg ) );
+		pl.process ( mpc );
+
+		assertEquals ( "bar", mpc.getMessage ().getString ( "foo" ) );
+		assertTrue ( reg.getMetrics ().isEmpty () );
+	}
+
+	@Test
+	public void testFinishedStreamsReleased () throws BuildFailure, InterruptedException
+	{
+		final Pipeline pl = makePipeline ();
+		for ( int i=0; i<100; i++ )
+		{
+			pl.process ( makeContext ( makeStreamContext ( new MetricRegistry () ) ) );
+		}
+
+		// the stream contexts are unreachable now, so their timers can be collected (the most
+		// recently used stream is still held)
+		for ( int i=0; i<50 && pl.getTimedStreamCount () > 1; i++ )
+		{
+			System.gc ();
+			Thread.sleep ( 20 );
+		}
+		assertTrue ( pl.getTimedStreamCount () <= 1 );
+	}
+
+	private static Pipeline makePipeline ()
+	{
+		return new Pipeline ()
+			.addRule ( Rule.newRule ()
+				.alwaysDo ( new Set ( new JSONObject ().put ( "foo", "bar" ) ) )
+				.build ()
+			)
+		;
+	}
+
+	private static StreamProcessingContext makeStreamContext ( MetricRegistry reg )
+	{
+		return SimpleStreamProcessingContext.builder ()
+			.reportMetricsTo ( new StdMetricsCatalog ( reg ) )
+			.build ()
+		;
+	}
+
+	private static MessageProcessingContext makeContext ( StreamProcessingContext spc ) throws BuildFailure
+	{
+		return SimpleMessageProcessingContext.builder ()
+			.usingContext ( spc )
+			.build ( Message.copyJsonToMessage ( new JSONObject () ) )
+		;
+	}
+}
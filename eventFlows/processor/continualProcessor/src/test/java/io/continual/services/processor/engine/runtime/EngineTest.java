@@ -0,0 +1,265 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *	
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *	
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.processor.engine.runtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.services.Service.FailedToStart;
+import io.continual.services.processor.engine.library.processors.CollapseRecords;
+import io.continual.services.processor.engine.library.processors.SendToSink;
+import io.continual.services.processor.engine.library.sinks.JsonObjectStreamSink;
+import io.continual.services.processor.engine.library.sources.JsonObjectStreamSource;
+import io.continual.services.processor.engine.model.MessageAndRouting;
+import io.continual.services.processor.engine.model.Pipeline;
+import io.continual.services.processor.engine.model.Program;
+import io.continual.services.processor.engine.model.Rule;
+import io.continual.services.processor.engine.model.SourceParallelism;
+import io.continual.services.processor.engine.model.StreamProcessingContext;
+import junit.framework.TestCase;
+
+public class EngineTest extends TestCase
+{
+	@Test
+	public void testPartitionedWorkers () throws BuildFailure, FailedToStart
+	{
+		final int kMsgCount = 2000;
+		final int kKeyCount = 17;
+
+		final CompletionTrackingSource src = new CompletionTrackingSource ();
+		final JsonObjectStreamSink sink = new JsonObjectStreamSink ( null, new JSONObject () );
+
+		final Program prog = new Program ()
+			.addSource ( "in", src )
+			.addSink ( "out", sink )
+			.addPipeline ( "p", new Pipeline ()
+				.addRule ( Rule.newRule ()
+					.alwaysDo ( new SendToSink ( "out" ) )
+					.build ()
+				)
+			)
+			.setParallelismFor ( "in", SourceParallelism.builder ()
+				.withWorkers ( 4 )
+				.partitionedBy ( "${key}" )
+				.withMaxInFlight ( 64 )
+				.build ()
+			)
+		;
+
+		for ( int i=0; i<kMsgCount; i++ )
+		{
+			src.submit ( new JSONObject ()
+				.put ( "key", "k" + ( i % kKeyCount ) )
+				.put ( "seq", i )
+			);
+		}
+		src.noteEndOfStream ();
+
+		final Engine e = new Engine ( prog );
+		e.startAndWait ();
+
+		// everything arrives...
+		final List<JSONObject> output = sink.getList ();
+		assertEquals ( kMsgCount, output.size () );
+
+		// ...in order within each key
+		final HashMap<String,Integer> lastSeqByKey = new HashMap<> ();
+		for ( JSONObject msg : output )
+		{
+			final String key = msg.getString ( "key" );
+			final int seq = msg.getInt ( "seq" );
+			final Integer last = lastSeqByKey.get ( key );
+			assertTrue ( last == null || last < seq );
+			lastSeqByKey.put ( key, seq );
+		}
+
+		// and the source saw completions in its own delivery order
+		final List<Integer> completed = src.getCompleted ();
+		assertEquals ( kMsgCount, completed.size () );
+		for ( int i=0; i<kMsgCount; i++ )
+		{
+			assertEquals ( i, completed.get ( i ).intValue () );
+		}
+	}
+
+	@Test
+	public void testStateKeptByPartition () throws BuildFailure, FailedToStart
+	{
+		final int kKeyCount = 5;
+		final int kMsgCount = kKeyCount * 400;
+
+		final CompletionTrackingSource src = new CompletionTrackingSource ();
+		final JsonObjectStreamSink sink = new JsonObjectStreamSink ( null, new JSONObject () );
+
+		final Program prog = new Program ()
+			.addSource ( "in", src )
+			.addSink ( "out", sink )
+			.addPipeline ( "p", new Pipeline ()
+				.addRule ( Rule.newRule ()
+					.alwaysDo ( new CollapseRecords ().onKey ( "key", "val" ) )
+					.alwaysDo ( new SendToSink ( "out" ) )
+					.build ()
+				)
+			)
+			.setParallelismFor ( "in", SourceParallelism.builder ()
+				.withWorkers ( 3 )
+				.partitionedBy ( "${key}" )
+				.build ()
+			)
+		;
+
+		// keys are interleaved, and each key's values come in pairs: 0, 0, 1, 1, ...
+		for ( int i=0; i<kMsgCount; i++ )
+		{
+			src.submit ( new JSONObject ()
+				.put ( "key", "k" + ( i % kKeyCount ) )
+				.put ( "val", ( i / kKeyCount ) / 2 )
+			);
+		}
+		src.noteEndOfStream ();
+
+		new Engine ( prog ).startAndWait ();
+
+		// each key's repeats collapse, no matter which worker handled the key
+		final List<JSONObject> output = sink.getList ();
+		assertEquals ( kMsgCount / 2, output.size () );
+		final HashSet<String> seen = new HashSet<> ();
+		for ( JSONObject msg : output )
+		{
+			assertTrue ( seen.add ( msg.getString ( "key" ) + "/" + msg.getInt ( "val" ) ) );
+		}
+	}
+
+	@Test
+	public void testCollapseTracksBoundedKeys () throws BuildFailure, FailedToStart
+	{
+		final CompletionTrackingSource src = new CompletionTrackingSource ();
+		final JsonObjectStreamSink sink = new JsonObjectStreamSink ( null, new JSONObject () );
+
+		final Program prog = new Program ()
+			.addSource ( "in", src )
+			.addSink ( "out", sink )
+			.addPipeline ( "p", new Pipeline ()
+				.addRule ( Rule.newRule ()
+					.alwaysDo ( new CollapseRecords ().onKey ( "key", "val" ).trackingAtMost ( 2 ) )
+					.alwaysDo ( new SendToSink ( "out" ) )
+					.build ()
+				)
+			)
+			.setParallelismFor ( "in", SourceParallelism.builder ()
+				.withWorkers ( 2 )
+				.withMaxInFlight ( 1 )
+				.partitionedBy ( "${key}" )
+				.build ()
+			)
+		;
+
+		// one message in flight keeps the source order; k0 repeats after two other keys, and by then
+		// only two keys are tracked
+		for ( String key : new String[] { "k0", "k0", "k1", "k2", "k0", "k2" } )
+		{
+			src.submit ( new JSONObject ().put ( "key", key ).put ( "val", 1 ) );
+		}
+		src.noteEndOfStream ();
+
+		new Engine ( prog ).startAndWait ();
+
+		final List<JSONObject> output = sink.getList ();
+		assertEquals ( 4, output.size () );
+		assertEquals ( "k0", output.get ( 3 ).getString ( "key" ) );
+	}
+
+	@Test
+	public void testWorkerFailureStopsReading () throws BuildFailure, FailedToStart
+	{
+		final int kMsgCount = 5000;
+		final int kFailingSeq = 9;
+
+		final CompletionTrackingSource src = new CompletionTrackingSource ();
+		final AtomicInteger handled = new AtomicInteger ( 0 );
+
+		final Program prog = new Program ()
+			.addSource ( "in", src )
+			.addPipeline ( "p", new Pipeline ()
+				.addRule ( Rule.newRule ()
+					.alwaysDo ( context -> {
+						handled.incrementAndGet ();
+						if ( context.getMessage ().getInt ( "seq", -1 ) == kFailingSeq )
+						{
+							throw new IllegalStateException ( "test failure" );
+						}
+					} )
+					.build ()
+				)
+			)
+			.setParallelismFor ( "in", SourceParallelism.builder ()
+				.withWorkers ( 2 )
+				.withMaxInFlight ( 16 )
+				.build ()
+			)
+		;
+
+		for ( int i=0; i<kMsgCount; i++ )
+		{
+			src.submit ( new JSONObject ().put ( "seq", i ) );
+		}
+		src.noteEndOfStream ();
+
+		new Engine ( prog ).startAndWait ();
+
+		// the engine stops taking messages from the source once a worker fails
+		assertTrue ( handled.get () < kMsgCount );
+		assertTrue ( src.getQueueDepth () > 0 );
+
+		// completion is reported in source order, so it stops short of the failed message
+		final List<Integer> completed = src.getCompleted ();
+		assertFalse ( completed.contains ( kFailingSeq ) );
+		for ( int i=0; i<completed.size (); i++ )
+		{
+			assertEquals ( i, completed.get ( i ).intValue () );
+		}
+	}
+
+	private static class CompletionTrackingSource extends JsonObjectStreamSource
+	{
+		public CompletionTrackingSource () throws BuildFailure
+		{
+			super ( null, new JSONObject ().put ( "pipeline", "p" ) );
+			fCompleted = new ArrayList<> ();
+		}
+
+		@Override
+		public synchronized void markComplete ( StreamProcessingContext spc, MessageAndRouting mr )
+		{
+			fCompleted.add ( mr.getMessage ().getInt ( "seq", -1 ) );
+		}
+
+		public synchronized List<Integer> getCompleted ()
+		{
+			return new ArrayList<> ( fCompleted );
+		}
+
+		private final ArrayList<Integer> fCompleted;
+	}
+}
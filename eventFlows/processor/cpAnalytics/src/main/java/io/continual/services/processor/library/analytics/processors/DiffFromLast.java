@@ -1,11 +1,14 @@
 package io.continual.services.processor.library.analytics.processors;
 
+
 import org.json.JSONObject;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
+import io.continual.util.collections.LruCache;
 
 public class DiffFromLast implements Processor
 {
@@ -18,7 +21,8 @@ public class DiffFromLast implements Processor
 	{
 		fId = config.getString ( "entryId" );
 		fVal = config.getString ( "value" );
-		fToField = config.getString ( "resultTo" );
+		fToField = FieldSpec.fromString ( config.getString ( "resultTo" ) );
+		fLast = new LruCache<> ( config.optLong ( "maxKeys", kDefaultMaxKeys ) );
 	}
 
 	@Override
@@ -27,26 +31,63 @@ public class DiffFromLast implements Processor
 		final String id = context.evalExpression ( fId );
 		final double val = context.evalExpression ( fVal, Double.class );
 
-		if ( fLastId == null || !id.equals ( fLastId ) )
-		{
-			// new line...
-			fLastId = id;
-			context.getMessage ().putValue ( fToField, 0 );
-		}
-		else
+		final LastEntry last = lastEntryFor ( keyFor ( context ) );
+		synchronized ( last )
 		{
-			context.getMessage ()
-				.putValue ( fToField, val - fLastVal )
-			;
-		}
+			if ( last.fId == null || !id.equals ( last.fId ) )
+			{
+				// new line...
+				last.fId = id;
+				context.getMessage ().putValue ( fToField, 0 );
+			}
+			else
+			{
+				context.getMessage ()
+					.putValue ( fToField, val - last.fVal )
+				;
+			}
 
-		fLastVal = val;
+			last.fVal = val;
+		}
 	}
 
 	private final String fId;
 	private final String fVal;
-	private final String fToField;
+	private final FieldSpec fToField;
+
+	private static class LastEntry
+	{
+		private String fId = null;
+		private double fVal = 0;
+	}
+
+	// tracked per partition key so that a source processed by partitioned workers sees each key's sequence.
+	// Keys that go quiet are dropped once there are too many to track.
+	private final LruCache<String,LastEntry> fLast;
 
-	private String fLastId = null;
-	private double fLastVal = 0;
+	private static final long kDefaultMaxKeys = 100000;
+
+	private LastEntry lastEntryFor ( String key )
+	{
+		LastEntry last = fLast.get ( key );
+		if ( last == null )
+		{
+			synchronized ( fLast )
+			{
+				last = fLast.get ( key );
+				if ( last == null )
+				{
+					last = new LastEntry ();
+					fLast.put ( key, last );
+				}
+			}
+		}
+		return last;
+	}
+
+	private static String keyFor ( MessageProcessingContext context )
+	{
+		final String key = context.getPartitionKey ();
+		return key == null ? "" : key;
+	}
 }
@@ -6,8 +6,10 @@ import org.json.JSONObject;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
+import io.continual.services.processor.engine.model.Message.FieldSpec;
 import io.continual.services.processor.engine.model.MessageProcessingContext;
 import io.continual.services.processor.engine.model.Processor;
+import io.continual.util.collections.LruCache;
 
 public class RateOfChange implements Processor
 {
@@ -22,7 +24,8 @@ public class RateOfChange implements Processor
 		fTs = config.getString ( "timestamp" );
 		fVal = config.getString ( "value" );
 		fTimeUnit = TimeUnit.valueOf ( config.optString ( "rateTimeUnit", TimeUnit.DAYS.toString () ) );
-		fToField = config.getString ( "resultTo" );
+		fToField = FieldSpec.fromString ( config.getString ( "resultTo" ) );
+		fLast = new LruCache<> ( config.optLong ( "maxKeys", kDefaultMaxKeys ) );
 	}
 
 	@Override
@@ -32,48 +35,87 @@ public class RateOfChange implements Processor
 		final long ts = context.evalExpression ( fTs, Long.class );
 		final double val = context.evalExpression ( fVal, Double.class );
 
-		if ( fLastId == null || !id.equals ( fLastId ) )
+		final LastEntry last = lastEntryFor ( keyFor ( context ) );
+		synchronized ( last )
 		{
-			// new line...
-			fLastId = id;
-			context.getMessage ().putValue ( "invalid", true );
-		}
-		else if ( fLastVal == 0.0 )
-		{
-			context.getMessage ().putValue ( "invalid", true );
-		}
-		else
-		{
-			final long tsDiffSecs = ts - fLastTs;
-			final double valDiff = ( val - fLastVal ) / fLastVal;
-			final long tsDiff = fTimeUnit.convert ( tsDiffSecs, TimeUnit.SECONDS );
-			final double roc = ( valDiff / tsDiff );
-			if ( Double.isFinite ( roc ) )
+			if ( last.fId == null || !id.equals ( last.fId ) )
+			{
+				// new line...
+				last.fId = id;
+				context.getMessage ().putValue ( kInvalidField, true );
+			}
+			else if ( last.fVal == 0.0 )
 			{
-				context.getMessage ()
-					.putValue ( fToField, roc )
-					.putValue ( "invalid", false )
-				;
+				context.getMessage ().putValue ( kInvalidField, true );
 			}
 			else
 			{
-				context.getMessage ()
-					.putValue ( "invalid", false )
-				;
+				final long tsDiffSecs = ts - last.fTs;
+				final double valDiff = ( val - last.fVal ) / last.fVal;
+				final long tsDiff = fTimeUnit.convert ( tsDiffSecs, TimeUnit.SECONDS );
+				final double roc = ( valDiff / tsDiff );
+				if ( Double.isFinite ( roc ) )
+				{
+					context.getMessage ()
+						.putValue ( fToField, roc )
+						.putValue ( kInvalidField, false )
+					;
+				}
+				else
+				{
+					context.getMessage ()
+						.putValue ( kInvalidField, false )
+					;
+				}
 			}
-		}
 
-		fLastTs = ts;
-		fLastVal = val;
+			last.fTs = ts;
+			last.fVal = val;
+		}
 	}
 
 	private final String fId;
 	private final String fTs;
 	private final String fVal;
-	private final String fToField;
+	private final FieldSpec fToField;
 	private final TimeUnit fTimeUnit;
 
-	private String fLastId = null;
-	private long fLastTs = 0;
-	private double fLastVal = 0;
+	private static final FieldSpec kInvalidField = FieldSpec.fromString ( "invalid" );
+
+	private static class LastEntry
+	{
+		private String fId = null;
+		private long fTs = 0;
+		private double fVal = 0;
+	}
+
+	// tracked per partition key so that a source processed by partitioned workers sees each key's sequence.
+	// Keys that go quiet are dropped once there are too many to track.
+	private final LruCache<String,LastEntry> fLast;
+
+	private static final long kDefaultMaxKeys = 100000;
+
+	private LastEntry lastEntryFor ( String key )
+	{
+		LastEntry last = fLast.get ( key );
+		if ( last == null )
+		{
+			synchronized ( fLast )
+			{
+				last = fLast.get ( key );
+				if ( last == null )
+				{
+					last = new LastEntry ();
+					fLast.put ( key, last );
+				}
+			}
+		}
+		return last;
+	}
+
+	private static String keyFor ( MessageProcessingContext context )
+	{
+		final String key = context.getPartitionKey ();
+		return key == null ? "" : key;
+	}
 }
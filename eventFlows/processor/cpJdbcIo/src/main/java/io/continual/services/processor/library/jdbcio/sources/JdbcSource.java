@@ -4,9 +4,9 @@
  *	Licensed under the Apache License, Version 2.0 (the "License");
  *	you may not use this file except in compliance with the License.
  *	You may obtain a copy of the License at
- *	
+ *
  *	http://www.apache.org/licenses/LICENSE-2.0
- *	
+ *
  *	Unless required by applicable law or agreed to in writing, software
  *	distributed under the License is distributed on an "AS IS" BASIS,
  *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -22,19 +22,45 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 import io.continual.services.processor.engine.model.*;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.processor.config.readers.ConfigLoadContext;
 import io.continual.services.processor.library.jdbcio.DbConnection;
 import io.continual.services.processor.library.jdbcio.common.DbConnector;
+import io.continual.util.time.Clock;
 
+/**
+ * A source that streams the rows of a query. The result set stays open while rows are read,
+ * with the driver fetching "fetchSize" rows at a time, and each row is converted to a message
+ * only when it's requested.<br>
+ * <br>
+ * For incremental reads, set "keyColumn" and use ":lastSeen" in the query, as in
+ * "SELECT * FROM events WHERE id > :lastSeen ORDER BY id". The placeholder is bound to the
+ * key of the last row read, or to "startAfter" initially, which is required because a
+ * comparison with null matches nothing. Each use of the placeholder in the query is bound to
+ * the same value. With "tail" set, the query is run
+ * again every "pollIntervalMs" after the rows run out, so the source follows the table.<br>
+ * <br>
+ * Integer columns become ints, or longs for BIGINT. Floating point columns become doubles.
+ * DECIMAL and NUMERIC columns become BigDecimals, so their values keep their exact precision.
+ * Booleans stay booleans. Any other column is read as a string. A SQL null leaves the field
+ * out of the message.<br>
+ * <br>
+ * Note that some drivers only stream with additional settings. PostgreSQL honors the fetch size
+ * outside of auto-commit mode, which this source uses while reading. MySQL needs
+ * "useCursorFetch=true" on the connection URL.
+ */
 public class JdbcSource extends DbConnector implements Source
 {
+	public static final int kDefault_FetchSize = 1000;
+	public static final long kDefault_PollIntervalMs = 5000L;
+
 	public JdbcSource ( JSONObject config ) throws BuildFailure
 	{
 		this ( (ConfigLoadContext)null, config );
@@ -49,31 +75,84 @@ public class JdbcSource extends DbConnector implements Source
 	{
 		super ( dbsrc, sc, config );
 
-		fQuery = config.getString ( "query" );
 		fPipeline = config.getString ( "pipeline" );
+		fFetchSize = config.optInt ( "fetchSize", kDefault_FetchSize );
+
+		fKeyColumn = config.optString ( "keyColumn", null );
+		fLastSeen = config.opt ( "startAfter" );
+		fTail = config.optBoolean ( "tail", false );
+		fPollIntervalMs = config.optLong ( "pollIntervalMs", kDefault_PollIntervalMs );
+
+		// keyset pagination binds the last seen key in place of the named placeholder
+		final String query = config.getString ( "query" );
+		fLastSeenParamCount = countOf ( query, kLastSeenParam );
+		fUsesLastSeen = fLastSeenParamCount > 0;
+		fQuery = fUsesLastSeen ? query.replace ( kLastSeenParam, "?" ) : query;
+
+		if ( fUsesLastSeen && fKeyColumn == null )
+		{
+			throw new BuildFailure ( "The query uses " + kLastSeenParam + " but no keyColumn is set." );
+		}
+		if ( fUsesLastSeen && ( fLastSeen == null || fLastSeen == JSONObject.NULL ) )
+		{
+			throw new BuildFailure ( "The query uses " + kLastSeenParam + " but no startAfter value is set." );
+		}
+		if ( fTail && !fUsesLastSeen )
+		{
+			throw new BuildFailure ( "Tailing a table requires a query with " + kLastSeenParam + "." );
+		}
+
+		fCursor = null;
+		fDone = false;
+		fNextPollAtMs = 0L;
 	}
 
 	@Override
-	public boolean isEof () throws IOException
+	public synchronized boolean isEof () throws IOException
 	{
-		return fRows != null && fRows.size () == 0;
+		return fDone;
 	}
 
 	@Override
 	public MessageAndRouting getNextMessage ( StreamProcessingContext spc, long waitAtMost, TimeUnit waitAtMostTimeUnits ) throws IOException, InterruptedException
 	{
-		try
+		long waitMs;
+		synchronized ( this )
 		{
-			init ();
-			if ( fRows != null && fRows.size () > 0 )
+			if ( fDone ) return null;
+
+			try
+			{
+				if ( fCursor == null && Clock.now () >= fNextPollAtMs )
+				{
+					fCursor = new Cursor ();
+				}
+
+				if ( fCursor != null )
+				{
+					final JSONObject row = fCursor.next ();
+					if ( row != null )
+					{
+						return new SimpleMessageAndRouting ( Message.adoptJsonAsMessage ( row ), fPipeline );
+					}
+					endOfRows ();
+				}
+			}
+			catch ( SQLException x )
 			{
-				final JSONObject data = fRows.remove ( 0 );
-				return new SimpleMessageAndRouting ( Message.adoptJsonAsMessage ( data ), fPipeline );
+				spc.warn ( "Couldn't fetch JDBC records. " + x.getMessage () );
+				endOfRows ();
 			}
+
+			if ( fDone ) return null;
+			waitMs = fNextPollAtMs - Clock.now ();
 		}
-		catch ( SQLException x )
+
+		// we're tailing and the next poll isn't due yet
+		waitMs = Math.min ( waitMs, TimeUnit.MILLISECONDS.convert ( waitAtMost, waitAtMostTimeUnits ) );
+		if ( waitMs > 0 )
 		{
-			spc.warn ( "Couldn't fetch JDBC records. " + x.getMessage () );
+			Thread.sleep ( waitMs );
 		}
 		return null;
 	}
@@ -90,65 +169,264 @@ public class JdbcSource extends DbConnector implements Source
 		// ignore
 	}
 
-	public void init () throws SQLException
+	@Override
+	public synchronized void close ()
+	{
+		closeCursor ();
+		fDone = true;
+	}
+
+	private final String fQuery;
+	private final String fPipeline;
+	private final int fFetchSize;
+	private final String fKeyColumn;
+	private final boolean fUsesLastSeen;
+	private final int fLastSeenParamCount;
+	private final boolean fTail;
+	private final long fPollIntervalMs;
+
+	private Object fLastSeen;
+	private Cursor fCursor;
+	private boolean fDone;
+	private long fNextPollAtMs;
+
+	private static final String kLastSeenParam = ":lastSeen";
+
+	private static int countOf ( String s, String part )
+	{
+		int count = 0;
+		int at = s.indexOf ( part );
+		while ( at >= 0 )
+		{
+			count++;
+			at = s.indexOf ( part, at + part.length () );
+		}
+		return count;
+	}
+
+	private void endOfRows ()
+	{
+		closeCursor ();
+		if ( fTail )
+		{
+			fNextPollAtMs = Clock.now () + fPollIntervalMs;
+		}
+		else
+		{
+			fDone = true;
+		}
+	}
+
+	private void closeCursor ()
+	{
+		if ( fCursor != null )
+		{
+			fCursor.close ();
+			fCursor = null;
+		}
+	}
+
+	/**
+	 * Reads a column from the current row into a JSON value. Readers are chosen once per
+	 * result set from its metadata.
+	 */
+	private interface ColumnReader
+	{
+		Object read ( ResultSet rs, int col ) throws SQLException;
+	}
+
+	private static final ColumnReader kIntReader = new ColumnReader ()
+	{
+		@Override
+		public Object read ( ResultSet rs, int col ) throws SQLException
+		{
+			final int val = rs.getInt ( col );
+			return rs.wasNull () ? null : val;
+		}
+	};
+
+	private static final ColumnReader kLongReader = new ColumnReader ()
+	{
+		@Override
+		public Object read ( ResultSet rs, int col ) throws SQLException
+		{
+			final long val = rs.getLong ( col );
+			return rs.wasNull () ? null : val;
+		}
+	};
+
+	private static final ColumnReader kDoubleReader = new ColumnReader ()
 	{
-		if ( fRows != null ) return;
+		@Override
+		public Object read ( ResultSet rs, int col ) throws SQLException
+		{
+			final double val = rs.getDouble ( col );
+			return rs.wasNull () ? null : val;
+		}
+	};
+
+	private static final ColumnReader kDecimalReader = new ColumnReader ()
+	{
+		@Override
+		public Object read ( ResultSet rs, int col ) throws SQLException
+		{
+			return rs.getBigDecimal ( col );
+		}
+	};
+
+	private static final ColumnReader kBooleanReader = new ColumnReader ()
+	{
+		@Override
+		public Object read ( ResultSet rs, int col ) throws SQLException
+		{
+			final boolean val = rs.getBoolean ( col );
+			return rs.wasNull () ? null : val;
+		}
+	};
+
+	private static final ColumnReader kStringReader = new ColumnReader ()
+	{
+		@Override
+		public Object read ( ResultSet rs, int col ) throws SQLException
+		{
+			return rs.getString ( col );
+		}
+	};
+
+	private static ColumnReader readerFor ( int sqlType )
+	{
+		switch ( sqlType )
+		{
+			case java.sql.Types.INTEGER:
+			case java.sql.Types.SMALLINT:
+			case java.sql.Types.TINYINT:
+				return kIntReader;
+
+			case java.sql.Types.BIGINT:
+				return kLongReader;
+
+			case java.sql.Types.FLOAT:
+			case java.sql.Types.REAL:
+			case java.sql.Types.DOUBLE:
+				return kDoubleReader;
+
+			case java.sql.Types.DECIMAL:
+			case java.sql.Types.NUMERIC:
+				return kDecimalReader;
+
+			case java.sql.Types.BOOLEAN:
+			case java.sql.Types.BIT:
+				return kBooleanReader;
+
+			default:
+				return kStringReader;
+		}
+	}
 
-		fRows = new ArrayList<> ();
-		try ( final Connection cc = getDb ().getConnection () )
+	/**
+	 * An open query, read one row at a time
+	 */
+	private class Cursor
+	{
+		public Cursor () throws SQLException
 		{
-			final PreparedStatement ps = cc.prepareStatement ( fQuery );
-			final ResultSet rs = ps.executeQuery ();
-			final ResultSetMetaData md = rs.getMetaData ();
-			while ( rs.next () )
+			fConn = getDb ().getConnection ();
+			try
 			{
-				final JSONObject msg = new JSONObject ();
-				for ( int i=1; i<=md.getColumnCount (); i++ )
+				// some drivers (e.g. PostgreSQL) only use a server-side cursor outside of auto-commit
+				fWasAutoCommit = fConn.getAutoCommit ();
+				if ( fWasAutoCommit ) fConn.setAutoCommit ( false );
+
+				fStmt = fConn.prepareStatement ( fQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+				fStmt.setFetchSize ( fFetchSize );
+				for ( int i=1; i<=fLastSeenParamCount; i++ )
+				{
+					fStmt.setObject ( i, fLastSeen );
+				}
+				fRs = fStmt.executeQuery ();
+
+				final ResultSetMetaData md = fRs.getMetaData ();
+				final int colCount = md.getColumnCount ();
+				fColNames = new String [ colCount ];
+				fReaders = new ColumnReader [ colCount ];
+				int keyCol = -1;
+				for ( int i=0; i<colCount; i++ )
 				{
-					final String colName = md.getColumnName ( i );
-					final Object val;
-					switch ( md.getColumnType ( i ) )
+					fColNames[i] = md.getColumnName ( i+1 );
+					fReaders[i] = readerFor ( md.getColumnType ( i+1 ) );
+					if ( fColNames[i].equalsIgnoreCase ( fKeyColumn ) || md.getColumnLabel ( i+1 ).equalsIgnoreCase ( fKeyColumn ) )
 					{
-						case java.sql.Types.INTEGER:
-						case java.sql.Types.BIGINT:
-						case java.sql.Types.SMALLINT:
-						case java.sql.Types.TINYINT:
-						{
-							val = rs.getInt ( i );
-						}
-						break;
-
-						case java.sql.Types.FLOAT:
-						case java.sql.Types.REAL:
-						case java.sql.Types.DOUBLE:
-						{
-							val = rs.getDouble ( i );
-						}
-						break;
-
-						// FIXME: do the others...
-
-						default:
-						{
-							val = rs.getString ( i );
-						}
-						break;
+						keyCol = i+1;
 					}
-					msg.put ( colName, val );
 				}
+				fKeyCol = keyCol;
 
-				fRows.add ( msg );
+				if ( fKeyColumn != null && fKeyCol < 0 )
+				{
+					throw new SQLException ( "Key column " + fKeyColumn + " is not in the query results." );
+				}
+			}
+			catch ( SQLException x )
+			{
+				close ();
+				throw x;
 			}
 		}
-	}
 
-	@Override
-	public void close ()
-	{
-		// ignore
+		public JSONObject next () throws SQLException
+		{
+			if ( !fRs.next () ) return null;
+
+			final JSONObject msg = new JSONObject ();
+			for ( int i=0; i<fReaders.length; i++ )
+			{
+				msg.put ( fColNames[i], fReaders[i].read ( fRs, i+1 ) );
+			}
+
+			if ( fKeyCol > 0 )
+			{
+				fLastSeen = fRs.getObject ( fKeyCol );
+			}
+			return msg;
+		}
+
+		public void close ()
+		{
+			try
+			{
+				if ( fRs != null ) fRs.close ();
+				if ( fStmt != null ) fStmt.close ();
+				if ( fWasAutoCommit )
+				{
+					fConn.rollback ();
+					fConn.setAutoCommit ( true );
+				}
+			}
+			catch ( SQLException x )
+			{
+				log.warn ( "Problem closing JDBC cursor: {}", x.getMessage () );
+			}
+			finally
+			{
+				try
+				{
+					fConn.close ();
+				}
+				catch ( SQLException x )
+				{
+					log.warn ( "Problem closing JDBC connection: {}", x.getMessage () );
+				}
+			}
+		}
+
+		private final Connection fConn;
+		private boolean fWasAutoCommit;
+		private PreparedStatement fStmt;
+		private ResultSet fRs;
+		private String[] fColNames;
+		private ColumnReader[] fReaders;
+		private int fKeyCol;
 	}
 
-	private final String fQuery;
-	private final String fPipeline;
-	private ArrayList<JSONObject> fRows = null;
+	private static final Logger log = LoggerFactory.getLogger ( JdbcSource.class );
 }
@@ -0,0 +1,228 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.processor.library.jdbcio.sources;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.services.ServiceContainer;
+import io.continual.services.processor.config.readers.ConfigLoadContext;
+import io.continual.services.processor.engine.library.util.SimpleStreamProcessingContext;
+import io.continual.services.processor.engine.model.Message;
+import io.continual.services.processor.engine.model.MessageAndRouting;
+import io.continual.services.processor.engine.model.StreamProcessingContext;
+import io.continual.services.processor.library.jdbcio.DbConnection;
+import junit.framework.TestCase;
+
+public class JdbcSourceTest extends TestCase
+{
+	@Test
+	public void testReadsQueryRows () throws BuildFailure, SQLException, IOException, InterruptedException
+	{
+		final String url = makeDb ( "readsQueryRows", 5 );
+		try ( final JdbcSource src = makeSource ( url, new JSONObject ()
+			.put ( "query", "SELECT id, label FROM events ORDER BY id" )
+		) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			assertEquals ( list ( 1, 2, 3, 4, 5 ), readIds ( src, spc, 5 ) );
+			assertNull ( src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ) );
+			assertTrue ( src.isEof () );
+		}
+	}
+
+	@Test
+	public void testLastSeenNeedsStartAfter () throws SQLException
+	{
+		final String url = makeDb ( "lastSeenNeedsStartAfter", 0 );
+		try
+		{
+			makeSource ( url, new JSONObject ()
+				.put ( "query", "SELECT id, label FROM events WHERE id > :lastSeen ORDER BY id" )
+				.put ( "keyColumn", "id" )
+				.put ( "tail", true )
+			);
+			fail ( "expected a build failure without startAfter" );
+		}
+		catch ( BuildFailure x )
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testTailFollowsTable () throws BuildFailure, SQLException, IOException, InterruptedException
+	{
+		final String url = makeDb ( "tailFollowsTable", 3 );
+		try ( final JdbcSource src = makeSource ( url, new JSONObject ()
+			.put ( "query", "SELECT id, label FROM events WHERE id > :lastSeen ORDER BY id" )
+			.put ( "keyColumn", "id" )
+			.put ( "startAfter", 1 )
+			.put ( "tail", true )
+			.put ( "pollIntervalMs", 10 )
+		) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			assertEquals ( list ( 2, 3 ), readIds ( src, spc, 2 ) );
+
+			// rows added later are picked up by the next poll, after the last key seen
+			insertRows ( url, 4, 5 );
+			assertEquals ( list ( 4, 5 ), readIds ( src, spc, 2 ) );
+			assertFalse ( src.isEof () );
+		}
+	}
+
+	@Test
+	public void testEachLastSeenIsBound () throws BuildFailure, SQLException, IOException, InterruptedException
+	{
+		final String url = makeDb ( "eachLastSeenIsBound", 5 );
+		try ( final JdbcSource src = makeSource ( url, new JSONObject ()
+			.put ( "query", "SELECT id, label FROM events WHERE id = :lastSeen OR id > :lastSeen ORDER BY id" )
+			.put ( "keyColumn", "id" )
+			.put ( "startAfter", 3 )
+		) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			assertEquals ( list ( 3, 4, 5 ), readIds ( src, spc, 3 ) );
+			assertNull ( src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ) );
+			assertTrue ( src.isEof () );
+		}
+	}
+
+	@Test
+	public void testColumnTypes () throws BuildFailure, SQLException, IOException, InterruptedException
+	{
+		final String url = "jdbc:h2:mem:columnTypes;DB_CLOSE_DELAY=-1";
+		try (
+			final Connection conn = DriverManager.getConnection ( url );
+			final Statement stmt = conn.createStatement ()
+		)
+		{
+			stmt.execute ( "CREATE TABLE amounts ( id BIGINT, amount DECIMAL(20,2), rate DOUBLE, note VARCHAR(32) )" );
+			stmt.execute ( "INSERT INTO amounts VALUES ( 5000000000, 123456789012345678.91, 0.5, NULL )" );
+		}
+
+		try ( final JdbcSource src = makeSource ( url, new JSONObject ()
+			.put ( "query", "SELECT id, amount, rate, note FROM amounts" )
+		) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			final MessageAndRouting mr = src.getNextMessage ( spc, 1000, TimeUnit.MILLISECONDS );
+			assertNotNull ( mr );
+
+			final Message msg = mr.getMessage ();
+			assertEquals ( 5000000000L, msg.getRawValue ( "ID" ) );
+			assertEquals ( new BigDecimal ( "123456789012345678.91" ), msg.getRawValue ( "AMOUNT" ) );
+			assertEquals ( 0.5, msg.getRawValue ( "RATE" ) );
+			assertFalse ( msg.hasValue ( "NOTE" ) );
+		}
+	}
+
+	private static String makeDb ( String name, int rowCount ) throws SQLException
+	{
+		// the in-memory database lives until the JVM exits, so pooled connections all see it
+		final String url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+		try (
+			final Connection conn = DriverManager.getConnection ( url );
+			final Statement stmt = conn.createStatement ()
+		)
+		{
+			stmt.execute ( "CREATE TABLE events ( id INT PRIMARY KEY, label VARCHAR(32) )" );
+		}
+		final ArrayList<Integer> ids = new ArrayList<> ();
+		for ( int i=1; i<=rowCount; i++ )
+		{
+			ids.add ( i );
+		}
+		insertRows ( url, ids.toArray ( new Integer [ ids.size () ] ) );
+		return url;
+	}
+
+	private static void insertRows ( String url, Integer... ids ) throws SQLException
+	{
+		try (
+			final Connection conn = DriverManager.getConnection ( url );
+			final Statement stmt = conn.createStatement ()
+		)
+		{
+			for ( int id : ids )
+			{
+				stmt.execute ( "INSERT INTO events ( id, label ) VALUES ( " + id + ", 'event " + id + "' )" );
+			}
+		}
+	}
+
+	private static JdbcSource makeSource ( String url, JSONObject config ) throws BuildFailure
+	{
+		final DbConnection db = new DbConnection ( new JSONObject ()
+			.put ( "url", url )
+			.put ( "driver", "org.h2.Driver" )
+		);
+		return new JdbcSource ( db, skClc, config.put ( "pipeline", "default" ) );
+	}
+
+	// read the given number of rows, waiting out any polls in between
+	private static List<Integer> readIds ( JdbcSource src, StreamProcessingContext spc, int count ) throws IOException, InterruptedException
+	{
+		final ArrayList<Integer> result = new ArrayList<> ();
+		for ( int tries=0; tries<500 && result.size () < count; tries++ )
+		{
+			final MessageAndRouting mr = src.getNextMessage ( spc, 20, TimeUnit.MILLISECONDS );
+			if ( mr != null )
+			{
+				result.add ( mr.getMessage ().getInt ( "ID", -1 ) );
+			}
+		}
+		return result;
+	}
+
+	private static List<Integer> list ( Integer... ids )
+	{
+		final ArrayList<Integer> result = new ArrayList<> ();
+		Collections.addAll ( result, ids );
+		return result;
+	}
+
+	private static final ServiceContainer skServices = new ServiceContainer ();
+
+	private static final ConfigLoadContext skClc = new ConfigLoadContext ()
+	{
+		@Override
+		public ServiceContainer getServiceContainer ()
+		{
+			return skServices;
+		}
+
+		@Override
+		public List<String> getSearchPathPackages ()
+		{
+			return new ArrayList<> ();
+		}
+	};
+}
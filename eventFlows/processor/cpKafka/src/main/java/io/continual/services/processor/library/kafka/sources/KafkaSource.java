@@ -10,6 +10,7 @@ import io.continual.util.data.exprEval.ExpressionEvaluator;
 import io.continual.util.data.json.CommentedJsonTokener;
 import io.continual.util.data.json.JsonVisitor;
 import io.continual.util.data.json.JsonVisitor.ObjectVisitor;
+import io.continual.util.time.Clock;
 import org.apache.kafka.clients.consumer.*;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -23,9 +24,33 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
 
+/**
+ * A source that reads JSON messages from a Kafka topic. Offsets are tracked per partition and the
+ * highest contiguous completed offset is committed asynchronously every "commitIntervalMs" or
+ * "commitEveryCount" completions, whichever comes first. Commits are synchronous when partitions
+ * are revoked and when the source closes. When "maxOutstanding" messages are read but not yet
+ * complete, the source pauses its partitions until processing catches up.
+ */
 public class KafkaSource extends BasicSource
 {
+	public static final int kDefault_MaxPollRecords = 500;
+	public static final long kDefault_PollTimeoutMs = 100L;
+	public static final long kDefault_CommitIntervalMs = 1000L;
+	public static final int kDefault_CommitEveryCount = 1000;
+	public static final int kDefault_MaxOutstanding = 10000;
+
 	public KafkaSource ( final ConfigLoadContext sc, JSONObject config )
+	{
+		this ( sc, config, null );
+	}
+
+	/**
+	 * Construct a source that reads from the given consumer, or from a new KafkaConsumer if it's null
+	 * @param sc
+	 * @param config
+	 * @param consumer
+	 */
+	KafkaSource ( final ConfigLoadContext sc, JSONObject config, Consumer<String,String> consumer )
 	{
 		super ( config );
 
@@ -34,8 +59,11 @@ public class KafkaSource extends BasicSource
 
 		final String topic = cc.getString ( "topic" );
 		final String group = cc.getString ( "group" );
-		
+
+		final int maxPollRecords = cc.optInt ( "maxPollRecords", kDefault_MaxPollRecords );
+
 		fProps = new Properties ();
+		fProps.put ( ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords );
 		readConfigInto ( config.optJSONObject ( "kafka" ), fProps, ee );
 		fProps.put ( "group.id", topic + "::" + group );
 		fProps.put ( "client.id", UUID.randomUUID ().toString () );
@@ -43,11 +71,53 @@ public class KafkaSource extends BasicSource
 		fProps.put ( ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class );
 		fProps.put ( ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class );
 
-		fConsumer = new KafkaConsumer<> ( fProps );
-		fConsumer.subscribe ( Collections.singletonList ( topic ) );
-
-		fPendingMsgs = new LinkedList<> ();
+		fPendingMsgs = new ArrayDeque<> ( maxPollRecords );
+		fTrackers = new HashMap<> ();
 		fCommitOnDraw = cc.optBoolean ( "commitOnDraw", false );
+		fPollTimeoutMs = cc.optLong ( "pollTimeoutMs", kDefault_PollTimeoutMs );
+		fCommitIntervalMs = cc.optLong ( "commitIntervalMs", kDefault_CommitIntervalMs );
+		fCommitEveryCount = Math.max ( 1, cc.optInt ( "commitEveryCount", kDefault_CommitEveryCount ) );
+		fMaxOutstanding = Math.max ( maxPollRecords, cc.optInt ( "maxOutstanding", kDefault_MaxOutstanding ) );
+
+		fOutstanding = 0;
+		fCompletedSinceCommit = 0;
+		fLastCommitMs = Clock.now ();
+		fPaused = false;
+
+		fConsumer = consumer != null ? consumer : new KafkaConsumer<> ( fProps );
+		fConsumer.subscribe ( Collections.singletonList ( topic ), new ConsumerRebalanceListener ()
+		{
+			@Override
+			public void onPartitionsRevoked ( Collection<TopicPartition> partitions )
+			{
+				// called from poll(), so we already hold this source's lock
+				commitSync ( partitions );
+				for ( TopicPartition tp : partitions )
+				{
+					final PartitionTracker t = fTrackers.remove ( tp );
+					if ( t != null ) fOutstanding -= t.outstanding ();
+				}
+
+				// buffered records from these partitions go to their new owner
+				final Iterator<LocalMsgAndRouting> it = fPendingMsgs.iterator ();
+				while ( it.hasNext () )
+				{
+					if ( partitions.contains ( it.next ().fTracker.fPartition ) )
+					{
+						it.remove ();
+					}
+				}
+			}
+
+			@Override
+			public void onPartitionsAssigned ( Collection<TopicPartition> partitions )
+			{
+				if ( fPaused )
+				{
+					fConsumer.pause ( partitions );
+				}
+			}
+		} );
 
 		fAlerts = new ContinualAlertAgent ();
 	}
@@ -57,31 +127,73 @@ public class KafkaSource extends BasicSource
 	{
 		noteEndOfStream ();
 
+		commitSync ( new ArrayList<> ( fTrackers.keySet () ) );
 		fConsumer.close ();
 	}
 
 	@Override
 	protected MessageAndRouting internalGetNextMessage ( StreamProcessingContext spc ) throws IOException, InterruptedException
 	{
+		maybeCommit ();
+
 		if ( !fPendingMsgs.isEmpty () )
 		{
 			return drawNext ();
 		}
 
-		final ConsumerRecords<String,String> records = fConsumer.poll ( Duration.ofMillis ( 100L ) );
+		// apply backpressure while too many messages are awaiting completion; polling
+		// continues so the consumer stays in its group, but paused partitions return nothing
+		final boolean saturated = fOutstanding >= fMaxOutstanding;
+		if ( saturated != fPaused )
+		{
+			if ( saturated )
+			{
+				log.debug ( "Pausing consumption with {} messages outstanding", fOutstanding );
+				fConsumer.pause ( fConsumer.assignment () );
+			}
+			else
+			{
+				fConsumer.resume ( fConsumer.assignment () );
+			}
+			fPaused = saturated;
+		}
+
+		final ConsumerRecords<String,String> records = fConsumer.poll ( Duration.ofMillis ( saturated ? 0L : fPollTimeoutMs ) );
 		for ( ConsumerRecord<String,String> cr : records )
 		{
+			final PartitionTracker tracker = trackerFor ( cr );
+			tracker.add ( cr.offset () );
+			fOutstanding++;
 			try
 			{
-				fPendingMsgs.add ( new LocalMsgAndRouting ( cr ) );
+				fPendingMsgs.add ( new LocalMsgAndRouting ( cr, tracker ) );
 			}
 			catch ( JSONException x )
 			{
 				spc.warn ( "Couldn't parse inbound text as a JSON object: " + cr.value () );
+
+				// skip the record without holding up later offsets
+				complete ( tracker, cr.offset () );
 			}
 		}
 
-		return drawNext ();
+		final LocalMsgAndRouting result = drawNext ();
+		if ( result == null && saturated )
+		{
+			// the poll didn't wait, so wait here (the caller holds our lock) until markComplete
+			// makes room or the poll interval passes
+			wait ( fPollTimeoutMs );
+		}
+		return result;
+	}
+
+	/**
+	 * The consumer's poll waits for records, so there's no need for backoff between calls.
+	 */
+	@Override
+	protected long[] getBackoffTimes ()
+	{
+		return skNoBackoff;
 	}
 
 	@Override
@@ -89,16 +201,174 @@ public class KafkaSource extends BasicSource
 	{
 		if ( !fCommitOnDraw && mr instanceof LocalMsgAndRouting )
 		{
-			((LocalMsgAndRouting) mr).commit ();
+			final LocalMsgAndRouting lmr = (LocalMsgAndRouting) mr;
+			complete ( lmr.fTracker, lmr.fRecord.offset () );
+			maybeCommit ();
+
+			// wake a reader waiting for room under the outstanding limit
+			if ( fPaused && fOutstanding < fMaxOutstanding )
+			{
+				onMessagesAvailable ();
+			}
 		}
 	}
 
 	private final Properties fProps;
-	private final KafkaConsumer<String, String> fConsumer;
-	private final LinkedList<LocalMsgAndRouting> fPendingMsgs;
+	private final Consumer<String, String> fConsumer;
+	private final ArrayDeque<LocalMsgAndRouting> fPendingMsgs;
+	private final HashMap<TopicPartition,PartitionTracker> fTrackers;
 	private final boolean fCommitOnDraw;
+	private final long fPollTimeoutMs;
+	private final long fCommitIntervalMs;
+	private final int fCommitEveryCount;
+	private final int fMaxOutstanding;
 	private final ContinualAlertAgent fAlerts;
 
+	private int fOutstanding;
+	private int fCompletedSinceCommit;
+	private long fLastCommitMs;
+	private boolean fPaused;
+
+	/**
+	 * Offsets read from a partition that haven't been committed. Records arrive in offset order,
+	 * and the committable offset advances past each completed record that has no incomplete
+	 * record before it.
+	 */
+	private static class PartitionTracker
+	{
+		public PartitionTracker ( TopicPartition tp )
+		{
+			fPartition = tp;
+			fPending = new TreeMap<> ();
+			fCommittable = -1L;
+			fCommitted = -1L;
+		}
+
+		public void add ( long offset )
+		{
+			fPending.put ( offset, Boolean.FALSE );
+		}
+
+		/**
+		 * Mark an offset complete
+		 * @param offset
+		 * @return true if the offset was outstanding
+		 */
+		public boolean complete ( long offset )
+		{
+			if ( !Boolean.FALSE.equals ( fPending.replace ( offset, Boolean.TRUE ) ) ) return false;
+
+			Map.Entry<Long,Boolean> first = fPending.firstEntry ();
+			while ( first != null && first.getValue () )
+			{
+				fPending.remove ( first.getKey () );
+				fCommittable = first.getKey () + 1;	// +1 to mark the *next* message
+				first = fPending.firstEntry ();
+			}
+			return true;
+		}
+
+		public int outstanding ()
+		{
+			int result = 0;
+			for ( Boolean done : fPending.values () )
+			{
+				if ( !done ) result++;
+			}
+			return result;
+		}
+
+		public boolean hasUncommitted ()
+		{
+			return fCommittable > fCommitted;
+		}
+
+		private final TopicPartition fPartition;
+		private final TreeMap<Long,Boolean> fPending;
+		private long fCommittable;
+		private long fCommitted;
+	}
+
+	private PartitionTracker trackerFor ( ConsumerRecord<String,String> cr )
+	{
+		final TopicPartition tp = new TopicPartition ( cr.topic (), cr.partition () );
+		PartitionTracker t = fTrackers.get ( tp );
+		if ( t == null )
+		{
+			t = new PartitionTracker ( tp );
+			fTrackers.put ( tp, t );
+		}
+		return t;
+	}
+
+	private void complete ( PartitionTracker tracker, long offset )
+	{
+		// a tracker that's been replaced belongs to a revoked partition
+		if ( fTrackers.get ( tracker.fPartition ) != tracker ) return;
+
+		if ( tracker.complete ( offset ) )
+		{
+			fOutstanding--;
+			fCompletedSinceCommit++;
+		}
+	}
+
+	private Map<TopicPartition,OffsetAndMetadata> getCommittable ( Collection<TopicPartition> partitions )
+	{
+		final HashMap<TopicPartition,OffsetAndMetadata> result = new HashMap<> ();
+		for ( TopicPartition tp : partitions )
+		{
+			final PartitionTracker t = fTrackers.get ( tp );
+			if ( t != null && t.hasUncommitted () )
+			{
+				result.put ( tp, new OffsetAndMetadata ( t.fCommittable ) );
+				t.fCommitted = t.fCommittable;
+			}
+		}
+		return result;
+	}
+
+	private void maybeCommit ()
+	{
+		if ( fCompletedSinceCommit == 0 ) return;
+		if ( fCompletedSinceCommit < fCommitEveryCount && Clock.now () - fLastCommitMs < fCommitIntervalMs ) return;
+
+		final Map<TopicPartition,OffsetAndMetadata> offsets = getCommittable ( fTrackers.keySet () );
+		fCompletedSinceCommit = 0;
+		fLastCommitMs = Clock.now ();
+		if ( offsets.isEmpty () ) return;
+
+		log.debug ( "Committing offsets {}", offsets );
+		fConsumer.commitAsync ( offsets, new OffsetCommitCallback ()
+		{
+			@Override
+			public void onComplete ( Map<TopicPartition,OffsetAndMetadata> committed, Exception x )
+			{
+				if ( x != null )
+				{
+					// a later commit covers these offsets, so this is only worth a warning
+					log.warn ( "Error committing offsets {}: {}", offsets, x.getMessage () );
+				}
+			}
+		} );
+	}
+
+	private void commitSync ( Collection<TopicPartition> partitions )
+	{
+		final Map<TopicPartition,OffsetAndMetadata> offsets = getCommittable ( partitions );
+		if ( offsets.isEmpty () ) return;
+
+		try
+		{
+			log.debug ( "Committing offsets {} synchronously", offsets );
+			fConsumer.commitSync ( offsets );
+		}
+		catch ( Exception x )
+		{
+			log.error ( "Error committing offsets {}: {}", offsets, x.getMessage () );
+		}
+	}
+
 	private LocalMsgAndRouting drawNext ()
 	{
 		if ( !fPendingMsgs.isEmpty () )
@@ -106,7 +376,7 @@ public class KafkaSource extends BasicSource
 			final LocalMsgAndRouting msg = fPendingMsgs.remove ();
 			if ( fCommitOnDraw )
 			{
-				msg.commit ();
+				complete ( msg.fTracker, msg.fRecord.offset () );
 			}
 			return msg;
 		}
@@ -115,11 +385,11 @@ public class KafkaSource extends BasicSource
 
 	private class LocalMsgAndRouting implements MessageAndRouting
 	{
-		public LocalMsgAndRouting ( ConsumerRecord<String,String> cr )
+		public LocalMsgAndRouting ( ConsumerRecord<String,String> cr, PartitionTracker tracker )
 		{
 			fRecord = cr;
+			fTracker = tracker;
 			fMsg = Message.adoptJsonAsMessage ( new JSONObject ( new CommentedJsonTokener ( cr.value () ) ) );
-			fCommitted = false;
 		}
 
 		@Override
@@ -134,28 +404,9 @@ public class KafkaSource extends BasicSource
 			return getDefaultPipelineName ();
 		}
 
-		public void commit ()
-		{
-			try
-			{
-				log.info ( "Committing offset for {}: {}", fRecord.topic (), fRecord.offset () );
-
-				final Map<TopicPartition, OffsetAndMetadata> commitMap = Collections.singletonMap (
-					new TopicPartition ( fRecord.topic (), fRecord.partition () ),
-					new OffsetAndMetadata ( fRecord.offset () + 1 ) // +1 to mark the *next* message
-				);
-				fConsumer.commitSync ( commitMap );
-				fCommitted = true;
-			}
-			catch ( Exception x )
-			{
-				log.error ( "Error committing offset for {}: {}", fRecord.topic (), x.getMessage () );
-			}
-		}
-
 		private final ConsumerRecord<String,String> fRecord;
+		private final PartitionTracker fTracker;
 		private final Message fMsg;
-		private boolean fCommitted;
 	}
 
 	private void readConfigInto ( JSONObject config, Properties props, ExpressionEvaluator ee )
@@ -0,0 +1,171 @@
+package io.continual.services.processor.library.kafka.sources;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.continual.services.ServiceContainer;
+import io.continual.services.processor.config.readers.ConfigLoadContext;
+import io.continual.services.processor.engine.library.util.SimpleStreamProcessingContext;
+import io.continual.services.processor.engine.model.MessageAndRouting;
+import io.continual.services.processor.engine.model.StreamProcessingContext;
+import junit.framework.TestCase;
+
+public class KafkaSourceTest extends TestCase
+{
+	@Test
+	public void testOutOfOrderCompletionHoldsCommit () throws IOException, InterruptedException
+	{
+		final MockConsumer<String,String> consumer = makeConsumer ();
+		try ( final KafkaSource src = makeSource ( consumer, new JSONObject ().put ( "commitEveryCount", 1 ) ) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			addRecords ( consumer, 0, 3 );
+			final List<MessageAndRouting> msgs = read ( src, spc, 3 );
+
+			// later records complete first, so there's nothing to commit yet
+			src.markComplete ( spc, msgs.get ( 2 ) );
+			src.markComplete ( spc, msgs.get ( 1 ) );
+			assertNull ( consumer.committed ( Collections.singleton ( kPartition ) ).get ( kPartition ) );
+
+			// the first record's completion releases all three
+			src.markComplete ( spc, msgs.get ( 0 ) );
+			assertEquals ( 3L, committedOffset ( consumer ) );
+		}
+	}
+
+	@Test
+	public void testCommitOnRevoke () throws IOException, InterruptedException
+	{
+		final MockConsumer<String,String> consumer = makeConsumer ();
+		try ( final KafkaSource src = makeSource ( consumer, new JSONObject () ) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			addRecords ( consumer, 0, 4 );
+			final List<MessageAndRouting> msgs = read ( src, spc, 2 );
+
+			// completions wait for the commit count or interval...
+			src.markComplete ( spc, msgs.get ( 0 ) );
+			src.markComplete ( spc, msgs.get ( 1 ) );
+			assertNull ( consumer.committed ( Collections.singleton ( kPartition ) ).get ( kPartition ) );
+
+			// ...but losing the partition commits what's done, and drops its buffered records
+			synchronized ( src )
+			{
+				consumer.rebalance ( Collections.<TopicPartition>emptyList () );
+			}
+			assertNull ( src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ) );
+
+			// (the mock only reports commits for assigned partitions)
+			consumer.rebalance ( Collections.singletonList ( kPartition ) );
+			assertEquals ( 2L, committedOffset ( consumer ) );
+		}
+	}
+
+	@Test
+	public void testPausesAtMaxOutstanding () throws IOException, InterruptedException
+	{
+		final MockConsumer<String,String> consumer = makeConsumer ();
+		try ( final KafkaSource src = makeSource ( consumer, new JSONObject ()
+			.put ( "maxPollRecords", 2 )
+			.put ( "maxOutstanding", 3 )
+		) )
+		{
+			final StreamProcessingContext spc = SimpleStreamProcessingContext.builder ().withSource ( src ).build ();
+			addRecords ( consumer, 0, 3 );
+			final List<MessageAndRouting> msgs = read ( src, spc, 3 );
+
+			// with three messages outstanding, the source pauses its partitions
+			addRecords ( consumer, 3, 1 );
+			assertNull ( src.getNextMessage ( spc, 10, TimeUnit.MILLISECONDS ) );
+			assertTrue ( consumer.paused ().contains ( kPartition ) );
+
+			// a completion makes room, and reading resumes
+			src.markComplete ( spc, msgs.get ( 0 ) );
+			final MessageAndRouting next = src.getNextMessage ( spc, 1000, TimeUnit.MILLISECONDS );
+			assertNotNull ( next );
+			assertEquals ( 3, next.getMessage ().getInt ( "seq", -1 ) );
+			assertTrue ( consumer.paused ().isEmpty () );
+		}
+	}
+
+	private static final String kTopic = "events";
+	private static final TopicPartition kPartition = new TopicPartition ( kTopic, 0 );
+
+	private static MockConsumer<String,String> makeConsumer ()
+	{
+		return new MockConsumer<> ( OffsetResetStrategy.EARLIEST );
+	}
+
+	private static KafkaSource makeSource ( MockConsumer<String,String> consumer, JSONObject config )
+	{
+		final KafkaSource src = new KafkaSource ( skClc, config
+			.put ( "pipeline", "default" )
+			.put ( "topic", kTopic )
+			.put ( "group", "test" )
+			.put ( "pollTimeoutMs", 10 )
+			.put ( "commitIntervalMs", 60L * 60L * 1000L ),
+			consumer
+		);
+
+		// the source subscribes in its constructor; assign its partition as the group would
+		consumer.rebalance ( Collections.singletonList ( kPartition ) );
+		consumer.updateBeginningOffsets ( Collections.singletonMap ( kPartition, 0L ) );
+		return src;
+	}
+
+	private static void addRecords ( MockConsumer<String,String> consumer, int from, int count )
+	{
+		for ( int i=from; i<from+count; i++ )
+		{
+			consumer.addRecord ( new ConsumerRecord<> ( kTopic, 0, i, null, new JSONObject ().put ( "seq", i ).toString () ) );
+		}
+	}
+
+	private static List<MessageAndRouting> read ( KafkaSource src, StreamProcessingContext spc, int count ) throws IOException, InterruptedException
+	{
+		final ArrayList<MessageAndRouting> result = new ArrayList<> ();
+		for ( int i=0; i<count; i++ )
+		{
+			final MessageAndRouting mr = src.getNextMessage ( spc, 1000, TimeUnit.MILLISECONDS );
+			assertNotNull ( mr );
+			assertEquals ( i, mr.getMessage ().getInt ( "seq", -1 ) );
+			result.add ( mr );
+		}
+		return result;
+	}
+
+	private static long committedOffset ( MockConsumer<String,String> consumer )
+	{
+		final OffsetAndMetadata om = consumer.committed ( Collections.singleton ( kPartition ) ).get ( kPartition );
+		assertNotNull ( om );
+		return om.offset ();
+	}
+
+	private static final ServiceContainer skServices = new ServiceContainer ();
+
+	private static final ConfigLoadContext skClc = new ConfigLoadContext ()
+	{
+		@Override
+		public ServiceContainer getServiceContainer ()
+		{
+			return skServices;
+		}
+
+		@Override
+		public List<String> getSearchPathPackages ()
+		{
+			return new ArrayList<> ();
+		}
+	};
+}
@@ -87,11 +87,14 @@ public class AccessControlList
 	 */
 	public AccessControlList ( AccessControlList that )
 	{
-		fOwner = that.fOwner;
 		fEntries = new LinkedList<AccessControlEntry> ();
-		for ( AccessControlEntry e : that.fEntries )
+		synchronized ( that )
 		{
-			fEntries.add ( new AccessControlEntry ( e ) );
+			fOwner = that.fOwner;
+			for ( AccessControlEntry e : that.fEntries )
+			{
+				fEntries.add ( new AccessControlEntry ( e ) );
+			}
 		}
 		fListener = null;
 	}
@@ -111,7 +114,7 @@ public class AccessControlList
 	 * Get the owner ID for this ACL
 	 * @return the owner, which may be null
 	 */
-	public String getOwner ()
+	public synchronized String getOwner ()
 	{
 		return fOwner;
 	}
@@ -123,7 +126,11 @@ public class AccessControlList
 	 */
 	public AccessControlList setOwner ( String userOrGroupId )
 	{
-		fOwner = userOrGroupId;
+		synchronized ( this )
+		{
+			fOwner = userOrGroupId;
+			fCompiled = null;
+		}
 		if ( fListener != null )
 		{
 			fListener.onAclUpdate ( this );
@@ -167,31 +174,35 @@ public class AccessControlList
 	{
 		boolean changed = false;
 
-		final LinkedList<AccessControlEntry> removals = new LinkedList<AccessControlEntry> ();
-
-		// look for matching entries
-		for ( AccessControlEntry e : fEntries )
+		synchronized ( this )
 		{
-			if ( e.getSubject ().equals ( userOrGroupId ) )
+			final LinkedList<AccessControlEntry> removals = new LinkedList<AccessControlEntry> ();
+
+			// look for matching entries
+			for ( AccessControlEntry e : fEntries )
 			{
-				for ( String op : ops )
+				if ( e.getSubject ().equals ( userOrGroupId ) )
 				{
-					final boolean change = e.removeOperation ( op );
-					changed = changed || change;
-				}
-				if ( e.getOperationCount() == 0 )
-				{
-					removals.add ( e );
+					for ( String op : ops )
+					{
+						final boolean change = e.removeOperation ( op );
+						changed = changed || change;
+					}
+					if ( e.getOperationCount() == 0 )
+					{
+						removals.add ( e );
+					}
 				}
+				// else: unrelated entry
 			}
-			// else: unrelated entry
-		}
 
-		// remove empty entries
-		for ( AccessControlEntry e : removals )
-		{
-			boolean change = fEntries.remove ( e );
-			changed = changed || change;
+			// remove empty entries
+			for ( AccessControlEntry e : removals )
+			{
+				boolean change = fEntries.remove ( e );
+				changed = changed || change;
+			}
+			if ( changed ) fCompiled = null;
 		}
 
 		// updates
@@ -209,7 +220,11 @@ public class AccessControlList
 	 */
 	public AccessControlList clear ()
 	{
-		fEntries.clear ();
+		synchronized ( this )
+		{
+			fEntries.clear ();
+			fCompiled = null;
+		}
 		if ( fListener != null )
 		{
 			fListener.onAclUpdate ( this );
@@ -224,11 +239,14 @@ public class AccessControlList
 	public List<AccessControlEntry> getEntries ()
 	{
 		final LinkedList<AccessControlEntry> result = new LinkedList<> ();
-		for ( AccessControlEntry e : fEntries )
+		synchronized ( this )
 		{
-			// clone the entries because the operation list can be updated on the entry (i.e. they're not quite
-			// immutable classes)
-			result.add ( e.clone () );
+			for ( AccessControlEntry e : fEntries )
+			{
+				// clone the entries because the operation list can be updated on the entry (i.e. they're not quite
+				// immutable classes)
+				result.add ( e.clone () );
+			}
 		}
 		return result;
 	}
@@ -261,18 +279,23 @@ public class AccessControlList
 	 */
 	public boolean canUser ( String userId, Set<String> groups, String op )
 	{
-		final boolean isOwner = userId != null && userId.equals ( getOwner() );
-
-		for ( AccessControlEntry e : getEntries() )
+		// checks are evaluated against a lookup table built from the entries on first use. It's
+		// built under the lock the mutators hold, so a change can't land between reading the
+		// entries and publishing the table.
+		CompiledAcl compiled = fCompiled;
+		if ( compiled == null )
 		{
-			final AccessControlEntry.Access p = e.check ( userId, groups, isOwner, op );
-			if ( p != null )
+			synchronized ( this )
 			{
-				if ( p.equals ( AccessControlEntry.Access.DENY ) ) return false;
-				if ( p.equals ( AccessControlEntry.Access.PERMIT ) ) return true;
+				compiled = fCompiled;
+				if ( compiled == null )
+				{
+					compiled = new CompiledAcl ( fOwner, fEntries );
+					fCompiled = compiled;
+				}
 			}
 		}
-		return false;
+		return compiled.canUser ( userId, groups, op );
 	}
 
 	/**
@@ -283,14 +306,20 @@ public class AccessControlList
 	public AccessControlList addAclEntry ( AccessControlEntry acle )
 	{
 		// dedupe this entry
-		if ( !fEntries.contains ( acle ) )
+		final boolean added;
+		synchronized ( this )
 		{
-			fEntries.add ( acle );
-			if ( fListener != null )
+			added = !fEntries.contains ( acle );
+			if ( added )
 			{
-				fListener.onAclUpdate ( this );
+				fEntries.add ( acle );
+				fCompiled = null;
 			}
 		}
+		if ( added && fListener != null )
+		{
+			fListener.onAclUpdate ( this );
+		}
 		return this;
 	}
 
@@ -312,9 +341,10 @@ public class AccessControlList
 			entries.put ( e.serialize () );
 		}
 		final JSONObject result = new JSONObject ();
-		if ( fOwner != null )
+		final String owner = getOwner ();
+		if ( owner != null )
 		{
-			result.put ( "o", fOwner );
+			result.put ( "o", owner );
 		}
 		if ( entries.length () > 0 )
 		{
@@ -394,9 +424,11 @@ public class AccessControlList
 		return fListener;
 	}
 
+	// the owner, the entries, and the compiled table are changed under this ACL's monitor
 	private String fOwner;
 	private final LinkedList<AccessControlEntry> fEntries;
 	private final AclUpdateListener fListener;
+	private volatile CompiledAcl fCompiled = null;
 
 	private AccessControlList ( Builder b )
 	{
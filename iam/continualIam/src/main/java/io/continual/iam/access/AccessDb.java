@@ -15,6 +15,10 @@
  */
 package io.continual.iam.access;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import io.continual.iam.exceptions.IamSvcException;
 import io.continual.iam.identity.Group;
 
@@ -55,4 +59,25 @@ public interface AccessDb<G extends Group>
 	 * @throws IamSvcException if there's a problem in the IAM service
 	 */
 	boolean canUser ( String id, Resource resource, String operation ) throws IamSvcException;
+
+	/**
+	 * Can the given user perform the requested access on each of the given resources? This
+	 * is equivalent to calling canUser for each resource, but implementations may read the
+	 * user's group memberships once for the whole set.
+	 * 
+	 * @param id the identity/subject making the request
+	 * @param resources the resources on which access is requested
+	 * @param operation the operation
+	 * @return a map from resource ID to true if the user is allowed to perform the operation
+	 * @throws IamSvcException if there's a problem in the IAM service
+	 */
+	default Map<String,Boolean> canUser ( String id, Collection<? extends Resource> resources, String operation ) throws IamSvcException
+	{
+		final HashMap<String,Boolean> result = new HashMap<> ();
+		for ( Resource resource : resources )
+		{
+			result.put ( resource.getId (), canUser ( id, resource, operation ) );
+		}
+		return result;
+	}
 }
@@ -0,0 +1,155 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.iam.access;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import io.continual.iam.access.AccessControlEntry.Access;
+
+/**
+ * An ACL reduced to a lookup table. For each operation named in the ACL (and for all other
+ * operations), the table maps each entry subject to the first entry that decides access for
+ * that subject. A check then looks up the user, their groups, the owner marker, and "any user",
+ * and takes the earliest decision, which is the same answer the ordered entry scan gives.
+ */
+class CompiledAcl
+{
+	public CompiledAcl ( String owner, List<AccessControlEntry> entries )
+	{
+		fOwner = owner;
+
+		fAnyOp = compile ( entries, null );
+		fByOp = new HashMap<> ();
+		for ( AccessControlEntry e : entries )
+		{
+			for ( String op : e.getOperations () )
+			{
+				if ( op.equals ( AccessControlEntry.kAnyOperation ) ) continue;
+
+				final String key = normalize ( op );
+				if ( !fByOp.containsKey ( key ) )
+				{
+					fByOp.put ( key, compile ( entries, key ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Can the given user ID or group set perform the given operation?
+	 * @param userId a user ID, which may be null
+	 * @param groups a set of 0 or more groups, which may be null
+	 * @param op an operation
+	 * @return true if the user or group set can perform the given operation
+	 */
+	public boolean canUser ( String userId, Set<String> groups, String op )
+	{
+		Map<String,Decision> decisions = op == null ? null : fByOp.get ( normalize ( op ) );
+		if ( decisions == null ) decisions = fAnyOp;
+		if ( decisions.isEmpty () ) return false;
+
+		Decision best = decisions.get ( AccessControlEntry.kAnyUser );
+		if ( userId != null )
+		{
+			best = earlier ( best, decisions.get ( userId ) );
+			if ( userId.equals ( fOwner ) )
+			{
+				best = earlier ( best, decisions.get ( AccessControlEntry.kOwner ) );
+			}
+		}
+		if ( groups != null )
+		{
+			// walk whichever side is smaller
+			if ( groups.size () <= decisions.size () )
+			{
+				for ( String group : groups )
+				{
+					best = earlier ( best, decisions.get ( group ) );
+				}
+			}
+			else
+			{
+				for ( Map.Entry<String,Decision> e : decisions.entrySet () )
+				{
+					if ( groups.contains ( e.getKey () ) )
+					{
+						best = earlier ( best, e.getValue () );
+					}
+				}
+			}
+		}
+		return best != null && best.fAccess == Access.PERMIT;
+	}
+
+	private static class Decision
+	{
+		public Decision ( int position, Access access )
+		{
+			fPosition = position;
+			fAccess = access;
+		}
+
+		private final int fPosition;
+		private final Access fAccess;
+	}
+
+	private final String fOwner;
+	private final Map<String,Decision> fAnyOp;
+	private final HashMap<String,Map<String,Decision>> fByOp;
+
+	// build the subject table for an operation, or for operations not named in the ACL if op is null
+	private static Map<String,Decision> compile ( List<AccessControlEntry> entries, String op )
+	{
+		final HashMap<String,Decision> result = new HashMap<> ();
+		int position = 0;
+		for ( AccessControlEntry e : entries )
+		{
+			if ( covers ( e, op ) && !result.containsKey ( e.getSubject () ) )
+			{
+				result.put ( e.getSubject (), new Decision ( position, e.getPermission () ) );
+			}
+			position++;
+		}
+		return result;
+	}
+
+	private static boolean covers ( AccessControlEntry e, String op )
+	{
+		for ( String listedOp : e.getOperations () )
+		{
+			if ( listedOp.equals ( AccessControlEntry.kAnyOperation ) ) return true;
+			if ( op != null && normalize ( listedOp ).equals ( op ) ) return true;
+		}
+		return false;
+	}
+
+	private static Decision earlier ( Decision a, Decision b )
+	{
+		if ( a == null ) return b;
+		if ( b == null ) return a;
+		return a.fPosition <= b.fPosition ? a : b;
+	}
+
+	private static String normalize ( String op )
+	{
+		return op.toLowerCase ( Locale.ROOT );
+	}
+}
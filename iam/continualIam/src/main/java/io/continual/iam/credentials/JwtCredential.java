@@ -102,6 +102,7 @@ public class JwtCredential
 			final JSONObject header = new JSONObject ( headerStr );
 			final String type = header.getString ( "typ" );
 			fAlgo = header.getString ( "alg" );
+			fKeyId = header.optString ( "kid", null );
 			if ( !type.equals ( "JWT" ) || !skSignatureAlgos.contains ( fAlgo ) )
 			{
 				// all we know so far...
@@ -189,6 +190,15 @@ public class JwtCredential
 	{
 		return fAlgo;
 	}
+
+	/**
+	 * Get the ID of the key that signed this token, from the "kid" header
+	 * @return a key ID, or null if the header doesn't name one
+	 */
+	public String getKeyId ()
+	{
+		return fKeyId;
+	}
 	
 	public long getExpiration () { return fExpiresSec; }
 	public boolean isExpired () { return getExpiration() < ( Clock.now() / 1000L ); }
@@ -201,6 +211,7 @@ public class JwtCredential
 	private final String fSignedContent;
 	private final String fSignature;
 	private final String fAlgo;
+	private final String fKeyId;
 
 	private static TreeSet<String> skSignatureAlgos = new TreeSet<String> ();
 	static
@@ -16,6 +16,9 @@
 package io.continual.iam.impl.common;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.Set;
 import java.util.TreeSet;
@@ -47,6 +50,7 @@ import io.continual.iam.impl.common.jwt.JwtProducer;
 import io.continual.metrics.MetricsCatalog;
 import io.continual.util.data.OneWayHasher;
 import io.continual.util.data.Sha1HmacSigner;
+import io.continual.util.collections.ShardedExpiringCache;
 import io.continual.util.data.UniqueStringGenerator;
 import io.continual.util.time.Clock;
 
@@ -77,6 +81,11 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 	@Override
 	public void populateMetrics ( MetricsCatalog metrics )
 	{
+		final VerifiedCredentialCache<String> cache = fCredentialCache;
+		if ( cache != null && metrics != null )
+		{
+			cache.populateMetrics ( metrics );
+		}
 	}
 
 	@Override
@@ -168,6 +177,8 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 	public void deleteUser ( String userId ) throws IamSvcException
 	{
 		deleteUserObject ( userId );
+		onUserChanged ( userId );
+		onGroupMembershipChanged ();
 	}
 
 	@Override
@@ -265,6 +276,15 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 //		if ( isInvalidJwtToken ( jwt.toBearerString () ) ) return null;
 // FIXME: we need to hash the string or something -- it's too long for AWS as an s3 key
 
+		if ( jwt == null ) return null;
+
+		// clients reuse a token across many requests, so remember the ones we've verified
+		final VerifiedJwt known = fVerifiedJwts.read ( jwt.getSignature () );
+		if ( known != null && known.fSignedContent.equals ( jwt.getSignedContent () ) && !jwt.isExpired () )
+		{
+			return loadUser ( known.fSubject );
+		}
+
 		for ( JwtValidator v : fJwtValidators )
 		{
 			if ( v.validate ( jwt ) )
@@ -273,7 +293,16 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 				// This is because some JWTs have supplemental information in their claims. The 
 				// basic JWT class we have doesn't know this -- the validator, which is 
 				// associated with JWT's source, does.
-				return loadUser ( v.getSubject ( jwt ) );
+				final String subject = v.getSubject ( jwt );
+
+				final long remainingMs = jwt.getExpiration () * 1000L - Clock.now ();
+				if ( subject != null && remainingMs > 0 )
+				{
+					fVerifiedJwts.write ( jwt.getSignature (), new VerifiedJwt ( jwt.getSignedContent (), subject ),
+						Math.min ( remainingMs, kMaxJwtCacheMs ) );
+				}
+
+				return loadUser ( subject );
 			}
 		}
 		return null;
@@ -282,6 +311,11 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 	public void invalidateJwtToken ( String token ) throws IamSvcException
 	{
 		storeInvalidJwtToken ( token );
+
+		if ( token != null )
+		{
+			fVerifiedJwts.remove ( token.substring ( token.lastIndexOf ( '.' ) + 1 ) );
+		}
 	}
 
 	@Override
@@ -307,9 +341,44 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 			return null;
 		}
 
-		if ( !checkPassword ( upc, user ) )
+		final VerifiedCredentialCache<String> cache = fCredentialCache;
+		if ( cache == null )
 		{
-			return null;
+			return checkPassword ( upc, user ) ? user : null;
+		}
+
+		// a verification only counts if the stored password hasn't changed since
+		final String userId = user.getId ();
+		final String fingerprint = getPasswordFingerprint ( user );
+		if ( isVerified ( cache, userId, attemptedPassword, fingerprint ) )
+		{
+			return user;
+		}
+
+		try ( final VerifiedCredentialCache.Permit permit = cache.acquire ( userId ) )
+		{
+			if ( permit == null )
+			{
+				authLog ( "Too many concurrent password checks for " + upc.getUsername () + "." );
+				return null;
+			}
+
+			// another request may have verified the same password while this one waited
+			if ( isVerified ( cache, userId, attemptedPassword, fingerprint ) )
+			{
+				return user;
+			}
+
+			if ( !checkPassword ( upc, user ) )
+			{
+				return null;
+			}
+			cache.remember ( userId, attemptedPassword, fingerprint );
+		}
+		catch ( InterruptedException x )
+		{
+			Thread.currentThread ().interrupt ();
+			throw new IamSvcException ( x );
 		}
 
 		return user;
@@ -355,6 +424,7 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 
 		user.addGroup ( groupId );
 		storeUserObject ( userId, user.asJson () );
+		onGroupMembershipChanged ();
 	}
 
 	@Override
@@ -370,6 +440,7 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 
 		user.removeGroup ( groupId );
 		storeUserObject ( userId, user.asJson () );
+		onGroupMembershipChanged ();
 	}
 
 	@Override
@@ -458,12 +529,29 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 		final AccessControlList acl = getAclFor ( resource );
 		if ( acl == null ) return true;
 
-		final Identity user = loadUserOrAlias ( id );
-		if ( user == null )
+		return acl.canUser ( id, getGroupSnapshot ( id ), operation );
+	}
+
+	@Override
+	public Map<String,Boolean> canUser ( String id, Collection<? extends Resource> resources, String operation ) throws IamSvcException
+	{
+		final HashMap<String,Boolean> result = new HashMap<> ();
+
+		Set<String> groups = null;
+		for ( Resource resource : resources )
 		{
-			throw new IamSvcException ( "User " + id + " was not loaded from this database." );
+			final AccessControlList acl = getAclFor ( resource );
+			if ( acl == null )
+			{
+				result.put ( resource.getId (), true );
+				continue;
+			}
+
+			// read the user's groups once for the batch
+			if ( groups == null ) groups = getGroupSnapshot ( id );
+			result.put ( resource.getId (), acl.canUser ( id, groups, operation ) );
 		}
-		return acl.canUser ( id, user.getGroupIds (), operation );
+		return result;
 	}
 
 	@Override
@@ -530,6 +618,7 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 	public void removeAlias ( String alias ) throws IamBadRequestException, IamSvcException
 	{
 		deleteAliasObject ( alias );
+		onGroupMembershipChanged ();
 	}
 
 	@Override
@@ -582,6 +671,18 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 		{
 			fJwtValidators.add ( fJwtTokenFactory );	// our factory is a validator for its own tokens
 		}
+
+		fCredentialCache = new VerifiedCredentialCache<String> ( "PasswordChecks" );
+
+		fVerifiedJwts = new ShardedExpiringCache.Builder<String,VerifiedJwt> ()
+			.named ( "VerifiedJwts" )
+			.cachingFor ( kMaxJwtCacheMs, TimeUnit.MILLISECONDS )
+			.withShardCount ( 64 )
+			.withShardMaxSize ( 256 )
+			.build ()
+		;
+
+		fGroupSnapshots = buildGroupSnapshotCache ( kDefault_GroupSnapshotMs );
 	}
 
 	/**
@@ -649,9 +750,132 @@ public abstract class CommonJsonDb<I extends CommonJsonIdentity,G extends Common
 		return UniqueStringGenerator.createKeyUsingAlphabet ( nonce, kKeyChars, length );
 	}
 
+	/**
+	 * Set the cache of password verifications. By default, the database uses a cache with
+	 * default settings. Call this during construction, before the database is used.
+	 * @param cache a cache, or null to verify every password
+	 */
+	protected void setCredentialCache ( VerifiedCredentialCache<String> cache )
+	{
+		fCredentialCache = cache;
+	}
+
+	/**
+	 * Called when a user's record is stored or deleted, so that cached state about the user
+	 * can be dropped
+	 * @param userId
+	 */
+	protected void onUserChanged ( String userId )
+	{
+		final VerifiedCredentialCache<String> cache = fCredentialCache;
+		if ( cache != null )
+		{
+			cache.invalidate ( userId );
+		}
+
+		final ShardedExpiringCache<String,Set<String>> groups = fGroupSnapshots;
+		if ( groups != null && userId != null )
+		{
+			groups.remove ( userId );
+		}
+	}
+
+	/**
+	 * Set how long a user's group memberships are reused for access checks. Changes made through
+	 * this database are seen immediately; changes made by another process are seen within this
+	 * duration. Call this during construction, before the database is used.
+	 * @param duration the duration, or 0 to read the user's record on every check
+	 * @param tu the duration's time unit
+	 */
+	protected void setGroupSnapshotDuration ( long duration, TimeUnit tu )
+	{
+		fGroupSnapshots = duration > 0 ? buildGroupSnapshotCache ( TimeUnit.MILLISECONDS.convert ( duration, tu ) ) : null;
+	}
+
+	/**
+	 * Get the group memberships of the given user or alias for an access check
+	 * @param userIdOrAlias
+	 * @return an unmodifiable set of group IDs
+	 * @throws IamSvcException if the user doesn't exist or can't be loaded
+	 */
+	protected Set<String> getGroupSnapshot ( String userIdOrAlias ) throws IamSvcException
+	{
+		final ShardedExpiringCache<String,Set<String>> cache = fGroupSnapshots;
+		if ( cache != null && userIdOrAlias != null )
+		{
+			final Set<String> groups = cache.read ( userIdOrAlias );
+			if ( groups != null ) return groups;
+		}
+
+		final Identity user = loadUserOrAlias ( userIdOrAlias );
+		if ( user == null )
+		{
+			throw new IamSvcException ( "User " + userIdOrAlias + " was not loaded from this database." );
+		}
+
+		final Set<String> groups = Collections.unmodifiableSet ( user.getGroupIds () );
+		if ( cache != null && userIdOrAlias != null )
+		{
+			cache.write ( userIdOrAlias, groups );
+		}
+		return groups;
+	}
+
+	// snapshots are keyed by the ID or alias they were requested with, so membership changes drop them all
+	private void onGroupMembershipChanged ()
+	{
+		final ShardedExpiringCache<String,Set<String>> groups = fGroupSnapshots;
+		if ( groups != null )
+		{
+			groups.empty ();
+		}
+	}
+
+	private static ShardedExpiringCache<String,Set<String>> buildGroupSnapshotCache ( long durationMs )
+	{
+		return new ShardedExpiringCache.Builder<String,Set<String>> ()
+			.named ( "GroupSnapshots" )
+			.cachingFor ( durationMs, TimeUnit.MILLISECONDS )
+			.withShardCount ( 64 )
+			.withShardMaxSize ( 256 )
+			.build ()
+		;
+	}
+
+	public static final long kDefault_GroupSnapshotMs = 30L * 1000L;
+
 	private final AclFactory fAclFactory;
 	private final JwtProducer fJwtTokenFactory;
 	private final CopyOnWriteArrayList<JwtValidator> fJwtValidators;
+	private VerifiedCredentialCache<String> fCredentialCache;
+	private final ShardedExpiringCache<String,VerifiedJwt> fVerifiedJwts;
+	private ShardedExpiringCache<String,Set<String>> fGroupSnapshots;
+
+	// verified tokens are remembered until they expire, but no longer than this
+	private static final long kMaxJwtCacheMs = 15L * 60L * 1000L;
+
+	private static class VerifiedJwt
+	{
+		public VerifiedJwt ( String signedContent, String subject )
+		{
+			fSignedContent = signedContent;
+			fSubject = subject;
+		}
+
+		private final String fSignedContent;
+		private final String fSubject;
+	}
+
+	private static String getPasswordFingerprint ( CommonJsonIdentity user )
+	{
+		return user.getPasswordSalt () + ":" + user.getPasswordHash ();
+	}
+
+	private static boolean isVerified ( VerifiedCredentialCache<String> cache, String userId, String password, String fingerprint )
+	{
+		final VerifiedCredentialCache.Verification<String> v = cache.lookup ( userId, password );
+		return v != null && fingerprint.equals ( v.getValue () );
+	}
 
 	static final int kSaltChars = 64;
 
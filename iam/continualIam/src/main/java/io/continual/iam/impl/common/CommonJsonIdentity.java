@@ -101,6 +101,7 @@ public class CommonJsonIdentity extends CommonJsonObject implements Identity
 		fUserRecord.put ( CommonJsonDb.kPasswordBlock, o );
 	
 		fDb.storeUserObject ( getId(), asJson() );
+		fDb.onUserChanged ( getId() );
 	}
 
 	@Override
@@ -154,6 +155,7 @@ public class CommonJsonIdentity extends CommonJsonObject implements Identity
 	{
 		fUserRecord.put ( CommonJsonDb.kEnabled, enable );
 		fDb.storeUserObject ( getId(), asJson() );
+		fDb.onUserChanged ( getId() );
 	}
 
 	public boolean isEnabled ()
@@ -282,6 +284,7 @@ public class CommonJsonIdentity extends CommonJsonObject implements Identity
 	protected void store () throws IamSvcException
 	{
 		fDb.storeUserObject ( getId(), getDataRecord() );
+		fDb.onUserChanged ( getId() );
 	}
 
 	private static String generateSalt ( String appNonce )
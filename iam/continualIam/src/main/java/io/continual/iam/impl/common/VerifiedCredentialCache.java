@@ -0,0 +1,260 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.iam.impl.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.json.JSONObject;
+
+import io.continual.metrics.MetricsCatalog;
+import io.continual.metrics.MetricsSupplier;
+import io.continual.metrics.impl.noop.NoopMeter;
+import io.continual.metrics.metricTypes.Meter;
+import io.continual.util.collections.ShardedExpiringCache;
+
+/**
+ * A cache of password verifications, so that a client presenting the same credentials on each
+ * request doesn't pay for a slow password hash every time. Each user has at most one entry,
+ * holding a keyed hash of the password that was verified and a value from the IAM database
+ * (e.g. the identity, or a fingerprint of the stored password record). The hash key is random
+ * and never leaves the process, so cache contents can't be used to test password guesses
+ * offline.<br>
+ * <br>
+ * The cache also limits how many verifications may run at once for a user, so that a flood of
+ * bad passwords for one account can't tie up every CPU.
+ *
+ * @param <V> the value stored with a verification
+ */
+public class VerifiedCredentialCache<V> implements MetricsSupplier
+{
+	public static final long kDefault_TtlMs = 5L * 60L * 1000L;
+	public static final int kDefault_MaxEntries = 10000;
+	public static final int kDefault_MaxConcurrentChecks = 2;
+	public static final long kDefault_CheckWaitMs = 5000L;
+
+	/**
+	 * Build a cache from configuration with optional "ttlMs", "maxEntries", "maxConcurrentChecks",
+	 * and "checkWaitMs" values
+	 * @param name
+	 * @param config
+	 * @return a cache
+	 */
+	public static <V> VerifiedCredentialCache<V> fromConfig ( String name, JSONObject config )
+	{
+		return new VerifiedCredentialCache<V> (
+			name,
+			config.optLong ( "ttlMs", kDefault_TtlMs ),
+			config.optInt ( "maxEntries", kDefault_MaxEntries ),
+			config.optInt ( "maxConcurrentChecks", kDefault_MaxConcurrentChecks ),
+			config.optLong ( "checkWaitMs", kDefault_CheckWaitMs )
+		);
+	}
+
+	public VerifiedCredentialCache ( String name )
+	{
+		this ( name, kDefault_TtlMs, kDefault_MaxEntries, kDefault_MaxConcurrentChecks, kDefault_CheckWaitMs );
+	}
+
+	public VerifiedCredentialCache ( String name, long ttlMs, int maxEntries, int maxConcurrentChecks, long checkWaitMs )
+	{
+		fEntries = new ShardedExpiringCache.Builder<String,Entry<V>> ()
+			.named ( name )
+			.cachingFor ( ttlMs, TimeUnit.MILLISECONDS )
+			.withShardCount ( kShardCount )
+			.withShardMaxSize ( Math.max ( 1, maxEntries / kShardCount ) )
+			.build ()
+		;
+
+		fCheckPermits = new Semaphore [ kPermitStripes ];
+		for ( int i=0; i<kPermitStripes; i++ )
+		{
+			fCheckPermits[i] = new Semaphore ( Math.max ( 1, maxConcurrentChecks ) );
+		}
+		fCheckWaitMs = checkWaitMs;
+
+		final byte[] key = new byte [ 32 ];
+		new SecureRandom ().nextBytes ( key );
+		fHashKey = new SecretKeySpec ( key, kHashAlgo );
+
+		fHits = new NoopMeter ();
+		fMisses = new NoopMeter ();
+		fThrottled = new NoopMeter ();
+	}
+
+	@Override
+	public void populateMetrics ( MetricsCatalog metrics )
+	{
+		fHits = metrics.meter ( "credentialCacheHits" );
+		fMisses = metrics.meter ( "credentialCacheMisses" );
+		fThrottled = metrics.meter ( "credentialChecksThrottled" );
+	}
+
+	/**
+	 * A verification found in the cache
+	 * @param <V>
+	 */
+	public static class Verification<V>
+	{
+		/**
+		 * Get the value stored with the verification
+		 * @return a value, which may be null
+		 */
+		public V getValue () { return fValue; }
+
+		private Verification ( V value ) { fValue = value; }
+		private final V fValue;
+	}
+
+	/**
+	 * Find a verification of the given user and password
+	 * @param userId
+	 * @param password
+	 * @return a verification, or null if this password hasn't been verified for the user recently
+	 */
+	public Verification<V> lookup ( String userId, String password )
+	{
+		if ( userId == null || password == null ) return null;
+
+		final Entry<V> e = fEntries.read ( userId );
+		if ( e != null && MessageDigest.isEqual ( e.fPasswordHash, hashPassword ( userId, password ) ) )
+		{
+			fHits.mark ();
+			return new Verification<V> ( e.fValue );
+		}
+		fMisses.mark ();
+		return null;
+	}
+
+	/**
+	 * Remember a verification of the given user and password, replacing any other for the user
+	 * @param userId
+	 * @param password
+	 * @param value
+	 */
+	public void remember ( String userId, String password, V value )
+	{
+		if ( userId == null || password == null ) return;
+		fEntries.write ( userId, new Entry<V> ( hashPassword ( userId, password ), value ) );
+	}
+
+	/**
+	 * Forget any verification for the given user. Call this when the user's password, enabled
+	 * state, or record changes.
+	 * @param userId
+	 */
+	public void invalidate ( String userId )
+	{
+		if ( userId != null ) fEntries.remove ( userId );
+	}
+
+	/**
+	 * Forget all verifications
+	 */
+	public void clear ()
+	{
+		fEntries.empty ();
+	}
+
+	/**
+	 * Permission to run a verification, released by closing it
+	 */
+	public interface Permit extends AutoCloseable
+	{
+		@Override
+		void close ();
+	}
+
+	/**
+	 * Wait for permission to run a verification for the given user.
+	 * @param userId
+	 * @return a permit, or null if too many verifications for the user are already running
+	 * @throws InterruptedException
+	 */
+	public Permit acquire ( String userId ) throws InterruptedException
+	{
+		final Semaphore s = fCheckPermits [ ( ( userId == null ? 0 : userId.hashCode () ) & Integer.MAX_VALUE ) % kPermitStripes ];
+		if ( !s.tryAcquire ( fCheckWaitMs, TimeUnit.MILLISECONDS ) )
+		{
+			fThrottled.mark ();
+			return null;
+		}
+		return new Permit ()
+		{
+			@Override
+			public void close ()
+			{
+				if ( !fReleased )
+				{
+					fReleased = true;
+					s.release ();
+				}
+			}
+
+			private boolean fReleased = false;
+		};
+	}
+
+	private static class Entry<V>
+	{
+		public Entry ( byte[] passwordHash, V value )
+		{
+			fPasswordHash = passwordHash;
+			fValue = value;
+		}
+
+		private final byte[] fPasswordHash;
+		private final V fValue;
+	}
+
+	private final ShardedExpiringCache<String,Entry<V>> fEntries;
+	private final Semaphore[] fCheckPermits;
+	private final long fCheckWaitMs;
+	private final SecretKeySpec fHashKey;
+
+	private Meter fHits;
+	private Meter fMisses;
+	private Meter fThrottled;
+
+	private static final int kShardCount = 64;
+	private static final int kPermitStripes = 256;
+	private static final String kHashAlgo = "HmacSHA256";
+
+	private byte[] hashPassword ( String userId, String password )
+	{
+		try
+		{
+			final Mac mac = Mac.getInstance ( kHashAlgo );
+			mac.init ( fHashKey );
+			mac.update ( userId.getBytes ( StandardCharsets.UTF_8 ) );
+			mac.update ( (byte) 0 );
+			return mac.doFinal ( password.getBytes ( StandardCharsets.UTF_8 ) );
+		}
+		catch ( GeneralSecurityException x )
+		{
+			// HmacSHA256 is required of every Java platform
+			throw new IllegalStateException ( x );
+		}
+	}
+}
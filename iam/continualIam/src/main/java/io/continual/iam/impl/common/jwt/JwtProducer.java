@@ -1,6 +1,5 @@
 package io.continual.iam.impl.common.jwt;
 
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.json.JSONArray;
@@ -72,13 +71,6 @@ public class JwtProducer extends SimpleJwtValidator
 		return headerAndPayload + "." + signature;
 	}
 
-	public List<SigValidator> getValidators ()
-	{
-		final List<SigValidator> result = super.getValidators ();
-		result.add ( new Hs256SigValidator ( fSigningKey ) );
-		return result;
-	}
-
 	protected JwtProducer ( Builder b ) throws BuildFailure
 	{
 		super ( b );
@@ -92,6 +84,8 @@ public class JwtProducer extends SimpleJwtValidator
 			// we're not configured to issue JWT tokens
 			throw new BuildFailure ( "An issuer and a key are required to produce JWT tokens." );
 		}
+
+		addLocalValidator ( new Hs256SigValidator ( fSigningKey ) );
 	}
 
 //	protected abstract void storeInvalidJwtToken ( String token ) throws IamSvcException;
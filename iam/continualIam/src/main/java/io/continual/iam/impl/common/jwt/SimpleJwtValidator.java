@@ -3,6 +3,7 @@ package io.continual.iam.impl.common.jwt;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.net.URL;
 import java.net.URLConnection;
@@ -18,9 +19,18 @@ import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -37,8 +47,9 @@ import io.continual.util.data.json.CommentedJsonTokener;
 import io.continual.util.data.json.JsonVisitor;
 import io.continual.util.data.json.JsonVisitor.ArrayVisitor;
 import io.continual.util.data.json.JsonVisitor.ObjectVisitor;
+import io.continual.util.time.Clock;
 
-public class SimpleJwtValidator implements JwtValidator
+public class SimpleJwtValidator implements JwtValidator, AutoCloseable
 {
 	public static class Builder
 	{
@@ -48,13 +59,17 @@ public class SimpleJwtValidator implements JwtValidator
 		public Builder forIssuer ( String iss ) { fIssuers.add ( iss ); return this; }
 		public Builder forAudience ( String aud ) { fAudience = aud; return this; }
 		public Builder getPublicKeysFrom ( String pkurl ) { fPublicKeyUrl = pkurl; return this; }
+		public Builder refreshingKeysEvery ( long duration, TimeUnit timeUnit ) { fRefreshMs = TimeUnit.MILLISECONDS.convert ( duration, timeUnit ); return this; }
 
 		private String fName = "(anonymous)";
 		private String fAudience = "";
 		private final TreeSet<String> fIssuers = new TreeSet<> ();
 		private String fPublicKeyUrl = null;
+		private long fRefreshMs = kDefault_RefreshMs;
 	}
 
+	public static final long kDefault_RefreshMs = 60L * 60L * 1000L;
+
 	@Override
 	public boolean validate ( JwtCredential jwt ) throws IamSvcException
 	{
@@ -72,39 +87,194 @@ public class SimpleJwtValidator implements JwtValidator
 			return false;
 		}
 
-		final List<SigValidator> validators = getValidators ();
-		for ( SigValidator v : validators )
+		// a token that names its key is checked against that key alone
+		final KeySet keys = fKeys;
+		final String kid = jwt.getKeyId ();
+		if ( kid != null )
+		{
+			final SigValidator v = keys.fByKeyId.get ( kid );
+			if ( v != null )
+			{
+				return v.validate ( jwt );
+			}
+
+			// the issuer may have rotated its keys since we last read them
+			requestRefresh ();
+		}
+
+		for ( SigValidator v : keys.fAll )
+		{
+			if ( v.validate ( jwt ) ) return true;
+		}
+		for ( SigValidator v : fLocalValidators )
 		{
 			if ( v.validate ( jwt ) ) return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Stop refreshing keys from the public key source
+	 */
+	@Override
+	public void close ()
+	{
+		if ( fRefreshTask != null )
+		{
+			fRefreshTask.cancel ( false );
+		}
+	}
+
+	// true while keys are refreshed on a schedule
+	boolean isRefreshingKeys ()
+	{
+		return fRefreshTask != null && !fRefreshTask.isDone ();
+	}
+
 	public List<SigValidator> getValidators ()
 	{
 		final LinkedList<SigValidator> result = new LinkedList<> ();
-		result.addAll ( fSigValidators );
+		result.addAll ( fKeys.fAll );
+		result.addAll ( fLocalValidators );
 		return result;
 	}
 
+	/**
+	 * Add a signature validator that isn't read from the public key source, e.g. for tokens
+	 * signed by this process.
+	 * @param v
+	 */
+	protected void addLocalValidator ( SigValidator v )
+	{
+		fLocalValidators.add ( v );
+	}
+
 	private final String fName;
 	private final String fAudience;
 	private final TreeSet<String> fIssuers = new TreeSet<> ();
-	private final LinkedList<SigValidator> fSigValidators = new LinkedList<> ();
+	private final String fPublicKeyUrl;
+	private volatile KeySet fKeys;
+	private final AtomicLong fLastRefreshMs;
+	private final CopyOnWriteArrayList<SigValidator> fLocalValidators = new CopyOnWriteArrayList<> ();
+	private final ScheduledFuture<?> fRefreshTask;
 
 	protected SimpleJwtValidator ( Builder b ) throws BuildFailure
 	{
 		fName = b.fName;
 		fIssuers.addAll ( b.fIssuers );
 		fAudience = b.fAudience;
+		fPublicKeyUrl = b.fPublicKeyUrl;
+		fLastRefreshMs = new AtomicLong ( Clock.now () );
 
-		if ( b.fPublicKeyUrl != null )
-		{
-			fSigValidators.addAll ( readJwk ( b.fPublicKeyUrl ) );
-		}
+		fKeys = fPublicKeyUrl != null ? readJwk ( fPublicKeyUrl ) : new KeySet ( new HashMap<> (), new LinkedList<> () );
 		
 		if ( fIssuers.size () < 1 ) throw new BuildFailure ( "No issuers specified for validator." );
 		if ( fAudience == null || fAudience.length () == 0 ) throw new BuildFailure ( "No audience specified for validator." );
+
+		if ( fPublicKeyUrl != null && b.fRefreshMs > 0 )
+		{
+			final PeriodicRefresh pr = new PeriodicRefresh ( this );
+			fRefreshTask = skRefresher.scheduleWithFixedDelay ( pr, b.fRefreshMs, b.fRefreshMs, TimeUnit.MILLISECONDS );
+			pr.fTask = fRefreshTask;
+		}
+		else
+		{
+			fRefreshTask = null;
+		}
+	}
+
+	/**
+	 * The scheduled key refresh. It holds its validator weakly so that a validator that's
+	 * dropped without being closed can still be collected, and cancels itself when that happens.
+	 */
+	private static class PeriodicRefresh implements Runnable
+	{
+		public PeriodicRefresh ( SimpleJwtValidator v )
+		{
+			fValidator = new WeakReference<> ( v );
+		}
+
+		@Override
+		public void run ()
+		{
+			final SimpleJwtValidator v = fValidator.get ();
+			if ( v != null )
+			{
+				v.refresh ();
+			}
+			else if ( fTask != null )
+			{
+				fTask.cancel ( false );
+			}
+		}
+
+		private final WeakReference<SimpleJwtValidator> fValidator;
+		private volatile ScheduledFuture<?> fTask;
+	}
+
+	/**
+	 * The signature validators read from a key source, indexed by key ID where the source
+	 * provides one
+	 */
+	private static class KeySet
+	{
+		public KeySet ( Map<String,SigValidator> byKeyId, List<SigValidator> all )
+		{
+			fByKeyId = Collections.unmodifiableMap ( byKeyId );
+			fAll = Collections.unmodifiableList ( all );
+		}
+
+		private final Map<String,SigValidator> fByKeyId;
+		private final List<SigValidator> fAll;
+	}
+
+	private static final long kMinRefreshIntervalMs = 60L * 1000L;
+
+	private static final ScheduledThreadPoolExecutor skRefresher = new ScheduledThreadPoolExecutor ( 1, new ThreadFactory ()
+	{
+		@Override
+		public Thread newThread ( Runnable r )
+		{
+			final Thread t = new Thread ( r, "JWT key refresh" );
+			t.setDaemon ( true );
+			return t;
+		}
+	} );
+	static
+	{
+		// closed validators' tasks leave the queue right away rather than at their next run time
+		skRefresher.setRemoveOnCancelPolicy ( true );
+	}
+
+	// read an unrecognized key ID's source in the background, at most once a minute
+	private void requestRefresh ()
+	{
+		if ( fPublicKeyUrl == null ) return;
+
+		final long last = fLastRefreshMs.get ();
+		final long now = Clock.now ();
+		if ( now - last >= kMinRefreshIntervalMs && fLastRefreshMs.compareAndSet ( last, now ) )
+		{
+			skRefresher.execute ( new Runnable ()
+			{
+				@Override
+				public void run () { refresh (); }
+			} );
+		}
+	}
+
+	private void refresh ()
+	{
+		try
+		{
+			fLastRefreshMs.set ( Clock.now () );
+			fKeys = readJwk ( fPublicKeyUrl );
+		}
+		catch ( BuildFailure x )
+		{
+			// keep using the keys we have
+			log.warn ( "Couldn't refresh keys for the {} validator from {}: {}", fName, fPublicKeyUrl, x.getMessage () );
+		}
 	}
 
 	protected interface SigValidator
@@ -199,11 +369,12 @@ public class SimpleJwtValidator implements JwtValidator
 		private final PublicKey fPubKey;
 	}
 
-	private static List<SigValidator> readJwk ( String pkUrl ) throws BuildFailure
+	private static KeySet readJwk ( String pkUrl ) throws BuildFailure
 	{
 		log.info ( "Reading keys from {}", pkUrl );
 
 		final LinkedList<SigValidator> result = new LinkedList<> ();
+		final HashMap<String,SigValidator> byKeyId = new HashMap<> ();
 		try
 		{
 			final URL url = new URL ( pkUrl );
@@ -222,7 +393,11 @@ public class SimpleJwtValidator implements JwtValidator
 						{
 							if ( keyEntry.getString ( "kty" ).equals ( "RSA" ) )
 							{
-								result.add ( new RsaValidator ( keyEntry ) );
+								final RsaValidator v = new RsaValidator ( keyEntry );
+								result.add ( v );
+
+								final String kid = keyEntry.optString ( "kid", null );
+								if ( kid != null ) byKeyId.put ( kid, v );
 							}
 	//						else if ( keyEntry.getString ( "alg" ).equals ( "HS256" ) )
 	//						{
@@ -234,13 +409,15 @@ public class SimpleJwtValidator implements JwtValidator
 				}
 				else
 				{
-					// PEM keys
+					// PEM keys, named by key ID
 					JsonVisitor.forEachElement ( o, new ObjectVisitor<String,CertificateException> ()
 					{
 						@Override
 						public boolean visit ( String key, String pem ) throws CertificateException
 						{
-							result.add ( new RsaValidator ( pem ) );
+							final RsaValidator v = new RsaValidator ( pem );
+							result.add ( v );
+							byKeyId.put ( key, v );
 							return true;
 						}
 					} );
@@ -251,7 +428,7 @@ public class SimpleJwtValidator implements JwtValidator
 				throw new BuildFailure ( x );
 			}
 
-			return result;
+			return new KeySet ( byKeyId, result );
 		}
 		catch ( JSONException | IOException e )
 		{
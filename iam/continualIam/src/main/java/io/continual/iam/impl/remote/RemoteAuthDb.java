@@ -44,6 +44,7 @@ import io.continual.iam.identity.ApiKey;
 import io.continual.iam.identity.Group;
 import io.continual.iam.identity.Identity;
 import io.continual.iam.identity.JwtValidator;
+import io.continual.iam.impl.common.VerifiedCredentialCache;
 import io.continual.jsonHttpClient.HttpUsernamePasswordCredentials;
 import io.continual.jsonHttpClient.JsonOverHttpClient;
 import io.continual.jsonHttpClient.JsonOverHttpClient.BodyFormatException;
@@ -51,7 +52,6 @@ import io.continual.jsonHttpClient.JsonOverHttpClient.HttpResponse;
 import io.continual.jsonHttpClient.JsonOverHttpClient.HttpServiceException;
 import io.continual.jsonHttpClient.JsonOverHttpClientBuilder;
 import io.continual.metrics.MetricsCatalog;
-import io.continual.util.collections.ShardedExpiringCache;
 import io.continual.util.data.json.JsonVisitor;
 import io.continual.util.standards.HttpStatusCodes;
 
@@ -82,16 +82,19 @@ public class RemoteAuthDb implements IamDb<Identity,Group>
 			throw new BuildFailure ( "Missing authUser or authPassword" );
 		}
 
-		fKnownAuths = new ShardedExpiringCache.Builder<String,CacheEntry> ()
-			.named ( "RemoteAuths" )
-			.cachingFor ( config.optInt ( "cacheTimeSeconds", 15*60 ), TimeUnit.SECONDS )
-			.build ()
-		;
+		fKnownAuths = new VerifiedCredentialCache<RemoteIdentity> (
+			"RemoteAuths",
+			TimeUnit.SECONDS.toMillis ( config.optInt ( "cacheTimeSeconds", 15*60 ) ),
+			VerifiedCredentialCache.kDefault_MaxEntries,
+			VerifiedCredentialCache.kDefault_MaxConcurrentChecks,
+			VerifiedCredentialCache.kDefault_CheckWaitMs
+		);
 	}
 
 	@Override
 	public void populateMetrics ( MetricsCatalog metrics )
 	{
+		fKnownAuths.populateMetrics ( metrics );
 	}
 
 	@Override
@@ -220,48 +223,63 @@ public class RemoteAuthDb implements IamDb<Identity,Group>
 		final String username = upc.getUsername ();
 		final String password = upc.getPassword ();
 
-		// do we have a recent auth with the same password?
-		final CacheEntry ce = fKnownAuths.read ( username, entry -> entry.usedPassword ( password ) );
-		if ( ce != null )
+		// do we have a recent auth with the same password? (a null identity is a recent rejection)
+		final VerifiedCredentialCache.Verification<RemoteIdentity> known = fKnownAuths.lookup ( username, password );
+		if ( known != null )
 		{
-			return ce.getIdentity ();
+			return known.getValue ();
 		}
 
 		// no, ask the IAM service
-		try ( final HttpResponse resp = fIamClient.newRequest ()
-				.onPath ( makePath ( "/auth/login" ) )
-				.post ( new JSONObject ()
-					.put ( "username", username )
-					.put ( "password", password )
-				)
-		)
+		try ( final VerifiedCredentialCache.Permit permit = fKnownAuths.acquire ( username ) )
 		{
-			final int code = resp.getCode ();
-			switch ( code )
+			if ( permit == null ) return null;
+
+			// another request may have asked while this one waited
+			final VerifiedCredentialCache.Verification<RemoteIdentity> recent = fKnownAuths.lookup ( username, password );
+			if ( recent != null )
 			{
-				case HttpStatusCodes.k200_ok:
-				{
-					final RemoteIdentity id = new RemoteIdentity ( username );
-					final CacheEntry newCe = new CacheEntry ( password, id );
-					fKnownAuths.write ( username, newCe );
-					return newCe.getIdentity ();
-				}
+				return recent.getValue ();
+			}
 
-				case HttpStatusCodes.k401_unauthorized:
+			try ( final HttpResponse resp = fIamClient.newRequest ()
+					.onPath ( makePath ( "/auth/login" ) )
+					.post ( new JSONObject ()
+						.put ( "username", username )
+						.put ( "password", password )
+					)
+			)
+			{
+				final int code = resp.getCode ();
+				switch ( code )
 				{
-					final CacheEntry newCe = new CacheEntry ( password, null );
-					fKnownAuths.write ( username, newCe );
-					return null;
+					case HttpStatusCodes.k200_ok:
+					{
+						final RemoteIdentity id = new RemoteIdentity ( username );
+						fKnownAuths.remember ( username, password, id );
+						return id;
+					}
+
+					case HttpStatusCodes.k401_unauthorized:
+					{
+						fKnownAuths.remember ( username, password, null );
+						return null;
+					}
+
+					default:
+						throw new IamSvcException ( "Unexpected response from Auth service" );
 				}
-
-				default:
-					throw new IamSvcException ( "Unexpected response from Auth service" );
 			}
 		}
 		catch ( JSONException | HttpServiceException e )
 		{
 			throw new IamSvcException ( e );
 		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread ().interrupt ();
+			throw new IamSvcException ( e );
+		}
 	}
 
 	@Override
@@ -371,7 +389,7 @@ public class RemoteAuthDb implements IamDb<Identity,Group>
 	private final String fAuthUser;
 	private final String fAuthPassword;
 
-	private final ShardedExpiringCache<String,CacheEntry> fKnownAuths;
+	private final VerifiedCredentialCache<RemoteIdentity> fKnownAuths;
 
 	private String makePath ( String... parts )
 	{
@@ -557,37 +575,4 @@ public class RemoteAuthDb implements IamDb<Identity,Group>
 			return fBackingData;
 		}
 	}
-
-	private class CacheEntry
-	{
-		public CacheEntry ( String password, RemoteIdentity id )
-		{
-			fPassword = hash ( password );
-			fIdentity = id;
-		}
-
-		/**
-		 * Get the stored identity record, which may be null
-		 * @return an identity or null
-		 */
-		public RemoteIdentity getIdentity () { return fIdentity; }
-
-		/**
-		 * Return true if the given password was used
-		 * @param password
-		 * @return true if the given password was used
-		 */
-		public boolean usedPassword ( String password )
-		{
-			return ( fPassword == null && password == null ) || fPassword.equals ( hash ( password ) );
-		}
-
-		private final Integer fPassword;
-		private final RemoteIdentity fIdentity;
-
-		private final Integer hash ( String val )
-		{
-			return val == null ? null : val.hashCode ();
-		}
-	}
 }
@@ -1,6 +1,9 @@
 package io.continual.iam.access;
 
+import java.util.Random;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONObject;
 import org.junit.Assert;
@@ -250,6 +253,132 @@ public class AccessControlListTest extends TestCase
 		assertNotNull ( AccessControlList.deserialize( (JSONObject)null , null ) );
 	}
 
+	@Test
+	public void testMatchesEntryScan ()
+	{
+		// compare checks against a scan of the ordered entries over many random ACLs
+		final Random r = new Random ( 1234 );
+		final String[] subjects = { "u1", "u2", "g1", "g2", AccessControlEntry.kAnyUser, AccessControlEntry.kOwner };
+		final String[] ops = { "read", "READ", "write", "delete", AccessControlEntry.kAnyOperation };
+
+		for ( int i=0; i<500; i++ )
+		{
+			final AccessControlList acl = new AccessControlList ();
+			if ( r.nextBoolean () ) acl.setOwner ( r.nextBoolean () ? "u1" : "g1" );
+
+			final int entryCount = r.nextInt ( 6 );
+			for ( int e=0; e<entryCount; e++ )
+			{
+				final String[] entryOps = r.nextBoolean () ?
+					new String[] { ops[r.nextInt ( ops.length )] } :
+					new String[] { ops[r.nextInt ( ops.length )], ops[r.nextInt ( ops.length )] };
+				if ( r.nextBoolean () )
+				{
+					acl.permit ( subjects[r.nextInt ( subjects.length )], entryOps );
+				}
+				else
+				{
+					acl.deny ( subjects[r.nextInt ( subjects.length )], entryOps );
+				}
+			}
+
+			for ( String user : new String[] { null, "u1", "u2", "u3" } )
+			{
+				final TreeSet<String> groups = new TreeSet<> ();
+				if ( r.nextBoolean () ) groups.add ( "g1" );
+				if ( r.nextBoolean () ) groups.add ( "g2" );
+
+				for ( String op : new String[] { "read", "Read", "write", "delete", "other" } )
+				{
+					assertEquals ( acl.toString () + " " + user + " " + groups + " " + op,
+						scan ( acl, user, groups, op ), acl.canUser ( user, groups, op ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRecompileOnChange ()
+	{
+		final AccessControlList acl = new AccessControlList ();
+		acl.permit ( "u1", "read" );
+		assertTrue ( acl.canUser ( "u1", null, "read" ) );
+
+		acl.clear ( "u1", "read" );
+		assertFalse ( acl.canUser ( "u1", null, "read" ) );
+
+		acl.permit ( AccessControlEntry.kOwner, "read" );
+		assertFalse ( acl.canUser ( "u1", null, "read" ) );
+		acl.setOwner ( "u1" );
+		assertTrue ( acl.canUser ( "u1", null, "read" ) );
+
+		acl.clear ();
+		assertFalse ( acl.canUser ( "u1", null, "read" ) );
+	}
+
+	@Test
+	public void testChangesSeenWhileOthersCheck () throws InterruptedException
+	{
+		// plenty of unrelated entries, so compiling takes a while
+		final AccessControlList acl = new AccessControlList ();
+		for ( int i=0; i<200; i++ )
+		{
+			acl.permit ( "other" + i, "read" );
+		}
+
+		final AtomicBoolean done = new AtomicBoolean ( false );
+		final AtomicReference<Throwable> failure = new AtomicReference<> ();
+
+		// readers keep compiling the ACL while it changes underneath them
+		final Thread[] readers = new Thread [ 4 ];
+		for ( int t=0; t<readers.length; t++ )
+		{
+			readers[t] = new Thread ( () -> {
+				try
+				{
+					while ( !done.get () )
+					{
+						acl.canUser ( "u1", null, "read" );
+					}
+				}
+				catch ( Throwable x )
+				{
+					failure.set ( x );
+				}
+			} );
+			readers[t].start ();
+		}
+
+		// a reader's table built before a change must never replace the table after it
+		int stale = 0;
+		for ( int i=0; i<5000; i++ )
+		{
+			acl.permit ( "u1", "read" );
+			if ( !acl.canUser ( "u1", null, "read" ) ) stale++;
+			acl.clear ( "u1", "read" );
+			if ( acl.canUser ( "u1", null, "read" ) ) stale++;
+		}
+		done.set ( true );
+		for ( Thread t : readers )
+		{
+			t.join ();
+		}
+
+		assertNull ( failure.get () );
+		assertEquals ( 0, stale );
+	}
+
+	private static boolean scan ( AccessControlList acl, String userId, TreeSet<String> groups, String op )
+	{
+		final boolean isOwner = userId != null && userId.equals ( acl.getOwner () );
+		for ( AccessControlEntry e : acl.getEntries () )
+		{
+			final AccessControlEntry.Access p = e.check ( userId, groups, isOwner, op );
+			if ( p != null ) return p == AccessControlEntry.Access.PERMIT;
+		}
+		return false;
+	}
+
 	private static class TestAclUpdateListener implements AclUpdateListener
 	{
 		@Override
@@ -1,5 +1,8 @@
 package io.continual.iam.impl.common;
 
+import java.util.LinkedList;
+import java.util.Map;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -194,6 +197,60 @@ public class CommonJsonDbTest
 		}
 	}
 
+	@Test
+	public void testCanUserAfterGroupChange () throws IamSvcException, IamIdentityExists, IamIdentityDoesNotExist, IamGroupDoesNotExist, IamGroupExists
+	{
+		try ( JsonDocDb jdd = new JsonDocDb () )
+		{
+			jdd.createUser ( "user1" );
+			jdd.createGroup ( "group1", "group1" );
+
+			final ProtectedResource res = new ProtectedResource ()
+			{
+				@Override public String getId () { return "id"; }
+				@Override public AccessControlList getAccessControlList () { return fAcl; }
+				private final AccessControlList fAcl = new AccessControlList ().permit ( "group1", "read" );
+			};
+
+			Assert.assertFalse ( jdd.canUser ( "user1", res, "read" ) );
+
+			// the group snapshot taken above is dropped when membership changes
+			jdd.addUserToGroup ( "group1", "user1" );
+			Assert.assertTrue ( jdd.canUser ( "user1", res, "read" ) );
+
+			jdd.removeUserFromGroup ( "group1", "user1" );
+			Assert.assertFalse ( jdd.canUser ( "user1", res, "read" ) );
+		}
+	}
+
+	@Test
+	public void testBatchCanUser () throws IamSvcException, IamIdentityExists
+	{
+		try ( JsonDocDb jdd = new JsonDocDb () )
+		{
+			jdd.createUser ( "user1" );
+
+			final LinkedList<ProtectedResource> resources = new LinkedList<> ();
+			for ( int i=0; i<10; i++ )
+			{
+				final String id = "res" + i;
+				final AccessControlList acl = i % 2 == 0 ? new AccessControlList ().permit ( "user1", "read" ) : new AccessControlList ();
+				resources.add ( new ProtectedResource ()
+				{
+					@Override public String getId () { return id; }
+					@Override public AccessControlList getAccessControlList () { return acl; }
+				} );
+			}
+
+			final Map<String,Boolean> result = jdd.canUser ( "user1", resources, "read" );
+			Assert.assertEquals ( 10, result.size () );
+			for ( int i=0; i<10; i++ )
+			{
+				Assert.assertEquals ( i % 2 == 0, result.get ( "res" + i ).booleanValue () );
+			}
+		}
+	}
+
 	@Test
 	public void testRemoveAlias ()
 	{
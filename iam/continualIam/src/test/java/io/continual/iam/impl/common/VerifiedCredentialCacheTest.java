@@ -0,0 +1,62 @@
+package io.continual.iam.impl.common;
+
+import org.junit.Test;
+
+import io.continual.util.time.Clock;
+import junit.framework.TestCase;
+
+public class VerifiedCredentialCacheTest extends TestCase
+{
+	@Test
+	public void testLookup ()
+	{
+		final VerifiedCredentialCache<String> cache = new VerifiedCredentialCache<> ( "test" );
+		assertNull ( cache.lookup ( "alice", "secret" ) );
+
+		cache.remember ( "alice", "secret", "v1" );
+		assertEquals ( "v1", cache.lookup ( "alice", "secret" ).getValue () );
+		assertNull ( cache.lookup ( "alice", "Secret" ) );
+		assertNull ( cache.lookup ( "bob", "secret" ) );
+		assertNull ( cache.lookup ( "alice", null ) );
+
+		// a cached rejection
+		cache.remember ( "bob", "guess", null );
+		assertNotNull ( cache.lookup ( "bob", "guess" ) );
+		assertNull ( cache.lookup ( "bob", "guess" ).getValue () );
+
+		cache.invalidate ( "alice" );
+		assertNull ( cache.lookup ( "alice", "secret" ) );
+	}
+
+	@Test
+	public void testExpiry ()
+	{
+		final Clock.TestClock tc = Clock.useNewTestClock ();
+
+		final VerifiedCredentialCache<String> cache = new VerifiedCredentialCache<> ( "test", 1000L, 100, 1, 10L );
+		cache.remember ( "alice", "secret", "v1" );
+		tc.add ( 500 );
+		assertNotNull ( cache.lookup ( "alice", "secret" ) );
+		tc.add ( 1000 );
+		assertNull ( cache.lookup ( "alice", "secret" ) );
+	}
+
+	@Test
+	public void testConcurrentCheckLimit () throws InterruptedException
+	{
+		final VerifiedCredentialCache<String> cache = new VerifiedCredentialCache<> ( "test", 60000L, 100, 1, 10L );
+
+		final VerifiedCredentialCache.Permit first = cache.acquire ( "alice" );
+		assertNotNull ( first );
+		assertNull ( cache.acquire ( "alice" ) );
+
+		first.close ();
+		first.close ();		// closing twice releases once
+
+		try ( final VerifiedCredentialCache.Permit again = cache.acquire ( "alice" ) )
+		{
+			assertNotNull ( again );
+			assertNull ( cache.acquire ( "alice" ) );
+		}
+	}
+}
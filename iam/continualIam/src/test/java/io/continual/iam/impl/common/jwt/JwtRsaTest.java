@@ -1,14 +1,21 @@
 package io.continual.iam.impl.common.jwt;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.TimeUnit;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import io.continual.builder.Builder.BuildFailure;
 import io.continual.iam.credentials.JwtCredential;
 import io.continual.iam.credentials.JwtCredential.InvalidJwtToken;
+import io.continual.iam.exceptions.IamSvcException;
 import io.continual.iam.impl.common.jwt.SimpleJwtValidator.RsaValidator;
 import junit.framework.TestCase;
 
@@ -54,6 +61,79 @@ public class JwtRsaTest extends TestCase
 
 		assertTrue ( v.validate ( cred ) );
 	}
+
+	@Test
+	public void testKeyIdIndex () throws IOException, BuildFailure, IamSvcException, InvalidJwtToken
+	{
+		final JwtCredential cred = new JwtCredential ( kGoogleToken, false );
+		assertEquals ( "05a02649a5b45c90fdfe4da1ebefa9c079ab593e", cred.getKeyId () );
+
+		// the signing key is found by its key ID
+		assertTrue ( buildValidator ( new JSONArray ()
+			.put ( rsaKey ( "05a02649a5b45c90fdfe4da1ebefa9c079ab593e", kGoogleModulus ) )
+		).validate ( cred ) );
+
+		// an unknown key ID falls back to trying each key
+		assertTrue ( buildValidator ( new JSONArray ()
+			.put ( rsaKey ( "someOtherKey", kGoogleModulus ) )
+		).validate ( cred ) );
+
+		// a known key ID is checked against that key alone
+		assertFalse ( buildValidator ( new JSONArray ()
+			.put ( rsaKey ( "05a02649a5b45c90fdfe4da1ebefa9c079ab593e", "1" + kGoogleModulus.substring ( 1 ) ) )
+			.put ( rsaKey ( "someOtherKey", kGoogleModulus ) )
+		).validate ( cred ) );
+	}
+
+	@Test
+	public void testCloseStopsRefresh () throws IOException, BuildFailure
+	{
+		final JSONArray keys = new JSONArray ().put ( rsaKey ( "05a02649a5b45c90fdfe4da1ebefa9c079ab593e", kGoogleModulus ) );
+
+		assertFalse ( buildValidator ( keys ).isRefreshingKeys () );
+
+		final SimpleJwtValidator v = buildValidator ( keys, 1, TimeUnit.HOURS );
+		assertTrue ( v.isRefreshingKeys () );
+		v.close ();
+		assertFalse ( v.isRefreshingKeys () );
+	}
+
+	private static JSONObject rsaKey ( String kid, String modulus )
+	{
+		return new JSONObject ()
+			.put ( "kty", "RSA" )
+			.put ( "kid", kid )
+			.put ( "e", "AQAB" )
+			.put ( "n", modulus )
+		;
+	}
+
+	private static SimpleJwtValidator buildValidator ( JSONArray keys ) throws IOException, BuildFailure
+	{
+		return buildValidator ( keys, 0, TimeUnit.MILLISECONDS );
+	}
+
+	private static SimpleJwtValidator buildValidator ( JSONArray keys, long refresh, TimeUnit refreshUnit ) throws IOException, BuildFailure
+	{
+		final File keyFile = File.createTempFile ( "jwks-", ".json" );
+		keyFile.deleteOnExit ();
+		try ( FileWriter fw = new FileWriter ( keyFile ) )
+		{
+			fw.write ( new JSONObject ().put ( "keys", keys ).toString () );
+		}
+
+		return new SimpleJwtValidator.Builder ()
+			.named ( "test" )
+			.forIssuer ( "accounts.google.com" )
+			.forAudience ( "1089137055919-rjiob4if7lr7vstv4ibv35brvqc8tqng.apps.googleusercontent.com" )
+			.getPublicKeysFrom ( keyFile.toURI ().toString () )
+			.refreshingKeysEvery ( refresh, refreshUnit )
+			.build ()
+		;
+	}
+
+	private static final String kGoogleModulus = "0QW_fsq8WFtNPeOp8cJO1zoToB_E2HBs1Y4ceJB_3qgJmATBCffGwTm7waYEgIlQbJ7fqP1ttgdab-5yQTDGrE51_KS1_3jlB_EDYZPciT3uzHo69BE0v4h9A29fG2MTR1iwkjqDuWE-JN1TNQUeYZ554WYktX1d0qnaiOhM8jNLcuU948LW9d-9xwd7NwnKD_PakCOWRUqXZVYnS7EsTMG4aZpZk0ZB-695tsH-NmwqISPfXI7sEjINRd2PdD9mvs2xAfp-T7eaCV-C3fTfoHDGB3Vwkfn1rG2p-hFB57vzUYB8vEdRgR8ehhEgWndLU6fovvVToWFnPcvkm-ZFxw";
+	private static final String kGoogleToken = "eyJhbGciOiJSUzI1NiIsImtpZCI6IjA1YTAyNjQ5YTViNDVjOTBmZGZlNGRhMWViZWZhOWMwNzlhYjU5M2UiLCJ0eXAiOiJKV1QifQ.eyJpc3MiOiJhY2NvdW50cy5nb29nbGUuY29tIiwiYXpwIjoiMTA4OTEzNzA1NTkxOS1yamlvYjRpZjdscjd2c3R2NGlidjM1YnJ2cWM4dHFuZy5hcHBzLmdvb2dsZXVzZXJjb250ZW50LmNvbSIsImF1ZCI6IjEwODkxMzcwNTU5MTktcmppb2I0aWY3bHI3dnN0djRpYnYzNWJydnFjOHRxbmcuYXBwcy5nb29nbGV1c2VyY29udGVudC5jb20iLCJzdWIiOiIxMDIzNzUwNDQwNzE0NjkwNDkwMDEiLCJoZCI6InJhdGhyYXZhbmUuY29tIiwiZW1haWwiOiJwZXRlckByYXRocmF2YW5lLmNvbSIsImVtYWlsX3ZlcmlmaWVkIjp0cnVlLCJhdF9oYXNoIjoiNlpvSEdyNlVKMDN1X19jMUpfaXg1ZyIsIm5hbWUiOiJQZXRlciBDYXJkb25hIiwicGljdHVyZSI6Imh0dHBzOi8vbGg0Lmdvb2dsZXVzZXJjb250ZW50LmNvbS8tS3RrNjY1cThxRjAvQUFBQUFBQUFBQUkvQUFBQUFBQUFBQUEvQUNIaTNyZVpwVlMzeUs2cTlkWVdBZmhRNFJFNHpCSnFoQS9zOTYtYy9waG90by5qcGciLCJnaXZlbl9uYW1lIjoiUGV0ZXIiLCJmYW1pbHlfbmFtZSI6IkNhcmRvbmEiLCJsb2NhbGUiOiJlbiIsImlhdCI6MTU2Nzc0MTE1NywiZXhwIjoxNTY3NzQ0NzU3LCJqdGkiOiJkY2MwNjg5NzlkNzM3NGMzODI4MDUyZTk3ZDY2NjU0NTE5MWRhNjY2In0.ZtTGw_EOIg7ApzunkYUBI82V5D6_oAfR83HGQ6NvxZoTfmmnnttRH7a7jHP2YJDNGfpCfY1S9ngEfyZeoQDV1JEg1rp0bV3H5hjr4FZn5ITs0uzpMARpG89RieKddxT9tYqq3zeVZGO8LP_EbtvqJVOB8EwIfPyTeBGG935JG32KZGSmA1f594RHPCHzhZV_y5gYjBi0z5n91x0yt_Kp89koVfo4h8QrDa6zS0UaH56quF872_hsMKihjBEAB4pbMB7AHYGIEWkZBO7HSNXuAhHqTUj2-rH6_IB_M8f2bmyJu19QkRi-IncXnXgLJZp5yMNeD7l_UPtLzVBww9a9aw";
 }
 
 
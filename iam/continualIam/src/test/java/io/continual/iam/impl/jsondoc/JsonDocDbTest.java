@@ -16,16 +16,21 @@
 package io.continual.iam.impl.jsondoc;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import io.continual.iam.credentials.JwtCredential;
+import io.continual.iam.credentials.JwtCredential.InvalidJwtToken;
 import io.continual.iam.credentials.UsernamePasswordCredential;
 import io.continual.iam.exceptions.IamBadRequestException;
+import io.continual.iam.exceptions.IamIdentityExists;
 import io.continual.iam.exceptions.IamIdentityDoesNotExist;
 import io.continual.iam.exceptions.IamSvcException;
 import io.continual.iam.identity.ApiKey;
+import io.continual.iam.identity.JwtValidator;
 import io.continual.iam.impl.common.CommonJsonIdentity;
 import io.continual.util.time.Clock;
 import junit.framework.TestCase;
@@ -86,6 +91,70 @@ public class JsonDocDbTest extends TestCase
 		}
 	}
 
+	@Test
+	public void testRepeatedPasswordAuth () throws IamSvcException, IamIdentityExists, IOException
+	{
+		try ( final JsonDocDb db = new JsonDocDb () )
+		{
+			final CommonJsonIdentity i = db.createUser ( "test" );
+			i.setPassword ( "foobar" );
+
+			assertNotNull ( db.authenticate ( new UsernamePasswordCredential ( "test", "foobar" ) ) );
+			assertNotNull ( db.authenticate ( new UsernamePasswordCredential ( "test", "foobar" ) ) );
+			assertNull ( db.authenticate ( new UsernamePasswordCredential ( "test", "foobaz" ) ) );
+
+			// a verified password no longer works once it's changed or the user is disabled
+			i.setPassword ( "bazbar" );
+			assertNull ( db.authenticate ( new UsernamePasswordCredential ( "test", "foobar" ) ) );
+			assertNotNull ( db.authenticate ( new UsernamePasswordCredential ( "test", "bazbar" ) ) );
+
+			i.enable ( false );
+			assertNull ( db.authenticate ( new UsernamePasswordCredential ( "test", "bazbar" ) ) );
+		}
+	}
+
+	@Test
+	public void testRepeatedJwtAuth () throws IamSvcException, IamIdentityExists, IOException, InvalidJwtToken
+	{
+		// Payload - {"iss": "continual","sub": "continual","aud": "continual","iat": 1670936333,"exp": 1670936933}
+		final String token = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9." +
+			"eyJpc3MiOiJjb250aW51YWwiLCJzdWIiOiJjb250aW51YWwiLCJhdWQiOiJjb250aW51YWwiLCJpYXQiOjE2NzA5MzYzMzMsImV4cCI6MTY3MDkzNjkzM30." +
+			"1VBwqpRd1UoRsbcabSzMROxa6xucSRghirmQMVHDYRQ";
+
+		final Clock.TestClock tc = Clock.useNewTestClock ();
+		tc.set ( 1670936333000L );
+
+		try ( final JsonDocDb db = new JsonDocDb () )
+		{
+			db.createUser ( "continual" );
+
+			final AtomicInteger checks = new AtomicInteger ( 0 );
+			db.addJwtValidator ( new JwtValidator ()
+			{
+				@Override
+				public boolean validate ( JwtCredential jwt )
+				{
+					checks.incrementAndGet ();
+					return true;
+				}
+			} );
+
+			// the second use of the token is served from the cache
+			assertNotNull ( db.authenticate ( new JwtCredential ( token ) ) );
+			assertNotNull ( db.authenticate ( new JwtCredential ( token ) ) );
+			assertEquals ( 1, checks.get () );
+
+			db.invalidateJwtToken ( token );
+			assertNotNull ( db.authenticate ( new JwtCredential ( token ) ) );
+			assertEquals ( 2, checks.get () );
+
+			// the cache doesn't outlive the token
+			tc.add ( 601000L );
+			assertNotNull ( db.authenticate ( new JwtCredential ( token, false ) ) );
+			assertEquals ( 3, checks.get () );
+		}
+	}
+
 	@Test
 	public void testSerialize ()
 	{
@@ -24,6 +24,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.json.JSONArray;
@@ -43,6 +44,8 @@ import io.continual.iam.impl.common.CommonJsonIdentity;
 import io.continual.iam.impl.common.jwt.JwtProducer;
 import io.continual.util.data.json.JsonUtil;
 import io.continual.util.data.json.JsonVisitor;
+import io.continual.util.db.file.BTreeIndex;
+import io.continual.util.db.file.BlockFile;
 import io.continual.util.db.file.JsonObjectFile;
 import io.continual.util.time.Clock;
 
@@ -84,6 +87,28 @@ public class IamFileDb extends CommonJsonDb<CommonJsonIdentity,CommonJsonGroup>
 			return this;
 		}
 
+		/**
+		 * Read the file through a memory map
+		 * @param mm
+		 * @return this builder
+		 */
+		public Builder memoryMapped ( boolean mm )
+		{
+			this.memoryMapped = mm;
+			return this;
+		}
+
+		/**
+		 * Force each write to the storage device before returning (the default)
+		 * @param sync
+		 * @return this builder
+		 */
+		public Builder syncingWrites ( boolean sync )
+		{
+			this.syncWrites = sync;
+			return this;
+		}
+
 		public Builder usingAclFactory ( AclFactory af )
 		{
 			this.aclFactory = af;
@@ -105,6 +130,8 @@ public class IamFileDb extends CommonJsonDb<CommonJsonIdentity,CommonJsonGroup>
 		private boolean forceInit = false;
 		private boolean readonly = true;
 		private String password = null;
+		private boolean memoryMapped = false;
+		private boolean syncWrites = true;
 		private AclFactory aclFactory;
 		private JwtProducer jwtProducer = null;
 	}
@@ -121,21 +148,25 @@ public class IamFileDb extends CommonJsonDb<CommonJsonIdentity,CommonJsonGroup>
 				JsonObjectFile.initialize ( b.file, 1024 );
 			}
 
-			fDb = new JsonObjectFile ( b.file, !b.readonly, b.password );
+			// a file in the original block file format is upgraded when opened for writes
+			fDb = new JsonObjectFile ( new BlockFile.Builder ()
+				.usingFile ( b.file )
+				.withWrite ( !b.readonly )
+				.withPassword ( b.password )
+				.memoryMapped ( b.memoryMapped )
+				.syncingWrites ( b.syncWrites )
+			);
 			if ( init )
 			{
-				final JSONObject index = new JSONObject ()
-					.put ( "users", new JSONObject () )
-					.put ( "groups", new JSONObject () )
-					// etc.
-				;
-				final long mainIndex = fDb.write ( index );
-				if ( mainIndex != fDb.indexToAddress ( 0 ) )
+				// the first object in the file records where the index is
+				final long header = fDb.write ( new JSONObject () );
+				if ( header != fDb.indexToAddress ( 0 ) )
 				{
 					throw new IamSvcException ( "Couldn't initialize JSON DB file propertly." );
 				}
+				fDb.overwrite ( header, new JSONObject ().put ( kIndexRoot, BTreeIndex.create ( fDb.getBlockFile () ) ) );
 			}
-			fMainIndex = fDb.read ( fDb.indexToAddress ( 0 ) );
+			fIndex = openIndex ( fDb.read ( fDb.indexToAddress ( 0 ) ), b.readonly );
 		}
 		catch ( IOException x )
 		{
@@ -169,64 +200,146 @@ public class IamFileDb extends CommonJsonDb<CommonJsonIdentity,CommonJsonGroup>
 	@Override
 	public Collection<String> getAllUsers () throws IamSvcException
 	{
-		final TreeSet<String> result = new TreeSet<> ();
-		final JSONObject userIndex = fMainIndex.optJSONObject ( "users" );
-		if ( userIndex != null )
-		{
-			result.addAll ( userIndex.keySet () );
-		}
-		return result;
+		return idsIn ( "users", "" );
 	}
 
 	@Override
 	public Collection<String> getAllGroups() throws IamSvcException
 	{
-		final TreeSet<String> result = new TreeSet<> ();
-		final JSONObject groupIndex = fMainIndex.optJSONObject ( "groups" );
-		if ( groupIndex != null )
-		{
-			result.addAll ( groupIndex.keySet () );
-		}
-		return result;
+		return idsIn ( "groups", "" );
 	}
 
 	@Override
 	public List<String> findUsers ( String startingWith ) throws IamSvcException
 	{
-		final ArrayList<String> result = new ArrayList<> ();
-		final JSONObject userIndex = fMainIndex.optJSONObject ( "users" );
-		if ( userIndex != null )
+		return new ArrayList<> ( idsIn ( "users", startingWith ) );
+	}
+
+	@Override
+	public void sweepExpiredTags () throws IamSvcException
+	{
+		for ( String key : idsIn ( "tags", "" ) )
 		{
-			for ( String userId : userIndex.keySet () )
+			loadTagObject ( key, false );	// which will drop expired tags
+		}
+	}
+
+	private final JsonObjectFile fDb;
+	private final KeyIndex fIndex;
+
+	/**
+	 * The index from object IDs to record addresses. A key is the ID path to the object (e.g.
+	 * "users" and the user ID) joined with a null character.
+	 */
+	private interface KeyIndex
+	{
+		long get ( String key ) throws IOException;
+		void put ( String key, long addr ) throws IOException;
+		void remove ( String key ) throws IOException;
+		TreeMap<String,Long> entriesWithPrefix ( String prefix ) throws IOException;
+	}
+
+	private static final String kIndexRoot = "indexRoot";
+	private static final String kKeySep = "\u0000";
+
+	private KeyIndex openIndex ( JSONObject header, boolean readonly ) throws IOException
+	{
+		if ( header.has ( kIndexRoot ) )
+		{
+			return bTreeIndex ( header.getLong ( kIndexRoot ) );
+		}
+
+		// older files keep the entire index as nested objects in the header
+		final TreeMap<String,Long> entries = new TreeMap<> ();
+		flattenIndex ( header, "", entries );
+
+		if ( readonly )
+		{
+			return new KeyIndex ()
 			{
-				if ( userId.startsWith ( startingWith ) )
+				@Override
+				public long get ( String key ) { final Long addr = entries.get ( key ); return addr == null ? kEntryNotFound : addr; }
+
+				@Override
+				public void put ( String key, long addr ) throws IOException { throw new IOException ( "This IAM file is read-only." ); }
+
+				@Override
+				public void remove ( String key ) throws IOException { throw new IOException ( "This IAM file is read-only." ); }
+
+				@Override
+				public TreeMap<String,Long> entriesWithPrefix ( String prefix )
 				{
-					result.add ( userId );
+					final TreeMap<String,Long> result = new TreeMap<> ();
+					for ( Map.Entry<String,Long> e : entries.tailMap ( prefix ).entrySet () )
+					{
+						if ( !e.getKey ().startsWith ( prefix ) ) break;
+						result.put ( e.getKey (), e.getValue () );
+					}
+					return result;
 				}
+			};
+		}
+
+		final long root = BTreeIndex.create ( fDb.getBlockFile (), entries );
+		fDb.overwrite ( fDb.indexToAddress ( 0 ), new JSONObject ().put ( kIndexRoot, root ) );
+		log.info ( "Moved the index in {} into a b-tree with {} entries.", fDb.getFilePath (), entries.size () );
+		return bTreeIndex ( root );
+	}
+
+	private KeyIndex bTreeIndex ( long root )
+	{
+		final BTreeIndex index = new BTreeIndex ( fDb.getBlockFile (), root );
+		return new KeyIndex ()
+		{
+			@Override
+			public long get ( String key ) throws IOException { return index.get ( key ); }
+
+			@Override
+			public void put ( String key, long addr ) throws IOException { index.put ( key, addr ); }
+
+			@Override
+			public void remove ( String key ) throws IOException { index.remove ( key ); }
+
+			@Override
+			public TreeMap<String,Long> entriesWithPrefix ( String prefix ) throws IOException { return index.entriesWithPrefix ( prefix ); }
+		};
+	}
+
+	private static void flattenIndex ( JSONObject section, String prefix, TreeMap<String,Long> entries )
+	{
+		for ( String key : section.keySet () )
+		{
+			final JSONObject child = section.optJSONObject ( key );
+			if ( child != null )
+			{
+				flattenIndex ( child, prefix + key + kKeySep, entries );
+			}
+			else
+			{
+				final long addr = section.optLong ( key, kEntryNotFound );
+				if ( addr >= 0 ) entries.put ( prefix + key, addr );
 			}
 		}
-		return result;
 	}
 
-	@Override
-	public void sweepExpiredTags () throws IamSvcException
+	private TreeSet<String> idsIn ( String section, String startingWith ) throws IamSvcException
 	{
+		final String prefix = section + kKeySep;
 		final TreeSet<String> result = new TreeSet<> ();
-		final JSONObject tagIndex = fMainIndex.optJSONObject ( "tags" );
-		if ( tagIndex != null )
+		try
 		{
-			result.addAll ( tagIndex.keySet () );
+			for ( String key : fIndex.entriesWithPrefix ( prefix + startingWith ).keySet () )
+			{
+				result.add ( key.substring ( prefix.length () ) );
+			}
 		}
-
-		for ( String key : result )
+		catch ( IOException x )
 		{
-			loadTagObject ( key, false );	// which will drop expired tags
+			throw new IamSvcException ( x );
 		}
+		return result;
 	}
 
-	private final JSONObject fMainIndex;
-	private final JsonObjectFile fDb;
-
 	/**
 	 * Load an object by address, returning the object or null if not found
 	 * @param addr
@@ -311,22 +424,11 @@ public class IamFileDb extends CommonJsonDb<CommonJsonIdentity,CommonJsonGroup>
 
 	private static final long kEntryNotFound = -1L;
 
-	private long readIndex ( String... ids )
-	{
-		JSONObject current = fMainIndex;
-		for ( int i=0; i<ids.length-1; i++ )
-		{
-			current = current.optJSONObject ( ids[i] );
-			if ( current == null ) return kEntryNotFound;
-		}
-		return current.optLong ( ids[ids.length-1], kEntryNotFound );
-	}
-
-	private void writeIndex () throws IamSvcException
+	private long readIndex ( String... ids ) throws IamSvcException
 	{
 		try
 		{
-			fDb.overwrite ( fDb.indexToAddress ( 0 ), fMainIndex );
+			return fIndex.get ( String.join ( kKeySep, ids ) );
 		}
 		catch ( IOException e )
 		{
@@ -336,32 +438,26 @@ public class IamFileDb extends CommonJsonDb<CommonJsonIdentity,CommonJsonGroup>
 
 	private void updateIndex ( long addr, String... ids ) throws IamSvcException
 	{
-		JSONObject parent = null;
-		JSONObject current = fMainIndex;
-		for ( int i=0; i<ids.length-1; i++ )
+		try
 		{
-			parent = current;
-			current = current.optJSONObject ( ids[i] );
-			if ( current == null )
-			{
-				current = new JSONObject (); 
-				parent.put ( ids[i], current );
-			}
+			fIndex.put ( String.join ( kKeySep, ids ), addr );
+		}
+		catch ( IOException e )
+		{
+			throw new IamSvcException ( e );
 		}
-		current.put( ids[ids.length-1], addr );
-		writeIndex ();
 	}
 
 	private void deleteFromIndex ( String... ids ) throws IamSvcException
 	{
-		JSONObject current = fMainIndex;
-		for ( int i=0; i<ids.length-1; i++ )
+		try
 		{
-			current = current.optJSONObject ( ids[i] );
-			if ( current == null ) return;
+			fIndex.remove ( String.join ( kKeySep, ids ) );
+		}
+		catch ( IOException e )
+		{
+			throw new IamSvcException ( e );
 		}
-		current.remove ( ids[ids.length-1] );
-		writeIndex ();
 	}
 
 	@Override
@@ -71,6 +71,8 @@ public class IamFileDbServiceManager extends SimpleService implements IamService
 			.usingFile ( new File ( evaluator.evaluateText ( settings.getString ( "file" ) ) ) )
 			.withPassword ( evaluator.evaluateText ( settings.optString ( "password", "" ) ) )
 			.readonly ( settings.optBoolean ( "readonly", false ) )
+			.memoryMapped ( settings.optBoolean ( "memoryMapped", false ) )
+			.syncingWrites ( settings.optBoolean ( "syncWrites", true ) )
 			.usingAclFactory ( new AclFactory ()
 			{
 				@Override
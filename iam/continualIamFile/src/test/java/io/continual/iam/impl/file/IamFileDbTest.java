@@ -16,8 +16,10 @@ import io.continual.iam.exceptions.IamGroupExists;
 import io.continual.iam.exceptions.IamIdentityDoesNotExist;
 import io.continual.iam.exceptions.IamIdentityExists;
 import io.continual.iam.exceptions.IamSvcException;
+import io.continual.iam.impl.common.CommonJsonIdentity;
 import io.continual.iam.impl.common.jwt.JwtProducer;
 import io.continual.iam.impl.common.CommonJsonDb.AclFactory;
+import io.continual.util.db.file.JsonObjectFile;
 import io.continual.util.time.Clock;
 
 public class IamFileDbTest
@@ -82,6 +84,43 @@ public class IamFileDbTest
 		}
 	}
 
+	@Test
+	public void testIndexFromEarlierVersion ()
+	{
+		try {
+			// earlier versions kept the whole index as one object at the start of the file
+			final File f = File.createTempFile ( "iamUnitTest", ".db" );
+			JsonObjectFile.initialize ( f, 1024 );
+			try ( JsonObjectFile jof = new JsonObjectFile ( f ) )
+			{
+				final long header = jof.write ( new JSONObject () );
+				final JSONObject users = new JSONObject ();
+				for ( String userId : new String[] { "alice", "albert", "bob" } )
+				{
+					users.put ( userId, jof.write ( CommonJsonIdentity.initializeIdentity () ) );
+				}
+				jof.overwrite ( header, new JSONObject ().put ( "users", users ).put ( "groups", new JSONObject () ) );
+			}
+
+			final IamFileDb readOnly = new IamFileDb.Builder ().usingFile ( f ).readonly ().build ();
+			Assert.assertEquals ( 2, readOnly.findUsers ( "al" ).size () );
+			readOnly.close ();
+
+			final IamFileDb fDb = new IamFileDb.Builder ().usingFile ( f ).forWrites ().build ();
+			Assert.assertEquals ( 3, fDb.getAllUsers ().size () );
+			Assert.assertNotNull ( fDb.loadUser ( "bob" ) );
+			fDb.createUser ( "alfred" );
+			Assert.assertEquals ( 3, fDb.findUsers ( "al" ).size () );
+			fDb.close ();
+
+			final IamFileDb reopened = new IamFileDb.Builder ().usingFile ( f ).readonly ().build ();
+			Assert.assertEquals ( 4, reopened.getAllUsers ().size () );
+			reopened.close ();
+		} catch (IamSvcException | IOException | IamIdentityExists e) {
+			Assert.fail ( "Expected to execute but failed with exception. " + e.getMessage () );
+		}
+	}
+
 	@Test
 	public void testDeleteUser ()
 	{
@@ -17,6 +17,7 @@ package io.continual.iam.impl.zk;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
@@ -51,6 +52,7 @@ import io.continual.iam.impl.common.CommonJsonGroup;
 import io.continual.iam.impl.common.CommonJsonIdentity;
 import io.continual.iam.impl.common.jwt.JwtProducer;
 import io.continual.iam.impl.common.jwt.SimpleJwtValidator;
+import io.continual.metrics.MetricsCatalog;
 import io.continual.services.ServiceContainer;
 import io.continual.util.data.StreamTools;
 import io.continual.util.data.exprEval.ExpressionEvaluator;
@@ -94,6 +96,18 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 			return this;
 		}
 
+		/**
+		 * Keep an in-memory replica of the IAM data, updated from ZooKeeper watches, and serve
+		 * reads from it. Writes still go to ZooKeeper.
+		 * @param replicate
+		 * @return this builder
+		 */
+		public Builder<I,G> withLocalReplica ( boolean replicate )
+		{
+			fLocalReplica = replicate;
+			return this;
+		}
+
 		public abstract ZkIamDb<I,G> build () throws IamSvcException;
 
 		private String fZkConnectionString;
@@ -101,6 +115,7 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 		private AclFactory fAclFactory;
 		private JwtProducer fJwtProducer = null;
 		private LinkedList<JwtValidator> fJwtValidators = new LinkedList<> ();
+		private boolean fLocalReplica = false;
 	}
 
 	public static <I extends CommonJsonIdentity, G extends CommonJsonGroup> void populateBuilderFrom ( Builder<I,G> b, ServiceContainer sc, JSONObject config ) throws BuildFailure
@@ -130,6 +145,7 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 		b
 			.connectingTo ( evaluator.evaluateText ( zkConfig.getString ( "connectionString" ) ) )
 			.withPathPrefix ( evaluator.evaluateText ( zkConfig.optString ( "pathPrefix", "" ) ) )
+			.withLocalReplica ( zkConfig.optBoolean ( "localReplica", false ) )
 			.usingAclFactory ( new AclFactory ()
 			{
 				@Override
@@ -183,6 +199,20 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 			.retryPolicy ( new ExponentialBackoffRetry ( 1000, 3 ) )
 			.build ()
 		;
+
+		fReplica = !b.fLocalReplica ? null : new ZkReplica ( fZk, new ZkReplica.ChangeListener ()
+		{
+			@Override
+			public void onChanged ( String path )
+			{
+				// another process may have changed a user we have cached state for
+				final String usersPrefix = concatPathParts ( "users" ) + "/";
+				if ( path.startsWith ( usersPrefix ) )
+				{
+					onUserChanged ( path.substring ( usersPrefix.length () ) );
+				}
+			}
+		}, kReplicatedPaths );
 	}
 
 	@Override
@@ -202,14 +232,41 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 		ensurePathExists ( "aliases/byKey" );
 		ensurePathExists ( "aliases/byUser" );
 		ensurePathExists ( "invalidJwts" );
+
+		if ( fReplica != null )
+		{
+			try
+			{
+				fReplica.start ( kReplicaLoadWaitMs );
+			}
+			catch ( InterruptedException x )
+			{
+				Thread.currentThread ().interrupt ();
+				throw new IamSvcException ( x );
+			}
+		}
 	}
 
 	@Override
 	public void close ()
 	{
+		if ( fReplica != null )
+		{
+			fReplica.close ();
+		}
 		fZk.close ();
 	}
 
+	@Override
+	public void populateMetrics ( MetricsCatalog metrics )
+	{
+		super.populateMetrics ( metrics );
+		if ( fReplica != null && metrics != null )
+		{
+			fReplica.populateMetrics ( metrics );
+		}
+	}
+
 	@Override
 	public Map<String, I> loadAllUsers () throws IamSvcException
 	{
@@ -270,6 +327,10 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 	}
 
 	private final CuratorFramework fZk;
+	private final ZkReplica fReplica;
+
+	private static final String[] kReplicatedPaths = { "/users", "/groups", "/apikeys", "/acls", "/tags", "/aliases", "/invalidJwts" };
+	private static final long kReplicaLoadWaitMs = 30L * 1000L;
 
 	String concatPathParts ( String... parts )
 	{
@@ -388,6 +449,22 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 	 */
 	private boolean loadTo ( String key, OutputStream os ) throws IamSvcException
 	{
+		if ( fReplica != null && fReplica.serves ( key ) )
+		{
+			final byte[] data = fReplica.read ( key );
+			if ( data == null ) return false;
+
+			try
+			{
+				StreamTools.copyStream ( new ByteArrayInputStream ( data ), os );
+				return true;
+			}
+			catch ( IOException x )
+			{
+				throw new IamSvcException ( x );
+			}
+		}
+
 		try
 		{
 			final byte[] data = fZk
@@ -422,6 +499,12 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 	List<String> loadKeysBelow ( String key ) throws IamSvcException
 	{
 		final LinkedList<String> result = new LinkedList<String> ();
+		if ( fReplica != null && fReplica.serves ( key ) )
+		{
+			result.addAll ( fReplica.children ( key ) );
+			return result;
+		}
+
 		try
 		{
 			final List<String> children = fZk
@@ -465,6 +548,12 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 				.creatingParentsIfNeeded ()
 				.forPath ( key, bytes )
 			;
+
+			// read our own write until the replica's watch catches up
+			if ( fReplica != null )
+			{
+				fReplica.noteWrite ( key, fZk.checkExists ().forPath ( key ), bytes );
+			}
 		}
 		catch ( Exception x )
 		{
@@ -480,6 +569,11 @@ public abstract class ZkIamDb<I extends CommonJsonIdentity, G extends CommonJson
 				.delete ()
 				.forPath ( key )
 			;
+
+			if ( fReplica != null )
+			{
+				fReplica.noteDelete ( key );
+			}
 		}
 		catch ( Exception x )
 		{
@@ -0,0 +1,366 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.iam.impl.zk;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.CuratorCache;
+import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.continual.metrics.MetricsCatalog;
+import io.continual.metrics.MetricsSupplier;
+import io.continual.metrics.impl.noop.NoopHistogram;
+import io.continual.metrics.impl.noop.NoopMeter;
+import io.continual.metrics.metricTypes.Gauge;
+import io.continual.metrics.metricTypes.Histogram;
+import io.continual.metrics.metricTypes.Meter;
+import io.continual.util.time.Clock;
+
+/**
+ * An in-memory mirror of a set of ZooKeeper subtrees, kept current by Curator's watch-driven
+ * cache. Writes still go to ZooKeeper; the writer reports them here so that it reads its own
+ * writes before the corresponding watch events arrive.
+ */
+class ZkReplica implements MetricsSupplier
+{
+	/**
+	 * Notified after the replica applies a change from ZooKeeper
+	 */
+	interface ChangeListener
+	{
+		void onChanged ( String path );
+	}
+
+	public ZkReplica ( CuratorFramework zk, ChangeListener listener, String... rootPaths )
+	{
+		fListener = listener;
+		fCaches = new HashMap<> ();
+		for ( String root : rootPaths )
+		{
+			fCaches.put ( root, CuratorCache.build ( zk, root ) );
+		}
+		fInitialized = new CountDownLatch ( fCaches.size () );
+
+		fEvents = new NoopMeter ();
+		fLagMs = new NoopHistogram ();
+	}
+
+	/**
+	 * Start the replica and wait for its initial load
+	 * @param waitMs how long to wait
+	 * @return true if the replica is loaded
+	 * @throws InterruptedException
+	 */
+	public boolean start ( long waitMs ) throws InterruptedException
+	{
+		for ( CuratorCache cache : fCaches.values () )
+		{
+			cache.listenable ().addListener ( new CuratorCacheListener ()
+			{
+				@Override
+				public void event ( Type type, ChildData oldData, ChildData data )
+				{
+					onEvent ( type, oldData, data );
+				}
+
+				@Override
+				public void initialized ()
+				{
+					fInitialized.countDown ();
+				}
+			} );
+			cache.start ();
+		}
+
+		if ( !fInitialized.await ( waitMs, TimeUnit.MILLISECONDS ) )
+		{
+			log.warn ( "The ZooKeeper replica wasn't loaded within {} ms. Reads go to ZooKeeper until it is.", waitMs );
+			return false;
+		}
+		return true;
+	}
+
+	public void close ()
+	{
+		for ( CuratorCache cache : fCaches.values () )
+		{
+			cache.close ();
+		}
+	}
+
+	/**
+	 * Is the replica loaded and able to serve the given path?
+	 * @param path
+	 * @return true if reads for the path can be served locally
+	 */
+	public boolean serves ( String path )
+	{
+		return fInitialized.getCount () == 0 && getCache ( path ) != null;
+	}
+
+	/**
+	 * Read the data at a path
+	 * @param path
+	 * @return the data, or null if there's no node at the path
+	 */
+	public byte[] read ( String path )
+	{
+		final ChildData cd = getCache ( path ).get ( path ).orElse ( null );
+
+		final PendingChange pending = getPending ( path );
+		if ( pending != null )
+		{
+			if ( pending.isDelete () )
+			{
+				if ( cd != null ) return null;
+
+				// the replica agrees
+				fPending.remove ( path, pending );
+			}
+			else if ( cd == null || cd.getStat ().getMzxid () < pending.fMzxid )
+			{
+				return pending.fData;
+			}
+		}
+		return cd == null ? null : cd.getData ();
+	}
+
+	/**
+	 * List the child names of a path
+	 * @param path
+	 * @return a list of child names
+	 */
+	public List<String> children ( String path )
+	{
+		final TreeSet<String> result = new TreeSet<> ();
+		final Set<String> known = fChildren.get ( path );
+		if ( known != null )
+		{
+			result.addAll ( known );
+		}
+
+		// apply writes the replica hasn't seen yet
+		for ( Map.Entry<String,PendingChange> e : fPending.entrySet () )
+		{
+			final String p = e.getKey ();
+			if ( !ZKPaths.getPathAndNode ( p ).getPath ().equals ( path ) || p.equals ( path ) ) continue;
+
+			final String child = ZKPaths.getNodeFromPath ( p );
+			if ( e.getValue ().isDelete () )
+			{
+				result.remove ( child );
+			}
+			else
+			{
+				result.add ( child );
+			}
+		}
+		return result.stream ().collect ( Collectors.toList () );
+	}
+
+	/**
+	 * Note a write made by this process
+	 * @param path
+	 * @param stat the node's stat after the write, if known
+	 * @param data
+	 */
+	public void noteWrite ( String path, Stat stat, byte[] data )
+	{
+		if ( getCache ( path ) == null ) return;
+		fPending.put ( path, new PendingChange ( stat == null ? Long.MAX_VALUE : stat.getMzxid (), data ) );
+	}
+
+	/**
+	 * Note a delete made by this process
+	 * @param path
+	 */
+	public void noteDelete ( String path )
+	{
+		if ( getCache ( path ) == null ) return;
+		fPending.put ( path, new PendingChange ( 0L, null ) );
+	}
+
+	@Override
+	public void populateMetrics ( MetricsCatalog metrics )
+	{
+		fEvents = metrics.meter ( "replicaEvents" );
+		fLagMs = metrics.histogram ( "replicaLagMs" );
+		metrics.gauge ( "replicaNodes", () -> new Gauge<Long> ()
+		{
+			@Override
+			public Long getValue ()
+			{
+				long count = 0;
+				for ( CuratorCache cache : fCaches.values () )
+				{
+					count += cache.size ();
+				}
+				return count;
+			}
+		} );
+		metrics.gauge ( "replicaPendingWrites", () -> new Gauge<Integer> ()
+		{
+			@Override
+			public Integer getValue () { return fPending.size (); }
+		} );
+	}
+
+	private static class PendingChange
+	{
+		public PendingChange ( long mzxid, byte[] data )
+		{
+			fMzxid = mzxid;
+			fData = data;
+			fAtMs = Clock.now ();
+		}
+
+		public boolean isDelete () { return fData == null; }
+
+		private final long fMzxid;
+		private final byte[] fData;
+		private final long fAtMs;
+	}
+
+	private final HashMap<String,CuratorCache> fCaches;
+	private final ChangeListener fListener;
+	private final CountDownLatch fInitialized;
+	private final ConcurrentHashMap<String,PendingChange> fPending = new ConcurrentHashMap<> ();
+
+	// child names by parent path, kept from the cache events so that listing a node doesn't scan its subtree
+	private final ConcurrentHashMap<String,Set<String>> fChildren = new ConcurrentHashMap<> ();
+
+	private Meter fEvents;
+	private Histogram fLagMs;
+
+	// a local write is trusted over the replica for at most this long
+	private static final long kMaxPendingMs = 30L * 1000L;
+
+	private CuratorCache getCache ( String path )
+	{
+		final String[] parts = path.split ( "/" );
+		return parts.length > 1 ? fCaches.get ( "/" + parts[1] ) : null;
+	}
+
+	private PendingChange getPending ( String path )
+	{
+		final PendingChange pending = fPending.get ( path );
+		if ( pending != null && Clock.now () - pending.fAtMs > kMaxPendingMs )
+		{
+			fPending.remove ( path, pending );
+			return null;
+		}
+		return pending;
+	}
+
+	private void onEvent ( CuratorCacheListener.Type type, ChildData oldData, ChildData data )
+	{
+		fEvents.mark ();
+
+		final boolean loaded = fInitialized.getCount () == 0;
+		final String path;
+		if ( type == CuratorCacheListener.Type.NODE_DELETED )
+		{
+			path = oldData.getPath ();
+			unindexChild ( path );
+
+			final PendingChange pending = fPending.get ( path );
+			if ( pending != null && pending.isDelete () )
+			{
+				fPending.remove ( path, pending );
+			}
+		}
+		else
+		{
+			path = data.getPath ();
+			if ( type == CuratorCacheListener.Type.NODE_CREATED )
+			{
+				indexChild ( path );
+			}
+
+			final PendingChange pending = fPending.get ( path );
+			if ( pending != null && !pending.isDelete () && data.getStat ().getMzxid () >= pending.fMzxid )
+			{
+				fPending.remove ( path, pending );
+			}
+
+			// the initial load reports every existing node; only live changes say anything about lag
+			if ( loaded )
+			{
+				fLagMs.update ( Math.max ( 0L, Clock.now () - data.getStat ().getMtime () ) );
+			}
+		}
+
+		// drop any pending changes that outlived the window
+		if ( !fPending.isEmpty () )
+		{
+			final long now = Clock.now ();
+			final Iterator<PendingChange> it = fPending.values ().iterator ();
+			while ( it.hasNext () )
+			{
+				if ( now - it.next ().fAtMs > kMaxPendingMs ) it.remove ();
+			}
+		}
+
+		if ( loaded && fListener != null )
+		{
+			try
+			{
+				fListener.onChanged ( path );
+			}
+			catch ( RuntimeException x )
+			{
+				log.warn ( "Replica change listener failed for {}: {}", path, x.getMessage () );
+			}
+		}
+	}
+
+	private void indexChild ( String path )
+	{
+		final ZKPaths.PathAndNode pn = ZKPaths.getPathAndNode ( path );
+		fChildren.compute ( pn.getPath (), ( parent, names ) -> {
+			final Set<String> result = names == null ? ConcurrentHashMap.newKeySet () : names;
+			result.add ( pn.getNode () );
+			return result;
+		} );
+	}
+
+	private void unindexChild ( String path )
+	{
+		final ZKPaths.PathAndNode pn = ZKPaths.getPathAndNode ( path );
+		fChildren.computeIfPresent ( pn.getPath (), ( parent, names ) -> {
+			names.remove ( pn.getNode () );
+			return names.isEmpty () ? null : names;
+		} );
+	}
+
+	private static final Logger log = LoggerFactory.getLogger ( ZkReplica.class );
+}
@@ -0,0 +1,120 @@
+package io.continual.iam.impl.zk;
+
+import org.apache.curator.test.TestingServer;
+import org.junit.Test;
+
+import io.continual.iam.exceptions.IamIdentityExists;
+import io.continual.iam.exceptions.IamSvcException;
+import io.continual.iam.impl.common.CommonJsonGroup;
+import io.continual.iam.impl.common.CommonJsonIdentity;
+import junit.framework.TestCase;
+
+public class ZkIamDbReplicaTest extends TestCase
+{
+	@Test
+	public void testReplicaFollowsOtherWriters () throws Exception
+	{
+		try ( TestingServer zk = new TestingServer () )
+		{
+			final ZkIamDb<CommonJsonIdentity,CommonJsonGroup> replicated = build ( zk, true );
+			final ZkIamDb<CommonJsonIdentity,CommonJsonGroup> direct = build ( zk, false );
+			try
+			{
+				// a replicated db reads its own writes immediately
+				replicated.createUser ( "local" );
+				assertNotNull ( replicated.loadUser ( "local" ) );
+				assertTrue ( replicated.getAllUsers ().contains ( "local" ) );
+
+				// ...and sees other writers' changes once the watch fires
+				direct.createUser ( "remote" );
+				assertTrue ( waitFor ( () -> replicated.loadUser ( "remote" ) != null ) );
+				assertTrue ( waitFor ( () -> replicated.getAllUsers ().contains ( "remote" ) ) );
+
+				direct.createGroup ( "staff", "Staff" );
+				direct.addUserToGroup ( "staff", "remote" );
+				assertTrue ( waitFor ( () -> replicated.getUsersGroups ( "remote" ).contains ( "staff" ) ) );
+
+				direct.deleteUser ( "remote" );
+				assertTrue ( waitFor ( () -> replicated.loadUser ( "remote" ) == null ) );
+				assertTrue ( waitFor ( () -> !replicated.getAllUsers ().contains ( "remote" ) ) );
+
+				replicated.deleteUser ( "local" );
+				assertNull ( replicated.loadUser ( "local" ) );
+				assertFalse ( replicated.getAllUsers ().contains ( "local" ) );
+			}
+			finally
+			{
+				replicated.close ();
+				direct.close ();
+			}
+		}
+	}
+
+	@Test
+	public void testExistingDataLoads () throws Exception
+	{
+		try ( TestingServer zk = new TestingServer () )
+		{
+			final ZkIamDb<CommonJsonIdentity,CommonJsonGroup> direct = build ( zk, false );
+			try
+			{
+				for ( int i=0; i<20; i++ )
+				{
+					direct.createUser ( "user" + i );
+				}
+			}
+			finally
+			{
+				direct.close ();
+			}
+
+			final ZkIamDb<CommonJsonIdentity,CommonJsonGroup> replicated = build ( zk, true );
+			try
+			{
+				assertEquals ( 20, replicated.getAllUsers ().size () );
+				assertNotNull ( replicated.loadUser ( "user7" ) );
+				try
+				{
+					replicated.createUser ( "user7" );
+					fail ( "user7 exists" );
+				}
+				catch ( IamIdentityExists x )
+				{
+					// expected
+				}
+			}
+			finally
+			{
+				replicated.close ();
+			}
+		}
+	}
+
+	private interface Condition
+	{
+		boolean met () throws Exception;
+	}
+
+	private static boolean waitFor ( Condition c ) throws Exception
+	{
+		final long endAt = System.currentTimeMillis () + 10000L;
+		while ( System.currentTimeMillis () < endAt )
+		{
+			if ( c.met () ) return true;
+			Thread.sleep ( 20 );
+		}
+		return c.met ();
+	}
+
+	private static ZkIamDb<CommonJsonIdentity,CommonJsonGroup> build ( TestingServer zk, boolean replicated ) throws IamSvcException
+	{
+		final ZkIamDb<CommonJsonIdentity,CommonJsonGroup> db = new StdZkIamDb.Builder ()
+			.connectingTo ( zk.getConnectString () )
+			.withPathPrefix ( "iamTest" )
+			.withLocalReplica ( replicated )
+			.build ()
+		;
+		db.start ();
+		return db;
+	}
+}
@@ -152,6 +152,61 @@ public interface ContinualMessageSink
 	void send ( ContinualMessageStream stream, Collection<ContinualMessage> msgs, AckType acks )
 		throws MessagePublishException;
 
+	/**
+	 * A handle on messages sent with sendAsync
+	 */
+	interface SendHandle
+	{
+		/**
+		 * Has the send finished, whether or not it succeeded?
+		 * @return true if the send is done
+		 */
+		boolean isDone ();
+
+		/**
+		 * Wait for the send to finish.
+		 *
+		 * @throws MessagePublishException
+		 *             when a message could not be published
+		 * @throws InterruptedException
+		 */
+		void await () throws MessagePublishException, InterruptedException;
+
+		/**
+		 * A handle for a send that finished before it was returned
+		 */
+		static final SendHandle kComplete = new SendHandle ()
+		{
+			@Override
+			public boolean isDone () { return true; }
+
+			@Override
+			public void await () {}
+		};
+	}
+
+	/**
+	 * Send a collection (iterated in order) of messages to the sink without waiting for them
+	 * to be acknowledged. Sinks without an asynchronous path send synchronously and return a
+	 * completed handle.
+	 *
+	 * @param stream
+	 *            a stream
+	 * @param msgs
+	 *            messsages
+	 * @param acks
+	 *            the type of acknowledgement required for the messages
+	 * @return a handle on the send
+	 * @throws MessagePublishException
+	 *             when a message cannot be published
+	 */
+	default SendHandle sendAsync ( ContinualMessageStream stream, Collection<ContinualMessage> msgs, AckType acks )
+		throws MessagePublishException
+	{
+		send ( stream, msgs, acks );
+		return SendHandle.kComplete;
+	}
+
 	/**
 	 * The conventional general message stream name. Messages sent in this stream can be processed in any order.
 	 */
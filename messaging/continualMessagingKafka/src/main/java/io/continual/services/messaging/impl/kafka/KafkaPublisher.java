@@ -3,10 +3,18 @@ package io.continual.services.messaging.impl.kafka;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -19,15 +27,25 @@ import io.continual.messaging.ContinualMessageSink;
 import io.continual.messaging.ContinualMessageSink.AckType;
 import io.continual.messaging.ContinualMessageStream;
 import io.continual.messaging.MessagePublishException;
+import io.continual.metrics.MetricsCatalog;
+import io.continual.metrics.MetricsCatalog.GaugeFactory;
+import io.continual.metrics.MetricsService;
+import io.continual.metrics.MetricsSupplier;
+import io.continual.metrics.metricTypes.Gauge;
 import io.continual.services.ServiceContainer;
 import io.continual.services.SimpleService;
 import io.continual.util.data.json.JsonVisitor;
 import io.continual.util.data.json.JsonVisitor.ObjectVisitor;
+import io.continual.util.naming.Name;
+import io.continual.util.naming.Path;
 
 /**
- * Kafka publisher
+ * Kafka publisher. Hands messages to the producer without flushing, so the producer's batching
+ * and linger settings apply. A synchronous send waits for its own records only when AckType.ALL is
+ * requested. Messages in a named stream are keyed by the stream name so that they land in one
+ * partition in order; messages in the general stream are unkeyed.
  */
-public class KafkaPublisher extends SimpleService implements ContinualMessagePublisher
+public class KafkaPublisher extends SimpleService implements ContinualMessagePublisher, MetricsSupplier
 {
 	public KafkaPublisher ( ServiceContainer sc, JSONObject rawConfig ) throws BuildFailure
 	{
@@ -55,6 +73,54 @@ public class KafkaPublisher extends SimpleService implements ContinualMessagePub
 
 		props.put ( "acks", "0" );
 		fProducers.put ( AckType.NONE, new KafkaProducer<> ( props ) );
+
+		// optionally report metrics
+		final MetricsService ms = sc.get ( "metrics", MetricsService.class );
+		if ( ms != null )
+		{
+			populateMetrics ( ms.getCatalog ( "KafkaPublisher " + rawConfig.optString ( "name", "anonymous" ) ) );
+		}
+	}
+
+	// a publisher over the given producers, e.g. mock producers in tests
+	KafkaPublisher ( Map<AckType,? extends Producer<String,String>> producers )
+	{
+		fProducers = new HashMap<> ( producers );
+	}
+
+	@Override
+	public void populateMetrics ( MetricsCatalog metrics )
+	{
+		for ( Map.Entry<AckType,Producer<String,String>> e : fProducers.entrySet () )
+		{
+			final Path base = Path.getRootPath ().makeChildItem ( Name.fromString ( "acks-" + e.getKey ().toString () ) );
+			for ( String metricName : kReportedMetrics )
+			{
+				final Producer<String,String> producer = e.getValue ();
+				metrics.gauge ( base.makeChildItem ( Name.fromString ( metricName ) ), new GaugeFactory<Object> ()
+				{
+					@Override
+					public Gauge<Object> makeNewGauge ()
+					{
+						return new Gauge<Object> ()
+						{
+							@Override
+							public Object getValue ()
+							{
+								for ( Map.Entry<MetricName, ? extends Metric> m : producer.metrics ().entrySet () )
+								{
+									if ( m.getKey ().name ().equals ( metricName ) && m.getKey ().group ().equals ( kProducerMetricsGroup ) )
+									{
+										return m.getValue ().metricValue ();
+									}
+								}
+								return null;
+							}
+						};
+					}
+				} );
+			}
+		}
 	}
 
 	@Override
@@ -65,16 +131,47 @@ public class KafkaPublisher extends SimpleService implements ContinualMessagePub
 			@Override
 			public void send ( ContinualMessageStream stream, Collection<ContinualMessage> msgs, AckType acks ) throws MessagePublishException
 			{
-				final KafkaProducer<String, String> producer = fProducers.get ( acks );
-				for ( ContinualMessage msg : msgs )
+				final SendHandle h = sendAsync ( stream, msgs, acks );
+				if ( acks == AckType.ALL )
 				{
-					final String partition = stream.getName ();
-					final String payload = msg.toJson ().toString ();
-					log.info  ( "To Kafka [{}/{}] with {} acks: {}", topic, partition, acks, payload );
+					try
+					{
+						h.await ();
+					}
+					catch ( InterruptedException e )
+					{
+						Thread.currentThread ().interrupt ();
+						throw new MessagePublishException ( "Interrupted while waiting for acknowledgement.", e );
+					}
+				}
+			}
+
+			@Override
+			public SendHandle sendAsync ( ContinualMessageStream stream, Collection<ContinualMessage> msgs, AckType acks ) throws MessagePublishException
+			{
+				final Producer<String,String> producer = fProducers.get ( acks );
+
+				// the general stream has no ordering requirement, so let the producer spread it across partitions
+				final String key = ContinualMessageSink.kGeneralMsgStream.equals ( stream ) ? null : stream.getName ();
 
-					producer.send ( new ProducerRecord<String,String> ( topic.toString (), partition, payload ) );
+				final AsyncSend result = new AsyncSend ( msgs.size () );
+				try
+				{
+					for ( ContinualMessage msg : msgs )
+					{
+						final String payload = msg.toJson ().toString ();
+						if ( log.isDebugEnabled () )
+						{
+							log.debug ( "To Kafka [{}/{}] with {} acks: {}", topic, stream, acks, payload );
+						}
+						producer.send ( new ProducerRecord<String,String> ( topic, key, payload ), result );
+					}
 				}
-				producer.flush ();
+				catch ( KafkaException x )
+				{
+					throw new MessagePublishException ( x );
+				}
+				return result;
 			}
 		};
 	}
@@ -82,7 +179,7 @@ public class KafkaPublisher extends SimpleService implements ContinualMessagePub
 	@Override
 	public void flush ()
 	{
-		for ( KafkaProducer<String, String> producer : fProducers.values () )
+		for ( Producer<String,String> producer : fProducers.values () )
 		{
 			producer.flush ();
 		}
@@ -91,13 +188,71 @@ public class KafkaPublisher extends SimpleService implements ContinualMessagePub
 	@Override
 	public void close () throws IOException
 	{
-		for ( KafkaProducer<String, String> producer : fProducers.values () )
+		for ( Producer<String,String> producer : fProducers.values () )
 		{
 			producer.close ();
 		}
 	}
 
-	private final HashMap<AckType,KafkaProducer<String,String>> fProducers;
+	private final HashMap<AckType,Producer<String,String>> fProducers;
+
+	private static final String kProducerMetricsGroup = "producer-metrics";
+	private static final String[] kReportedMetrics = new String[]
+	{
+		"record-send-rate",
+		"batch-size-avg",
+		"request-latency-avg",
+		"record-error-rate",
+		"buffer-available-bytes",
+	};
+
+	/**
+	 * Tracks the records from one sendAsync call
+	 */
+	private static class AsyncSend implements ContinualMessageSink.SendHandle, Callback
+	{
+		public AsyncSend ( int count )
+		{
+			fRemaining = new CountDownLatch ( count );
+			fFailure = null;
+		}
+
+		@Override
+		public void onCompletion ( RecordMetadata metadata, Exception x )
+		{
+			if ( x != null )
+			{
+				log.warn ( "Kafka send failed: {}", x.getMessage () );
+				synchronized ( this )
+				{
+					if ( fFailure == null ) fFailure = x;
+				}
+			}
+			fRemaining.countDown ();
+		}
+
+		@Override
+		public boolean isDone ()
+		{
+			return fRemaining.getCount () == 0;
+		}
+
+		@Override
+		public void await () throws MessagePublishException, InterruptedException
+		{
+			fRemaining.await ();
+			synchronized ( this )
+			{
+				if ( fFailure != null )
+				{
+					throw new MessagePublishException ( fFailure );
+				}
+			}
+		}
+
+		private final CountDownLatch fRemaining;
+		private Exception fFailure;
+	}
 
 	private static final Logger log = LoggerFactory.getLogger ( KafkaPublisher.class );
 
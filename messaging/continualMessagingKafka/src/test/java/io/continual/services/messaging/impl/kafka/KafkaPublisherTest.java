@@ -0,0 +1,114 @@
+package io.continual.services.messaging.impl.kafka;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.continual.messaging.ContinualMessage;
+import io.continual.messaging.ContinualMessagePublisher.TopicUnavailableException;
+import io.continual.messaging.ContinualMessageSink;
+import io.continual.messaging.ContinualMessageSink.AckType;
+import io.continual.messaging.ContinualMessageSink.SendHandle;
+import io.continual.messaging.ContinualMessageStream;
+import io.continual.messaging.MessagePublishException;
+import junit.framework.TestCase;
+
+public class KafkaPublisherTest extends TestCase
+{
+	@Test
+	public void testAsyncSendDoneOnAck () throws TopicUnavailableException, MessagePublishException, InterruptedException, IOException
+	{
+		final HashMap<AckType,MockProducer<String,String>> producers = makeProducers ();
+		try ( final KafkaPublisher pub = new KafkaPublisher ( producers ) )
+		{
+			final ContinualMessageSink sink = pub.getTopic ( "events" );
+			final SendHandle h = sink.sendAsync ( ContinualMessageSink.kGeneralMsgStream, Arrays.asList ( makeMsg ( 1 ), makeMsg ( 2 ) ), AckType.MINIMAL );
+
+			// both records are handed to the producer, without a flush, and the handle waits for both
+			final MockProducer<String,String> producer = producers.get ( AckType.MINIMAL );
+			assertEquals ( 2, producer.history ().size () );
+			assertFalse ( producer.flushed () );
+			assertFalse ( h.isDone () );
+
+			assertTrue ( producer.completeNext () );
+			assertFalse ( h.isDone () );
+			assertTrue ( producer.completeNext () );
+			assertTrue ( h.isDone () );
+			h.await ();
+		}
+	}
+
+	@Test
+	public void testStreamKeys () throws TopicUnavailableException, MessagePublishException, IOException
+	{
+		final HashMap<AckType,MockProducer<String,String>> producers = makeProducers ();
+		try ( final KafkaPublisher pub = new KafkaPublisher ( producers ) )
+		{
+			final ContinualMessageSink sink = pub.getTopic ( "events" );
+			sink.send ( ContinualMessageSink.kGeneralMsgStream, Arrays.asList ( makeMsg ( 1 ) ), AckType.NONE );
+			sink.send ( ContinualMessageStream.fromName ( "orders" ), Arrays.asList ( makeMsg ( 2 ) ), AckType.NONE );
+
+			// the general stream is unkeyed; a named stream is keyed by its name
+			final MockProducer<String,String> producer = producers.get ( AckType.NONE );
+			assertEquals ( 2, producer.history ().size () );
+			assertNull ( producer.history ().get ( 0 ).key () );
+			assertEquals ( "orders", producer.history ().get ( 1 ).key () );
+			assertEquals ( "events", producer.history ().get ( 1 ).topic () );
+		}
+	}
+
+	@Test
+	public void testAllAcksWaitsForFailure () throws TopicUnavailableException, InterruptedException, IOException
+	{
+		final HashMap<AckType,MockProducer<String,String>> producers = makeProducers ();
+		try ( final KafkaPublisher pub = new KafkaPublisher ( producers ) )
+		{
+			final ContinualMessageSink sink = pub.getTopic ( "events" );
+			final AtomicReference<Exception> failure = new AtomicReference<> ();
+			final Thread sender = new Thread ( () -> {
+				try
+				{
+					sink.send ( ContinualMessageSink.kGeneralMsgStream, Arrays.asList ( makeMsg ( 1 ) ), AckType.ALL );
+				}
+				catch ( MessagePublishException x )
+				{
+					failure.set ( x );
+				}
+			} );
+			sender.start ();
+
+			// the sender is still waiting when its record fails, and reports the failure
+			final MockProducer<String,String> producer = producers.get ( AckType.ALL );
+			while ( producer.history ().isEmpty () )
+			{
+				Thread.yield ();
+			}
+			assertTrue ( sender.isAlive () );
+			assertTrue ( producer.errorNext ( new RuntimeException ( "broker unavailable" ) ) );
+
+			sender.join ();
+			assertNotNull ( failure.get () );
+		}
+	}
+
+	private static HashMap<AckType,MockProducer<String,String>> makeProducers ()
+	{
+		final HashMap<AckType,MockProducer<String,String>> result = new HashMap<> ();
+		for ( AckType at : AckType.values () )
+		{
+			result.put ( at, new MockProducer<> ( false, new StringSerializer (), new StringSerializer () ) );
+		}
+		return result;
+	}
+
+	private static ContinualMessage makeMsg ( int n )
+	{
+		return new ContinualMessage ( new JSONObject ().put ( "n", n ) );
+	}
+}
@@ -17,6 +17,8 @@
 package io.continual.services.model.core;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.Map;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.iam.access.AccessControlList;
@@ -411,4 +413,55 @@ public interface Model extends ModelCapabilities, Closeable, Service
 	 * @return a relation selector
 	 */
 	RelationSelector selectRelations ( Path objectPath );
+
+	/**
+	 * Get the relations of each of a set of objects. Backends that can answer for many objects in one
+	 * request should override this. The default runs a relation selection per object, in parallel.
+	 * @param context
+	 * @param objectPaths
+	 * @param named the relation name, or null for any name
+	 * @param inbound include inbound relations
+	 * @param outbound include outbound relations
+	 * @return a map from each object path to its relations
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException
+	 */
+	default Map<Path,ModelRelationList> getRelationsOfEach ( ModelRequestContext context, Collection<Path> objectPaths, String named, boolean inbound, boolean outbound ) throws ModelServiceException, ModelRequestException
+	{
+		return ParallelModelRequests.forEach ( context, objectPaths, new ParallelModelRequests.Request<ModelRelationList> ()
+		{
+			@Override
+			public ModelRelationList run ( ModelRequestContext ctx, Path objectPath ) throws ModelServiceException, ModelRequestException
+			{
+				return selectRelations ( objectPath )
+					.named ( named )
+					.inbound ( inbound )
+					.outbound ( outbound )
+					.getRelations ( ctx )
+				;
+			}
+		} );
+	}
+
+	/**
+	 * Load each of a set of objects. Backends that can load many objects in one request should
+	 * override this. The default loads each object, in parallel.
+	 * @param context
+	 * @param objectPaths
+	 * @return a map from each object path to its object
+	 * @throws ModelItemDoesNotExistException if any of the objects doesn't exist
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException
+	 */
+	default Map<Path,BasicModelObject> loadEach ( ModelRequestContext context, Collection<Path> objectPaths ) throws ModelItemDoesNotExistException, ModelServiceException, ModelRequestException
+	{
+		return ParallelModelRequests.forEach ( context, objectPaths, new ParallelModelRequests.Request<BasicModelObject> ()
+		{
+			@Override
+			public BasicModelObject run ( ModelRequestContext ctx, Path objectPath ) throws ModelServiceException, ModelRequestException
+			{
+				return load ( ctx, objectPath );
+			}
+		} );
+	}
 }
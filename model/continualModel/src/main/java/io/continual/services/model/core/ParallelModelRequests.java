@@ -0,0 +1,181 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.model.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.continual.iam.identity.Identity;
+import io.continual.services.model.core.exceptions.ModelRequestException;
+import io.continual.services.model.core.exceptions.ModelServiceException;
+import io.continual.util.naming.Path;
+
+/**
+ * Runs a per-object model request for each of a set of objects on a shared pool. This backs the
+ * default bulk operations on Model, for backends that make one remote call per object.<br>
+ * <br>
+ * Request contexts aren't thread-safe, so the tasks share a wrapper that serializes access to
+ * the caller's context. Requests made from a pool thread (e.g. by a model that delegates to
+ * another) run inline rather than waiting on the pool they're running in.
+ */
+class ParallelModelRequests
+{
+	/**
+	 * A request for a single object
+	 * @param <T>
+	 */
+	interface Request<T>
+	{
+		T run ( ModelRequestContext context, Path objectPath ) throws ModelServiceException, ModelRequestException;
+	}
+
+	/**
+	 * Run a request for each of the given objects
+	 * @param context
+	 * @param objectPaths
+	 * @param req
+	 * @return a map from object path to the request's result
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException the first request exception, in the order of the given paths
+	 */
+	static <T> Map<Path,T> forEach ( ModelRequestContext context, Collection<Path> objectPaths, Request<T> req ) throws ModelServiceException, ModelRequestException
+	{
+		final HashMap<Path,T> result = new HashMap<> ();
+
+		if ( objectPaths.size () < 2 || Thread.currentThread () instanceof WorkerThread )
+		{
+			for ( Path p : objectPaths )
+			{
+				result.put ( p, req.run ( context, p ) );
+			}
+			return result;
+		}
+
+		final ModelRequestContext sharedContext = new SynchronizedRequestContext ( context );
+		final List<Future<T>> futures = new ArrayList<> ( objectPaths.size () );
+		final List<Path> paths = new ArrayList<> ( objectPaths );
+		for ( Path p : paths )
+		{
+			futures.add ( skPool.submit ( new Callable<T> ()
+			{
+				@Override
+				public T call () throws ModelServiceException, ModelRequestException
+				{
+					return req.run ( sharedContext, p );
+				}
+			} ) );
+		}
+
+		try
+		{
+			for ( int i=0; i<paths.size (); i++ )
+			{
+				result.put ( paths.get ( i ), futures.get ( i ).get () );
+			}
+			return result;
+		}
+		catch ( ExecutionException x )
+		{
+			final Throwable cause = x.getCause ();
+			if ( cause instanceof ModelRequestException ) throw (ModelRequestException) cause;
+			if ( cause instanceof ModelServiceException ) throw (ModelServiceException) cause;
+			if ( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+			throw new ModelServiceException ( cause );
+		}
+		catch ( InterruptedException x )
+		{
+			Thread.currentThread ().interrupt ();
+			throw new ModelServiceException ( "Interrupted during a bulk model request.", x );
+		}
+		finally
+		{
+			for ( Future<T> f : futures )
+			{
+				f.cancel ( true );
+			}
+		}
+	}
+
+	private static final int kPoolSize = Math.max ( 8, 2 * Runtime.getRuntime ().availableProcessors () );
+
+	private static class WorkerThread extends Thread
+	{
+		public WorkerThread ( Runnable r, String name )
+		{
+			super ( r, name );
+			setDaemon ( true );
+		}
+	}
+
+	private static final ExecutorService skPool = Executors.newFixedThreadPool ( kPoolSize, new ThreadFactory ()
+	{
+		@Override
+		public Thread newThread ( Runnable r )
+		{
+			return new WorkerThread ( r, "model bulk request " + fThreadNumber.incrementAndGet () );
+		}
+
+		private final AtomicInteger fThreadNumber = new AtomicInteger ( 0 );
+	} );
+
+	private static class SynchronizedRequestContext implements ModelRequestContext
+	{
+		public SynchronizedRequestContext ( ModelRequestContext context )
+		{
+			fContext = context;
+		}
+
+		@Override
+		public Identity getOperator () { synchronized ( fContext ) { return fContext.getOperator (); } }
+
+		@Override
+		public ModelSchemaRegistry getSchemaRegistry () { synchronized ( fContext ) { return fContext.getSchemaRegistry (); } }
+
+		@Override
+		public ModelNotificationService getNotificationService () { synchronized ( fContext ) { return fContext.getNotificationService (); } }
+
+		@Override
+		public CacheControl getCacheControl () { synchronized ( fContext ) { return fContext.getCacheControl (); } }
+
+		@Override
+		public <T> T get ( Path key, Class<T> clazz ) { synchronized ( fContext ) { return fContext.get ( key, clazz ); } }
+
+		@Override
+		public void put ( Path key, Object rawData ) { synchronized ( fContext ) { fContext.put ( key, rawData ); } }
+
+		@Override
+		public void remove ( Path objectPath ) { synchronized ( fContext ) { fContext.remove ( objectPath ); } }
+
+		@Override
+		public void doesNotExist ( Path key ) { synchronized ( fContext ) { fContext.doesNotExist ( key ); } }
+
+		@Override
+		public boolean knownToNotExist ( Path key ) { synchronized ( fContext ) { return fContext.knownToNotExist ( key ); } }
+
+		private final ModelRequestContext fContext;
+	}
+}
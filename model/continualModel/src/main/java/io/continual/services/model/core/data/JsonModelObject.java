@@ -157,6 +157,21 @@ public class JsonModelObject implements ModelObject
 		return (JSONObject) ifaceToJson ( mo );
 	}
 	
+	/**
+	 * Get a JSON form of the given model object for read-only use. A JsonModelObject's own
+	 * data is returned without a copy, so the caller must not modify the result.
+	 * @param mo a model object
+	 * @return a JSON object
+	 */
+	public static JSONObject modelObjectAsReadOnlyJson ( ModelObject mo )
+	{
+		if ( mo instanceof JsonModelObject )
+		{
+			return ((JsonModelObject)mo).fData;
+		}
+		return (JSONObject) ifaceToJson ( mo );
+	}
+
 	private final JSONObject fData;
 
 	// internal JSON to interface
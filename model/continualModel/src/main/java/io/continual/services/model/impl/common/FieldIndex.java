@@ -0,0 +1,202 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.model.impl.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.continual.services.model.core.data.ModelObject;
+import io.continual.services.model.core.exceptions.ModelServiceException;
+import io.continual.util.naming.Path;
+
+/**
+ * An in-memory index from the value of a field to the paths of the objects that hold it. Values
+ * are the field's string form as produced by ModelObjectExprSource.evalToString, so lookups agree
+ * with SimpleModelQuery's string equality filter. Objects without the field aren't indexed.
+ */
+public class FieldIndex implements Closeable
+{
+	public FieldIndex ( String field )
+	{
+		fField = field;
+		fByValue = new TreeMap<> ();
+		fByPath = new HashMap<> ();
+	}
+
+	/**
+	 * Get the indexed field
+	 * @return a dot-notation field name
+	 */
+	public String getField ()
+	{
+		return fField;
+	}
+
+	/**
+	 * Get the value this index uses for the given object data
+	 * @param data object data
+	 * @return a value, or null if the object doesn't have one for this index
+	 */
+	public String getValueFrom ( ModelObject data )
+	{
+		if ( data == null ) return null;
+
+		final String val = ModelObjectExprSource.evalToString ( data, fField );
+		return val.length () == 0 ? null : val;
+	}
+
+	/**
+	 * Index the given object, replacing any earlier entry for its path
+	 * @param path the object's path
+	 * @param data the object's data
+	 * @throws ModelServiceException
+	 */
+	public synchronized void update ( Path path, ModelObject data ) throws ModelServiceException
+	{
+		final String val = getValueFrom ( data );
+		final String current = fByPath.get ( path );
+		if ( val == null ? current == null : val.equals ( current ) ) return;
+
+		if ( val == null )
+		{
+			remove ( path );
+			return;
+		}
+
+		unlink ( path, current );
+		link ( path, val );
+		onPut ( path, val );
+	}
+
+	/**
+	 * Remove the given object from the index
+	 * @param path the object's path
+	 * @throws ModelServiceException
+	 */
+	public synchronized void remove ( Path path ) throws ModelServiceException
+	{
+		final String current = fByPath.remove ( path );
+		if ( current != null )
+		{
+			unlink ( path, current );
+			onRemove ( path );
+		}
+	}
+
+	/**
+	 * Find the objects with the given value in the indexed field
+	 * @param value a field value
+	 * @return a sorted set of paths, which may be empty
+	 */
+	public synchronized SortedSet<Path> lookup ( String value )
+	{
+		final TreeSet<Path> paths = value == null ? null : fByValue.get ( value );
+		return paths == null ? new TreeSet<Path> () : new TreeSet<Path> ( paths );
+	}
+
+	/**
+	 * Get the number of objects in the index
+	 * @return a count
+	 */
+	public synchronized int size ()
+	{
+		return fByPath.size ();
+	}
+
+	@Override
+	public void close () throws IOException
+	{
+	}
+
+	/**
+	 * Called after an entry is added or changed, with this index locked.
+	 * @param path the object's path
+	 * @param value the indexed value
+	 * @throws ModelServiceException
+	 */
+	protected void onPut ( Path path, String value ) throws ModelServiceException
+	{
+	}
+
+	/**
+	 * Called after an entry is removed, with this index locked.
+	 * @param path the object's path
+	 * @throws ModelServiceException
+	 */
+	protected void onRemove ( Path path ) throws ModelServiceException
+	{
+	}
+
+	/**
+	 * Get a snapshot of the index entries, for subclasses that persist it
+	 * @return a map from path to value
+	 */
+	protected synchronized Map<Path,String> getEntries ()
+	{
+		return new HashMap<> ( fByPath );
+	}
+
+	/**
+	 * Add an entry without notifying subclasses, for use while loading a persisted index
+	 * @param path the object's path
+	 * @param value the indexed value, or null to remove the path
+	 */
+	protected synchronized void restore ( Path path, String value )
+	{
+		unlink ( path, fByPath.remove ( path ) );
+		if ( value != null )
+		{
+			link ( path, value );
+		}
+	}
+
+	private final String fField;
+	private final TreeMap<String,TreeSet<Path>> fByValue;
+	private final HashMap<Path,String> fByPath;
+
+	private void link ( Path path, String value )
+	{
+		TreeSet<Path> paths = fByValue.get ( value );
+		if ( paths == null )
+		{
+			paths = new TreeSet<> ();
+			fByValue.put ( value, paths );
+		}
+		paths.add ( path );
+		fByPath.put ( path, value );
+	}
+
+	private void unlink ( Path path, String value )
+	{
+		if ( value == null ) return;
+
+		final TreeSet<Path> paths = fByValue.get ( value );
+		if ( paths != null )
+		{
+			paths.remove ( path );
+			if ( paths.isEmpty () )
+			{
+				fByValue.remove ( value );
+			}
+		}
+	}
+}
@@ -1,14 +1,18 @@
 package io.continual.services.model.impl.common;
 
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
 
 import io.continual.services.model.core.ModelItemFilter;
 import io.continual.services.model.core.ModelQuery;
 import io.continual.services.model.core.data.JsonModelObject;
 import io.continual.services.model.core.data.ModelObject;
-import io.continual.util.data.json.JsonPathEval;
+import io.continual.util.data.json.CompiledJsonPath;
 import io.continual.util.naming.Path;
 
 public abstract class SimpleModelQuery implements ModelQuery
@@ -38,12 +42,13 @@ public abstract class SimpleModelQuery implements ModelQuery
 	@Override
 	public ModelQuery matchingJsonPath ( String jsonPath )
 	{
+		final CompiledJsonPath path = CompiledJsonPath.cached ( jsonPath );
 		fFilters.add ( new Filter ()
 		{
 			@Override
 			public boolean matches ( ModelObject mo )
 			{
-				return JsonPathEval.evaluateJsonPath ( JsonModelObject.modelObjectToJson ( mo ), jsonPath ).size() > 0;
+				return path.matches ( JsonModelObject.modelObjectAsReadOnlyJson ( mo ) );
 			}
 		} );
 		return this;
@@ -52,6 +57,12 @@ public abstract class SimpleModelQuery implements ModelQuery
 	@Override
 	public ModelQuery withFieldValue ( String key, String val )
 	{
+		// an empty value also matches objects without the field, so only non-empty values can use an index
+		if ( val != null && val.length () > 0 )
+		{
+			fIndexableTerms.put ( key, val );
+		}
+
 		fFilters.add ( new Filter ()
 		{
 			@Override
@@ -127,6 +138,51 @@ public abstract class SimpleModelQuery implements ModelQuery
 		return this;
 	}
 
+	/**
+	 * Plan this query against the given field indexes. When one or more string equality terms are
+	 * on indexed fields, the result is the set of paths below the path prefix that can match. The
+	 * query's filters must still be applied to each candidate.
+	 * @param indexes the model's field indexes, by field name
+	 * @return a sorted set of candidate paths, or null if the query must scan the path prefix
+	 */
+	protected SortedSet<Path> getIndexedCandidates ( Map<String,FieldIndex> indexes )
+	{
+		if ( indexes == null || indexes.isEmpty () ) return null;
+
+		SortedSet<Path> result = null;
+		for ( Map.Entry<String,String> term : fIndexableTerms.entrySet () )
+		{
+			final FieldIndex index = indexes.get ( term.getKey () );
+			if ( index == null ) continue;
+
+			final SortedSet<Path> paths = index.lookup ( term.getValue () );
+			if ( result == null )
+			{
+				result = paths;
+			}
+			else
+			{
+				result.retainAll ( paths );
+			}
+			if ( result.isEmpty () ) return result;
+		}
+
+		// keep to objects below the prefix, as a scan would
+		if ( result != null )
+		{
+			final Iterator<Path> it = result.iterator ();
+			while ( it.hasNext () )
+			{
+				final Path p = it.next ();
+				if ( p.equals ( fPathPrefix ) || !p.startsWith ( fPathPrefix ) )
+				{
+					it.remove ();
+				}
+			}
+		}
+		return result;
+	}
+
 	protected Path getPathPrefix () { return fPathPrefix; }
 	protected int getPageSize () { return fPageSize; }
 	protected int getPageNumber () { return fPageNumber; }
@@ -138,6 +194,7 @@ public abstract class SimpleModelQuery implements ModelQuery
 	int fPageSize = Integer.MAX_VALUE;
 	int fPageNumber = 0;
 	final LinkedList<Filter> fFilters = new LinkedList<> ();
+	final HashMap<String,String> fIndexableTerms = new HashMap<> ();
 
 	protected static interface Filter extends ModelItemFilter<ModelObject>
 	{
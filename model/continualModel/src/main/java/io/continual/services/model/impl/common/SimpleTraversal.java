@@ -3,6 +3,7 @@ package io.continual.services.model.impl.common;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -10,6 +11,7 @@ import io.continual.services.model.core.Model;
 import io.continual.services.model.core.ModelItemFilter;
 import io.continual.services.model.core.ModelPathList;
 import io.continual.services.model.core.ModelRelation;
+import io.continual.services.model.core.ModelRelationList;
 import io.continual.services.model.core.ModelRequestContext;
 import io.continual.services.model.core.ModelTraversal;
 import io.continual.services.model.core.data.BasicModelObject;
@@ -19,7 +21,9 @@ import io.continual.services.model.core.exceptions.ModelServiceException;
 import io.continual.util.naming.Path;
 
 /**
- * A simple, non-optimized traversal implementation
+ * A simple traversal implementation. Each step works on the whole current set, using the model's
+ * bulk relation and load requests, so a backend that makes remote calls can expand a frontier
+ * with as few round trips as it supports.
  */
 public class SimpleTraversal implements ModelTraversal
 {
@@ -52,13 +56,9 @@ public class SimpleTraversal implements ModelTraversal
 			public void execute ( StepContext sc ) throws ModelRequestException, ModelServiceException
 			{
 				final TreeSet<Path> result = new TreeSet<> ();
-				for ( Path p : sc.fCurrentSet )
+				for ( ModelRelationList relns : fModel.getRelationsOfEach ( sc.fMrc, sc.fCurrentSet, relation, false, true ).values () )
 				{
-					for ( ModelRelation mr : fModel.selectRelations ( p )
-							.named ( relation )
-							.outboundOnly ()
-							.getRelations ( sc.fMrc )
-						)
+					for ( ModelRelation mr : relns )
 					{
 						result.add ( mr.getTo () );
 					}
@@ -77,13 +77,9 @@ public class SimpleTraversal implements ModelTraversal
 			public void execute ( StepContext sc ) throws ModelRequestException, ModelServiceException
 			{
 				final TreeSet<Path> result = new TreeSet<> ();
-				for ( Path p : sc.fCurrentSet )
+				for ( ModelRelationList relns : fModel.getRelationsOfEach ( sc.fMrc, sc.fCurrentSet, relation, true, false ).values () )
 				{
-					for ( ModelRelation mr : fModel.selectRelations ( p )
-						.named ( relation )
-						.inboundOnly ()
-						.getRelations ( sc.fMrc )
-					)
+					for ( ModelRelation mr : relns )
 					{
 						result.add ( mr.getFrom () );
 					}
@@ -119,15 +115,8 @@ public class SimpleTraversal implements ModelTraversal
 				final TreeSet<Path> captured = sc.fCaptures.get ( label );
 				if ( captured != null )
 				{
-					final TreeSet<Path> newSet = new TreeSet<> ();
-					for ( Path p : sc.fCurrentSet )
-					{
-						if ( !captured.contains ( p ) )
-						{
-							newSet.add ( p );
-						}
-					}
-					sc.replaceSet ( newSet );
+					// the current set is never shared with a capture, so it can be changed in place
+					sc.fCurrentSet.removeIf ( p -> captured.contains ( p ) );
 				}
 			}
 		} );
@@ -141,17 +130,8 @@ public class SimpleTraversal implements ModelTraversal
 		{
 			public void execute ( StepContext sc ) throws ModelRequestException, ModelServiceException
 			{
-				final TreeSet<Path> newSet = new TreeSet<> ();
-				for ( Path p : sc.fCurrentSet )
-				{
-					final BasicModelObject mo = fModel.load ( sc.fMrc, p );
-					final ModelObject moda = mo.getData ();
-					if ( filter.matches ( moda ) )
-					{
-						newSet.add ( p );
-					}
-				}
-				sc.replaceSet ( newSet );
+				final Map<Path,BasicModelObject> objects = fModel.loadEach ( sc.fMrc, sc.fCurrentSet );
+				sc.fCurrentSet.removeIf ( p -> !filter.matches ( objects.get ( p ).getData () ) );
 			}
 		} );
 		return this;
@@ -42,7 +42,10 @@ import io.continual.util.naming.Path;
 /**
  * The delegating model provides a top-level model with other models presented at mount points.
  * The top-level model is read-only. For example, if you have a model mounted at "/foo" (and no
- * other mounts) you cannot write to "/bar".
+ * other mounts) you cannot write to "/bar".<br>
+ * <br>
+ * A path belongs to the mount with the longest mount point that contains it. Mounts are held in
+ * a trie of path segments, so resolving a path doesn't depend on the number of mounts.
  */
 public class DelegatingModel extends SimpleService implements Model
 {
@@ -66,19 +69,23 @@ public class DelegatingModel extends SimpleService implements Model
 	public DelegatingModel ( String modelId, Model backingModel ) throws BuildFailure
 	{
 		fModelId = modelId;
-		fUserMountTable = new LinkedList<>();
+		fUserMountTable = new MountTable ();
 		fBackingModel = backingModel == null ? new InMemoryModel ( modelId ) : backingModel;
 	}
 
 	/**
 	 * Mount a model. The model mount instance is read-only, allowing the caller to mount shared/global models.
 	 * That is, the same ModelMount instance can be used to mount a given model into multiple delegating models.
+	 * If a model is already mounted at the same mount point, the earlier mount is kept.
 	 * @param mm a model mount specification
 	 * @return this model
 	 */
 	public DelegatingModel mount ( ModelMount mm )
 	{
-		fUserMountTable.add ( mm );
+		if ( !fUserMountTable.add ( mm ) )
+		{
+			log.warn ( "A model is already mounted at {}; ignoring {}.", mm.getMountPoint (), mm.getModel ().getId () );
+		}
 		return this;
 	}
 
@@ -112,7 +119,7 @@ public class DelegatingModel extends SimpleService implements Model
 	@Override
 	public void close () throws IOException
 	{
-		for ( ModelMount mm : fUserMountTable )
+		for ( ModelMount mm : fUserMountTable.getMounts () )
 		{
 			final Model m = mm.getModel ();
 			log.info ( "Closing " + m.getId () );
@@ -162,18 +169,7 @@ public class DelegatingModel extends SimpleService implements Model
 			//
 			//
 
-			for ( ModelMount um : fUserMountTable )
-			{
-				final Path mp = um.getMountPoint ();
-
-				// is this mount point below the given path prefix?
-				if ( mp.startsWith ( objectPath ) )
-				{
-					return true;
-				}
-			}
-
-			return false;
+			return fUserMountTable.hasMountAtOrBelow ( objectPath );
 		}
 		catch ( ModelRequestException e )
 		{
@@ -187,18 +183,11 @@ public class DelegatingModel extends SimpleService implements Model
 		final ModelMount mm = getModelForPath ( prefix );
 		if ( mm.getModel () == this )
 		{
+			// the next segment of each mount point below the given path prefix
 			final LinkedList<Path> result = new LinkedList<>();
-			for ( ModelMount um : fUserMountTable )
+			for ( Name childName : fUserMountTable.getChildNamesBelow ( prefix ) )
 			{
-				final Path mp = um.getMountPoint ();
-
-				// is this mount point below the given path prefix?
-				if ( mp.startsWith ( prefix ) )
-				{
-					// return just the next segment from the requested segment
-					final Path childPart = mp.makePathWithinParent ( prefix );
-					result.add ( Path.getRootPath ().makeChildItem ( childPart.getSegments ()[0] ) );
-				}
+				result.add ( Path.getRootPath ().makeChildItem ( childName ) );
 			}
 
 			// and also check the backing model
@@ -264,18 +253,11 @@ public class DelegatingModel extends SimpleService implements Model
 		//
 		//
 
+		// return just the next segment of each mount point below the requested path
 		final TreeSet<Path> result = new TreeSet<>();
-		for ( ModelMount um : fUserMountTable )
+		for ( Name childName : fUserMountTable.getChildNamesBelow ( objectPath ) )
 		{
-			final Path mp = um.getMountPoint ();
-
-			// is this mount point below the given path prefix?
-			if ( mp.startsWith ( objectPath ) )
-			{
-				// return just the next segment from the requested segment
-				final Path childPart = mp.makePathWithinParent ( objectPath );
-				result.add ( Path.getRootPath ().makeChildItem ( childPart.getSegments ()[0] ) );
-			}
+			result.add ( Path.getRootPath ().makeChildItem ( childName ) );
 		}
 
 		// work with the backing model...
@@ -349,7 +331,7 @@ public class DelegatingModel extends SimpleService implements Model
 		fBackingModel.setRelationType ( context, relnName, rt );
 
 		// tell the mounted models
-		for ( ModelMount mountEntry : fUserMountTable )
+		for ( ModelMount mountEntry : fUserMountTable.getMounts () )
 		{
 			mountEntry.getModel ().setRelationType ( context, relnName, rt );
 		}
@@ -369,7 +351,7 @@ public class DelegatingModel extends SimpleService implements Model
 		final Path to = mr.getTo ();
 		final ModelMount mmTo = getModelForPath ( to );
 
-		if ( mmFrom == mmTo )	// same instance
+		if ( mmFrom == mmTo && mmFrom != fTopLevelMount )	// same mounted model
 		{
 			return mmFrom.getModel ().relate ( context, ModelRelation.from ( mmFrom.getPathWithinModel ( from ), mr.getName (), mmTo.getPathWithinModel ( to ) ) );
 		}
@@ -391,7 +373,7 @@ public class DelegatingModel extends SimpleService implements Model
 		final Path to = reln.getTo ();
 		final ModelMount mmTo = getModelForPath ( to );
 
-		if ( mmFrom == mmTo )	// same instance
+		if ( mmFrom == mmTo && mmFrom != fTopLevelMount )	// same mounted model
 		{
 			return mmFrom.getModel ().unrelate ( context, ModelRelation.from ( mmFrom.getPathWithinModel ( from ), reln.getName (), mmTo.getPathWithinModel ( to ) ) );
 		}
@@ -404,7 +386,7 @@ public class DelegatingModel extends SimpleService implements Model
 	@Override
 	public boolean unrelate ( ModelRequestContext context, String relnId ) throws ModelServiceException, ModelRequestException
 	{
-		for ( ModelMount mountEntry : fUserMountTable )
+		for ( ModelMount mountEntry : fUserMountTable.getMounts () )
 		{
 			if ( mountEntry.getModel ().unrelate ( context, relnId ) )
 			{
@@ -476,29 +458,21 @@ public class DelegatingModel extends SimpleService implements Model
 					TreeSet<Path> children = new TreeSet<>();
 
 					// find the paths below this one in the mount space
-					for ( ModelMount mmm : fUserMountTable )
+					//	mount /foo/bar; object path /foo, then we want /foo/bar
+					//	mount /foo/bar; object path /foo/bar, then we have to ask the model for /'s children
+					//	mount /foo/bar; object path /foo/bar/baz, then we have to ask the model for /bar's children
+					for ( Name childName : fUserMountTable.getChildNamesBelow ( objectPath ) )
 					{
-						// mount /foo/bar; object path /foo, then we want /foo/bar
-						// mount /foo/bar; object path /foo/bar, then we have to ask the model for /'s children
-						// mount /foo/bar; object path /foo/bar/baz, then we have to ask the model for /bar's children
-						
-						if ( mmm.getMountPoint ().startsWith ( objectPath ) && !mmm.getMountPoint ().equals ( objectPath ) )
-						{
-							final Path pInP = mmm.getMountPoint ().makePathWithinParent ( objectPath );
-							final Name childName = pInP.getSegment ( 0 );
-							final Path asChild = objectPath.makeChildItem ( childName );
-							children.add ( asChild );
-						}
-						else if ( objectPath.startsWith ( mmm.getMountPoint () ) )
+						children.add ( objectPath.makeChildItem ( childName ) );
+					}
+					for ( ModelMount mmm : fUserMountTable.findAll ( objectPath ) )
+					{
+						for ( Path child : mmm.getModel ().listChildrenOfPath (
+							getDerivedContext ( mmm.getModel (), context ),
+							mmm.getPathWithinModel ( objectPath ) ) )
 						{
-							for ( Path child : mmm.getModel ().listChildrenOfPath (
-								getDerivedContext ( mmm.getModel (), context ),
-								mmm.getPathWithinModel ( objectPath ) ) )
-							{
-								children.add ( mmm.getGlobalPath ( child ) );
-							}
+							children.add ( mmm.getGlobalPath ( child ) );
 						}
-						// else: no overlap
 					}
 
 					// also find any child objects in the backing store
@@ -520,42 +494,37 @@ public class DelegatingModel extends SimpleService implements Model
 	}
 
 	private final String fModelId;
-	private final LinkedList<ModelMount> fUserMountTable;
+	private final MountTable fUserMountTable;
 	private final Model fBackingModel;
 
 	// get the model that owns the given path, which may be the top-level delegating model
 	private ModelMount getModelForPath ( Path modelPath )
 	{
-		for ( ModelMount mountEntry : fUserMountTable )
-		{
-			if ( mountEntry.contains ( modelPath ) )
-			{
-				return mountEntry;
-			}
-		}
+		final ModelMount mm = fUserMountTable.find ( modelPath );
+		return mm == null ? fTopLevelMount : mm;
+	}
 
-		// this path is in the top-level mount
-		return new ModelMount ()
-		{
-			@Override
-			public JSONObject toJson () { return new JSONObject (); }
+	// paths outside of any mount are in the top-level mount
+	private final ModelMount fTopLevelMount = new ModelMount ()
+	{
+		@Override
+		public JSONObject toJson () { return new JSONObject (); }
 
-			@Override
-			public Path getMountPoint () { return Path.getRootPath (); }
+		@Override
+		public Path getMountPoint () { return Path.getRootPath (); }
 
-			@Override
-			public boolean contains ( Path path ) { return true; }
+		@Override
+		public boolean contains ( Path path ) { return true; }
 
-			@Override
-			public Model getModel () { return DelegatingModel.this; }
+		@Override
+		public Model getModel () { return DelegatingModel.this; }
 
-			@Override
-			public Path getPathWithinModel ( Path absolutePath ) { return absolutePath; }
+		@Override
+		public Path getPathWithinModel ( Path absolutePath ) { return absolutePath; }
 
-			@Override
-			public Path getGlobalPath ( Path from ) { return from; }
-		};
-	}
+		@Override
+		public Path getGlobalPath ( Path from ) { return from; }
+	};
 
 	private static final Logger log = LoggerFactory.getLogger ( DelegatingModel.class );
 
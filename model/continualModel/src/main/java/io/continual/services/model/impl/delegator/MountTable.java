@@ -0,0 +1,178 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.model.impl.delegator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.continual.util.naming.Name;
+import io.continual.util.naming.Path;
+
+/**
+ * A table of model mounts arranged as a trie of path segments, so that finding the mount for a
+ * path costs one step per segment regardless of the number of mounts. Every node in the trie
+ * lies on the way to at least one mount point, so a node's children are exactly the next
+ * segments of the mount points below it.<br>
+ * <br>
+ * Lookups take no lock. Mounting is serialized, and a new branch is fully built before it's
+ * published into its parent node, so readers see either none of it or all of it.
+ */
+class MountTable
+{
+	public MountTable ()
+	{
+		fRoot = new Node ();
+		fMounts = new ConcurrentLinkedQueue<> ();
+	}
+
+	/**
+	 * Add a mount. If a model is already mounted at the same point, the existing mount is kept.
+	 * @param mm
+	 * @return true if the mount was added
+	 */
+	public synchronized boolean add ( ModelMount mm )
+	{
+		final List<Name> segments = mm.getMountPoint ().getSegmentList ();
+
+		// walk the existing trie as far as it goes
+		Node node = fRoot;
+		int depth = 0;
+		while ( depth < segments.size () )
+		{
+			final Node child = node.fChildren.get ( segments.get ( depth ) );
+			if ( child == null ) break;
+			node = child;
+			depth++;
+		}
+
+		if ( depth == segments.size () )
+		{
+			// the mount point is already in the trie
+			if ( node.fMount != null ) return false;
+			node.fMount = mm;
+		}
+		else
+		{
+			// build the rest of the branch from the bottom up, then publish it
+			Node branch = new Node ();
+			branch.fMount = mm;
+			for ( int i=segments.size ()-1; i>depth; i-- )
+			{
+				final Node parent = new Node ();
+				parent.fChildren.put ( segments.get ( i ), branch );
+				branch = parent;
+			}
+			node.fChildren.put ( segments.get ( depth ), branch );
+		}
+
+		fMounts.add ( mm );
+		return true;
+	}
+
+	/**
+	 * Find the mount with the longest mount point that contains the given path
+	 * @param path
+	 * @return a mount, or null if no mount contains the path
+	 */
+	public ModelMount find ( Path path )
+	{
+		ModelMount result = fRoot.fMount;
+		Node node = fRoot;
+		for ( Name segment : path.getSegmentList () )
+		{
+			node = node.fChildren.get ( segment );
+			if ( node == null ) break;
+			if ( node.fMount != null ) result = node.fMount;
+		}
+		return result;
+	}
+
+	/**
+	 * Find every mount whose mount point contains the given path, including one mounted at the path
+	 * @param path
+	 * @return a list of mounts, ordered from the root
+	 */
+	public List<ModelMount> findAll ( Path path )
+	{
+		final LinkedList<ModelMount> result = new LinkedList<> ();
+		if ( fRoot.fMount != null ) result.add ( fRoot.fMount );
+
+		Node node = fRoot;
+		for ( Name segment : path.getSegmentList () )
+		{
+			node = node.fChildren.get ( segment );
+			if ( node == null ) break;
+			if ( node.fMount != null ) result.add ( node.fMount );
+		}
+		return result;
+	}
+
+	/**
+	 * Get the next path segments of the mount points below the given path.
+	 * @param path
+	 * @return a set of names, empty if no mount point is below the path
+	 */
+	public Set<Name> getChildNamesBelow ( Path path )
+	{
+		final Node node = getNode ( path );
+		return node == null ? Collections.<Name>emptySet () : Collections.unmodifiableSet ( node.fChildren.keySet () );
+	}
+
+	/**
+	 * Is there a mount point at or below the given path?
+	 * @param path
+	 * @return true if a mount point is at or below the path
+	 */
+	public boolean hasMountAtOrBelow ( Path path )
+	{
+		return getNode ( path ) != null;
+	}
+
+	/**
+	 * Get all mounts in the order they were added
+	 * @return a collection of mounts
+	 */
+	public Collection<ModelMount> getMounts ()
+	{
+		return Collections.unmodifiableCollection ( fMounts );
+	}
+
+	private static class Node
+	{
+		final ConcurrentHashMap<Name,Node> fChildren = new ConcurrentHashMap<> ();
+		volatile ModelMount fMount = null;
+	}
+
+	private final Node fRoot;
+	private final ConcurrentLinkedQueue<ModelMount> fMounts;
+
+	private Node getNode ( Path path )
+	{
+		Node node = fRoot;
+		for ( Name segment : path.getSegmentList () )
+		{
+			node = node.fChildren.get ( segment );
+			if ( node == null ) return null;
+		}
+		return node;
+	}
+}
@@ -57,6 +57,7 @@ public class SingleFileModel extends CommonJsonDbModel
 			sc.getExprEval ( config ).evaluateText ( config.getString ( "modelId" ) ),
 			new File ( sc.getExprEval ( config ).evaluateText ( config.getString ( "file" ) ) )
 		);
+		setObjectCache ( sc, config );
 	}
 
 	public SingleFileModel ( String modelId, File f ) throws BuildFailure
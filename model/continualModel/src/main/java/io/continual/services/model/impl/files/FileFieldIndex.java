@@ -0,0 +1,271 @@
+package io.continual.services.model.impl.files;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import io.continual.services.model.core.data.ModelObject;
+import io.continual.services.model.core.exceptions.ModelServiceException;
+import io.continual.services.model.impl.common.FieldIndex;
+import io.continual.util.naming.Path;
+
+/**
+ * A field index for the file model, kept in memory and persisted to a journal file. The file
+ * starts with a header naming the field, followed by one JSON line per change. The journal is
+ * rewritten when it grows well past the index size, and a clean-close marker tells the next
+ * load whether the journal can be trusted or the index must be rebuilt from the objects.
+ */
+class FileFieldIndex extends FieldIndex
+{
+	/**
+	 * Get the index file for a field in the given index directory
+	 * @param indexDir
+	 * @param field
+	 * @return a file
+	 */
+	public static File fileFor ( File indexDir, String field )
+	{
+		try
+		{
+			return new File ( indexDir, URLEncoder.encode ( field, "UTF-8" ) + kIndexFileExt );
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new RuntimeException ( e );
+		}
+	}
+
+	/**
+	 * Is the given file an index file by name?
+	 * @param f
+	 * @return true if the file name has the index extension
+	 */
+	public static boolean isIndexFile ( File f )
+	{
+		return f.isFile () && f.getName ().endsWith ( kIndexFileExt );
+	}
+
+	/**
+	 * Create a new, empty index, replacing any existing index file. Populate it with
+	 * populate() and then call commit() to write it.
+	 * @param file
+	 * @param field
+	 * @return an index
+	 */
+	public static FileFieldIndex create ( File file, String field )
+	{
+		return new FileFieldIndex ( file, field, true );
+	}
+
+	/**
+	 * Load an index from its file.
+	 * @param file
+	 * @return an index, which may need to be rebuilt if it was not closed cleanly
+	 * @throws IOException if the file can't be read or has no valid header
+	 */
+	public static FileFieldIndex load ( File file ) throws IOException
+	{
+		try ( final BufferedReader br = new BufferedReader ( new InputStreamReader ( new FileInputStream ( file ), kUtf8 ) ) )
+		{
+			final String header = br.readLine ();
+			if ( header == null ) throw new IOException ( "Index file " + file + " is empty." );
+
+			final FileFieldIndex result;
+			try
+			{
+				result = new FileFieldIndex ( file, new JSONObject ( header ).getString ( kField_Field ), false );
+			}
+			catch ( JSONException x )
+			{
+				throw new IOException ( "Index file " + file + " has an invalid header." );
+			}
+
+			boolean clean = false;
+			String line;
+			while ( ( line = br.readLine () ) != null )
+			{
+				if ( line.length () == 0 ) continue;
+				try
+				{
+					final JSONObject entry = new JSONObject ( line );
+					clean = entry.optBoolean ( kField_Clean, false );
+					if ( !clean )
+					{
+						result.restore ( Path.fromString ( entry.getString ( kField_Path ) ), entry.optString ( kField_Value, null ) );
+					}
+				}
+				catch ( JSONException | IllegalArgumentException x )
+				{
+					// a torn write at the end of the journal; the index can't be trusted
+					clean = false;
+					break;
+				}
+			}
+			result.fClean = clean;
+			return result;
+		}
+	}
+
+	/**
+	 * Was this index closed cleanly before it was loaded?
+	 * @return true if the index reflects the stored objects
+	 */
+	public boolean isClean ()
+	{
+		return fClean;
+	}
+
+	/**
+	 * Add an object while building the index, without journaling
+	 * @param path
+	 * @param data
+	 */
+	public void populate ( Path path, ModelObject data )
+	{
+		restore ( path, getValueFrom ( data ) );
+	}
+
+	/**
+	 * Write the full index to its file and start journaling changes
+	 * @throws ModelServiceException
+	 */
+	public synchronized void commit () throws ModelServiceException
+	{
+		try
+		{
+			compact ();
+		}
+		catch ( IOException x )
+		{
+			throw new ModelServiceException ( x );
+		}
+	}
+
+	@Override
+	public synchronized void close () throws IOException
+	{
+		if ( fJournal != null )
+		{
+			append ( new JSONObject ().put ( kField_Clean, true ) );
+			fJournal.close ();
+			fJournal = null;
+		}
+	}
+
+	@Override
+	protected void onPut ( Path path, String value ) throws ModelServiceException
+	{
+		journal ( new JSONObject ()
+			.put ( kField_Path, path.toString () )
+			.put ( kField_Value, value )
+		);
+	}
+
+	@Override
+	protected void onRemove ( Path path ) throws ModelServiceException
+	{
+		journal ( new JSONObject ()
+			.put ( kField_Path, path.toString () )
+		);
+	}
+
+	private final File fFile;
+	private BufferedWriter fJournal;
+	private int fJournalEntries;
+	private boolean fClean;
+
+	private static final String kIndexFileExt = ".idx";
+	private static final String kField_Field = "field";
+	private static final String kField_Version = "version";
+	private static final String kField_Path = "p";
+	private static final String kField_Value = "v";
+	private static final String kField_Clean = "clean";
+	private static final int kVersion = 1;
+	private static final int kMinCompactEntries = 1024;
+	private static final Charset kUtf8 = Charset.forName ( "UTF8" );
+
+	private FileFieldIndex ( File file, String field, boolean clean )
+	{
+		super ( field );
+		fFile = file;
+		fJournal = null;
+		fJournalEntries = 0;
+		fClean = clean;
+	}
+
+	// called with this index locked
+	private void journal ( JSONObject entry ) throws ModelServiceException
+	{
+		try
+		{
+			if ( fJournal == null )
+			{
+				compact ();
+			}
+			append ( entry );
+			fJournalEntries++;
+
+			if ( fJournalEntries > kMinCompactEntries && fJournalEntries > 2 * size () )
+			{
+				compact ();
+			}
+		}
+		catch ( IOException x )
+		{
+			throw new ModelServiceException ( x );
+		}
+	}
+
+	private void append ( JSONObject entry ) throws IOException
+	{
+		fJournal.write ( entry.toString () );
+		fJournal.newLine ();
+		fJournal.flush ();
+	}
+
+	// rewrite the file from the in-memory index, then reopen it for appending
+	private void compact () throws IOException
+	{
+		if ( fJournal != null )
+		{
+			fJournal.close ();
+			fJournal = null;
+		}
+
+		final File parent = fFile.getParentFile ();
+		if ( !parent.exists () && !parent.mkdirs () )
+		{
+			throw new IOException ( "Couldn't create index directory " + parent );
+		}
+
+		final File tmp = new File ( parent, fFile.getName () + ".tmp" );
+		try ( final BufferedWriter bw = new BufferedWriter ( new OutputStreamWriter ( new FileOutputStream ( tmp ), kUtf8 ) ) )
+		{
+			bw.write ( new JSONObject ().put ( kField_Field, getField () ).put ( kField_Version, kVersion ).toString () );
+			bw.newLine ();
+			for ( Map.Entry<Path,String> e : getEntries ().entrySet () )
+			{
+				bw.write ( new JSONObject ().put ( kField_Path, e.getKey ().toString () ).put ( kField_Value, e.getValue () ).toString () );
+				bw.newLine ();
+			}
+		}
+		Files.move ( tmp.toPath (), fFile.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+		fJournal = new BufferedWriter ( new OutputStreamWriter ( new FileOutputStream ( fFile, true ), kUtf8 ) );
+		fJournalEntries = 0;
+	}
+}
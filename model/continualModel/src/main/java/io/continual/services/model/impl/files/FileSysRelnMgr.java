@@ -1,15 +1,31 @@
 package io.continual.services.model.impl.files;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.services.model.core.Model.RelationType;
@@ -19,13 +35,18 @@ import io.continual.services.model.core.exceptions.ModelRequestException;
 import io.continual.services.model.core.exceptions.ModelServiceException;
 import io.continual.util.data.json.CommentedJsonTokener;
 import io.continual.util.data.json.JsonVisitor;
-import io.continual.util.data.json.JsonVisitor.ItemRenderer;
 import io.continual.util.data.json.JsonVisitor.ValueReader;
-import io.continual.util.naming.Name;
 import io.continual.util.naming.Path;
 
 /**
- * A simple relation manager for the file model.
+ * A relation manager for the file model. Relations are held in memory as adjacency sets for
+ * each object, in both directions, and persisted to an append-only log. Each line of the log
+ * after its header adds or removes one relation. A batch of changes is written with a single
+ * sync to disk. The log is rewritten from memory when it grows well past the number of live
+ * relations.<br>
+ * <br>
+ * Earlier versions of this class kept a file per object and relation name in a directory tree
+ * under the relation directory. That tree is imported into the log when no log exists yet.
  */
 class FileSysRelnMgr
 {
@@ -41,6 +62,44 @@ class FileSysRelnMgr
 		{
 			throw new BuildFailure ( relnDir.toString () + " exists and is not a directory." );
 		}
+
+		fLogFile = new File ( fRelnDir, kLogFileName );
+		fOutbound = new HashMap<> ();
+		fInbound = new HashMap<> ();
+		fRelationCount = 0;
+		fLogStream = null;
+		fLog = null;
+		fLogEntries = 0;
+
+		try
+		{
+			final boolean needsCompaction;
+			if ( fLogFile.exists () )
+			{
+				needsCompaction = !loadLog ();
+			}
+			else
+			{
+				importLegacyTree ( fRelnDir );
+				needsCompaction = true;
+			}
+
+			if ( needsCompaction )
+			{
+				compact ();
+				removeLegacyTree ();
+			}
+			else
+			{
+				openLog ();
+			}
+		}
+		catch ( IOException | ModelServiceException x )
+		{
+			throw new BuildFailure ( x );
+		}
+
+		log.info ( "Loaded {} relations from {}", fRelationCount, fRelnDir );
 	}
 
 	public void setRelationType ( String relnName, RelationType rt )
@@ -49,215 +108,511 @@ class FileSysRelnMgr
 
 	public ModelRelationInstance relate ( ModelRelation mr ) throws ModelServiceException, ModelRequestException
 	{
-		// not loving having an non-atomic write here, but we're going for simple, not production strength.
-		addToRelnFile ( pathToObjOutDir ( mr.getFrom () ), mr.getName (), mr.getTo () );
-		addToRelnFile ( pathToObjInDir ( mr.getTo () ), mr.getName (), mr.getFrom () );
+		relate ( Collections.singletonList ( mr ) );
 		return ModelRelationInstance.from ( mr );
 	}
 
-	public boolean unrelate ( ModelRelation reln ) throws ModelServiceException, ModelRequestException
+	/**
+	 * Add a set of relations, writing them to disk together
+	 * @param relns
+	 * @return a list of relation instances, in the same order as the given relations
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException
+	 */
+	public synchronized List<ModelRelationInstance> relate ( Collection<? extends ModelRelation> relns ) throws ModelServiceException, ModelRequestException
 	{
-		final File outRelnDir = new File ( pathToObjOutDir ( reln.getFrom () ), reln.getName () );
-		final File inRelnDir = new File ( pathToObjInDir ( reln.getTo () ), reln.getName () );
-
-		final boolean out = removeFromRelnFile ( outRelnDir, reln.getTo () );
-		final boolean in = removeFromRelnFile ( inRelnDir, reln.getFrom () );
+		final List<ModelRelationInstance> result = new ArrayList<> ( relns.size () );
+		final LinkedList<ModelRelation> changes = new LinkedList<> ();
+		for ( ModelRelation mr : relns )
+		{
+			if ( add ( mr.getFrom (), mr.getName (), mr.getTo () ) )
+			{
+				changes.add ( mr );
+			}
+			result.add ( ModelRelationInstance.from ( mr ) );
+		}
+		write ( changes, Collections.<ModelRelation>emptyList () );
+		return result;
+	}
 
-		FileSystemModel.removeEmptyDirsUpTo ( outRelnDir, fRelnDir );
-		FileSystemModel.removeEmptyDirsUpTo ( inRelnDir, fRelnDir );
+	public boolean unrelate ( ModelRelation reln ) throws ModelServiceException, ModelRequestException
+	{
+		return unrelate ( Collections.singletonList ( reln ) ) > 0;
+	}
 
-		return out || in;
+	/**
+	 * Remove a set of relations, writing the change to disk together
+	 * @param relns
+	 * @return the number of relations that existed and were removed
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException
+	 */
+	public synchronized int unrelate ( Collection<? extends ModelRelation> relns ) throws ModelServiceException, ModelRequestException
+	{
+		final LinkedList<ModelRelation> changes = new LinkedList<> ();
+		for ( ModelRelation mr : relns )
+		{
+			if ( remove ( mr.getFrom (), mr.getName (), mr.getTo () ) )
+			{
+				changes.add ( mr );
+			}
+		}
+		write ( Collections.<ModelRelation>emptyList (), changes );
+		return changes.size ();
 	}
 
-	public void removeAllRelations ( Path forObject ) throws ModelServiceException, ModelRequestException
+	public synchronized void removeAllRelations ( Path forObject ) throws ModelServiceException, ModelRequestException
 	{
 		final LinkedList<ModelRelation> relns = new LinkedList<> ();
 		relns.addAll ( getInboundRelationsNamed ( forObject, null ) );
 		relns.addAll ( getOutboundRelationsNamed ( forObject, null ) );
-		for ( ModelRelation mr : relns )
+		unrelate ( relns );
+	}
+
+	public synchronized List<ModelRelationInstance> getInboundRelationsNamed ( Path forObject, String named ) throws ModelServiceException, ModelRequestException
+	{
+		return getRelations ( fInbound, forObject, named, false );
+	}
+
+	public synchronized List<ModelRelationInstance> getOutboundRelationsNamed ( Path forObject, String named ) throws ModelServiceException, ModelRequestException
+	{
+		return getRelations ( fOutbound, forObject, named, true );
+	}
+
+	/**
+	 * Close the relation log
+	 * @throws IOException
+	 */
+	public synchronized void close () throws IOException
+	{
+		if ( fLog != null )
 		{
-			unrelate ( mr );
+			fLog.close ();
+			fLog = null;
+			fLogStream = null;
 		}
 	}
 
-	public List<ModelRelationInstance> getInboundRelationsNamed ( Path forObject, String named ) throws ModelServiceException, ModelRequestException
+	private final File fRelnDir;
+	private final File fLogFile;
+
+	// object -> relation name -> far side objects, in the order they were related
+	private final HashMap<Path,HashMap<String,LinkedHashSet<Path>>> fOutbound;
+	private final HashMap<Path,HashMap<String,LinkedHashSet<Path>>> fInbound;
+	private int fRelationCount;
+
+	private FileOutputStream fLogStream;
+	private BufferedWriter fLog;
+	private int fLogEntries;
+
+	private static final String kLogFileName = "relations.log";
+	private static final String kField_Version = "version";
+	private static final String kField_Op = "op";
+	private static final String kField_From = "f";
+	private static final String kField_Name = "n";
+	private static final String kField_To = "t";
+	private static final String kOp_Add = "+";
+	private static final String kOp_Remove = "-";
+	private static final int kVersion = 1;
+	private static final int kMinCompactEntries = 1024;
+	private static final Charset kUtf8 = Charset.forName ( "UTF8" );
+
+	private static final Logger log = LoggerFactory.getLogger ( FileSysRelnMgr.class );
+
+	private static List<ModelRelationInstance> getRelations ( HashMap<Path,HashMap<String,LinkedHashSet<Path>>> side, Path forObject, String named, boolean objIsFromSide )
 	{
-		if ( named == null )
+		final LinkedList<ModelRelationInstance> result = new LinkedList<> ();
+
+		final HashMap<String,LinkedHashSet<Path>> byName = side.get ( forObject );
+		if ( byName == null ) return result;
+
+		for ( Map.Entry<String,LinkedHashSet<Path>> e : byName.entrySet () )
 		{
-			final LinkedList<ModelRelationInstance> result = new LinkedList<> ();
+			final String relnName = e.getKey ();
+			if ( named != null && !named.equals ( relnName ) ) continue;
 
-			final File objDir = pathToObjInDir ( forObject );
-			if ( objDir.isDirectory () )
+			for ( Path farSide : e.getValue () )
 			{
-				for ( File reln : objDir.listFiles () )
-				{
-					result.addAll ( getRelationsFrom ( forObject, reln, false ) );
-				}
+				result.add ( ModelRelationInstance.from (
+					( objIsFromSide ? forObject : farSide ),
+					relnName,
+					( objIsFromSide ? farSide : forObject )
+				) );
 			}
-
-			return result;
 		}
+		return result;
+	}
+
+	private static boolean addEdge ( HashMap<Path,HashMap<String,LinkedHashSet<Path>>> side, Path obj, String name, Path farSide )
+	{
+		return side
+			.computeIfAbsent ( obj, k -> new HashMap<> () )
+			.computeIfAbsent ( name, k -> new LinkedHashSet<> () )
+			.add ( farSide )
+		;
+	}
+
+	private static boolean removeEdge ( HashMap<Path,HashMap<String,LinkedHashSet<Path>>> side, Path obj, String name, Path farSide )
+	{
+		final HashMap<String,LinkedHashSet<Path>> byName = side.get ( obj );
+		if ( byName == null ) return false;
+
+		final LinkedHashSet<Path> farSides = byName.get ( name );
+		if ( farSides == null || !farSides.remove ( farSide ) ) return false;
 
-		final File reln = new File ( pathToObjInDir ( forObject ), named );
-		if ( reln.exists () )
+		if ( farSides.isEmpty () )
 		{
-			return getRelationsFrom ( forObject, reln, false );
+			byName.remove ( name );
+			if ( byName.isEmpty () ) side.remove ( obj );
 		}
-		return new LinkedList<ModelRelationInstance> ();
+		return true;
+	}
+
+	private boolean add ( Path from, String name, Path to )
+	{
+		if ( !addEdge ( fOutbound, from, name, to ) ) return false;
+		addEdge ( fInbound, to, name, from );
+		fRelationCount++;
+		return true;
 	}
 
-	public List<ModelRelationInstance> getOutboundRelationsNamed ( Path forObject, String named ) throws ModelServiceException, ModelRequestException
+	private boolean remove ( Path from, String name, Path to )
 	{
-		if ( named == null )
+		if ( !removeEdge ( fOutbound, from, name, to ) ) return false;
+		removeEdge ( fInbound, to, name, from );
+		fRelationCount--;
+		return true;
+	}
+
+	// called with this manager locked, after the changes are applied in memory. If they can't be
+	// written, they're rolled back so that memory matches the log, and the log is cut back to
+	// its length before the batch so that no part of it is replayed later.
+	private void write ( List<ModelRelation> added, List<ModelRelation> removed ) throws ModelServiceException
+	{
+		if ( added.isEmpty () && removed.isEmpty () ) return;
+
+		long startLength = -1;
+		try
 		{
-			final LinkedList<ModelRelationInstance> result = new LinkedList<> ();
+			if ( fLog == null ) throw new IOException ( "The relation log is closed." );
+			startLength = fLogStream.getChannel ().size ();
 
-			final File objDir = pathToObjOutDir ( forObject );
-			if ( objDir.isDirectory () )
+			for ( ModelRelation mr : added )
 			{
-				for ( File reln : objDir.listFiles () )
-				{
-					result.addAll ( getRelationsFrom ( forObject, reln, true ) );
-				}
+				append ( kOp_Add, mr );
 			}
-
-			return result;
+			for ( ModelRelation mr : removed )
+			{
+				append ( kOp_Remove, mr );
+			}
+			fLog.flush ();
+			fLogStream.getChannel ().force ( false );
+			fLogEntries += added.size () + removed.size ();
+		}
+		catch ( IOException x )
+		{
+			for ( ModelRelation mr : added )
+			{
+				remove ( mr.getFrom (), mr.getName (), mr.getTo () );
+			}
+			for ( ModelRelation mr : removed )
+			{
+				add ( mr.getFrom (), mr.getName (), mr.getTo () );
+			}
+			if ( startLength >= 0 )
+			{
+				truncateLog ( startLength );
+			}
+			throw new ModelServiceException ( x );
 		}
 
-		final File reln = new File ( pathToObjOutDir ( forObject ), named );
-		if ( reln.exists () )
+		if ( fLogEntries > kMinCompactEntries && fLogEntries > 2 * fRelationCount )
 		{
-			return getRelationsFrom ( forObject, reln, true );
+			try
+			{
+				compact ();
+			}
+			catch ( IOException x )
+			{
+				// the log is still complete, just longer than we'd like
+				log.warn ( "Couldn't compact relation log {}: {}", fLogFile, x.getMessage () );
+			}
 		}
-		return new LinkedList<ModelRelationInstance> ();
 	}
 
-	private final File fRelnDir;
-
-	private List<ModelRelationInstance> getRelationsFrom ( Path forObject, File reln, boolean objIsFromSide ) throws ModelServiceException
+	private void append ( String op, ModelRelation mr ) throws IOException
 	{
-		final LinkedList<ModelRelationInstance> result = new LinkedList<> ();
+		fLog.write ( new JSONObject ()
+			.put ( kField_Op, op )
+			.put ( kField_From, mr.getFrom ().toString () )
+			.put ( kField_Name, mr.getName () )
+			.put ( kField_To, mr.getTo ().toString () )
+			.toString ()
+		);
+		fLog.newLine ();
+	}
 
-		final String relnName = reln.getName ();
-		for ( Path to : loadToList ( reln ) )
+	// drop a failed batch from the end of the log, along with anything still buffered for it. If
+	// that fails too, the log is closed so that later batches aren't appended after the fragment.
+	private void truncateLog ( long length )
+	{
+		try
 		{
-			result.add ( ModelRelationInstance.from (
-				( objIsFromSide ? forObject : to ),
-				relnName,
-				( objIsFromSide ? to : forObject )
-			) );
+			fLogStream.getChannel ().truncate ( length );
+			fLog = new BufferedWriter ( new OutputStreamWriter ( fLogStream, kUtf8 ) );
+		}
+		catch ( IOException x )
+		{
+			log.warn ( "Couldn't remove a failed batch from relation log {}; closing it: {}", fLogFile, x.getMessage () );
+			try
+			{
+				fLogStream.close ();
+			}
+			catch ( IOException x2 )
+			{
+				// already reported
+			}
+			fLog = null;
+			fLogStream = null;
 		}
-
-		return result;
 	}
-	
-	private List<Path> loadToList ( File relnFile ) throws ModelServiceException
+
+	/**
+	 * Replay the log into memory. Only the last line may be incomplete, as it is after a torn
+	 * write. An invalid entry anywhere else means the log is damaged, and loading fails rather
+	 * than dropping the entries that follow it.
+	 * @return true if the log was read to its end, false if it ends with a torn write
+	 * @throws IOException
+	 */
+	private boolean loadLog () throws IOException
 	{
-		if ( relnFile.exists () )
+		try ( final BufferedReader br = new BufferedReader ( new InputStreamReader ( new FileInputStream ( fLogFile ), kUtf8 ) ) )
 		{
-			try ( FileInputStream fis = new FileInputStream ( relnFile ) )
+			final String header = br.readLine ();
+			if ( header == null ) return false;
+			try
 			{
-				final JSONArray ar = new JSONArray ( new CommentedJsonTokener ( fis ) );
-				final List<Path> list = JsonVisitor.arrayToList ( ar, new ValueReader<String,Path> ()
+				final int version = new JSONObject ( header ).getInt ( kField_Version );
+				if ( version != kVersion )
 				{
-					@Override
-					public Path read ( String val )
-					{
-						return Path.fromString ( val );
-					}
-				} );
-
-				final LinkedList<Path> result = new LinkedList<> ();
-				result.addAll ( list );
-				return result;
+					throw new IOException ( "Relation log " + fLogFile + " has unsupported version " + version + "." );
+				}
 			}
-			catch ( FileNotFoundException x )
+			catch ( JSONException x )
 			{
-				// ignore
+				throw new IOException ( "Relation log " + fLogFile + " has an invalid header." );
 			}
-			catch ( JSONException | IOException x )
+
+			String line;
+			int lineNo = 1;
+			while ( ( line = br.readLine () ) != null )
 			{
-				throw new ModelServiceException ( x );
+				lineNo++;
+				if ( line.length () == 0 ) continue;
+				try
+				{
+					final JSONObject entry = new JSONObject ( line );
+					final Path from = Path.fromString ( entry.getString ( kField_From ) );
+					final String name = entry.getString ( kField_Name );
+					final Path to = Path.fromString ( entry.getString ( kField_To ) );
+					if ( kOp_Remove.equals ( entry.getString ( kField_Op ) ) )
+					{
+						remove ( from, name, to );
+					}
+					else
+					{
+						add ( from, name, to );
+					}
+					fLogEntries++;
+				}
+				catch ( JSONException | IllegalArgumentException x )
+				{
+					String next;
+					while ( ( next = br.readLine () ) != null )
+					{
+						if ( next.length () > 0 )
+						{
+							throw new IOException ( "Relation log " + fLogFile + " has an invalid entry at line " + lineNo + "." );
+						}
+					}
+
+					// a torn write at the end of the log; that batch was never acknowledged
+					log.warn ( "Relation log {} ends with an incomplete entry; it'll be rewritten.", fLogFile );
+					return false;
+				}
 			}
+			return true;
 		}
+	}
 
-		return new LinkedList<Path> ();
+	private void openLog () throws IOException
+	{
+		fLogStream = new FileOutputStream ( fLogFile, true );
+		fLog = new BufferedWriter ( new OutputStreamWriter ( fLogStream, kUtf8 ) );
 	}
-	
-	private void storeToFile ( File relnFile, List<Path> list ) throws ModelServiceException
+
+	// rewrite the log from memory into a new file, then swap it in. The current log stays open
+	// until the new one is in place, so a failure here leaves it in use and complete.
+	private void compact () throws IOException
 	{
-		if ( list.size () > 0 )
+		final File tmp = new File ( fRelnDir, kLogFileName + ".tmp" );
+		final FileOutputStream fos = new FileOutputStream ( tmp );
+		final BufferedWriter bw = new BufferedWriter ( new OutputStreamWriter ( fos, kUtf8 ) );
+		boolean replaced = false;
+		try
 		{
-			final JSONArray arr = JsonVisitor.listToArray ( list, new ItemRenderer<Path,String> ()
+			bw.write ( new JSONObject ().put ( kField_Version, kVersion ).toString () );
+			bw.newLine ();
+			for ( Map.Entry<Path,HashMap<String,LinkedHashSet<Path>>> obj : fOutbound.entrySet () )
 			{
-				@Override
-				public String render ( Path t )
+				final String from = obj.getKey ().toString ();
+				for ( Map.Entry<String,LinkedHashSet<Path>> reln : obj.getValue ().entrySet () )
 				{
-					return t.toString ();
+					for ( Path to : reln.getValue () )
+					{
+						bw.write ( new JSONObject ()
+							.put ( kField_Op, kOp_Add )
+							.put ( kField_From, from )
+							.put ( kField_Name, reln.getKey () )
+							.put ( kField_To, to.toString () )
+							.toString ()
+						);
+						bw.newLine ();
+					}
 				}
-			} );
-	
-			try ( FileWriter fw = new FileWriter ( relnFile ) )
-			{
-				fw.write ( arr.toString () );
 			}
-			catch ( IOException x )
+			bw.flush ();
+			fos.getChannel ().force ( false );
+
+			// the new writer follows its file through the rename
+			Files.move ( tmp.toPath (), fLogFile.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			replaced = true;
+		}
+		finally
+		{
+			if ( !replaced )
 			{
-				throw new ModelServiceException ( x );
+				try
+				{
+					bw.close ();
+				}
+				catch ( IOException x )
+				{
+					// the original failure is more interesting
+				}
+				if ( !tmp.delete () )
+				{
+					log.warn ( "Couldn't remove {}", tmp );
+				}
 			}
 		}
-		else
+
+		// the old writer now only reaches the file that was replaced
+		final BufferedWriter oldLog = fLog;
+		fLogStream = fos;
+		fLog = bw;
+		fLogEntries = 0;
+
+		if ( oldLog != null )
 		{
-			// empty set; just remove the file
-			relnFile.delete ();
+			try
+			{
+				oldLog.close ();
+			}
+			catch ( IOException x )
+			{
+				log.warn ( "Couldn't close the replaced relation log: {}", x.getMessage () );
+			}
 		}
 	}
 
-	private File pathToObjDir ( Path from )
+	/**
+	 * Import relations from the per-object directory tree used by earlier versions. Each
+	 * relation has a file named for it in an "out" directory below the directory for its "from"
+	 * object, holding a JSON array of "to" paths. The "in" files mirror them and aren't needed.
+	 * @param dir
+	 * @throws ModelServiceException
+	 */
+	private void importLegacyTree ( File dir ) throws ModelServiceException
 	{
-		File result = fRelnDir;
-		for ( Name component : from.getSegmentList () )
+		final File[] files = dir.listFiles ();
+		if ( files == null ) return;
+
+		for ( File f : files )
 		{
-			result = new File ( result, component.toString () );
+			if ( f.isDirectory () )
+			{
+				importLegacyTree ( f );
+			}
+			else if ( f.getParentFile ().getName ().equals ( "out" ) )
+			{
+				final Path from = legacyDirToPath ( f.getParentFile ().getParentFile () );
+				for ( Path to : loadLegacyToList ( f ) )
+				{
+					add ( from, f.getName (), to );
+				}
+			}
 		}
-		return result;
 	}
 
-	private File pathToObjOutDir ( Path from )
+	private Path legacyDirToPath ( File objDir )
 	{
-		return new File ( pathToObjDir ( from ), "out" );
+		final String relative = fRelnDir.toPath ().relativize ( objDir.toPath () ).toString ();
+		return Path.fromString ( "/" + relative.replace ( File.separatorChar, Path.getPathSeparator () ) );
 	}
 
-	private File pathToObjInDir ( Path from )
+	private List<Path> loadLegacyToList ( File relnFile ) throws ModelServiceException
 	{
-		return new File ( pathToObjDir ( from ), "in" );
+		try ( FileInputStream fis = new FileInputStream ( relnFile ) )
+		{
+			final JSONArray ar = new JSONArray ( new CommentedJsonTokener ( fis ) );
+			return JsonVisitor.arrayToList ( ar, new ValueReader<String,Path> ()
+			{
+				@Override
+				public Path read ( String val )
+				{
+					return Path.fromString ( val );
+				}
+			} );
+		}
+		catch ( FileNotFoundException x )
+		{
+			return new LinkedList<Path> ();
+		}
+		catch ( JSONException | IOException x )
+		{
+			throw new ModelServiceException ( x );
+		}
 	}
 
-	private void addToRelnFile ( File targetDir, String relnName, Path farSide ) throws ModelServiceException
+	// the log now holds everything in the legacy tree
+	private void removeLegacyTree ()
 	{
-		if ( !targetDir.isDirectory () && !targetDir.mkdirs () )
+		final File[] files = fRelnDir.listFiles ();
+		if ( files == null ) return;
+
+		for ( File f : files )
 		{
-			throw new ModelServiceException ( "Couldn't create relation directory " + targetDir.toString () );
+			if ( f.isDirectory () )
+			{
+				removeTree ( f );
+			}
 		}
-
-		final File pathFile = new File ( targetDir, relnName );
-		final List<Path> farSideList = loadToList ( pathFile );
-		farSideList.add ( farSide );
-		storeToFile ( pathFile, farSideList );
 	}
 
-	private boolean removeFromRelnFile ( File relnFile, Path farSide ) throws ModelServiceException
+	private static void removeTree ( File f )
 	{
-		if ( relnFile.exists () )
+		final File[] children = f.listFiles ();
+		if ( children != null )
 		{
-			final List<Path> toList = loadToList ( relnFile );
-			if ( toList.contains ( farSide  ) )
+			for ( File child : children )
 			{
-				toList.remove ( farSide );
-				storeToFile ( relnFile, toList );
-				return true;
+				removeTree ( child );
 			}
 		}
-		return false;
+		if ( !f.delete () )
+		{
+			log.warn ( "Couldn't remove legacy relation file {}", f );
+		}
 	}
 }
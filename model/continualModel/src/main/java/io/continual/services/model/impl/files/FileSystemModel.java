@@ -21,11 +21,14 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -44,12 +47,14 @@ import io.continual.services.model.core.ModelOperation;
 import io.continual.services.model.core.ModelPathListPage;
 import io.continual.services.model.core.ModelRelation;
 import io.continual.services.model.core.ModelRelationInstance;
+import io.continual.services.model.core.ModelRelationList;
 import io.continual.services.model.core.ModelRequestContext;
 import io.continual.services.model.core.PageRequest;
 import io.continual.services.model.core.data.ModelObject;
 import io.continual.services.model.core.exceptions.ModelItemDoesNotExistException;
 import io.continual.services.model.core.exceptions.ModelRequestException;
 import io.continual.services.model.core.exceptions.ModelServiceException;
+import io.continual.services.model.impl.common.FieldIndex;
 import io.continual.services.model.impl.common.SimpleModelQuery;
 import io.continual.services.model.impl.json.CommonDataTransfer;
 import io.continual.services.model.impl.json.CommonJsonDbModel;
@@ -71,6 +76,8 @@ public class FileSystemModel extends CommonJsonDbModel
 		}
 
 		fRelnMgr = new FileSysRelnMgr ( new File ( fBaseDir, kRelnsDir ) );
+
+		loadIndexes ();
 	}
 
 	public FileSystemModel ( String acctId, String modelId, File baseDir ) throws BuildFailure
@@ -89,6 +96,14 @@ public class FileSystemModel extends CommonJsonDbModel
 			sc.getExprEval ( config ).evaluateText ( config.getString ( "modelId" ) ),
 			sc.getExprEval ( config ).evaluateText ( config.getString ( "baseDir" ) )
 		);
+		setObjectCache ( sc, config );
+	}
+
+	@Override
+	public void close () throws IOException
+	{
+		super.close ();
+		fRelnMgr.close ();
 	}
 
 	@Override
@@ -149,30 +164,30 @@ public class FileSystemModel extends CommonJsonDbModel
 		return ModelPathListPage.wrap ( result, pr );
 	}
 
-	private class FsModelQuery extends SimpleModelQuery
+	private static List<Path> collectObjectsUnder ( File dir, Path pathPrefix )
 	{
-		private List<Path> collectObjectsUnder ( File dir, Path pathPrefix )
+		final LinkedList<Path> result = new LinkedList<> ();
+
+		for ( File f : dir.listFiles () )
 		{
-			final LinkedList<Path> result = new LinkedList<> ();
+			final String namePart = f.getName ();
+			final Path p = pathPrefix.makeChildItem ( Name.fromString ( namePart ) );
 
-			for ( File f : dir.listFiles () )
+			if ( f.isFile () )
 			{
-				final String namePart = f.getName ();
-				final Path p = pathPrefix.makeChildItem ( Name.fromString ( namePart ) );
-
-				if ( f.isFile () )
-				{
-					result.add ( p );
-				}
-				else if ( f.isDirectory () )
-				{
-					result.addAll ( collectObjectsUnder ( f, p ) );
-				}
+				result.add ( p );
+			}
+			else if ( f.isDirectory () )
+			{
+				result.addAll ( collectObjectsUnder ( f, p ) );
 			}
-
-			return result;
 		}
-		
+
+		return result;
+	}
+
+	private class FsModelQuery extends SimpleModelQuery
+	{
 		@Override
 		public <T,K> ModelObjectList<T> execute ( ModelRequestContext context, ModelObjectFactory<T,K> factory, DataAccessor<T> accessor, K userContext ) throws ModelRequestException, ModelServiceException
 		{
@@ -182,9 +197,20 @@ public class FileSystemModel extends CommonJsonDbModel
 			final File container = pathToDir ( objDir, getPathPrefix() );
 			if ( container.isDirectory () )
 			{
-				for ( Path p : collectObjectsUnder ( container, getPathPrefix () ) )
+				final Collection<Path> candidates = getIndexedCandidates ( getIndexes () );
+				for ( Path p : candidates != null ? candidates : collectObjectsUnder ( container, getPathPrefix () ) )
 				{
-					final T mo = load ( context, p, factory, userContext );
+					final T mo;
+					try
+					{
+						mo = load ( context, p, factory, userContext );
+					}
+					catch ( ModelItemDoesNotExistException x )
+					{
+						// an index entry can outlive an object removed outside of the model
+						if ( candidates == null ) throw x;
+						continue;
+					}
 					if ( mo != null )
 					{
 						boolean match = true;
@@ -268,6 +294,32 @@ public class FileSystemModel extends CommonJsonDbModel
 		return fRelnMgr.unrelate ( reln );
 	}
 
+	/**
+	 * Add a set of relations, writing them to disk together
+	 * @param context
+	 * @param relns
+	 * @return a list of relation instances, in the same order as the given relations
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException
+	 */
+	public List<ModelRelationInstance> relate ( ModelRequestContext context, Collection<? extends ModelRelation> relns ) throws ModelServiceException, ModelRequestException
+	{
+		return fRelnMgr.relate ( relns );
+	}
+
+	/**
+	 * Remove a set of relations, writing the change to disk together
+	 * @param context
+	 * @param relns
+	 * @return the number of relations that existed and were removed
+	 * @throws ModelServiceException
+	 * @throws ModelRequestException
+	 */
+	public int unrelate ( ModelRequestContext context, Collection<? extends ModelRelation> relns ) throws ModelServiceException, ModelRequestException
+	{
+		return fRelnMgr.unrelate ( relns );
+	}
+
 	@Override
 	public boolean unrelate ( ModelRequestContext context, String relnId ) throws ModelServiceException, ModelRequestException
 	{
@@ -282,6 +334,21 @@ public class FileSystemModel extends CommonJsonDbModel
 		}
 	}
 
+	@Override
+	public Map<Path,ModelRelationList> getRelationsOfEach ( ModelRequestContext context, Collection<Path> objectPaths, String named, boolean inbound, boolean outbound ) throws ModelServiceException, ModelRequestException
+	{
+		// relations are held in memory, so there's nothing to gain from running these in parallel
+		final HashMap<Path,ModelRelationList> result = new HashMap<> ();
+		for ( Path p : objectPaths )
+		{
+			final LinkedList<ModelRelationInstance> relns = new LinkedList<> ();
+			if ( inbound ) relns.addAll ( fRelnMgr.getInboundRelationsNamed ( p, named ) );
+			if ( outbound ) relns.addAll ( fRelnMgr.getOutboundRelationsNamed ( p, named ) );
+			result.put ( p, ModelRelationList.simpleListOfCollection ( relns ) );
+		}
+		return result;
+	}
+
 	@Override
 	public List<ModelRelationInstance> getInboundRelationsNamed ( ModelRequestContext context, Path forObject, String named ) throws ModelServiceException, ModelRequestException
 	{
@@ -418,6 +485,65 @@ public class FileSystemModel extends CommonJsonDbModel
 		return removed;
 	}
 
+	@Override
+	protected FieldIndex buildIndex ( String field ) throws ModelServiceException
+	{
+		final FileFieldIndex index = FileFieldIndex.create ( FileFieldIndex.fileFor ( getIndexDir (), field ), field );
+
+		final File objDir = getObjectDir ();
+		if ( objDir.isDirectory () )
+		{
+			for ( Path p : collectObjectsUnder ( objDir, Path.getRootPath () ) )
+			{
+				try
+				{
+					index.populate ( p, loadObject ( null, p ).getObjectData () );
+				}
+				catch ( ModelRequestException x )
+				{
+					log.warn ( "Skipping {} while indexing {}: {}", p, field, x.getMessage () );
+				}
+			}
+		}
+		index.commit ();
+
+		log.info ( "Built index on {} with {} entries", field, index.size () );
+		return index;
+	}
+
+	private void loadIndexes () throws BuildFailure
+	{
+		final File[] files = getIndexDir ().listFiles ();
+		if ( files == null ) return;
+
+		for ( File f : files )
+		{
+			if ( !FileFieldIndex.isIndexFile ( f ) ) continue;
+
+			try
+			{
+				final FileFieldIndex index = FileFieldIndex.load ( f );
+				if ( index.isClean () )
+				{
+					registerIndex ( index );
+				}
+				else
+				{
+					log.warn ( "Index on {} was not closed cleanly; rebuilding it.", index.getField () );
+					registerIndex ( buildIndex ( index.getField () ) );
+				}
+			}
+			catch ( IOException x )
+			{
+				log.warn ( "Ignoring unreadable index file {}: {}", f, x.getMessage () );
+			}
+			catch ( ModelServiceException x )
+			{
+				throw new BuildFailure ( x );
+			}
+		}
+	}
+
 	static void removeEmptyDirsUpTo ( File from, File limit )
 	{
 		final File parentDir = from.getParentFile ();
@@ -443,7 +569,13 @@ public class FileSystemModel extends CommonJsonDbModel
 		return new File ( fBaseDir, "objects" );
 	}
 
+	private File getIndexDir ()
+	{
+		return new File ( fBaseDir, kIndexesDir );
+	}
+
 	private static final String kRelnsDir = "relations";
+	private static final String kIndexesDir = "indexes";
 	
 //	private File getSchemaDir ()
 //	{
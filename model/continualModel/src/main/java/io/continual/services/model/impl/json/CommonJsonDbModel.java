@@ -17,8 +17,12 @@
 package io.continual.services.model.impl.json;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -28,6 +32,7 @@ import io.continual.iam.access.AccessControlEntry;
 import io.continual.iam.access.AccessControlList;
 import io.continual.iam.exceptions.IamSvcException;
 import io.continual.iam.identity.Identity;
+import io.continual.metrics.MetricsService;
 import io.continual.services.ServiceContainer;
 import io.continual.services.SimpleService;
 import io.continual.services.model.core.Model;
@@ -37,6 +42,7 @@ import io.continual.services.model.core.ModelObjectMetadata;
 import io.continual.services.model.core.ModelOperation;
 import io.continual.services.model.core.ModelRelationInstance;
 import io.continual.services.model.core.ModelRequestContext;
+import io.continual.services.model.core.ModelRequestContext.CacheControl;
 import io.continual.services.model.core.ModelSchema;
 import io.continual.services.model.core.ModelSchema.ValidationResult;
 import io.continual.services.model.core.ModelSchemaRegistry;
@@ -48,6 +54,7 @@ import io.continual.services.model.core.exceptions.ModelRequestException;
 import io.continual.services.model.core.exceptions.ModelSchemaViolationException;
 import io.continual.services.model.core.exceptions.ModelServiceException;
 import io.continual.services.model.impl.common.BasicModelRequestContextBuilder;
+import io.continual.services.model.impl.common.FieldIndex;
 import io.continual.services.model.impl.common.SimpleTraversal;
 import io.continual.util.data.json.JsonVisitor;
 import io.continual.util.naming.Path;
@@ -57,6 +64,7 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 	public CommonJsonDbModel ( ServiceContainer sc, JSONObject config )
 	{
 		this ( config.getString ( "modelId" ), config.optBoolean ( "readOnly", false ) );
+		setObjectCache ( sc, config );
 	}
 
 	public CommonJsonDbModel ( String modelId )
@@ -68,11 +76,18 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 	{
 		fModelId = modelId;
 		fReadOnly = readOnly;
+		fIndexes = new ConcurrentHashMap<> ();
+		fIndexBuildLock = new ReentrantReadWriteLock ();
+		fObjectCache = null;
 	}
 
 	@Override
 	public void close () throws IOException
 	{
+		for ( FieldIndex index : fIndexes.values () )
+		{
+			index.close ();
+		}
 	}
 
 	@Override
@@ -132,7 +147,7 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 		ModelDataTransfer ld = context.get ( objectPath, ModelDataTransfer.class );
 		if ( ld == null )
 		{
-			ld = loadObject ( context, objectPath );
+			ld = loadThroughCache ( context, objectPath );
 			if ( ld == null )
 			{
 				context.doesNotExist ( objectPath );
@@ -282,7 +297,22 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 						@Override
 						public ModelObject getObjectData () { return data; }
 					};
-					internalStore ( context, objectPath, mdt );
+					// an index being built can't miss this write, since the build waits for it to finish
+					fIndexBuildLock.readLock ().lock ();
+					try
+					{
+						invalidateCachedObject ( objectPath );
+						internalStore ( context, objectPath, mdt );
+						invalidateCachedObject ( objectPath );
+						for ( FieldIndex index : fIndexes.values () )
+						{
+							index.update ( objectPath, data );
+						}
+					}
+					finally
+					{
+						fIndexBuildLock.readLock ().unlock ();
+					}
 					log.info ( "wrote {}", objectPath );
 					context.put ( objectPath, mdt );
 
@@ -399,7 +429,25 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 	{
 		checkReadOnly ();
 
-		final boolean result = internalRemove ( context, objectPath );
+		final boolean result;
+		fIndexBuildLock.readLock ().lock ();
+		try
+		{
+			invalidateCachedObject ( objectPath );
+			result = internalRemove ( context, objectPath );
+			invalidateCachedObject ( objectPath );
+			if ( result )
+			{
+				for ( FieldIndex index : fIndexes.values () )
+				{
+					index.remove ( objectPath );
+				}
+			}
+		}
+		finally
+		{
+			fIndexBuildLock.readLock ().unlock ();
+		}
 		context.remove ( objectPath );
 		log.info ( "removed {}", objectPath );
 		context.getNotificationService().onObjectDelete ( objectPath );
@@ -410,6 +458,25 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 	public Model createIndex ( String field ) throws ModelRequestException, ModelServiceException
 	{
 		checkReadOnly ();
+
+		// writers are held off while the existing objects are scanned, so that the index is
+		// registered before any write it didn't see
+		fIndexBuildLock.writeLock ().lock ();
+		try
+		{
+			if ( !fIndexes.containsKey ( field ) )
+			{
+				final FieldIndex index = buildIndex ( field );
+				if ( index != null )
+				{
+					registerIndex ( index );
+				}
+			}
+		}
+		finally
+		{
+			fIndexBuildLock.writeLock ().unlock ();
+		}
 		return this;
 	}
 
@@ -427,6 +494,123 @@ public abstract class CommonJsonDbModel extends SimpleService implements Model
 
 	private final String fModelId;
 	private final boolean fReadOnly;
+	private final ConcurrentHashMap<String,FieldIndex> fIndexes;
+	private final ReentrantReadWriteLock fIndexBuildLock;
+	private ModelObjectCache fObjectCache;
+
+	/**
+	 * Cache objects across requests. Models built from configuration enable this with an
+	 * "objectCache" object holding optional "maxBytes" and "ttlMs" values. Call this during
+	 * construction, before the model is used.
+	 * @param cache a cache, or null to disable shared caching
+	 */
+	protected void setObjectCache ( ModelObjectCache cache )
+	{
+		fObjectCache = cache;
+	}
+
+	/**
+	 * Set up the shared object cache from the model's configuration, if it has an "objectCache"
+	 * object. Subclasses whose configuration constructor doesn't chain to this class's should
+	 * call this.
+	 * @param sc the service container, for metrics
+	 * @param config the model's configuration
+	 */
+	protected void setObjectCache ( ServiceContainer sc, JSONObject config )
+	{
+		final JSONObject cacheConfig = config.optJSONObject ( "objectCache" );
+		if ( cacheConfig == null ) return;
+
+		final ModelObjectCache cache = ModelObjectCache.fromConfig ( cacheConfig );
+		final MetricsService ms = sc.get ( "metrics", MetricsService.class );
+		if ( ms != null )
+		{
+			cache.populateMetrics ( ms.getCatalog ( "Model " + config.optString ( "name", fModelId ) ) );
+		}
+		setObjectCache ( cache );
+	}
+
+	/**
+	 * Get a listener that drops cached objects when they change. Connect this to change
+	 * notifications from other writers to the model's backing store. If the model has no
+	 * shared object cache, the listener does nothing.
+	 * @return a notification service
+	 */
+	public ModelNotificationService getCacheInvalidator ()
+	{
+		return fObjectCache == null ? ModelNotificationService.noopNotifier () : fObjectCache;
+	}
+
+	/**
+	 * Drop an object from the shared object cache. Subclasses that change objects outside of
+	 * internalStore and internalRemove should call this.
+	 * @param objectPath
+	 */
+	protected void invalidateCachedObject ( Path objectPath )
+	{
+		if ( fObjectCache != null )
+		{
+			fObjectCache.invalidate ( objectPath );
+		}
+	}
+
+	private ModelDataTransfer loadThroughCache ( ModelRequestContext context, Path objectPath ) throws ModelItemDoesNotExistException, ModelServiceException, ModelRequestException
+	{
+		final ModelObjectCache cache = fObjectCache;
+		if ( cache == null )
+		{
+			return loadObject ( context, objectPath );
+		}
+
+		final CacheControl cc = context.getCacheControl ();
+		final boolean canRead = cc == CacheControl.READ_AND_WRITE || cc == CacheControl.READ_NO_WRITE;
+		final boolean canWrite = cc == CacheControl.READ_AND_WRITE || cc == CacheControl.WRITE_NO_READ;
+
+		if ( canRead )
+		{
+			final ModelDataTransfer cached = cache.read ( objectPath );
+			if ( cached != null ) return cached;
+		}
+
+		final long stamp = cache.getStamp ( objectPath );
+		final ModelDataTransfer result = loadObject ( context, objectPath );
+		if ( result != null && canWrite )
+		{
+			cache.fill ( objectPath, stamp, result );
+		}
+		return result;
+	}
+
+	/**
+	 * Build an index on the given field from the objects currently in the model. The default
+	 * implementation returns null, meaning the model doesn't support indexes and queries on the
+	 * field scan the objects under their path prefix.
+	 * @param field a dot-notation field name
+	 * @return a populated index, or null
+	 * @throws ModelServiceException
+	 */
+	protected FieldIndex buildIndex ( String field ) throws ModelServiceException
+	{
+		return null;
+	}
+
+	/**
+	 * Add an index to the set maintained by this model, for example one reloaded from storage.
+	 * @param index a populated index
+	 */
+	protected void registerIndex ( FieldIndex index )
+	{
+		fIndexes.put ( index.getField (), index );
+	}
+
+	/**
+	 * Get this model's field indexes for query planning
+	 * @return a map of field indexes by field name
+	 */
+	protected Map<String,FieldIndex> getIndexes ()
+	{
+		return Collections.unmodifiableMap ( fIndexes );
+	}
 
 	protected boolean objectExists ( ModelRequestContext context, Path objectPath ) throws ModelServiceException, ModelRequestException
 	{
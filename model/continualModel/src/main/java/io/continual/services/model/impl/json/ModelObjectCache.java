@@ -0,0 +1,264 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.services.model.impl.json;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONObject;
+
+import io.continual.metrics.MetricsCatalog;
+import io.continual.metrics.MetricsSupplier;
+import io.continual.metrics.impl.noop.NoopMeter;
+import io.continual.metrics.metricTypes.Gauge;
+import io.continual.metrics.metricTypes.Meter;
+import io.continual.services.model.core.ModelNotificationService;
+import io.continual.services.model.impl.json.CommonJsonDbModel.ModelDataTransfer;
+import io.continual.util.naming.Path;
+import io.continual.util.time.Clock;
+
+/**
+ * A read-through object cache shared by all requests to a model. Entries are held in their
+ * serialized JSON form and copied out on each hit, so callers can't alter the cached object. The
+ * cache is bounded by the approximate serialized size of its entries, evicting the least recently
+ * used first, and entries expire a fixed time after they're loaded.<br>
+ * <br>
+ * The cache is a ModelNotificationService so that it can be subscribed to change events from
+ * other processes that write to the same backing store.
+ */
+public class ModelObjectCache implements ModelNotificationService, MetricsSupplier
+{
+	public static final long kDefault_MaxBytes = 64L * 1024L * 1024L;
+	public static final long kDefault_TtlMs = 5L * 60L * 1000L;
+
+	/**
+	 * Build a cache from configuration with optional "maxBytes" and "ttlMs" values
+	 * @param config
+	 * @return a cache
+	 */
+	public static ModelObjectCache fromConfig ( JSONObject config )
+	{
+		return new ModelObjectCache (
+			config.optLong ( "maxBytes", kDefault_MaxBytes ),
+			config.optLong ( "ttlMs", kDefault_TtlMs )
+		);
+	}
+
+	public ModelObjectCache ( long maxBytes, long ttlMs )
+	{
+		fMaxBytes = maxBytes;
+		fTtlMs = ttlMs;
+		fEntries = new LinkedHashMap<> ( 1024, 0.75f, true );
+		fBytes = 0L;
+		fStamps = new AtomicLongArray ( kStampCount );
+
+		fHits = new NoopMeter ();
+		fMisses = new NoopMeter ();
+		fEvictions = new NoopMeter ();
+	}
+
+	@Override
+	public void populateMetrics ( MetricsCatalog metrics )
+	{
+		fHits = metrics.meter ( "objectCacheHits" );
+		fMisses = metrics.meter ( "objectCacheMisses" );
+		fEvictions = metrics.meter ( "objectCacheEvictions" );
+		metrics.gauge ( "objectCacheBytes", () -> new Gauge<Long> ()
+		{
+			@Override
+			public Long getValue () { return getByteCount (); }
+		} );
+		metrics.gauge ( "objectCacheEntries", () -> new Gauge<Integer> ()
+		{
+			@Override
+			public Integer getValue () { return size (); }
+		} );
+	}
+
+	/**
+	 * Get the cached object at the given path
+	 * @param path
+	 * @return a private copy of the object, or null if it's not cached
+	 */
+	public ModelDataTransfer read ( Path path )
+	{
+		final JSONObject data;
+		synchronized ( this )
+		{
+			final Entry e = fEntries.get ( path );
+			if ( e != null && e.fExpiresAtMs < Clock.now () )
+			{
+				evict ( path, e );
+				data = null;
+			}
+			else
+			{
+				data = e == null ? null : e.fData;
+			}
+		}
+
+		if ( data == null )
+		{
+			fMisses.mark ();
+			return null;
+		}
+		fHits.mark ();
+
+		// copied out, so the caller may modify it
+		return new CommonDataTransfer ( path, data );
+	}
+
+	/**
+	 * Get a stamp to pass to fill() before loading an object from the backing store. The stamp
+	 * changes when the path is invalidated, so a load that raced with an update is not cached.
+	 * @param path
+	 * @return a stamp
+	 */
+	public long getStamp ( Path path )
+	{
+		return fStamps.get ( stampIndex ( path ) );
+	}
+
+	/**
+	 * Cache an object loaded from the backing store, unless the path was invalidated since
+	 * the given stamp was taken.
+	 * @param path
+	 * @param stamp the value of getStamp() before the object was loaded
+	 * @param o the loaded object
+	 */
+	public void fill ( Path path, long stamp, ModelDataTransfer o )
+	{
+		final JSONObject data = CommonDataTransfer.toDataObject ( o );
+		final long bytes = data.toString ().length ();
+		if ( bytes > fMaxBytes ) return;
+
+		synchronized ( this )
+		{
+			if ( fStamps.get ( stampIndex ( path ) ) != stamp ) return;
+
+			final Entry replaced = fEntries.put ( path, new Entry ( data, bytes, Clock.now () + fTtlMs ) );
+			if ( replaced != null ) fBytes -= replaced.fBytes;
+			fBytes += bytes;
+
+			// evict least recently used entries
+			final Iterator<Map.Entry<Path,Entry>> it = fEntries.entrySet ().iterator ();
+			while ( fBytes > fMaxBytes && it.hasNext () )
+			{
+				final Map.Entry<Path,Entry> e = it.next ();
+				it.remove ();
+				fBytes -= e.getValue ().fBytes;
+				fEvictions.mark ();
+			}
+		}
+	}
+
+	/**
+	 * Drop any cached object at the given path
+	 * @param path
+	 */
+	public void invalidate ( Path path )
+	{
+		synchronized ( this )
+		{
+			fStamps.incrementAndGet ( stampIndex ( path ) );
+
+			final Entry e = fEntries.remove ( path );
+			if ( e != null ) fBytes -= e.fBytes;
+		}
+	}
+
+	/**
+	 * Drop all cached objects
+	 */
+	public synchronized void clear ()
+	{
+		for ( int i=0; i<kStampCount; i++ )
+		{
+			fStamps.incrementAndGet ( i );
+		}
+		fEntries.clear ();
+		fBytes = 0L;
+	}
+
+	/**
+	 * Get the number of cached objects
+	 * @return a count
+	 */
+	public synchronized int size ()
+	{
+		return fEntries.size ();
+	}
+
+	/**
+	 * Get the approximate size of the cached objects
+	 * @return a byte count
+	 */
+	public synchronized long getByteCount ()
+	{
+		return fBytes;
+	}
+
+	@Override
+	public void onObjectCreate ( Path objectPath ) { invalidate ( objectPath ); }
+
+	@Override
+	public void onObjectUpdate ( Path objectPath ) { invalidate ( objectPath ); }
+
+	@Override
+	public void onObjectDelete ( Path objectPath ) { invalidate ( objectPath ); }
+
+	private static class Entry
+	{
+		public Entry ( JSONObject data, long bytes, long expiresAtMs )
+		{
+			fData = data;
+			fBytes = bytes;
+			fExpiresAtMs = expiresAtMs;
+		}
+
+		private final JSONObject fData;
+		private final long fBytes;
+		private final long fExpiresAtMs;
+	}
+
+	private final long fMaxBytes;
+	private final long fTtlMs;
+	private final LinkedHashMap<Path,Entry> fEntries;	// in access order
+	private long fBytes;
+	private final AtomicLongArray fStamps;
+
+	private Meter fHits;
+	private Meter fMisses;
+	private Meter fEvictions;
+
+	private static final int kStampCount = 256;
+
+	private static int stampIndex ( Path path )
+	{
+		return ( path.hashCode () & Integer.MAX_VALUE ) % kStampCount;
+	}
+
+	// called with this cache locked
+	private void evict ( Path path, Entry e )
+	{
+		fEntries.remove ( path );
+		fBytes -= e.fBytes;
+		fEvictions.mark ();
+	}
+}
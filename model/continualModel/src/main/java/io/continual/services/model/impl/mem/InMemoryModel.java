@@ -1,6 +1,7 @@
 package io.continual.services.model.impl.mem;
 
 import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -29,6 +30,7 @@ import io.continual.services.model.core.data.ModelObject;
 import io.continual.services.model.core.exceptions.ModelItemDoesNotExistException;
 import io.continual.services.model.core.exceptions.ModelRequestException;
 import io.continual.services.model.core.exceptions.ModelServiceException;
+import io.continual.services.model.impl.common.FieldIndex;
 import io.continual.services.model.impl.common.SimpleModelQuery;
 import io.continual.services.model.impl.json.CommonDataTransfer;
 import io.continual.services.model.impl.json.CommonJsonDbModel;
@@ -47,6 +49,7 @@ public class InMemoryModel extends CommonJsonDbModel
 		this (
 			sc.getExprEval ( config ).evaluateText ( config.getString ( "modelId" ) )
 		);
+		setObjectCache ( sc, config );
 	}
 
 	public InMemoryModel ( String modelId ) throws BuildFailure
@@ -320,6 +323,31 @@ public class InMemoryModel extends CommonJsonDbModel
 		}
 	}
 
+	@Override
+	protected FieldIndex buildIndex ( String field ) throws ModelServiceException
+	{
+		final FieldIndex index = new FieldIndex ( field );
+		indexObjectsUnder ( index, getDataRoot (), Path.getRootPath () );
+		return index;
+	}
+
+	private void indexObjectsUnder ( FieldIndex index, JSONObject node, Path path ) throws ModelServiceException
+	{
+		for ( String key : node.keySet () )
+		{
+			final JSONObject child = node.optJSONObject ( key );
+			if ( key.equals ( kLocalDataNode ) || child == null ) continue;
+
+			final Path childPath = path.makeChildItem ( Name.fromString ( key ) );
+			final JSONObject objData = child.optJSONObject ( kLocalDataNode );
+			if ( objData != null )
+			{
+				index.update ( childPath, new CommonDataTransfer ( childPath, objData ).getObjectData () );
+			}
+			indexObjectsUnder ( index, child, childPath );
+		}
+	}
+
 	private void prune ( Path objectPath )
 	{
 		final LinkedList<AbstractMap.SimpleEntry<String,JSONObject>> components = new LinkedList<> ();
@@ -474,9 +502,20 @@ public class InMemoryModel extends CommonJsonDbModel
 		{
 			final LinkedList<ModelObjectAndPath<T>> result = new LinkedList<> ();
 
-			for ( Path p : collectObjectsUnder ( getPathPrefix () ) )
+			final Collection<Path> candidates = getIndexedCandidates ( getIndexes () );
+			for ( Path p : candidates != null ? candidates : collectObjectsUnder ( getPathPrefix () ) )
 			{
-				final T mo = load ( context, p, factory, userContext );
+				final T mo;
+				try
+				{
+					mo = load ( context, p, factory, userContext );
+				}
+				catch ( ModelItemDoesNotExistException x )
+				{
+					// an index entry can outlive an object removed outside of the model
+					if ( candidates == null ) throw x;
+					continue;
+				}
 				if ( mo != null )
 				{
 					boolean match = true;
@@ -0,0 +1,128 @@
+package io.continual.services.model.impl.delegator;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.services.model.impl.mem.InMemoryModel;
+import io.continual.services.model.impl.session.StdMountTableEntry;
+import io.continual.util.naming.Path;
+
+/**
+ * Compares mount resolution in the mount table trie against the linear scan of a mount list
+ * that DelegatingModel used to do, with per-tenant mounts like "/tenants/t123/data".
+ * 
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.continual.services.model.impl.delegator.MountResolutionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MountResolutionBenchmark
+{
+	@Param({ "10", "1000", "100000" })
+	public int mountCount;
+
+	private MountTable fTable;
+	private LinkedList<ModelMount> fList;
+	private Path[] fObjectPaths;
+	private Path[] fPartialPaths;
+	private int fNext;
+
+	@Setup
+	public void setup () throws BuildFailure
+	{
+		final InMemoryModel model = new InMemoryModel ( "bench" );
+
+		fTable = new MountTable ();
+		fList = new LinkedList<> ();
+		for ( int i=0; i<mountCount; i++ )
+		{
+			final ModelMount mm = new StdMountTableEntry ( Path.fromString ( "/tenants/t" + i + "/data" ), model );
+			fTable.add ( mm );
+			fList.add ( mm );
+		}
+
+		fObjectPaths = new Path [ 1024 ];
+		fPartialPaths = new Path [ 1024 ];
+		for ( int i=0; i<fObjectPaths.length; i++ )
+		{
+			final int tenant = (int)( ( i * 7919L ) % mountCount );
+			fObjectPaths[i] = Path.fromString ( "/tenants/t" + tenant + "/data/objects/o" + i );
+			fPartialPaths[i] = Path.fromString ( "/tenants/t" + tenant );
+		}
+		fNext = 0;
+	}
+
+	@Benchmark
+	public ModelMount trieFind ()
+	{
+		return fTable.find ( nextObjectPath () );
+	}
+
+	@Benchmark
+	public ModelMount legacyScanFind ()
+	{
+		final Path p = nextObjectPath ();
+		for ( ModelMount mm : fList )
+		{
+			if ( mm.contains ( p ) ) return mm;
+		}
+		return null;
+	}
+
+	@Benchmark
+	public int trieChildren ()
+	{
+		return fTable.getChildNamesBelow ( nextPartialPath () ).size ();
+	}
+
+	@Benchmark
+	public int legacyScanChildren ()
+	{
+		final Path p = nextPartialPath ();
+		int count = 0;
+		for ( ModelMount mm : fList )
+		{
+			if ( mm.getMountPoint ().startsWith ( p ) ) count++;
+		}
+		return count;
+	}
+
+	private Path nextObjectPath ()
+	{
+		fNext = ( fNext + 1 ) % fObjectPaths.length;
+		return fObjectPaths [ fNext ];
+	}
+
+	private Path nextPartialPath ()
+	{
+		fNext = ( fNext + 1 ) % fPartialPaths.length;
+		return fPartialPaths [ fNext ];
+	}
+
+	public static void main ( String[] args ) throws RunnerException
+	{
+		new Runner ( new OptionsBuilder ()
+			.include ( MountResolutionBenchmark.class.getSimpleName () )
+			.build ()
+		).run ();
+	}
+}
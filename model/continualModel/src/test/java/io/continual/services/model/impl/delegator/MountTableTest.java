@@ -0,0 +1,65 @@
+package io.continual.services.model.impl.delegator;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.services.model.core.Model;
+import io.continual.services.model.impl.mem.InMemoryModel;
+import io.continual.services.model.impl.session.StdMountTableEntry;
+import io.continual.util.naming.Name;
+import io.continual.util.naming.Path;
+import junit.framework.TestCase;
+
+public class MountTableTest extends TestCase
+{
+	@Test
+	public void testLongestPrefix () throws BuildFailure
+	{
+		final Model m1 = new InMemoryModel ( "m1" );
+		final Model m2 = new InMemoryModel ( "m2" );
+
+		final MountTable mt = new MountTable ();
+		final ModelMount foo = new StdMountTableEntry ( Path.fromString ( "/foo" ), m1 );
+		final ModelMount fooBar = new StdMountTableEntry ( Path.fromString ( "/foo/bar" ), m2 );
+		assertTrue ( mt.add ( foo ) );
+		assertTrue ( mt.add ( fooBar ) );
+		assertFalse ( mt.add ( new StdMountTableEntry ( Path.fromString ( "/foo" ), m2 ) ) );
+
+		assertNull ( mt.find ( Path.getRootPath () ) );
+		assertNull ( mt.find ( Path.fromString ( "/baz" ) ) );
+		assertSame ( foo, mt.find ( Path.fromString ( "/foo" ) ) );
+		assertSame ( foo, mt.find ( Path.fromString ( "/foo/baz" ) ) );
+		assertSame ( fooBar, mt.find ( Path.fromString ( "/foo/bar" ) ) );
+		assertSame ( fooBar, mt.find ( Path.fromString ( "/foo/bar/baz" ) ) );
+		assertNull ( mt.find ( Path.fromString ( "/foobar" ) ) );
+
+		assertEquals ( 2, mt.findAll ( Path.fromString ( "/foo/bar/baz" ) ).size () );
+		assertEquals ( 2, mt.getMounts ().size () );
+	}
+
+	@Test
+	public void testChildNames () throws BuildFailure
+	{
+		final Model m = new InMemoryModel ( "m" );
+
+		final MountTable mt = new MountTable ();
+		mt.add ( new StdMountTableEntry ( Path.fromString ( "/weather/us" ), m ) );
+		mt.add ( new StdMountTableEntry ( Path.fromString ( "/weather/europe" ), m ) );
+		mt.add ( new StdMountTableEntry ( Path.fromString ( "/scores/premiereleague" ), m ) );
+
+		final Set<Name> top = mt.getChildNamesBelow ( Path.getRootPath () );
+		assertEquals ( 2, top.size () );
+		assertTrue ( top.contains ( Name.fromString ( "weather" ) ) );
+		assertTrue ( top.contains ( Name.fromString ( "scores" ) ) );
+
+		assertEquals ( 2, mt.getChildNamesBelow ( Path.fromString ( "/weather" ) ).size () );
+		assertEquals ( 0, mt.getChildNamesBelow ( Path.fromString ( "/weather/us" ) ).size () );
+		assertEquals ( 0, mt.getChildNamesBelow ( Path.fromString ( "/nothing" ) ).size () );
+
+		assertTrue ( mt.hasMountAtOrBelow ( Path.fromString ( "/scores" ) ) );
+		assertTrue ( mt.hasMountAtOrBelow ( Path.fromString ( "/weather/us" ) ) );
+		assertFalse ( mt.hasMountAtOrBelow ( Path.fromString ( "/weather/asia" ) ) );
+	}
+}
@@ -0,0 +1,190 @@
+package io.continual.services.model.impl.files;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.continual.builder.Builder.BuildFailure;
+import io.continual.services.model.core.ModelRelation;
+import io.continual.services.model.core.ModelRelationInstance;
+import io.continual.services.model.core.exceptions.ModelRequestException;
+import io.continual.services.model.core.exceptions.ModelServiceException;
+import io.continual.util.naming.Path;
+import junit.framework.TestCase;
+
+public class FileSysRelnMgrTest extends TestCase
+{
+	@Test
+	public void testRelateAndReload () throws IOException, BuildFailure, ModelServiceException, ModelRequestException
+	{
+		final File dir = Files.createTempDirectory ( "continualRelnTest-" ).toFile ();
+		final Path a = Path.fromString ( "/a" );
+		final Path b = Path.fromString ( "/b" );
+		final Path c = Path.fromString ( "/c" );
+
+		final FileSysRelnMgr mgr = new FileSysRelnMgr ( dir );
+		mgr.relate ( ModelRelation.from ( a, "knows", b ) );
+		mgr.relate ( ModelRelation.from ( a, "knows", c ) );
+		mgr.relate ( ModelRelation.from ( c, "likes", b ) );
+		assertTrue ( mgr.unrelate ( ModelRelation.from ( a, "knows", c ) ) );
+		assertFalse ( mgr.unrelate ( ModelRelation.from ( a, "knows", c ) ) );
+		mgr.close ();
+
+		final FileSysRelnMgr reloaded = new FileSysRelnMgr ( dir );
+		final List<ModelRelationInstance> out = reloaded.getOutboundRelationsNamed ( a, null );
+		assertEquals ( 1, out.size () );
+		assertEquals ( b, out.get ( 0 ).getTo () );
+
+		assertEquals ( 2, reloaded.getInboundRelationsNamed ( b, null ).size () );
+		assertEquals ( 1, reloaded.getInboundRelationsNamed ( b, "likes" ).size () );
+		assertEquals ( 0, reloaded.getInboundRelationsNamed ( c, null ).size () );
+		reloaded.close ();
+	}
+
+	@Test
+	public void testBatchAndCompaction () throws IOException, BuildFailure, ModelServiceException, ModelRequestException
+	{
+		final File dir = Files.createTempDirectory ( "continualRelnTest-" ).toFile ();
+		final Path hub = Path.fromString ( "/hub" );
+
+		final LinkedList<ModelRelation> relns = new LinkedList<> ();
+		for ( int i=0; i<5000; i++ )
+		{
+			relns.add ( ModelRelation.from ( hub, "has", Path.fromString ( "/item/" + i ) ) );
+		}
+
+		final FileSysRelnMgr mgr = new FileSysRelnMgr ( dir );
+		assertEquals ( 5000, mgr.relate ( relns ).size () );
+		assertEquals ( 4990, mgr.unrelate ( relns.subList ( 10, 5000 ) ) );
+		mgr.close ();
+
+		// the removals pushed the log well past the live relation count, so it was rewritten
+		final long logLines = Files.readAllLines ( new File ( dir, "relations.log" ).toPath () ).size ();
+		assertTrue ( logLines < 100 );
+
+		final FileSysRelnMgr reloaded = new FileSysRelnMgr ( dir );
+		final List<ModelRelationInstance> out = reloaded.getOutboundRelationsNamed ( hub, "has" );
+		assertEquals ( 10, out.size () );
+		assertEquals ( Path.fromString ( "/item/0" ), out.get ( 0 ).getTo () );
+		reloaded.close ();
+	}
+
+	@Test
+	public void testTornWrite () throws IOException, BuildFailure, ModelServiceException, ModelRequestException
+	{
+		final File dir = Files.createTempDirectory ( "continualRelnTest-" ).toFile ();
+		final Path a = Path.fromString ( "/a" );
+
+		final FileSysRelnMgr mgr = new FileSysRelnMgr ( dir );
+		mgr.relate ( ModelRelation.from ( a, "knows", Path.fromString ( "/b" ) ) );
+		mgr.close ();
+
+		try ( FileWriter fw = new FileWriter ( new File ( dir, "relations.log" ), true ) )
+		{
+			fw.write ( "{\"op\":\"+\",\"f\":\"/a\"" );
+		}
+
+		final FileSysRelnMgr reloaded = new FileSysRelnMgr ( dir );
+		assertEquals ( 1, reloaded.getOutboundRelationsNamed ( a, null ).size () );
+		reloaded.relate ( ModelRelation.from ( a, "knows", Path.fromString ( "/c" ) ) );
+		reloaded.close ();
+
+		final FileSysRelnMgr again = new FileSysRelnMgr ( dir );
+		assertEquals ( 2, again.getOutboundRelationsNamed ( a, null ).size () );
+		again.close ();
+	}
+
+	@Test
+	public void testDamagedLogRefused () throws IOException, BuildFailure, ModelServiceException, ModelRequestException
+	{
+		final File dir = Files.createTempDirectory ( "continualRelnTest-" ).toFile ();
+		final Path a = Path.fromString ( "/a" );
+
+		final FileSysRelnMgr mgr = new FileSysRelnMgr ( dir );
+		mgr.relate ( ModelRelation.from ( a, "knows", Path.fromString ( "/b" ) ) );
+		mgr.close ();
+
+		// an invalid entry with more after it isn't a torn write
+		try ( FileWriter fw = new FileWriter ( new File ( dir, "relations.log" ), true ) )
+		{
+			fw.write ( "{\"op\":\"+\",\"f\":\"/a\"\n" );
+			fw.write ( "{\"op\":\"+\",\"f\":\"/a\",\"n\":\"knows\",\"t\":\"/c\"}\n" );
+		}
+
+		try
+		{
+			new FileSysRelnMgr ( dir );
+			fail ( "expected the damaged log to be refused" );
+		}
+		catch ( BuildFailure x )
+		{
+			// expected
+		}
+
+		// and the log is left as it was
+		assertEquals ( 4, Files.readAllLines ( new File ( dir, "relations.log" ).toPath () ).size () );
+	}
+
+	@Test
+	public void testFailedCompactionKeepsLog () throws IOException, BuildFailure, ModelServiceException, ModelRequestException
+	{
+		final File dir = Files.createTempDirectory ( "continualRelnTest-" ).toFile ();
+		final Path hub = Path.fromString ( "/hub" );
+
+		final FileSysRelnMgr mgr = new FileSysRelnMgr ( dir );
+
+		// the compaction file can't be created while a directory has its name
+		final File blocker = new File ( dir, "relations.log.tmp" );
+		assertTrue ( blocker.mkdir () );
+
+		final LinkedList<ModelRelation> relns = new LinkedList<> ();
+		for ( int i=0; i<2000; i++ )
+		{
+			relns.add ( ModelRelation.from ( hub, "has", Path.fromString ( "/item/" + i ) ) );
+		}
+		mgr.relate ( relns );
+		assertEquals ( 1990, mgr.unrelate ( relns.subList ( 10, 2000 ) ) );
+
+		// the log stays open for writing
+		mgr.relate ( ModelRelation.from ( hub, "has", Path.fromString ( "/item/late" ) ) );
+		mgr.close ();
+		assertTrue ( blocker.delete () );
+
+		final FileSysRelnMgr reloaded = new FileSysRelnMgr ( dir );
+		assertEquals ( 11, reloaded.getOutboundRelationsNamed ( hub, "has" ).size () );
+		reloaded.close ();
+	}
+
+	@Test
+	public void testLegacyImport () throws IOException, BuildFailure, ModelServiceException, ModelRequestException
+	{
+		final File dir = Files.createTempDirectory ( "continualRelnTest-" ).toFile ();
+
+		// the per-object layout written by earlier versions
+		final File outDir = new File ( dir, "foo/bar/out" );
+		final File inDir = new File ( dir, "foo/baz/in" );
+		assertTrue ( outDir.mkdirs () );
+		assertTrue ( inDir.mkdirs () );
+		try ( FileWriter fw = new FileWriter ( new File ( outDir, "testWith" ) ) )
+		{
+			fw.write ( "[\"/foo/baz\"]" );
+		}
+		try ( FileWriter fw = new FileWriter ( new File ( inDir, "testWith" ) ) )
+		{
+			fw.write ( "[\"/foo/bar\"]" );
+		}
+
+		final FileSysRelnMgr mgr = new FileSysRelnMgr ( dir );
+		final List<ModelRelationInstance> in = mgr.getInboundRelationsNamed ( Path.fromString ( "/foo/baz" ), "testWith" );
+		assertEquals ( 1, in.size () );
+		assertEquals ( Path.fromString ( "/foo/bar" ), in.get ( 0 ).getFrom () );
+		mgr.close ();
+
+		assertFalse ( new File ( dir, "foo" ).exists () );
+	}
+}
@@ -3,6 +3,10 @@ package io.continual.services.model.impl.files;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONObject;
 import org.junit.Test;
@@ -11,6 +15,12 @@ import org.slf4j.LoggerFactory;
 
 import io.continual.builder.Builder.BuildFailure;
 import io.continual.iam.impl.common.CommonJsonIdentity;
+import io.continual.services.ServiceContainer;
+import io.continual.services.model.core.Model;
+import io.continual.services.model.core.ModelObjectAndPath;
+import io.continual.services.model.core.ModelObjectList;
+import io.continual.services.model.core.ModelPathList;
+import io.continual.services.model.core.ModelQuery;
 import io.continual.services.model.core.ModelRelation;
 import io.continual.services.model.core.ModelRequestContext;
 import io.continual.services.model.core.data.JsonModelObject;
@@ -62,6 +72,221 @@ public class FileSystemModelTest extends TestCase
 		}
 	}
 
+	@Test
+	public void testFieldIndex () throws IOException, BuildFailure, ModelSchemaViolationException, ModelRequestException, ModelServiceException
+	{
+		final java.nio.file.Path baseDir = Files.createTempDirectory ( "continualModelTest-" );
+
+		try ( final FileSystemModel model = new FileSystemModel ( "test", "test", baseDir ) )
+		{
+			final ModelRequestContext mrc = model.getRequestContextBuilder ()
+				.forUser ( new TestIdentity() )
+				.build ()
+			;
+
+			// one object before the index exists, the rest after
+			store ( model, mrc, "/cfg/a", "alpha" );
+			model.createIndex ( "key" );
+			store ( model, mrc, "/cfg/b", "beta" );
+			store ( model, mrc, "/cfg/c", "alpha" );
+			store ( model, mrc, "/other/d", "alpha" );
+
+			assertEquals ( 2, count ( query ( model ).withPathPrefix ( Path.fromString ( "/cfg" ) ).withFieldValue ( "key", "alpha" ).execute ( mrc ) ) );
+			assertEquals ( 3, count ( query ( model ).withFieldValue ( "key", "alpha" ).execute ( mrc ) ) );
+
+			// changes are reflected in the index
+			store ( model, mrc, "/cfg/a", "beta" );
+			model.remove ( mrc, Path.fromString ( "/cfg/c" ) );
+			assertEquals ( 0, count ( query ( model ).withPathPrefix ( Path.fromString ( "/cfg" ) ).withFieldValue ( "key", "alpha" ).execute ( mrc ) ) );
+			assertEquals ( 2, count ( query ( model ).withFieldValue ( "key", "beta" ).execute ( mrc ) ) );
+		}
+
+		assertTrue ( new File ( new File ( baseDir.toFile (), "indexes" ), "key.idx" ).isFile () );
+
+		// the index is reloaded with the model
+		try ( final FileSystemModel model = new FileSystemModel ( "test", "test", baseDir ) )
+		{
+			final ModelRequestContext mrc = model.getRequestContextBuilder ()
+				.forUser ( new TestIdentity() )
+				.build ()
+			;
+			assertEquals ( 2, count ( query ( model ).withFieldValue ( "key", "beta" ).execute ( mrc ) ) );
+
+			// an object written behind the model's back isn't in the index, so the query doesn't see it
+			Files.write ( new File ( new File ( new File ( baseDir.toFile (), "objects" ), "cfg" ), "x" ).toPath (),
+				new JSONObject ().put ( "data", new JSONObject ().put ( "key", "beta" ) ).toString ().getBytes ( "UTF-8" ) );
+			assertEquals ( 2, count ( query ( model ).withFieldValue ( "key", "beta" ).execute ( mrc ) ) );
+			assertEquals ( 3, count ( query ( model ).withFieldContaining ( "key", "bet" ).execute ( mrc ) ) );
+		}
+	}
+
+	@Test
+	public void testObjectCacheFromConfig () throws IOException, BuildFailure, ModelSchemaViolationException, ModelRequestException, ModelServiceException
+	{
+		final java.nio.file.Path baseDir = Files.createTempDirectory ( "continualModelTest-" );
+		final JSONObject config = new JSONObject ()
+			.put ( "modelId", "test" )
+			.put ( "baseDir", baseDir.toString () )
+			.put ( "objectCache", new JSONObject ().put ( "maxBytes", 1024L * 1024L ) )
+		;
+
+		try ( final FileSystemModel model = new FileSystemModel ( new ServiceContainer (), config ) )
+		{
+			store ( model, newContext ( model ), "/cfg/a", "alpha" );
+			assertEquals ( "alpha", loadKey ( model, "/cfg/a" ) );
+
+			// an object written behind the model's back isn't seen until the cache is told about it
+			Files.write ( new File ( new File ( new File ( baseDir.toFile (), "objects" ), "cfg" ), "a" ).toPath (),
+				new JSONObject ().put ( "data", new JSONObject ().put ( "key", "beta" ) ).toString ().getBytes ( "UTF-8" ) );
+			assertEquals ( "alpha", loadKey ( model, "/cfg/a" ) );
+
+			model.getCacheInvalidator ().onObjectUpdate ( Path.fromString ( "/cfg/a" ) );
+			assertEquals ( "beta", loadKey ( model, "/cfg/a" ) );
+		}
+	}
+
+	private static ModelRequestContext newContext ( Model model ) throws BuildFailure
+	{
+		return model.getRequestContextBuilder ()
+			.forUser ( new TestIdentity() )
+			.build ()
+		;
+	}
+
+	// each load uses a new request context, so that only the model's shared cache can serve it
+	private static String loadKey ( Model model, String path ) throws BuildFailure, ModelRequestException, ModelServiceException
+	{
+		return JsonModelObject.modelObjectToJson ( model.load ( newContext ( model ), Path.fromString ( path ) ).getData () ).getString ( "key" );
+	}
+
+	@Test
+	public void testWritesDuringIndexBuild () throws IOException, BuildFailure, ModelSchemaViolationException, ModelRequestException, ModelServiceException, InterruptedException
+	{
+		final int kPreloaded = 200;
+		final int kConcurrent = 200;
+
+		final java.nio.file.Path baseDir = Files.createTempDirectory ( "continualModelTest-" );
+		try ( final FileSystemModel model = new FileSystemModel ( "test", "test", baseDir ) )
+		{
+			final ModelRequestContext mrc = model.getRequestContextBuilder ()
+				.forUser ( new TestIdentity() )
+				.build ()
+			;
+			for ( int i=0; i<kPreloaded; i++ )
+			{
+				store ( model, mrc, "/pre/" + i, "v" );
+			}
+
+			// write more objects while the index is being built
+			final CountDownLatch started = new CountDownLatch ( 1 );
+			final AtomicReference<Exception> failure = new AtomicReference<> ();
+			final Thread writer = new Thread ( () -> {
+				try
+				{
+					final ModelRequestContext wmrc = model.getRequestContextBuilder ()
+						.forUser ( new TestIdentity() )
+						.build ()
+					;
+					started.countDown ();
+					for ( int i=0; i<kConcurrent; i++ )
+					{
+						store ( model, wmrc, "/during/" + i, "v" );
+					}
+				}
+				catch ( Exception x )
+				{
+					failure.set ( x );
+				}
+			} );
+			writer.start ();
+			started.await ();
+			model.createIndex ( "key" );
+			writer.join ();
+			assertNull ( failure.get () );
+
+			// every object is in the index, whether it was written before, during, or after the build
+			assertEquals ( kPreloaded + kConcurrent, count ( query ( model ).withFieldValue ( "key", "v" ).execute ( mrc ) ) );
+		}
+	}
+
+	@Test
+	public void testTraversal () throws IOException, BuildFailure, ModelSchemaViolationException, ModelRequestException, ModelServiceException
+	{
+		final java.nio.file.Path baseDir = Files.createTempDirectory ( "continualModelTest-" );
+
+		try ( final FileSystemModel model = new FileSystemModel ( "test", "test", baseDir ) )
+		{
+			final ModelRequestContext mrc = model.getRequestContextBuilder ()
+				.forUser ( new TestIdentity() )
+				.build ()
+			;
+
+			// /root -> /mid/i -> /leaf/i/j, with every other leaf tagged "alpha"
+			store ( model, mrc, "/root", "root" );
+			final LinkedList<ModelRelation> relns = new LinkedList<> ();
+			for ( int i=0; i<10; i++ )
+			{
+				store ( model, mrc, "/mid/" + i, "mid" );
+				relns.add ( ModelRelation.from ( Path.fromString ( "/root" ), "child", Path.fromString ( "/mid/" + i ) ) );
+				for ( int j=0; j<10; j++ )
+				{
+					final String leaf = "/leaf/" + i + "/" + j;
+					store ( model, mrc, leaf, j % 2 == 0 ? "alpha" : "beta" );
+					relns.add ( ModelRelation.from ( Path.fromString ( "/mid/" + i ), "child", Path.fromString ( leaf ) ) );
+				}
+			}
+			model.relate ( mrc, relns );
+
+			final ModelPathList leaves = model.startTraversal ()
+				.startAt ( Path.fromString ( "/root" ) )
+				.traverseOutbound ( "child" )
+				.traverseOutbound ( "child" )
+				.filterSet ( mo -> JsonModelObject.modelObjectToJson ( mo ).optString ( "key" ).equals ( "alpha" ) )
+				.execute ( mrc )
+			;
+			int count = 0;
+			for ( Path p : leaves )
+			{
+				assertTrue ( p.toString ().startsWith ( "/leaf/" ) );
+				count++;
+			}
+			assertEquals ( 50, count );
+
+			final ModelPathList parents = model.startTraversal ()
+				.startAt ( Path.fromString ( "/leaf/3/4" ) )
+				.traverseInbound ( "child" )
+				.execute ( mrc )
+			;
+			final Iterator<Path> it = parents.iterator ();
+			assertEquals ( Path.fromString ( "/mid/3" ), it.next () );
+			assertFalse ( it.hasNext () );
+		}
+	}
+
+	private static void store ( FileSystemModel model, ModelRequestContext mrc, String path, String key ) throws ModelSchemaViolationException, ModelRequestException, ModelServiceException
+	{
+		model.createUpdate ( mrc, Path.fromString ( path ) )
+			.overwriteData ( new JsonModelObject ( new JSONObject ().put ( "key", key ) ) )
+			.execute ()
+		;
+	}
+
+	// FileSystemModel's own query type isn't visible here
+	private static ModelQuery query ( Model model ) throws ModelRequestException, ModelServiceException
+	{
+		return model.startQuery ();
+	}
+
+	private static int count ( ModelObjectList<?> list )
+	{
+		int result = 0;
+		for ( ModelObjectAndPath<?> o : list )
+		{
+			result++;
+		}
+		return result;
+	}
+
 	private static class TestIdentity extends CommonJsonIdentity 
 	{
 		public TestIdentity ( )
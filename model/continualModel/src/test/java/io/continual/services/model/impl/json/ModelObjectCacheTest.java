@@ -0,0 +1,96 @@
+package io.continual.services.model.impl.json;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.continual.services.model.core.data.JsonModelObject;
+import io.continual.services.model.core.data.ModelObject;
+import io.continual.services.model.impl.json.CommonJsonDbModel.ModelDataTransfer;
+import io.continual.util.naming.Path;
+import junit.framework.TestCase;
+
+public class ModelObjectCacheTest extends TestCase
+{
+	@Test
+	public void testReadThrough ()
+	{
+		final ModelObjectCache cache = new ModelObjectCache ( 1024L * 1024L, 60000L );
+		final Path p = Path.fromString ( "/foo" );
+
+		assertNull ( cache.read ( p ) );
+		cache.fill ( p, cache.getStamp ( p ), makeObject ( "bar" ) );
+
+		final ModelDataTransfer hit = cache.read ( p );
+		assertNotNull ( hit );
+		assertEquals ( "bar", JsonModelObject.modelObjectToJson ( hit.getObjectData () ).getString ( "value" ) );
+
+		// the caller's copy is private
+		hit.getMetadata ().bumpVersionStamp ();
+		assertEquals ( 0L, cache.read ( p ).getMetadata ().getVersionStamp () );
+
+		cache.onObjectUpdate ( p );
+		assertNull ( cache.read ( p ) );
+	}
+
+	@Test
+	public void testStaleFillIgnored ()
+	{
+		final ModelObjectCache cache = new ModelObjectCache ( 1024L * 1024L, 60000L );
+		final Path p = Path.fromString ( "/foo" );
+
+		final long stamp = cache.getStamp ( p );
+		cache.invalidate ( p );		// an update lands while the old value is loading
+		cache.fill ( p, stamp, makeObject ( "old" ) );
+		assertNull ( cache.read ( p ) );
+	}
+
+	@Test
+	public void testByteBound ()
+	{
+		final long entryBytes = CommonDataTransfer.toDataObject ( makeObject ( "0" ) ).toString ().length ();
+		final ModelObjectCache cache = new ModelObjectCache ( entryBytes * 3, 60000L );
+
+		for ( int i=0; i<3; i++ )
+		{
+			final Path p = Path.fromString ( "/" + i );
+			cache.fill ( p, cache.getStamp ( p ), makeObject ( "" + i ) );
+		}
+		assertEquals ( 3, cache.size () );
+
+		// touch /0 so that /1 is least recently used
+		assertNotNull ( cache.read ( Path.fromString ( "/0" ) ) );
+
+		final Path p3 = Path.fromString ( "/3" );
+		cache.fill ( p3, cache.getStamp ( p3 ), makeObject ( "3" ) );
+		assertEquals ( 3, cache.size () );
+		assertTrue ( cache.getByteCount () <= entryBytes * 3 );
+		assertNull ( cache.read ( Path.fromString ( "/1" ) ) );
+		assertNotNull ( cache.read ( Path.fromString ( "/0" ) ) );
+	}
+
+	@Test
+	public void testExpiry () throws InterruptedException
+	{
+		final ModelObjectCache cache = new ModelObjectCache ( 1024L * 1024L, 1L );
+		final Path p = Path.fromString ( "/foo" );
+
+		cache.fill ( p, cache.getStamp ( p ), makeObject ( "bar" ) );
+		Thread.sleep ( 10 );
+		assertNull ( cache.read ( p ) );
+		assertEquals ( 0, cache.size () );
+	}
+
+	private static ModelDataTransfer makeObject ( String value )
+	{
+		final CommonModelObjectMetadata meta = new CommonModelObjectMetadata ();
+		final ModelObject data = new JsonModelObject ( new JSONObject ().put ( "value", value ) );
+		return new ModelDataTransfer ()
+		{
+			@Override
+			public CommonModelObjectMetadata getMetadata () { return meta; }
+
+			@Override
+			public ModelObject getObjectData () { return data; }
+		};
+	}
+}
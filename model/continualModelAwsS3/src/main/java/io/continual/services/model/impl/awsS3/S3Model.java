@@ -19,14 +19,22 @@ package io.continual.services.model.impl.awsS3;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -39,6 +47,7 @@ import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
@@ -88,11 +97,24 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 {
 	public static void initModel ( String acctId, String modelId, String accessKey, String secretKey, Region region, String bucketId, String prefix ) throws BuildFailure
 	{
-		final S3Client fS3 = S3Client.builder()
-			.region ( region )
-			.credentialsProvider ( StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)) )
-			.build ()
-		;
+		initModel ( acctId, modelId, accessKey, secretKey, region, null, bucketId, prefix );
+	}
+
+	/**
+	 * Initialize a model in a bucket
+	 * @param acctId
+	 * @param modelId
+	 * @param accessKey
+	 * @param secretKey
+	 * @param region
+	 * @param endpoint an S3-compatible service endpoint, or null to use AWS
+	 * @param bucketId
+	 * @param prefix
+	 * @throws BuildFailure
+	 */
+	public static void initModel ( String acctId, String modelId, String accessKey, String secretKey, Region region, String endpoint, String bucketId, String prefix ) throws BuildFailure
+	{
+		final S3Client fS3 = buildClient ( accessKey, secretKey, region, endpoint );
 		final String fBucketId = bucketId;
 		final String fPrefix = prefix == null ? "" : prefix;
 
@@ -159,6 +181,9 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 		fRelnMgr = new S3SysRelnMgr ( fS3, fBucketId, getRelationsPath () );
 
 		fFoldersAsObjects = false;
+
+		fFetchThreadCount = kDefault_FetchThreads;
+		fFetchPool = makeFetchPool ( modelId, fFetchThreadCount );
 	}
 
 	public S3Model ( ServiceContainer sc, JSONObject config ) throws BuildFailure
@@ -173,12 +198,9 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 			final String accessKey = evaledConfig.getString ( "accessKey" );
 			final String secretKey = evaledConfig.getString ( "secretKey" );
 			final Region region = Region.of ( evaledConfig.optString ( "region", Region.US_WEST_2.id () ) );
+			final String endpoint = evaledConfig.optString ( "endpoint", null );
 
-			fS3 = S3Client.builder()
-				.region ( region )
-				.credentialsProvider ( StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)) )
-				.build ()
-			;
+			fS3 = buildClient ( accessKey, secretKey, region, endpoint );
 			fBucketId = evaledConfig.getString ( "bucket" );
 			fPrefix = evaledConfig.optString ( "prefix", "" );
 
@@ -196,7 +218,7 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 			Version vv = determineVersion ();
 			if ( config.optBoolean ( "initOk", false ) && vv == Version.V1_IMPLIED )
 			{
-				initModel ( fAcctId, super.getId (), accessKey, secretKey, region, fBucketId, fPrefix );
+				initModel ( fAcctId, super.getId (), accessKey, secretKey, region, endpoint, fBucketId, fPrefix );
 				vv = Version.V2;
 			}
 			fVersion = vv;
@@ -205,6 +227,9 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 
 			fFoldersAsObjects = evaledConfig.optBoolean ( "foldersAsObjects", false );
 
+			fFetchThreadCount = Math.max ( 1, evaledConfig.optInt ( "fetchThreads", kDefault_FetchThreads ) );
+			fFetchPool = makeFetchPool ( getId (), fFetchThreadCount );
+
 			// optionally report metrics
 			final MetricsService ms = sc.get ( "metrics", MetricsService.class );
 			if ( ms != null )
@@ -229,6 +254,13 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 		fRemoveTimer = metrics.timer ( "removeTimer" );
 	}
 
+	@Override
+	public void close () throws IOException
+	{
+		fFetchPool.shutdownNow ();
+		super.close ();
+	}
+
 	@Override
 	public long getMaxSerializedObjectLength ()
 	{
@@ -249,11 +281,53 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 		return 1024L;
 	}
 
-	private List<Path> loadNextS3Set ( ListObjectsV2Request.Builder reqBuilder, Path prefix, TreeSet<Path> seen, AtomicBoolean lastResultTruncated, PageRequest pr )
+	/**
+	 * Pages through an S3 listing. When a page is truncated, the request for the following page
+	 * is sent right away on the fetch pool, so it's in flight while the caller works through the
+	 * current page.
+	 */
+	private class ListingCursor
+	{
+		public ListingCursor ( ListObjectsV2Request.Builder reqBuilder )
+		{
+			fReqBuilder = reqBuilder;
+			fNextPage = null;
+			fTruncated = true;
+		}
+
+		public boolean hasMore ()
+		{
+			return fTruncated;
+		}
+
+		public ListObjectsV2Response nextPage ()
+		{
+			final ListObjectsV2Response result = fNextPage == null ? fS3.listObjectsV2 ( fReqBuilder.build () ) : await ( fNextPage );
+			fNextPage = null;
+
+			fTruncated = result.isTruncated ();
+			if ( fTruncated )
+			{
+				final ListObjectsV2Request nextReq = fReqBuilder.continuationToken ( result.nextContinuationToken () ).build ();
+				fNextPage = fFetchPool.submit ( new Callable<ListObjectsV2Response> ()
+				{
+					@Override
+					public ListObjectsV2Response call () { return fS3.listObjectsV2 ( nextReq ); }
+				} );
+			}
+			return result;
+		}
+
+		private final ListObjectsV2Request.Builder fReqBuilder;
+		private Future<ListObjectsV2Response> fNextPage;
+		private boolean fTruncated;
+	}
+
+	private List<Path> loadNextS3Set ( ListingCursor cursor, Path prefix, TreeSet<Path> seen )
 	{
 		final LinkedList<Path> pending = new LinkedList<> ();
 
-		final ListObjectsV2Response result = fS3.listObjectsV2 ( reqBuilder.build() );
+		final ListObjectsV2Response result = cursor.nextPage ();
 		for ( S3Object objectSummary : result.contents () )
 		{
 			final String key = objectSummary.key ();
@@ -273,10 +347,6 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 				seen.add ( asPath );
 			}
 		}
-		final String token = result.nextContinuationToken ();
-		reqBuilder.continuationToken ( token );
-
-		lastResultTruncated.set ( result.isTruncated () );
 
 		return pending;
 	}
@@ -287,13 +357,11 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 		final LinkedList<Path> pending = new LinkedList<> ();
 		final TreeSet<Path> seen = new TreeSet<> ();
 
-		final ListObjectsV2Request.Builder req = ListObjectsV2Request.builder ()
+		final ListingCursor cursor = new ListingCursor ( ListObjectsV2Request.builder ()
 			.bucket ( fBucketId )
 			.prefix ( pathToS3Path ( prefix ) + "/" )
 			.delimiter ( Path.getPathSeparatorString () )
-		;
-
-		final AtomicBoolean lastResultTruncated = new AtomicBoolean ( true );
+		);
 
 		return new ModelPathListPage ()
 		{
@@ -308,9 +376,9 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 					long skipsLeft = pr.getRequestedPage () * pr.getRequestedPageSize ();
 					long itemsLeft = pr.getRequestedPageSize ();
 
-					while ( lastResultTruncated.get () && itemsLeft > 0 )
+					while ( cursor.hasMore () && itemsLeft > 0 )
 					{
-						final List<Path> nextS3Set = loadNextS3Set ( req, prefix, seen, lastResultTruncated, pr );
+						final List<Path> nextS3Set = loadNextS3Set ( cursor, prefix, seen );
 						for ( Path p : nextS3Set )
 						{
 							if ( skipsLeft-- > 0 ) continue;
@@ -371,9 +439,10 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 		{
 			final LinkedList<ModelObjectAndPath<T>> result = new LinkedList<> ();
 
-			final ModelPathListPage objectPaths = listChildrenOfPath ( context, getPathPrefix () );
-			for ( Path objectPath : objectPaths )
+			final Iterator<Path> objectPaths = new PrefetchingPathIterator ( context, listChildrenOfPath ( context, getPathPrefix () ).iterator () );
+			while ( objectPaths.hasNext () )
 			{
+				final Path objectPath = objectPaths.next ();
 				final T mo = load ( context, objectPath, factory, userContext );
 				boolean match = true;
 				for ( Filter f : getFilters() )
@@ -419,8 +488,7 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 
 		private <T,K> ModelObjectList<T> streamLoad ( ModelRequestContext context, ModelObjectFactory<T,K> factory, DataAccessor<T> accessor, K userContext ) throws ModelRequestException, ModelServiceException
 		{
-			final ModelPathListPage objectPaths = listChildrenOfPath ( context, getPathPrefix () );
-			final Iterator<Path> paths = objectPaths.iterator ();
+			final Iterator<Path> paths = new PrefetchingPathIterator ( context, listChildrenOfPath ( context, getPathPrefix () ).iterator () );
 
 			final LinkedList<ModelObjectAndPath<T>> pending = new LinkedList<> ();
 
@@ -480,6 +548,98 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 		}
 	}
 	
+	/**
+	 * Walks a list of object paths, loading upcoming objects into the object cache on the fetch
+	 * pool. Paths are returned in their original order, each once its object has been fetched
+	 * (or has failed to fetch), so the caller's load is normally served from the cache. Failures
+	 * are left for that load to report.
+	 */
+	private class PrefetchingPathIterator implements Iterator<Path>
+	{
+		public PrefetchingPathIterator ( ModelRequestContext context, Iterator<Path> paths )
+		{
+			fContext = context;
+			fPaths = paths;
+			fWindow = new ArrayDeque<> ();
+			fWindowSize = 2 * fFetchThreadCount;
+		}
+
+		@Override
+		public boolean hasNext ()
+		{
+			fill ();
+			return fWindow.size () > 0;
+		}
+
+		@Override
+		public Path next ()
+		{
+			fill ();
+
+			final PendingFetch pf = fWindow.removeFirst ();
+			if ( pf.fFetch != null )
+			{
+				try
+				{
+					pf.fFetch.get ();
+				}
+				catch ( ExecutionException x )
+				{
+					// the caller's load will report the problem
+				}
+				catch ( InterruptedException x )
+				{
+					Thread.currentThread ().interrupt ();
+				}
+			}
+
+			fill ();
+			return pf.fPath;
+		}
+
+		private final ModelRequestContext fContext;
+		private final Iterator<Path> fPaths;
+		private final ArrayDeque<PendingFetch> fWindow;
+		private final int fWindowSize;
+
+		private void fill ()
+		{
+			while ( fWindow.size () < fWindowSize && fPaths.hasNext () )
+			{
+				final Path p = fPaths.next ();
+				if ( fCache.read ( pathToS3Path ( p ) ) != null )
+				{
+					fWindow.add ( new PendingFetch ( p, null ) );
+				}
+				else
+				{
+					fWindow.add ( new PendingFetch ( p, fFetchPool.submit ( new Callable<Void> ()
+					{
+						@Override
+						public Void call () throws ModelServiceException, ModelRequestException
+						{
+							// loadObject doesn't use the request context, which isn't thread-safe
+							loadObject ( fContext, p );
+							return null;
+						}
+					} ) ) );
+				}
+			}
+		}
+	}
+
+	private static class PendingFetch
+	{
+		public PendingFetch ( Path path, Future<Void> fetch )
+		{
+			fPath = path;
+			fFetch = fetch;
+		}
+
+		public final Path fPath;
+		public final Future<Void> fFetch;
+	}
+
 	@Override
 	public ModelQuery startQuery ()
 	{
@@ -731,6 +891,63 @@ public class S3Model extends CommonJsonDbModel implements MetricsSupplier
 	private final ShardedExpiringCache<String,ModelDataTransfer> fCache;
 	private final ShardedExpiringCache<String,Boolean> fNotFoundCache;	// because null means not-found :-(
 
+	private final int fFetchThreadCount;
+	private final ExecutorService fFetchPool;
+
+	private static final int kDefault_FetchThreads = 8;
+
+	private static S3Client buildClient ( String accessKey, String secretKey, Region region, String endpoint )
+	{
+		final S3ClientBuilder builder = S3Client.builder()
+			.region ( region )
+			.credentialsProvider ( StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)) )
+		;
+
+		// S3-compatible services (e.g. MinIO or LocalStack) generally need path-style addressing
+		if ( endpoint != null && endpoint.length () > 0 )
+		{
+			builder
+				.endpointOverride ( URI.create ( endpoint ) )
+				.forcePathStyle ( true )
+			;
+		}
+		return builder.build ();
+	}
+
+	private static ExecutorService makeFetchPool ( String modelId, int threadCount )
+	{
+		final AtomicInteger threadNumber = new AtomicInteger ( 0 );
+		return Executors.newFixedThreadPool ( threadCount, new ThreadFactory ()
+		{
+			@Override
+			public Thread newThread ( Runnable r )
+			{
+				final Thread t = new Thread ( r, "S3Model " + modelId + " fetch " + threadNumber.incrementAndGet () );
+				t.setDaemon ( true );
+				return t;
+			}
+		} );
+	}
+
+	private static <T> T await ( Future<T> f )
+	{
+		try
+		{
+			return f.get ();
+		}
+		catch ( ExecutionException x )
+		{
+			final Throwable cause = x.getCause ();
+			if ( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+			throw SdkException.create ( "S3 request failed.", cause );
+		}
+		catch ( InterruptedException x )
+		{
+			Thread.currentThread ().interrupt ();
+			throw SdkException.create ( "Interrupted while waiting on S3.", x );
+		}
+	}
+
 	private enum Version
 	{
 		V1_IMPLIED,
@@ -18,8 +18,9 @@
 package io.continual.http.service.framework.routing;
 
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +30,8 @@ import io.continual.http.service.framework.context.CHttpRequestContext;
 
 /**
  * A request router is configured with route sources and error handlers, then
- * used to route an incoming request to a request handler.
+ * used to route an incoming request to a request handler. Routing takes no lock;
+ * configuration changes replace the source list rather than modifying it in place.
  */
 public class CHttpRequestRouter
 {
@@ -47,15 +49,15 @@ public class CHttpRequestRouter
 	 */
 	public CHttpRequestRouter () 
 	{
-		fSources = new LinkedList<> ();
-		fErrorHandlers = new HashMap<>();
+		fSources = new CopyOnWriteArrayList<> ();
+		fErrorHandlers = new ConcurrentHashMap<> ();
 	}
 
 	/**
 	 * add a route source
 	 * @param src
 	 */
-	public synchronized void addRouteSource ( CHttpRouteSource src )
+	public void addRouteSource ( CHttpRouteSource src )
 	{
 		addRouteSource ( src, false );
 	}
@@ -66,15 +68,15 @@ public class CHttpRequestRouter
 	 * @param src
 	 * @param withPriority
 	 */
-	public synchronized void addRouteSource ( CHttpRouteSource src, boolean withPriority )
+	public void addRouteSource ( CHttpRouteSource src, boolean withPriority )
 	{
 		if ( withPriority )
 		{
-			fSources.addFirst ( src );
+			fSources.add ( 0, src );
 		}
 		else
 		{
-			fSources.addLast ( src );
+			fSources.add ( src );
 		}
 	}
 
@@ -82,7 +84,7 @@ public class CHttpRequestRouter
 	 * Provide a URL for redirects when there's no specific error handler for the exception.
 	 * @param url
 	 */
-	public synchronized void setGeneralErrorRedirectUrl ( final String url )
+	public void setGeneralErrorRedirectUrl ( final String url )
 	{
 		fErrorHandlers.put ( Throwable.class, new CHttpErrorHandler ()
 		{
@@ -100,7 +102,7 @@ public class CHttpRequestRouter
 	 * @param x
 	 * @param eh
 	 */
-	public synchronized void setHandlerForException ( Class<? extends Throwable> x, CHttpErrorHandler eh )
+	public void setHandlerForException ( Class<? extends Throwable> x, CHttpErrorHandler eh )
 	{
 		fErrorHandlers.put ( x, eh );
 	}
@@ -113,7 +115,7 @@ public class CHttpRequestRouter
 	 * @return a matching handler
 	 * @throws noMatchingRoute
 	 */
-	public synchronized CHttpRouteInvocation route ( CHttpRequest req ) throws noMatchingRoute
+	public CHttpRouteInvocation route ( CHttpRequest req ) throws noMatchingRoute
 	{
 		final String verbIn = req.getMethod ();
 		final String verb = verbIn.equalsIgnoreCase("HEAD")?"GET":verbIn;	// HEAD is GET without an entity response
@@ -144,7 +146,7 @@ public class CHttpRequestRouter
 	 * @param cause
 	 * @return an error handler, or null if none are applicable
 	 */
-	public synchronized CHttpErrorHandler route ( Throwable cause )
+	public CHttpErrorHandler route ( Throwable cause )
 	{
 		CHttpErrorHandler h = null;
 		Class<?> c = cause.getClass ();
@@ -167,7 +169,7 @@ public class CHttpRequestRouter
 	 * @param staticMethodName
 	 * @return
 	 */
-	public synchronized String reverseRoute ( Class<?> c, String staticMethodName )
+	public String reverseRoute ( Class<?> c, String staticMethodName )
 	{
 		return reverseRoute ( c, staticMethodName, new HashMap<String,Object> () );
 	}
@@ -181,7 +183,7 @@ public class CHttpRequestRouter
 	 * @param args
 	 * @return
 	 */
-	public synchronized String reverseRoute ( Class<?> c, String staticMethodName, Map<String,Object> args )
+	public String reverseRoute ( Class<?> c, String staticMethodName, Map<String,Object> args )
 	{
 		String route = null;
 		for ( CHttpRouteSource src : fSources )
@@ -195,8 +197,8 @@ public class CHttpRequestRouter
 		return route;
 	}
 
-	private final LinkedList<CHttpRouteSource> fSources;
-	private final HashMap<Class<?>,CHttpErrorHandler> fErrorHandlers;
+	private final CopyOnWriteArrayList<CHttpRouteSource> fSources;
+	private final ConcurrentHashMap<Class<?>,CHttpErrorHandler> fErrorHandlers;
 
 	private static final org.slf4j.Logger log = LoggerFactory.getLogger ( CHttpRequestRouter.class );
 }
@@ -77,6 +77,7 @@ public class CHttpPlayishInstanceCallRoutingSource<T> implements CHttpRouteSourc
 		final CHttpPathInfo pe = CHttpPathInfo.processPath ( verb, path );
 		pe.setHandler ( new InstanceEntryAction<T> ( fInstance, action, pe.getArgs(), fPackages ) );
 		fPathList.add ( pe );
+		fTable = null;
 
 		return this;
 	}
@@ -85,19 +86,16 @@ public class CHttpPlayishInstanceCallRoutingSource<T> implements CHttpRouteSourc
 	 * Get a route invocation for a given verb+path, or null.
 	 */
 	@Override
-	public synchronized CHttpRouteInvocation getRouteFor ( String verb, String path )
+	public CHttpRouteInvocation getRouteFor ( String verb, String path )
 	{
-		CHttpRouteInvocation selected = null;
-		for ( CHttpPathInfo pe : fPathList )
+		CHttpRouteTable table = fTable;
+		if ( table == null )
 		{
-			final List<String> args = pe.matches ( verb, path );
-			if ( args != null )
-			{
-				selected = getInvocation ( pe, args );
-				break;
-			}
+			table = compileRoutes ();
 		}
-		return selected;
+
+		final CHttpRouteTable.Match m = table.find ( verb, path );
+		return m == null ? null : getInvocation ( m.getRoute (), m.getArgs () );
 	}
 
 	/**
@@ -121,6 +119,9 @@ public class CHttpPlayishInstanceCallRoutingSource<T> implements CHttpRouteSourc
 	private final LinkedList<String> fPackages;
 	private final LinkedList<CHttpPathInfo> fPathList;
 
+	// the compiled form of fPathList, rebuilt on the first lookup after a change
+	private volatile CHttpRouteTable fTable;
+
 	private static final org.slf4j.Logger log = LoggerFactory.getLogger ( CHttpPlayishInstanceCallRoutingSource.class );
 
 	protected Invocation getInvocation ( CHttpPathInfo pe, List<String> args )
@@ -165,10 +166,22 @@ public class CHttpPlayishInstanceCallRoutingSource<T> implements CHttpRouteSourc
 		private final List<String> fArgs;
 	}
 
+	// lookups don't lock; they compile the route list here after it changes, which also
+	// holds them until a reload in progress finishes
+	private synchronized CHttpRouteTable compileRoutes ()
+	{
+		if ( fTable == null )
+		{
+			fTable = new CHttpRouteTable ( fPathList );
+		}
+		return fTable;
+	}
+
 	protected synchronized void clearRoutes ()
 	{
 		log.debug ( "Clearing routes within this instance route source." );
 		fPathList.clear ();
+		fTable = null;
 	}
 
 	protected synchronized void addPackage ( String pkg )
@@ -0,0 +1,208 @@
+/*
+ *	Copyright 2026, Continual.io
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+
+package io.continual.http.service.framework.routing.playish;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable index over an ordered list of routes. Routes are grouped by verb. Within a verb,
+ * a route with a fully literal path is found with a single map lookup. A route with parameters
+ * (or other regex) is filed in a trie under the literal path segments that precede its first
+ * parameter, so a lookup only runs the patterns filed along the request's own path.<br>
+ * <br>
+ * When more than one route matches, the one earliest in the original list wins, just as it did
+ * in a linear scan.
+ */
+class CHttpRouteTable
+{
+	/**
+	 * A matched route and the arguments parsed from the request path
+	 */
+	static class Match
+	{
+		public CHttpPathInfo getRoute () { return fRoute; }
+		public List<String> getArgs () { return fArgs; }
+
+		private Match ( CHttpPathInfo route, List<String> args )
+		{
+			fRoute = route;
+			fArgs = args;
+		}
+
+		private final CHttpPathInfo fRoute;
+		private final List<String> fArgs;
+	}
+
+	public CHttpRouteTable ( List<CHttpPathInfo> routes )
+	{
+		fByVerb = new HashMap<> ();
+
+		int position = 0;
+		for ( CHttpPathInfo pe : routes )
+		{
+			final String verb = normalize ( pe.getVerb () );
+			VerbTable vt = fByVerb.get ( verb );
+			if ( vt == null )
+			{
+				vt = new VerbTable ();
+				fByVerb.put ( verb, vt );
+			}
+			vt.add ( new Entry ( position++, pe ) );
+		}
+	}
+
+	/**
+	 * Find the first route that matches the given verb and path
+	 * @param verb
+	 * @param path
+	 * @return a match, or null
+	 */
+	public Match find ( String verb, String path )
+	{
+		if ( verb == null || path == null ) return null;
+
+		final VerbTable vt = fByVerb.get ( normalize ( verb ) );
+		if ( vt == null ) return null;
+
+		Entry best = vt.fExact.get ( path );
+		List<String> bestArgs = null;
+
+		// walk the trie along the request path, trying the patterns filed at each node
+		Node node = vt.fRoot;
+		int segStart = 0;
+		while ( node != null )
+		{
+			for ( Entry e : node.fPatterned )
+			{
+				// entries are in list order, so nothing further here can beat the current best
+				if ( best != null && best.fPosition < e.fPosition ) break;
+
+				final List<String> args = e.fRoute.matches ( verb, path );
+				if ( args != null )
+				{
+					best = e;
+					bestArgs = args;
+					break;
+				}
+			}
+
+			final int slash = path.indexOf ( '/', segStart );
+			if ( slash < 0 )
+			{
+				// the last segment can't lead to a node; patterns are filed under complete segments
+				break;
+			}
+			node = node.fChildren.get ( path.substring ( segStart, slash ) );
+			segStart = slash + 1;
+		}
+
+		if ( best == null ) return null;
+		return new Match ( best.fRoute, bestArgs != null ? bestArgs : new LinkedList<String> () );
+	}
+
+	private static class Entry
+	{
+		public Entry ( int position, CHttpPathInfo route )
+		{
+			fPosition = position;
+			fRoute = route;
+		}
+
+		private final int fPosition;
+		private final CHttpPathInfo fRoute;
+	}
+
+	private static class Node
+	{
+		private final HashMap<String,Node> fChildren = new HashMap<> ();
+		private final ArrayList<Entry> fPatterned = new ArrayList<> ();
+	}
+
+	private static class VerbTable
+	{
+		public void add ( Entry e )
+		{
+			final String path = e.fRoute.getPath ();
+			final int special = firstSpecial ( path );
+			if ( special < 0 )
+			{
+				// a literal path only matches itself; the earliest route for it wins
+				if ( !fExact.containsKey ( path ) )
+				{
+					fExact.put ( path, e );
+				}
+				return;
+			}
+
+			// file the route under the complete literal segments ahead of its first pattern
+			Node node = fRoot;
+			int segStart = 0;
+			int slash;
+			while ( ( slash = path.indexOf ( '/', segStart ) ) >= 0 && slash < special )
+			{
+				final String seg = path.substring ( segStart, slash );
+				Node child = node.fChildren.get ( seg );
+				if ( child == null )
+				{
+					child = new Node ();
+					node.fChildren.put ( seg, child );
+				}
+				node = child;
+				segStart = slash + 1;
+			}
+			node.fPatterned.add ( e );
+		}
+
+		private final HashMap<String,Entry> fExact = new HashMap<> ();
+		private final Node fRoot = new Node ();
+	}
+
+	private final HashMap<String,VerbTable> fByVerb;
+
+	private static final String kRegexChars = "\\.[]{}()*+?^$|";
+
+	/**
+	 * Find the position of the first character in a route path that isn't matched literally. A
+	 * quantifier applies to the character before it, so that character is excluded too. An
+	 * alternation makes the whole path non-literal.
+	 * @param path
+	 * @return a position, or -1 if the path is entirely literal
+	 */
+	private static int firstSpecial ( String path )
+	{
+		if ( path.indexOf ( '|' ) > -1 ) return 0;
+
+		for ( int i=0; i<path.length (); i++ )
+		{
+			final char c = path.charAt ( i );
+			if ( kRegexChars.indexOf ( c ) > -1 )
+			{
+				return ( c == '*' || c == '+' || c == '?' ) ? Math.max ( 0, i - 1 ) : i;
+			}
+		}
+		return -1;
+	}
+
+	private static String normalize ( String verb )
+	{
+		return verb.toUpperCase ( Locale.ROOT );
+	}
+}
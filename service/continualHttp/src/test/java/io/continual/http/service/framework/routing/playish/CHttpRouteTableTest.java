@@ -0,0 +1,105 @@
+package io.continual.http.service.framework.routing.playish;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class CHttpRouteTableTest extends TestCase
+{
+	@Test
+	public void testLiteralAndPatterned ()
+	{
+		final List<CHttpPathInfo> routes = new ArrayList<> ();
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/jobs" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/jobs/{id}" ) );
+		routes.add ( CHttpPathInfo.processPath ( "PUT", "/jobs/{id}/secrets/{secretId}" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/v1/model/{<.+>objPath}" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/v1/model/" ) );
+
+		final CHttpRouteTable table = new CHttpRouteTable ( routes );
+
+		assertSame ( routes.get ( 0 ), table.find ( "GET", "/jobs" ).getRoute () );
+		assertTrue ( table.find ( "GET", "/jobs" ).getArgs ().isEmpty () );
+
+		final CHttpRouteTable.Match m = table.find ( "get", "/jobs/j%201" );
+		assertSame ( routes.get ( 1 ), m.getRoute () );
+		assertEquals ( "j 1", m.getArgs ().get ( 0 ) );
+
+		assertSame ( routes.get ( 2 ), table.find ( "PUT", "/jobs/a/secrets/b" ).getRoute () );
+		assertNull ( table.find ( "GET", "/jobs/a/secrets/b" ) );
+		assertNull ( table.find ( "DELETE", "/jobs/a" ) );
+
+		assertEquals ( "a/b/c", table.find ( "GET", "/v1/model/a/b/c" ).getArgs ().get ( 0 ) );
+		assertSame ( routes.get ( 4 ), table.find ( "GET", "/v1/model/" ).getRoute () );
+	}
+
+	@Test
+	public void testEarliestRouteWins ()
+	{
+		final List<CHttpPathInfo> routes = new ArrayList<> ();
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/a/{x}" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/a/b" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/c/d" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/{<.*>any}" ) );
+		routes.add ( CHttpPathInfo.processPath ( "GET", "/c/{y}" ) );
+
+		final CHttpRouteTable table = new CHttpRouteTable ( routes );
+		assertSame ( routes.get ( 0 ), table.find ( "GET", "/a/b" ).getRoute () );
+		assertSame ( routes.get ( 2 ), table.find ( "GET", "/c/d" ).getRoute () );
+		assertSame ( routes.get ( 3 ), table.find ( "GET", "/c/e" ).getRoute () );
+	}
+
+	@Test
+	public void testMatchesLinearScan ()
+	{
+		final String[] paths = {
+			"/", "/foo", "/foo/", "/foo/bar", "/foo/{id}", "/foo/{id}/bar", "/foo/bar/{<.+>rest}",
+			"/static/.*", "/opt/colou?r", "/x+", "/either|/or", "{first}/tail", "relative/path",
+		};
+		final String[] requests = {
+			"/", "/foo", "/foo/", "/foo/bar", "/foo/baz", "/foo/1/bar", "/foo/bar/a/b", "/static/x.css",
+			"/static/", "/opt/color", "/opt/colour", "/opt/colouur", "/x", "/xxx", "/either", "/or",
+			"head/tail", "relative/path", "", "/nope/nope", "//",
+		};
+
+		final List<CHttpPathInfo> routes = new ArrayList<> ();
+		for ( int i=0; i<paths.length; i++ )
+		{
+			routes.add ( CHttpPathInfo.processPath ( i % 3 == 0 ? "POST" : "GET", paths[i] ) );
+		}
+		final CHttpRouteTable table = new CHttpRouteTable ( routes );
+
+		for ( String verb : new String[] { "GET", "POST", "PUT" } )
+		{
+			for ( String req : requests )
+			{
+				CHttpPathInfo expected = null;
+				List<String> expectedArgs = null;
+				for ( CHttpPathInfo pe : routes )
+				{
+					expectedArgs = pe.matches ( verb, req );
+					if ( expectedArgs != null )
+					{
+						expected = pe;
+						break;
+					}
+				}
+
+				final CHttpRouteTable.Match m = table.find ( verb, req );
+				if ( expected == null )
+				{
+					assertNull ( verb + " " + req, m );
+				}
+				else
+				{
+					assertNotNull ( verb + " " + req, m );
+					assertSame ( verb + " " + req, expected, m.getRoute () );
+					assertEquals ( verb + " " + req, expectedArgs, m.getArgs () );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package io.continual.http.service.framework.routing.playish;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the route table against the linear scan of path patterns that the playish routing
+ * sources used to do, with a route set shaped like a combined API server: a few hundred routes
+ * over REST-style resource families, most of them parameterized.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.continual.http.service.framework.routing.playish.RequestRoutingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestRoutingBenchmark
+{
+	@Param({ "40", "400" })
+	public int routeCount;
+
+	private List<CHttpPathInfo> fList;
+	private CHttpRouteTable fTable;
+	private String[] fVerbs;
+	private String[] fPaths;
+	private int fNext;
+
+	@Setup
+	public void setup ()
+	{
+		// each resource family has 8 routes, like the flow control and model APIs
+		fList = new ArrayList<> ();
+		final int families = Math.max ( 1, routeCount / 8 );
+		for ( int i=0; i<families; i++ )
+		{
+			final String base = "/v1/r" + i;
+			fList.add ( CHttpPathInfo.processPath ( "GET", base ) );
+			fList.add ( CHttpPathInfo.processPath ( "POST", base ) );
+			fList.add ( CHttpPathInfo.processPath ( "GET", base + "/{id}" ) );
+			fList.add ( CHttpPathInfo.processPath ( "PUT", base + "/{id}" ) );
+			fList.add ( CHttpPathInfo.processPath ( "PATCH", base + "/{id}" ) );
+			fList.add ( CHttpPathInfo.processPath ( "DELETE", base + "/{id}" ) );
+			fList.add ( CHttpPathInfo.processPath ( "GET", base + "/{id}/log/{instanceId}" ) );
+			fList.add ( CHttpPathInfo.processPath ( "GET", base + "/{id}/objects/{<.+>objPath}" ) );
+		}
+		fTable = new CHttpRouteTable ( fList );
+
+		final String[] verbs = { "GET", "GET", "PUT", "GET", "POST", "GET" };
+		final String[] tails = { "", "/abc123", "/abc123", "/abc123/log/i-7", "", "/abc123/objects/a/b/c" };
+
+		fVerbs = new String [ 1024 ];
+		fPaths = new String [ 1024 ];
+		for ( int i=0; i<fPaths.length; i++ )
+		{
+			final int family = (int)( ( i * 7919L ) % families );
+			final int shape = i % verbs.length;
+			fVerbs[i] = verbs[shape];
+			fPaths[i] = "/v1/r" + family + tails[shape];
+		}
+		fNext = 0;
+	}
+
+	@Benchmark
+	public CHttpRouteTable.Match tableFind ()
+	{
+		fNext = ( fNext + 1 ) % fPaths.length;
+		return fTable.find ( fVerbs[fNext], fPaths[fNext] );
+	}
+
+	@Benchmark
+	public List<String> legacyScanFind ()
+	{
+		fNext = ( fNext + 1 ) % fPaths.length;
+		for ( CHttpPathInfo pe : fList )
+		{
+			final List<String> args = pe.matches ( fVerbs[fNext], fPaths[fNext] );
+			if ( args != null ) return args;
+		}
+		return null;
+	}
+
+	public static void main ( String[] args ) throws RunnerException
+	{
+		new Runner ( new OptionsBuilder ()
+			.include ( RequestRoutingBenchmark.class.getSimpleName () )
+			.build ()
+		).run ();
+	}
+}